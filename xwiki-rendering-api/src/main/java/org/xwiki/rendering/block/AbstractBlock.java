@@ -20,18 +20,25 @@
 package org.xwiki.rendering.block;
 
 import java.security.InvalidParameterException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.xwiki.rendering.block.match.BlockMatcher;
 import org.xwiki.rendering.block.match.BlockNavigator;
+import org.xwiki.rendering.block.match.ClassBlockMatcher;
 import org.xwiki.rendering.block.match.CounterBlockMatcher;
+import org.xwiki.rendering.internal.block.BlockStack;
 import org.xwiki.rendering.listener.Listener;
+import org.xwiki.stability.Unstable;
 
 /**
  * Implementation for Block operations. All blocks should extend this class. Supports the notion of generic parameters
@@ -42,15 +49,61 @@
  */
 public abstract class AbstractBlock implements Block
 {
+    /**
+     * Indicate for each type of block if it overrides {@link #traverse(Listener)}, in which case its own implementation
+     * has to be called instead of {@link #before(Listener)} and {@link #after(Listener)}.
+     */
+    private static final ClassValue<Boolean> TRAVERSE_OVERRIDDEN = new ClassValue<Boolean>()
+    {
+        @Override
+        protected Boolean computeValue(Class<?> type)
+        {
+            try {
+                return type.getMethod("traverse", Listener.class).getDeclaringClass() != AbstractBlock.class;
+            } catch (NoSuchMethodException e) {
+                // Should never happen
+                return true;
+            }
+        }
+    };
+
+    /**
+     * The classes declaring a {@link #hashCode()} which only covers, besides the children and parameters, values which
+     * never change or which call {@link #invalidateHashCode()} when they do.
+     */
+    private static final Set<Class<?>> CACHEABLE_HASH_CODE_CLASSES = new HashSet<>(Arrays.asList(AbstractBlock.class,
+        AbstractMacroBlock.class, EmptyLinesBlock.class, FormatBlock.class, HeaderBlock.class, IdBlock.class,
+        RawBlock.class, SpaceBlock.class, SpecialSymbolBlock.class, VerbatimBlock.class, WordBlock.class));
+
+    /**
+     * Indicate for each type of block if its {@link #hashCode()} can be cached in the hash code of its ancestors, which
+     * is not the case when it covers objects which can be modified directly (like the
+     * {@link org.xwiki.rendering.listener.reference.ResourceReference} of a {@link LinkBlock} or the
+     * {@link org.xwiki.rendering.listener.MetaData} of a {@link MetaDataBlock}).
+     */
+    private static final ClassValue<Boolean> HASH_CODE_CACHEABLE = new ClassValue<Boolean>()
+    {
+        @Override
+        protected Boolean computeValue(Class<?> type)
+        {
+            try {
+                return CACHEABLE_HASH_CODE_CLASSES.contains(type.getMethod("hashCode").getDeclaringClass());
+            } catch (NoSuchMethodException e) {
+                // Should never happen
+                return false;
+            }
+        }
+    };
+
     /**
      * Store parameters, see {@link #getParameter(String)} for more explanations on what parameters are.
      */
-    private Map<String, String> parameters;
+    private BlockParameters parameters = BlockParameters.EMPTY;
 
     /**
      * The Blocks this Block contains.
      */
-    private List<Block> childrenBlocks;
+    private ChildBlockList childrenBlocks;
 
     /**
      * The Block containing this Block.
@@ -67,6 +120,47 @@ public abstract class AbstractBlock implements Block
      */
     private Block previousSiblingBlock;
 
+    /**
+     * The position of this Block in the children of the Block it was last inserted in. Only used as a hint to avoid
+     * searching this Block in the children of its parent, see {@link ChildBlockList#indexOfChild(Block)}.
+     */
+    private int childPosition = -1;
+
+    /**
+     * True if this block is part of a frozen {@link XDOM} and cannot be modified anymore, see {@link XDOM#freeze()}.
+     */
+    private boolean frozen;
+
+    /**
+     * The frozen block this block was cloned from, when its children were not copied yet. The children are copied
+     * when they are first accessed, which allows cloning a frozen tree without copying the parts which are never
+     * accessed.
+     */
+    private AbstractBlock frozenSource;
+
+    /**
+     * True if {@link #parameters} is shared with the frozen block this block was cloned from and must be copied
+     * before being modified.
+     */
+    private boolean sharedParameters;
+
+    /**
+     * The cached hash code of the parameters and children of this block, 0 when it needs to be computed.
+     */
+    private int structuralHashCode;
+
+    /**
+     * The number of modifications made to the children of this block and of all its descendants, see
+     * {@link #childrenModified()}.
+     */
+    private int descendantModificationCount;
+
+    /**
+     * The index of the {@link XDOM} this block was last indexed in, see {@link XDOM#setBlockIndexEnabled(boolean)}.
+     * Kept up to date by the index itself so that modifying a block does not require looking for its root.
+     */
+    private BlockIndex ownerIndex;
+
     /**
      * Empty constructor to construct an empty block.
      */
@@ -135,31 +229,6 @@ public AbstractBlock(List<? extends Block> childrenBlocks, Map<String, String> p
         addChildren(childrenBlocks);
     }
 
-    /**
-     * Get the position of the provided block in the provided list of blocks.
-     * <p>
-     * Can't use {@link List#indexOf(Object)} since it's using {@link Object#equals(Object)} internally which is not
-     * what we want since two WordBlock with the same text or two spaces are equals for example but we want to be able
-     * to target one specific Block.
-     *
-     * @param block the block for which to find the position
-     * @param blocks the list of blocks in which to look for the passed block
-     * @return the position of the block, -1 if the block can't be found
-     */
-    private static int indexOfBlock(Block block, List<Block> blocks)
-    {
-        int position = 0;
-
-        for (Block child : blocks) {
-            if (child == block) {
-                return position;
-            }
-            ++position;
-        }
-
-        return -1;
-    }
-
     @Override
     public void addChild(Block blockToAdd)
     {
@@ -169,10 +238,14 @@ public void addChild(Block blockToAdd)
     @Override
     public void addChildren(List<? extends Block> blocksToAdd)
     {
+        prepareModification();
+
         if (!blocksToAdd.isEmpty()) {
             if (this.childrenBlocks == null) {
                 // Create the list with just the exact required size
-                this.childrenBlocks = new ArrayList<>(blocksToAdd.size());
+                this.childrenBlocks = new ChildBlockList(this, blocksToAdd.size());
+            } else {
+                this.childrenBlocks.ensureCapacity(this.childrenBlocks.size() + blocksToAdd.size());
             }
 
             for (Block blockToAdd : blocksToAdd) {
@@ -184,15 +257,13 @@ public void addChildren(List<? extends Block> blocksToAdd)
     @Override
     public void setChildren(List<? extends Block> children)
     {
-        if (children.isEmpty()) {
-            if (this.childrenBlocks != null) {
-                this.childrenBlocks.clear();
-            }
-        } else {
-            if (this.childrenBlocks != null) {
-                this.childrenBlocks.clear();
-            }
+        prepareModification();
 
+        if (this.childrenBlocks != null) {
+            this.childrenBlocks.clear();
+        }
+
+        if (!children.isEmpty()) {
             addChildren(children);
         }
     }
@@ -200,18 +271,24 @@ public void setChildren(List<? extends Block> children)
     @Override
     public void setNextSiblingBlock(Block nextSiblingBlock)
     {
+        checkNotFrozen();
+
         this.nextSiblingBlock = nextSiblingBlock;
     }
 
     @Override
     public void setPreviousSiblingBlock(Block previousSiblingBlock)
     {
+        checkNotFrozen();
+
         this.previousSiblingBlock = previousSiblingBlock;
     }
 
     @Override
     public void insertChildBefore(Block blockToInsert, Block nextBlock)
     {
+        prepareModification();
+
         blockToInsert.setParent(this);
 
         if (nextBlock == null) {
@@ -224,7 +301,7 @@ public void insertChildBefore(Block blockToInsert, Block nextBlock)
                 blockToInsert.setPreviousSiblingBlock(null);
 
                 if (this.childrenBlocks == null) {
-                    this.childrenBlocks = new ArrayList<>(1);
+                    this.childrenBlocks = new ChildBlockList(this, 1);
                 }
             }
             blockToInsert.setNextSiblingBlock(null);
@@ -241,7 +318,7 @@ public void insertChildBefore(Block blockToInsert, Block nextBlock)
             blockToInsert.setNextSiblingBlock(nextBlock);
             nextBlock.setPreviousSiblingBlock(blockToInsert);
             if (this.childrenBlocks == null || this.childrenBlocks.isEmpty()) {
-                this.childrenBlocks = new ArrayList<>(1);
+                this.childrenBlocks = new ChildBlockList(this, 1);
                 this.childrenBlocks.add(blockToInsert);
             } else {
                 this.childrenBlocks.add(indexOfChild(nextBlock), blockToInsert);
@@ -252,9 +329,13 @@ public void insertChildBefore(Block blockToInsert, Block nextBlock)
     @Override
     public void insertChildAfter(Block blockToInsert, Block previousBlock)
     {
+        prepareModification();
+
         if (previousBlock == null) {
             insertChildBefore(blockToInsert, null);
         } else {
+            blockToInsert.setParent(this);
+
             // If there's a next block to previousBlock then get it to set its previous sibling
             Block nextBlock = previousBlock.getNextSibling();
             if (nextBlock != null) {
@@ -266,7 +347,7 @@ public void insertChildAfter(Block blockToInsert, Block previousBlock)
             blockToInsert.setPreviousSiblingBlock(previousBlock);
             previousBlock.setNextSiblingBlock(blockToInsert);
             if (this.childrenBlocks == null) {
-                this.childrenBlocks = new ArrayList<>(1);
+                this.childrenBlocks = new ChildBlockList(this, 1);
             }
             this.childrenBlocks.add(indexOfChild(previousBlock) + 1, blockToInsert);
         }
@@ -281,6 +362,8 @@ public void replaceChild(Block newBlock, Block oldBlock)
     @Override
     public void replaceChild(List<Block> newBlocks, Block oldBlock)
     {
+        prepareModification();
+
         int position = indexOfChild(oldBlock);
 
         if (position == -1) {
@@ -332,9 +415,153 @@ public void replaceChild(List<Block> newBlocks, Block oldBlock)
      * @param block the block
      * @return the position of the block, -1 if the block can't be found
      */
-    private int indexOfChild(Block block)
+    int indexOfChild(Block block)
+    {
+        ChildBlockList children = getChildrenBlocks();
+
+        return children != null ? children.indexOfChild(block) : -1;
+    }
+
+    /**
+     * @return the children of this block, copied from the frozen block this block was cloned from if not done yet
+     */
+    private ChildBlockList getChildrenBlocks()
+    {
+        if (this.frozenSource != null) {
+            List<Block> sourceChildren = this.frozenSource.getChildren();
+            this.frozenSource = null;
+
+            // Cloning a frozen block does not copy its children either so this only copies one level of the tree
+            ChildBlockList children = new ChildBlockList(sourceChildren.size());
+            Block previousChild = null;
+            for (Block sourceChild : sourceChildren) {
+                Block child = sourceChild.clone();
+                child.setParent(this);
+                child.setPreviousSiblingBlock(previousChild);
+                child.setNextSiblingBlock(null);
+                if (previousChild != null) {
+                    previousChild.setNextSiblingBlock(child);
+                }
+                children.add(child);
+                previousChild = child;
+            }
+            // Added only now since copying the children does not modify anything
+            children.setOwner(this);
+            this.childrenBlocks = children;
+        }
+
+        return this.childrenBlocks;
+    }
+
+    /**
+     * @return true if this block is part of a frozen {@link XDOM}
+     */
+    boolean isFrozen()
+    {
+        return this.frozen;
+    }
+
+    /**
+     * Forbid any modification of this block. The children are not frozen by this method, but they must be frozen
+     * first since the hash code of this block is computed from theirs.
+     */
+    void freezeBlock()
+    {
+        ChildBlockList children = getChildrenBlocks();
+        if (children != null) {
+            children.freeze();
+        }
+
+        // Computed now so that reading the frozen block does not modify it
+        getStructuralHashCode();
+
+        this.frozen = true;
+    }
+
+    /**
+     * @throws UnsupportedOperationException when the block is frozen
+     */
+    void checkNotFrozen()
+    {
+        if (this.frozen) {
+            throw new UnsupportedOperationException("A frozen block cannot be modified");
+        }
+    }
+
+    private void prepareModification()
+    {
+        checkNotFrozen();
+
+        getChildrenBlocks();
+    }
+
+    /**
+     * @return the index of the {@link XDOM} this block is part of, null if it's not part of an indexed {@link XDOM}
+     */
+    private BlockIndex getBlockIndex()
+    {
+        BlockIndex index = this.ownerIndex;
+
+        // The index is not used anymore when it's disabled or rebuilt
+        return index != null && index.isEnabled() ? index : null;
+    }
+
+    /**
+     * @return the index of the {@link XDOM} this block was last indexed in, null if none
+     */
+    BlockIndex getOwnerIndex()
+    {
+        return this.ownerIndex;
+    }
+
+    /**
+     * @param ownerIndex the index of the {@link XDOM} this block is part of, null if it's not indexed anymore
+     */
+    void setOwnerIndex(BlockIndex ownerIndex)
+    {
+        this.ownerIndex = ownerIndex;
+    }
+
+    /**
+     * Called when a block is added to the children of this block.
+     *
+     * @param child the added block
+     */
+    void childAdded(Block child)
     {
-        return indexOfBlock(block, getChildren());
+        BlockIndex index = getBlockIndex();
+        if (index != null) {
+            index.add(child, this);
+        }
+    }
+
+    /**
+     * Called when a block is removed from the children of this block.
+     *
+     * @param child the removed block
+     */
+    void childRemoved(Block child)
+    {
+        BlockIndex index = getBlockIndex();
+        if (index != null) {
+            index.remove(child, this);
+        }
+    }
+
+    /**
+     * @return the position of this block in the children of the block it was last inserted in, -1 if unknown
+     */
+    int getChildPosition()
+    {
+        return this.childPosition;
+    }
+
+    /**
+     * @param childPosition the position of this block in the children of the block it's inserted in
+     */
+    void setChildPosition(int childPosition)
+    {
+        this.childPosition = childPosition;
     }
 
     /**
@@ -356,7 +583,9 @@ public long indexOf(Block child)
     @Override
     public List<Block> getChildren()
     {
-        return this.childrenBlocks == null ? Collections.emptyList() : this.childrenBlocks;
+        ChildBlockList children = getChildrenBlocks();
+
+        return children == null ? Collections.emptyList() : children;
     }
 
     @Override
@@ -368,40 +597,49 @@ public Block getParent()
     @Override
     public Map<String, String> getParameters()
     {
-        return this.parameters == null ? Collections.emptyMap()
-            : Collections.unmodifiableMap(this.parameters);
+        // Read only
+        return this.parameters;
     }
 
     @Override
     public String getParameter(String name)
     {
-        return this.parameters == null ? null : this.parameters.get(name);
+        return this.parameters.get(name);
     }
 
     @Override
     public void setParameter(String name, String value)
     {
-        if (this.parameters == null) {
-            this.parameters = new LinkedHashMap<>(1);
+        checkNotFrozen();
+
+        if (this.parameters == BlockParameters.EMPTY || this.sharedParameters) {
+            BlockParameters newParameters = new BlockParameters(this.parameters.size() + 1);
+            newParameters.setAll(this.parameters);
+            this.parameters = newParameters;
+            this.sharedParameters = false;
         }
 
-        this.parameters.put(name, value);
+        this.parameters.set(name, value);
+
+        invalidateHashCode();
     }
 
     @Override
     public void setParameters(Map<String, String> parameters)
     {
-        if (this.parameters == null) {
-            this.parameters = new LinkedHashMap<>(parameters);
-        } else {
-            this.parameters.clear();
-            this.parameters.putAll(parameters);
-        }
+        checkNotFrozen();
+
+        this.parameters = parameters.isEmpty() ? BlockParameters.EMPTY : new BlockParameters(parameters);
+        this.sharedParameters = false;
+
+        invalidateHashCode();
     }
 
     @Override
     public void setParent(Block parentBlock)
     {
+        checkNotFrozen();
+
         this.parentBlock = parentBlock;
     }
 
@@ -432,13 +670,14 @@ public Block getPreviousSibling()
     @Override
     public void removeBlock(Block childBlockToRemove)
     {
+        prepareModification();
+
         // Remove block
-        List<Block> children = getChildren();
-        int position = indexOfBlock(childBlockToRemove, children);
+        int position = indexOfChild(childBlockToRemove);
         if (position == -1) {
             throw new InvalidParameterException("Provided Block to remove is not a child");
         }
-        getChildren().remove(position);
+        this.childrenBlocks.remove(position);
 
         // Re-calculate internal links between blocks
         if (childBlockToRemove != null) {
@@ -463,6 +702,12 @@ public boolean equals(Object obj)
         }
 
         if (obj instanceof Block) {
+            if (obj instanceof AbstractBlock
+                && getStructuralHashCode() != ((AbstractBlock) obj).getStructuralHashCode()) {
+                // Blocks with different children or parameters cannot be equal
+                return false;
+            }
+
             EqualsBuilder builder = new EqualsBuilder();
 
             builder.append(getChildren(), ((Block) obj).getChildren());
@@ -474,15 +719,107 @@ public boolean equals(Object obj)
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The hash code of the children and parameters is cached until they are modified (see
+     * {@link #invalidateHashCode()}) so that comparing or hashing a big tree several times does not walk it every
+     * time. The cached hash code does not cover the objects held by the descendants which can be modified directly
+     * (like the {@link org.xwiki.rendering.listener.reference.ResourceReference} of a {@link LinkBlock}), only their
+     * children and parameters.
+     */
     @Override
     public int hashCode()
     {
-        HashCodeBuilder builder = new HashCodeBuilder();
+        return getStructuralHashCode();
+    }
+
+    private int getStructuralHashCode()
+    {
+        int hashCode = this.structuralHashCode;
 
-        builder.append(this.childrenBlocks);
-        builder.append(this.parameters);
+        if (hashCode == 0) {
+            HashCodeBuilder builder = new HashCodeBuilder();
 
-        return builder.toHashCode();
+            // The children of the frozen source are equal to the copies which would be made when accessing them
+            AbstractBlock source = this.frozenSource;
+            for (Block child : source != null ? source.getChildren() : getChildren()) {
+                builder.append(getCacheableHashCode(child));
+            }
+            builder.append(this.parameters);
+
+            // 0 is used to indicate that the hash code is not computed
+            hashCode = builder.toHashCode();
+            if (hashCode == 0) {
+                hashCode = 1;
+            }
+
+            this.structuralHashCode = hashCode;
+        }
+
+        return hashCode;
+    }
+
+    private static int getCacheableHashCode(Block block)
+    {
+        if (block instanceof AbstractBlock && !HASH_CODE_CACHEABLE.get(block.getClass())) {
+            return ((AbstractBlock) block).getStructuralHashCode();
+        }
+
+        return block.hashCode();
+    }
+
+    /**
+     * Indicate that something used by {@link #hashCode()} changed, so that this block and all its ancestors compute
+     * their hash code again the next time it's needed.
+     * <p>
+     * This is done automatically when the children or the parameters are modified, but blocks with other modifiable
+     * fields used in {@link #hashCode()} must call it when modifying them.
+     *
+     * @since 13.4RC1
+     */
+    @Unstable
+    protected void invalidateHashCode()
+    {
+        for (Block block = this; block != null; block = block.getParent()) {
+            if (block instanceof AbstractBlock) {
+                AbstractBlock abstractBlock = (AbstractBlock) block;
+                // The ancestors of a block without cached hash code don't have one either, since computing their hash
+                // code computes it for their children. A frozen block is never modified, its copies can still point to
+                // its parent.
+                if (abstractBlock.structuralHashCode == 0 || abstractBlock.frozen) {
+                    break;
+                }
+                abstractBlock.structuralHashCode = 0;
+            }
+        }
+    }
+
+    /**
+     * Called when the children of this block are modified: count the modification in this block and all its ancestors
+     * (see {@link ChildBlockList#getDescendantModificationCount()}) and forget their cached hash code.
+     */
+    void childrenModified()
+    {
+        for (Block block = this; block != null; block = block.getParent()) {
+            if (block instanceof AbstractBlock) {
+                AbstractBlock abstractBlock = (AbstractBlock) block;
+                // A frozen block is never modified, its copies can still point to its parent
+                if (abstractBlock.frozen) {
+                    break;
+                }
+                ++abstractBlock.descendantModificationCount;
+                abstractBlock.structuralHashCode = 0;
+            }
+        }
+    }
+
+    /**
+     * @return the number of modifications made to the children of this block and of all its descendants
+     */
+    int getDescendantModificationCount()
+    {
+        return this.descendantModificationCount;
     }
 
     @Override
@@ -507,12 +844,35 @@ public Block clone(BlockFilter blockFilter)
             throw new RuntimeException("Failed to clone object", e);
         }
 
-        if (this.parameters != null) {
-            ((AbstractBlock) block).parameters = new LinkedHashMap<>(this.parameters);
+        ((AbstractBlock) block).frozen = false;
+        // The copy is not part of any index, and its children are copied without their parent so that adding them
+        // does not look for an index
+        ((AbstractBlock) block).ownerIndex = null;
+        Block parent = this.parentBlock;
+        ((AbstractBlock) block).parentBlock = null;
+
+        if (this.parameters != BlockParameters.EMPTY) {
+            if (this.frozen || this.sharedParameters) {
+                // The parameters of a frozen block never change so they can be shared until the clone modifies them
+                ((AbstractBlock) block).sharedParameters = true;
+            } else {
+                ((AbstractBlock) block).parameters = new BlockParameters(this.parameters);
+            }
         }
 
-        if (this.childrenBlocks != null) {
-            ((AbstractBlock) block).childrenBlocks = new ArrayList<>(this.childrenBlocks.size());
+        AbstractBlock childrenSource = this.frozen ? this : this.frozenSource;
+        if (blockFilter == null && childrenSource != null && !childrenSource.getChildren().isEmpty()) {
+            // Copy the frozen children only when they are accessed
+            ((AbstractBlock) block).childrenBlocks = null;
+            ((AbstractBlock) block).frozenSource = childrenSource;
+        } else if (getChildrenBlocks() != null) {
+            ((AbstractBlock) block).frozenSource = null;
+            // The copy is equal to this block (and has the same hash code) unless it's filtered
+            ChildBlockList children = new ChildBlockList(this.childrenBlocks.size());
+            ((AbstractBlock) block).childrenBlocks = children;
+            if (blockFilter != null) {
+                ((AbstractBlock) block).structuralHashCode = 0;
+            }
             for (Block childBlock : this.childrenBlocks) {
                 if (blockFilter != null) {
                     Block clonedChildBlocks = childBlock.clone(blockFilter);
@@ -528,8 +888,11 @@ public Block clone(BlockFilter blockFilter)
                     block.addChild(childBlock.clone());
                 }
             }
+            children.setOwner((AbstractBlock) block);
         }
 
+        ((AbstractBlock) block).parentBlock = parent;
+
         return block;
     }
 
@@ -538,11 +901,30 @@ public void traverse(Listener listener)
     {
         before(listener);
 
-        for (Block block : getChildren()) {
-            block.traverse(listener);
+        // Walk the tree with an explicit stack instead of recursion so that very deep trees don't overflow the thread
+        // stack
+        BlockStack stack = new BlockStack();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            Block child = stack.nextChild();
+            if (child == null) {
+                ((AbstractBlock) stack.pop()).after(listener);
+            } else if (child instanceof AbstractBlock && !TRAVERSE_OVERRIDDEN.get(child.getClass())) {
+                AbstractBlock block = (AbstractBlock) child;
+                block.before(listener);
+                if (block.frozenSource != null) {
+                    // No need to copy the frozen children just to send their events
+                    for (Block frozenChild : block.frozenSource.getChildren()) {
+                        frozenChild.traverse(listener);
+                    }
+                    block.after(listener);
+                } else {
+                    stack.push(child);
+                }
+            } else {
+                child.traverse(listener);
+            }
         }
-
-        after(listener);
     }
 
     /**
@@ -572,11 +954,79 @@ public void after(Listener listener)
     @Override
     public <T extends Block> List<T> getBlocks(BlockMatcher matcher, Axes axes)
     {
+        if (matcher.getClass() == ClassBlockMatcher.class
+            && (axes == Axes.DESCENDANT || axes == Axes.DESCENDANT_OR_SELF)) {
+            List<T> blocks = new ArrayList<>();
+            if (axes == Axes.DESCENDANT_OR_SELF && matcher.match(this)) {
+                blocks.add((T) this);
+            }
+            addDescendants(matcher, blocks);
+
+            return blocks;
+        }
+
         BlockNavigator navigator = new BlockNavigator(matcher);
 
         return navigator.getBlocks(this, axes);
     }
 
+    /**
+     * Add the descendants matched by the provided {@link ClassBlockMatcher}, in document order. Only the path to the
+     * matched blocks is copied in the parts of the tree which were cloned from a frozen block, and not accessed yet.
+     *
+     * @param <T> the class of the Blocks to return
+     * @param matcher the class based matcher
+     * @param blocks the list of blocks to fill
+     */
+    private <T extends Block> void addDescendants(BlockMatcher matcher, List<T> blocks)
+    {
+        if (this.frozenSource != null) {
+            // Search the frozen descendants
+            AbstractBlock source = this.frozenSource;
+            for (Block frozenBlock : source.getBlocks(matcher, Axes.DESCENDANT)) {
+                blocks.add((T) getThawedDescendant(source, frozenBlock));
+            }
+        } else {
+            BlockStack stack = new BlockStack();
+            stack.push(this);
+            while (!stack.isEmpty()) {
+                Block child = stack.nextChild();
+                if (child == null) {
+                    stack.pop();
+                } else {
+                    if (matcher.match(child)) {
+                        blocks.add((T) child);
+                    }
+                    if (child instanceof AbstractBlock && ((AbstractBlock) child).frozenSource != null) {
+                        ((AbstractBlock) child).addDescendants(matcher, blocks);
+                    } else {
+                        stack.push(child);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param source the frozen block this block was cloned from
+     * @param frozenDescendant a descendant of the frozen block
+     * @return the copy of the frozen descendant in this block
+     */
+    private Block getThawedDescendant(AbstractBlock source, Block frozenDescendant)
+    {
+        Deque<Integer> path = new ArrayDeque<>();
+        for (Block block = frozenDescendant; block != source; block = block.getParent()) {
+            path.push(((AbstractBlock) block.getParent()).indexOfChild(block));
+        }
+
+        Block block = this;
+        while (!path.isEmpty()) {
+            block = block.getChildren().get(path.pop());
+        }
+
+        return block;
+    }
+
     @Override
     public <T extends Block> T getFirstBlock(BlockMatcher matcher, Axes axes)
     {
@@ -20,12 +20,19 @@
 package org.xwiki.rendering.block;
 
 import java.lang.reflect.Type;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.xwiki.component.util.DefaultParameterizedType;
 import org.xwiki.rendering.block.match.BlockMatcher;
+import org.xwiki.rendering.block.match.BlockNavigator;
 import org.xwiki.rendering.listener.Listener;
+import org.xwiki.stability.Unstable;
 
 /**
  * Represents an element of a XWiki Document's content. For example there are Blocks for Paragraphs, Bold parts,
@@ -301,4 +308,40 @@ public interface Block extends Cloneable
      * @since 3.0M3
      */
     <T extends Block> T getFirstBlock(BlockMatcher matcher, Axes axes);
+
+    /**
+     * Lazily iterate over the blocks following provided {@link BlockMatcher} and {@link Axes}. The blocks are returned
+     * in the same order as {@link #getBlocks(BlockMatcher, Axes)} but they are searched only when requested, which
+     * avoids building a list when only a few of them are needed.
+     *
+     * @param <T> the class of the Blocks to return
+     * @param matcher filter the blocks to return
+     * @param axes indicate the search axes
+     * @return an iterator over the matched {@link Block}s
+     * @since 13.4RC1
+     */
+    @Unstable
+    default <T extends Block> Iterator<T> iterator(BlockMatcher matcher, Axes axes)
+    {
+        return new BlockNavigator(matcher).iterator(this, axes);
+    }
+
+    /**
+     * Lazily stream the blocks following provided {@link BlockMatcher} and {@link Axes}, in the same order as
+     * {@link #getBlocks(BlockMatcher, Axes)}.
+     *
+     * @param <T> the class of the Blocks to return
+     * @param matcher filter the blocks to return
+     * @param axes indicate the search axes
+     * @return a sequential stream of the matched {@link Block}s
+     * @since 13.4RC1
+     */
+    @Unstable
+    default <T extends Block> Stream<T> stream(BlockMatcher matcher, Axes axes)
+    {
+        Iterator<T> iterator = iterator(matcher, axes);
+
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
 }
@@ -0,0 +1,265 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.block;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.xwiki.rendering.internal.block.BlockStack;
+
+/**
+ * Index of the descendants of a {@link XDOM} by block class, used to find all the blocks of a given type without
+ * walking the whole tree.
+ * <p>
+ * The index is updated by the lists of children of the indexed blocks (see {@link ChildBlockList}), so it follows all
+ * the modifications made to the descendants of the {@link XDOM} extending {@link AbstractBlock}, including the ones
+ * made directly through the list returned by {@link Block#getChildren()}. The index remembers the parent of each
+ * indexed block instead of relying on {@link Block#getParent()}, which is not updated when modifying directly the list
+ * of children.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+class BlockIndex
+{
+    private final XDOM xdom;
+
+    private final Map<Class<?>, Set<Block>> blocks = new HashMap<>();
+
+    /**
+     * The block containing each indexed block.
+     */
+    private final Map<Block, Block> parents = new IdentityHashMap<>();
+
+    /**
+     * @param xdom the indexed XDOM
+     */
+    BlockIndex(XDOM xdom)
+    {
+        this.xdom = xdom;
+        xdom.setOwnerIndex(this);
+
+        for (Block child : xdom.getChildren()) {
+            add(child, xdom);
+        }
+    }
+
+    /**
+     * @return the indexed XDOM
+     */
+    XDOM getXDOM()
+    {
+        return this.xdom;
+    }
+
+    /**
+     * @return true if this index is still the index of its XDOM, false if it was disabled or rebuilt
+     */
+    boolean isEnabled()
+    {
+        return this.xdom.getBlockIndex() == this;
+    }
+
+    /**
+     * @param block the block added to the XDOM, its descendants are indexed too
+     * @param parent the block containing the added block
+     */
+    void add(Block block, Block parent)
+    {
+        addBlock(block, parent);
+
+        BlockStack stack = new BlockStack();
+        stack.push(block);
+        while (!stack.isEmpty()) {
+            Block child = stack.nextChild();
+            if (child != null) {
+                addBlock(child, stack.peek());
+                stack.push(child);
+            } else {
+                stack.pop();
+            }
+        }
+    }
+
+    /**
+     * @param block the block removed from the XDOM, its descendants are removed from the index too
+     * @param parent the block the removed block was removed from
+     */
+    void remove(Block block, Block parent)
+    {
+        if (this.parents.get(block) != parent) {
+            // The block was moved to another indexed block before being removed from this one
+            return;
+        }
+
+        removeBlock(block);
+
+        BlockStack stack = new BlockStack();
+        stack.push(block);
+        while (!stack.isEmpty()) {
+            Block child = stack.nextChild();
+            if (child != null) {
+                removeBlock(child);
+                stack.push(child);
+            } else {
+                stack.pop();
+            }
+        }
+    }
+
+    private void addBlock(Block block, Block parent)
+    {
+        if (block instanceof AbstractBlock) {
+            ((AbstractBlock) block).setOwnerIndex(this);
+        }
+
+        this.parents.put(block, parent);
+
+        this.blocks.computeIfAbsent(block.getClass(), k -> Collections.newSetFromMap(new IdentityHashMap<>()))
+            .add(block);
+    }
+
+    private void removeBlock(Block block)
+    {
+        if (block instanceof AbstractBlock && ((AbstractBlock) block).getOwnerIndex() == this) {
+            ((AbstractBlock) block).setOwnerIndex(null);
+        }
+
+        this.parents.remove(block);
+
+        Set<Block> classBlocks = this.blocks.get(block.getClass());
+        if (classBlocks != null) {
+            classBlocks.remove(block);
+        }
+    }
+
+    /**
+     * @param <T> the class of the Blocks to return
+     * @param blockClass the class of the blocks to return (including sub classes)
+     * @return the descendants of the XDOM with the provided class, in document order
+     */
+    <T extends Block> List<T> getBlocks(Class<? extends Block> blockClass)
+    {
+        List<IndexedBlock> indexedBlocks = new ArrayList<>();
+        for (Map.Entry<Class<?>, Set<Block>> entry : this.blocks.entrySet()) {
+            if (blockClass.isAssignableFrom(entry.getKey())) {
+                for (Block block : entry.getValue()) {
+                    int[] path = getPath(block);
+                    // Blocks located under a block which does not extend AbstractBlock might have been removed
+                    // without the index knowing it
+                    if (path != null) {
+                        indexedBlocks.add(new IndexedBlock(block, path));
+                    }
+                }
+            }
+        }
+
+        Collections.sort(indexedBlocks);
+
+        List<T> result = new ArrayList<>(indexedBlocks.size());
+        for (IndexedBlock indexedBlock : indexedBlocks) {
+            result.add((T) indexedBlock.block);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param block a descendant of the XDOM
+     * @return the position of the block in each of its ancestors, or null if the block is not part of the XDOM
+     */
+    private int[] getPath(Block block)
+    {
+        int depth = 0;
+        for (Block ancestor = block; ancestor != this.xdom; ancestor = this.parents.get(ancestor)) {
+            if (ancestor == null) {
+                return null;
+            }
+            ++depth;
+        }
+
+        int[] path = new int[depth];
+        Block child = block;
+        for (int i = depth - 1; i >= 0; --i) {
+            Block parent = this.parents.get(child);
+            int position = indexOfChild(parent, child);
+            if (position == -1) {
+                return null;
+            }
+            path[i] = position;
+            child = parent;
+        }
+
+        return path;
+    }
+
+    private int indexOfChild(Block parent, Block child)
+    {
+        if (parent instanceof AbstractBlock) {
+            return ((AbstractBlock) parent).indexOfChild(child);
+        }
+
+        List<Block> children = parent.getChildren();
+        for (int i = 0; i < children.size(); ++i) {
+            if (children.get(i) == child) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * An indexed block with its position in the XDOM.
+     *
+     * @version $Id$
+     */
+    private static final class IndexedBlock implements Comparable<IndexedBlock>
+    {
+        private final Block block;
+
+        private final int[] path;
+
+        IndexedBlock(Block block, int[] path)
+        {
+            this.block = block;
+            this.path = path;
+        }
+
+        @Override
+        public int compareTo(IndexedBlock other)
+        {
+            int length = Math.min(this.path.length, other.path.length);
+            for (int i = 0; i < length; ++i) {
+                if (this.path[i] != other.path[i]) {
+                    return this.path[i] < other.path[i] ? -1 : 1;
+                }
+            }
+
+            // An ancestor comes before its descendants
+            return this.path.length - other.path.length;
+        }
+    }
+}
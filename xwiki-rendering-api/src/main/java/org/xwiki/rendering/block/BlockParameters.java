@@ -0,0 +1,201 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.block;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The parameters of an {@link AbstractBlock}.
+ * <p>
+ * Most blocks have no or very few parameters so they are stored, in insertion order, in a single array of
+ * alternating names and values instead of a {@link java.util.LinkedHashMap} (which allocates a table and an entry
+ * object per parameter). Looking for a parameter is a linear search, which is faster than hashing for such small
+ * sizes.
+ * <p>
+ * The {@link Map} API is read only, so the instance can be returned as is by {@link AbstractBlock#getParameters()}.
+ * The block modifies it through {@link #set(String, String)} and {@link #setAll(Map)}.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+final class BlockParameters extends AbstractMap<String, String>
+{
+    /**
+     * Shared instance used by all the blocks without parameters. It's never modified.
+     */
+    static final BlockParameters EMPTY = new BlockParameters(0);
+
+    private static final String[] NO_ENTRIES = new String[0];
+
+    /**
+     * The names (even indexes) and values (odd indexes) of the parameters.
+     */
+    private String[] entries;
+
+    /**
+     * The number of parameters.
+     */
+    private int size;
+
+    private transient Set<Map.Entry<String, String>> entrySet;
+
+    /**
+     * @param capacity the number of parameters the instance can contain without being resized
+     */
+    BlockParameters(int capacity)
+    {
+        this.entries = capacity == 0 ? NO_ENTRIES : new String[capacity * 2];
+    }
+
+    /**
+     * @param parameters the parameters to copy
+     */
+    BlockParameters(Map<String, String> parameters)
+    {
+        this(parameters.size());
+
+        setAll(parameters);
+    }
+
+    @Override
+    public int size()
+    {
+        return this.size;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public String get(Object key)
+    {
+        int index = indexOf(key);
+
+        return index >= 0 ? this.entries[index + 1] : null;
+    }
+
+    /**
+     * Add a parameter or replace the value of an existing one (which keeps its position).
+     *
+     * @param name the name of the parameter
+     * @param value the value of the parameter
+     */
+    void set(String name, String value)
+    {
+        int index = indexOf(name);
+        if (index >= 0) {
+            this.entries[index + 1] = value;
+        } else {
+            int length = this.size * 2;
+            if (length == this.entries.length) {
+                this.entries = Arrays.copyOf(this.entries, Math.max(2, length * 2));
+            }
+            this.entries[length] = name;
+            this.entries[length + 1] = value;
+            ++this.size;
+        }
+    }
+
+    /**
+     * @param parameters the parameters to add or replace
+     */
+    void setAll(Map<String, String> parameters)
+    {
+        for (Map.Entry<String, String> entry : parameters.entrySet()) {
+            set(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private int indexOf(Object key)
+    {
+        int length = this.size * 2;
+        for (int i = 0; i < length; i += 2) {
+            if (Objects.equals(this.entries[i], key)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet()
+    {
+        if (this.entrySet == null) {
+            this.entrySet = new EntrySet();
+        }
+
+        return this.entrySet;
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<String, String>>
+    {
+        @Override
+        public int size()
+        {
+            return BlockParameters.this.size;
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, String>> iterator()
+        {
+            return new Iterator<Map.Entry<String, String>>()
+            {
+                private int index;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return this.index < BlockParameters.this.size * 2;
+                }
+
+                @Override
+                public Map.Entry<String, String> next()
+                {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    Map.Entry<String, String> entry = new SimpleImmutableEntry<>(
+                        BlockParameters.this.entries[this.index], BlockParameters.this.entries[this.index + 1]);
+                    this.index += 2;
+
+                    return entry;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.block;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+import org.xwiki.rendering.internal.block.DescendantModificationCounter;
+
+/**
+ * The list of children of an {@link AbstractBlock}.
+ * <p>
+ * All the modifications are reported to the block containing the list, including the ones made directly through
+ * {@link Block#getChildren()}, so that it can keep its hash code, its modification count and the block index of its
+ * {@link XDOM} up to date.
+ * <p>
+ * The elements are stored in a gap buffer so that a series of insertions and removals around the same position (which
+ * is what transformations rewriting many siblings usually do) does not shift the whole end of the list every time.
+ * <p>
+ * Each {@link AbstractBlock} also remembers its position in the list of children it was last inserted in so that
+ * finding a child (see {@link #indexOfChild(Block)}) does not require a scan of the list. Those positions are only
+ * hints: they are always verified and the ones located after a modification are recomputed lazily.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+class ChildBlockList extends AbstractList<Block> implements RandomAccess, DescendantModificationCounter
+{
+    private Block[] elements;
+
+    /**
+     * The index of the first element of the gap in {@link #elements}, which is also the position in the list of the
+     * element located right after the gap.
+     */
+    private int gapStart;
+
+    /**
+     * The index in {@link #elements} of the first element located after the gap.
+     */
+    private int gapEnd;
+
+    /**
+     * The number of elements, from the beginning of the list, for which the position hint is known to be right.
+     */
+    private int validPositions;
+
+    /**
+     * True if the list cannot be modified anymore.
+     */
+    private boolean frozen;
+
+    /**
+     * The block containing this list, notified when the list is modified.
+     */
+    private AbstractBlock owner;
+
+    /**
+     * @param initialCapacity the initial capacity of the list
+     */
+    ChildBlockList(int initialCapacity)
+    {
+        this.elements = new Block[initialCapacity];
+        this.gapEnd = initialCapacity;
+    }
+
+    /**
+     * @param owner the block containing this list, notified when the list is modified
+     * @param initialCapacity the initial capacity of the list
+     */
+    ChildBlockList(AbstractBlock owner, int initialCapacity)
+    {
+        this(initialCapacity);
+
+        this.owner = owner;
+    }
+
+    @Override
+    public int size()
+    {
+        return this.elements.length - (this.gapEnd - this.gapStart);
+    }
+
+    @Override
+    public Block get(int index)
+    {
+        checkElementIndex(index);
+
+        return this.elements[index < this.gapStart ? index : index + this.gapEnd - this.gapStart];
+    }
+
+    @Override
+    public Block set(int index, Block element)
+    {
+        checkNotFrozen();
+        checkElementIndex(index);
+
+        int elementIndex = index < this.gapStart ? index : index + this.gapEnd - this.gapStart;
+        Block previousElement = this.elements[elementIndex];
+        this.elements[elementIndex] = element;
+
+        setPosition(element, index);
+        removed(previousElement);
+        added(element);
+        modified();
+
+        return previousElement;
+    }
+
+    @Override
+    public void add(int index, Block element)
+    {
+        checkNotFrozen();
+        checkPositionIndex(index);
+
+        moveGap(index);
+        ensureGap(1);
+
+        this.elements[this.gapStart++] = element;
+
+        ++this.modCount;
+        invalidatePositions(index);
+        setPosition(element, index);
+        added(element);
+        modified();
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Block> collection)
+    {
+        checkNotFrozen();
+        checkPositionIndex(index);
+
+        int collectionSize = collection.size();
+        if (collectionSize == 0) {
+            return false;
+        }
+
+        moveGap(index);
+        ensureGap(collectionSize);
+
+        int position = index;
+        for (Block element : collection) {
+            this.elements[this.gapStart++] = element;
+            setPosition(element, position++);
+        }
+
+        ++this.modCount;
+        invalidatePositions(index);
+        for (Block element : collection) {
+            added(element);
+        }
+        modified();
+
+        return true;
+    }
+
+    @Override
+    public Block remove(int index)
+    {
+        checkNotFrozen();
+        checkElementIndex(index);
+
+        moveGap(index);
+
+        Block element = this.elements[this.gapEnd];
+        this.elements[this.gapEnd++] = null;
+
+        ++this.modCount;
+        invalidatePositions(index);
+        removed(element);
+        modified();
+
+        return element;
+    }
+
+    @Override
+    public void clear()
+    {
+        checkNotFrozen();
+
+        for (Block element : this) {
+            removed(element);
+        }
+
+        Arrays.fill(this.elements, null);
+        this.gapStart = 0;
+        this.gapEnd = this.elements.length;
+
+        ++this.modCount;
+        this.validPositions = 0;
+        modified();
+    }
+
+    /**
+     * @param owner the block containing this list, notified when the list is modified
+     */
+    void setOwner(AbstractBlock owner)
+    {
+        this.owner = owner;
+    }
+
+    private void added(Block element)
+    {
+        if (this.owner != null) {
+            this.owner.childAdded(element);
+        }
+    }
+
+    private void removed(Block element)
+    {
+        if (this.owner != null) {
+            this.owner.childRemoved(element);
+        }
+    }
+
+    private void modified()
+    {
+        if (this.owner != null) {
+            this.owner.childrenModified();
+        }
+    }
+
+    @Override
+    public int getDescendantModificationCount()
+    {
+        return this.owner != null ? this.owner.getDescendantModificationCount() : 0;
+    }
+
+    /**
+     * Make sure the list can contain the passed number of elements without being resized.
+     *
+     * @param minCapacity the minimum number of elements
+     */
+    void ensureCapacity(int minCapacity)
+    {
+        ensureGap(minCapacity - size());
+    }
+
+    /**
+     * Forbid any modification of the list.
+     * <p>
+     * All the position hints are updated first so that {@link #indexOfChild(Block)} does not modify anything either,
+     * which makes the list safe to read from several threads.
+     */
+    void freeze()
+    {
+        // The children are frozen before their parent
+        int size = size();
+        for (int position = 0; position < size; ++position) {
+            Block child = get(position);
+            if (child instanceof AbstractBlock) {
+                ((AbstractBlock) child).setChildPosition(position);
+            }
+        }
+        this.validPositions = size;
+
+        this.frozen = true;
+    }
+
+    /**
+     * Get the position of the provided block in the list.
+     * <p>
+     * Can't use {@link #indexOf(Object)} since it's using {@link Object#equals(Object)} internally which is not what we
+     * want since two WordBlock with the same text or two spaces are equals for example but we want to be able to target
+     * one specific Block.
+     *
+     * @param block the block for which to find the position
+     * @return the position of the block, -1 if the block can't be found
+     */
+    int indexOfChild(Block block)
+    {
+        int size = size();
+
+        // Try the position remembered by the block
+        if (block instanceof AbstractBlock) {
+            int position = ((AbstractBlock) block).getChildPosition();
+            if (position >= 0 && position < size && get(position) == block) {
+                return position;
+            }
+        }
+
+        // Update the positions which are not known yet until we find the block
+        while (this.validPositions < size) {
+            Block child = get(this.validPositions);
+            setPosition(child, this.validPositions++);
+            if (child == block) {
+                return this.validPositions - 1;
+            }
+        }
+
+        // The block is either not part of the list or its position was overwritten because it was also inserted in
+        // another list
+        for (int position = 0; position < size; ++position) {
+            if (get(position) == block) {
+                return position;
+            }
+        }
+
+        return -1;
+    }
+
+    private void setPosition(Block block, int position)
+    {
+        // The position of a frozen block is the one in its frozen parent, set when it was frozen, and must not be
+        // modified by the other lists it's inserted in
+        if (block instanceof AbstractBlock && !((AbstractBlock) block).isFrozen()) {
+            ((AbstractBlock) block).setChildPosition(position);
+        }
+    }
+
+    private void invalidatePositions(int index)
+    {
+        if (index < this.validPositions) {
+            this.validPositions = index;
+        }
+    }
+
+    /**
+     * Move the gap so that it starts at the passed position in the list.
+     *
+     * @param index the new position of the gap
+     */
+    private void moveGap(int index)
+    {
+        if (index < this.gapStart) {
+            int count = this.gapStart - index;
+            int newGapEnd = this.gapEnd - count;
+            System.arraycopy(this.elements, index, this.elements, newGapEnd, count);
+            // Don't keep references to elements in the gap
+            Arrays.fill(this.elements, index, Math.min(this.gapStart, newGapEnd), null);
+            this.gapStart = index;
+            this.gapEnd = newGapEnd;
+        } else if (index > this.gapStart) {
+            int count = index - this.gapStart;
+            int newGapEnd = this.gapEnd + count;
+            System.arraycopy(this.elements, this.gapEnd, this.elements, this.gapStart, count);
+            // Don't keep references to elements in the gap
+            Arrays.fill(this.elements, Math.max(this.gapEnd, index), newGapEnd, null);
+            this.gapStart = index;
+            this.gapEnd = newGapEnd;
+        }
+    }
+
+    /**
+     * Make sure the gap can contain the passed number of elements.
+     *
+     * @param length the minimum length of the gap
+     */
+    private void ensureGap(int length)
+    {
+        if (this.gapEnd - this.gapStart < length) {
+            int size = size();
+            int newCapacity = Math.max(size + length, size + (size >> 1) + 1);
+
+            Block[] newElements = new Block[newCapacity];
+            int tailLength = this.elements.length - this.gapEnd;
+            System.arraycopy(this.elements, 0, newElements, 0, this.gapStart);
+            System.arraycopy(this.elements, this.gapEnd, newElements, newCapacity - tailLength, tailLength);
+
+            this.elements = newElements;
+            this.gapEnd = newCapacity - tailLength;
+        }
+    }
+
+    private void checkNotFrozen()
+    {
+        if (this.frozen) {
+            throw new UnsupportedOperationException("The children of a frozen block cannot be modified");
+        }
+    }
+
+    private void checkElementIndex(int index)
+    {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, size()));
+        }
+    }
+
+    private void checkPositionIndex(int index)
+    {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, size()));
+        }
+    }
+}
@@ -22,9 +22,13 @@
 import java.util.Collections;
 import java.util.List;
 
+import org.xwiki.rendering.block.match.BlockMatcher;
+import org.xwiki.rendering.block.match.ClassBlockMatcher;
+import org.xwiki.rendering.internal.block.BlockStack;
 import org.xwiki.rendering.listener.Listener;
 import org.xwiki.rendering.listener.MetaData;
 import org.xwiki.rendering.util.IdGenerator;
+import org.xwiki.stability.Unstable;
 
 /**
  * Contains the full tree of {@link Block} that represent a XWiki Document's content.
@@ -47,6 +51,11 @@ public class XDOM extends MetaDataBlock
      */
     private transient IdGenerator idGenerator;
 
+    /**
+     * Index of the descendants by block class, null when disabled.
+     */
+    private transient BlockIndex blockIndex;
+
     /**
      * @param childBlocks the list of children blocks of the block to construct
      * @see AbstractBlock#AbstractBlock(List)
@@ -101,9 +110,151 @@ public IdGenerator getIdGenerator()
      */
     public void setIdGenerator(IdGenerator idGenerator)
     {
+        checkNotFrozen();
+
         this.idGenerator = idGenerator;
     }
 
+    /**
+     * Enable or disable the index of the descendants of this XDOM by block class. When enabled, the index is kept up
+     * to date by the {@link Block} modification methods and {@link #getBlocks(BlockMatcher, Axes)} uses it for
+     * {@link ClassBlockMatcher} based searches on the {@link Axes#DESCENDANT} and {@link Axes#DESCENDANT_OR_SELF} axes,
+     * which then only cost the number of matched blocks instead of the size of the whole tree.
+     * <p>
+     * Modifying directly the list returned by {@link #getChildren()} (or by any descendant) updates the index too, but
+     * modifying the children of a block which does not extend {@link AbstractBlock} does not.
+     *
+     * @param enabled true to enable the index, false to disable it
+     * @since 13.4RC1
+     */
+    @Unstable
+    public void setBlockIndexEnabled(boolean enabled)
+    {
+        checkNotFrozen();
+
+        if (enabled) {
+            if (getBlockIndex() == null) {
+                this.blockIndex = new BlockIndex(this);
+            }
+        } else {
+            this.blockIndex = null;
+        }
+    }
+
+    /**
+     * @return true if the index of the descendants of this XDOM by block class is enabled
+     * @see #setBlockIndexEnabled(boolean)
+     * @since 13.4RC1
+     */
+    @Unstable
+    public boolean isBlockIndexEnabled()
+    {
+        return getBlockIndex() != null;
+    }
+
+    /**
+     * Make this XDOM and all its descendants immutable: any modification will fail with an
+     * {@link UnsupportedOperationException}. A frozen XDOM can then be safely read by several threads at the same
+     * time (as long as it's safely published to them, for example through a concurrent cache), and cloned cheaply, see
+     * {@link #thaw()}.
+     * <p>
+     * Everything reading a frozen block may cache (the hash code, the position of each block in its parent) is computed
+     * by this method so that reading a frozen XDOM does not modify it. Only the blocks extending
+     * {@link AbstractBlock} are frozen. The objects returned by the blocks (like
+     * {@link MetaData} or {@link org.xwiki.rendering.listener.reference.ResourceReference}) must not be modified.
+     *
+     * @return this XDOM
+     * @since 13.4RC1
+     */
+    @Unstable
+    public XDOM freeze()
+    {
+        if (!isFrozen()) {
+            // Rebuild the index to forget about the modifications of blocks not extending AbstractBlock
+            if (isBlockIndexEnabled()) {
+                this.blockIndex = new BlockIndex(this);
+            }
+
+            // Freeze the children before their parent so that the hash code of each block is computed from the cached
+            // hash codes of its children
+            BlockStack stack = new BlockStack();
+            stack.push(this);
+            while (!stack.isEmpty()) {
+                Block child = stack.nextChild();
+                if (child != null) {
+                    stack.push(child);
+                } else {
+                    Block block = stack.pop();
+                    if (block instanceof AbstractBlock) {
+                        ((AbstractBlock) block).freezeBlock();
+                    }
+                }
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * @return true if this XDOM is frozen, see {@link #freeze()}
+     * @since 13.4RC1
+     */
+    @Override
+    @Unstable
+    public boolean isFrozen()
+    {
+        return super.isFrozen();
+    }
+
+    /**
+     * Create a modifiable copy of this XDOM.
+     * <p>
+     * When this XDOM is frozen, the copy shares the frozen blocks and only copies a block when it's accessed through
+     * the copy: the frozen children of a block are copied the first time they are accessed (through
+     * {@link #getChildren()}, a modification method, etc.). {@link #traverse(Listener)} and a
+     * {@link ClassBlockMatcher} based {@link #getBlocks(BlockMatcher, Axes)} don't copy anything besides the path to
+     * the matched blocks so, for example, executing the macros of a frozen XDOM only copies the blocks between the root
+     * and each macro block. The parameters of the blocks are copied only when modified. The block index (see
+     * {@link #setBlockIndexEnabled(boolean)}) is not enabled on the copy, but searches on the parts of the copy which
+     * were not accessed yet still use the index of the frozen XDOM.
+     * <p>
+     * When this XDOM is not frozen, this is the same as {@link #clone()}.
+     *
+     * @return a modifiable copy of this XDOM
+     * @since 13.4RC1
+     */
+    @Unstable
+    public XDOM thaw()
+    {
+        return clone();
+    }
+
+    /**
+     * @return the index of the descendants of this XDOM, null if disabled
+     */
+    BlockIndex getBlockIndex()
+    {
+        // The index might have been copied from another XDOM by clone()
+        return this.blockIndex != null && this.blockIndex.getXDOM() == this ? this.blockIndex : null;
+    }
+
+    @Override
+    public <T extends Block> List<T> getBlocks(BlockMatcher matcher, Axes axes)
+    {
+        BlockIndex index = getBlockIndex();
+        if (index != null && matcher.getClass() == ClassBlockMatcher.class
+            && (axes == Axes.DESCENDANT || axes == Axes.DESCENDANT_OR_SELF)) {
+            List<T> blocks = index.getBlocks(((ClassBlockMatcher) matcher).getBlockClass());
+            if (axes == Axes.DESCENDANT_OR_SELF && matcher.match(this)) {
+                blocks.add(0, (T) this);
+            }
+
+            return blocks;
+        }
+
+        return super.getBlocks(matcher, axes);
+    }
+
     @Override
     public void before(Listener listener)
     {
@@ -126,6 +277,11 @@ public XDOM clone()
             clone.idGenerator = new IdGenerator(this.idGenerator);
         }
 
+        // Indexing the clone of a frozen XDOM would copy all its blocks
+        if (isBlockIndexEnabled() && !isFrozen()) {
+            clone.blockIndex = new BlockIndex(clone);
+        }
+
         return clone;
     }
 }
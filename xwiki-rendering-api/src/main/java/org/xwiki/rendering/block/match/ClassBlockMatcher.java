@@ -20,6 +20,7 @@
 package org.xwiki.rendering.block.match;
 
 import org.xwiki.rendering.block.Block;
+import org.xwiki.stability.Unstable;
 
 /**
  * Implementation of {@link BlockMatcher} which match any {@link Block} with the provided class.
@@ -42,6 +43,16 @@ public ClassBlockMatcher(Class<? extends Block> blockClass)
         this.blockClass = blockClass;
     }
 
+    /**
+     * @return the class of the block to match
+     * @since 13.4RC1
+     */
+    @Unstable
+    public Class<? extends Block> getBlockClass()
+    {
+        return this.blockClass;
+    }
+
     @Override
     public boolean match(Block block)
     {
@@ -0,0 +1,359 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.converter;
+
+import java.io.Reader;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.rendering.listener.ArrayQueueListener;
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.StreamParser;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Stream the events of a {@link StreamParser} to a {@link Listener} (usually a
+ * {@link org.xwiki.rendering.renderer.PrintRenderer}) with the parser and the listener running on two different
+ * threads.
+ * <p>
+ * The parser runs on a thread of an executor while the listener receives the events on the calling thread. The parser
+ * thread uses the context class loader of the calling thread, and its execution context when an {@link Execution} is
+ * provided. The events are
+ * passed in batches through a bounded single producer/single consumer ring buffer: the parser waits when the buffer
+ * is full and the listener waits when it's empty. The listener receives exactly the same events, in the same order, as
+ * with {@code parser.parse(source, listener)}, including the events produced before a parser error, which is then
+ * thrown by {@link #convert(Reader, Listener)}. If the listener fails the parser is stopped.
+ * <p>
+ * The executor must be able to run the parser right away (a parser waiting in the queue of the executor would block
+ * the calling thread) so by default a shared pool of daemon threads, created as needed, is used.
+ * <p>
+ * This is only worth it for big contents, where both the parser and the listener have a lot of work to do.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+@Unstable
+public class PipelinedStreamConverter
+{
+    /**
+     * The default number of batches of events the ring buffer can hold.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The number of events passed to the listener thread at once.
+     */
+    private static final int BATCH_SIZE = 256;
+
+    /**
+     * The maximum time a thread waits before checking the ring buffer again. The threads wake up each other when
+     * something changes so this is only a safety net.
+     */
+    private static final long PARK_NANOS = 1000000L;
+
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(
+        new BasicThreadFactory.Builder().namingPattern("Pipelined parser %d").daemon(true).build());
+
+    private final StreamParser parser;
+
+    private final int capacity;
+
+    private final ExecutorService executor;
+
+    private final Execution execution;
+
+    /**
+     * @param parser the parser producing the events
+     */
+    public PipelinedStreamConverter(StreamParser parser)
+    {
+        this(parser, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param parser the parser producing the events
+     * @param capacity the number of batches of events the ring buffer can hold before the parser has to wait for the
+     *            listener
+     */
+    public PipelinedStreamConverter(StreamParser parser, int capacity)
+    {
+        this(parser, capacity, null, null);
+    }
+
+    /**
+     * @param parser the parser producing the events
+     * @param capacity the number of batches of events the ring buffer can hold before the parser has to wait for the
+     *            listener
+     * @param executor the executor running the parser, or null to use the default shared one
+     * @param execution used to run the parser with the execution context of the calling thread, can be null when the
+     *            parser does not need any execution context
+     */
+    public PipelinedStreamConverter(StreamParser parser, int capacity, ExecutorService executor, Execution execution)
+    {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be greater than 0 but was [" + capacity + "]");
+        }
+
+        this.parser = parser;
+        this.capacity = capacity;
+        this.executor = executor != null ? executor : DEFAULT_EXECUTOR;
+        this.execution = execution;
+    }
+
+    /**
+     * Parse the source on a thread of the executor and send the resulting events to the listener on the calling
+     * thread.
+     *
+     * @param source the content to parse
+     * @param listener receive the events for each element
+     * @throws ParseException if the parser fails, or if the calling thread is interrupted while waiting for events
+     */
+    public void convert(Reader source, Listener listener) throws ParseException
+    {
+        EventChannel channel = new EventChannel(this.capacity, Thread.currentThread());
+        Future<?> producer = startProducer(channel, source);
+
+        boolean consumed = false;
+        Error producerError = null;
+        try {
+            channel.consume(listener);
+            consumed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new ParseException("Interrupted while waiting for the parser events", e);
+        } finally {
+            if (!consumed) {
+                channel.cancel();
+            }
+
+            producerError = waitFor(producer);
+        }
+
+        if (producerError != null) {
+            throw producerError;
+        }
+
+        channel.checkFailure();
+    }
+
+    private Future<?> startProducer(EventChannel channel, Reader source) throws ParseException
+    {
+        // The context of the calling thread
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        ExecutionContext context = this.execution != null ? this.execution.getContext() : null;
+
+        try {
+            return this.executor.submit(() -> {
+                Thread thread = Thread.currentThread();
+                ClassLoader previousClassLoader = thread.getContextClassLoader();
+                thread.setContextClassLoader(classLoader);
+                if (context != null) {
+                    this.execution.pushContext(context);
+                }
+
+                try {
+                    channel.produce(this.parser, source);
+                } finally {
+                    if (context != null) {
+                        this.execution.popContext();
+                    }
+                    thread.setContextClassLoader(previousClassLoader);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new ParseException("Failed to start the parser", e);
+        }
+    }
+
+    /**
+     * Wait for the end of the parser, ignoring interruptions (the parser stops by itself when the listener gives up).
+     *
+     * @param producer the parser task
+     * @return the error thrown by the parser, if any (the exceptions are handled by {@link EventChannel})
+     */
+    private Error waitFor(Future<?> producer)
+    {
+        Error error = null;
+        boolean interrupted = false;
+        boolean done = false;
+        while (!done) {
+            try {
+                producer.get();
+                done = true;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Error) {
+                    error = (Error) e.getCause();
+                }
+                done = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        return error;
+    }
+
+    /**
+     * The parser side of the channel collects the events in the queue it extends and moves them to the ring buffer
+     * every {@link #BATCH_SIZE} events. Each slot of the ring buffer owns its queue, so nothing is allocated once the
+     * queues have reached their working size.
+     */
+    private static final class EventChannel extends ArrayQueueListener
+    {
+        private final ArrayQueueListener[] batches;
+
+        private final Thread consumer;
+
+        private volatile Thread producer;
+
+        /**
+         * The number of batches added to the ring buffer. Only modified by the parser thread.
+         */
+        private volatile long published;
+
+        /**
+         * The number of batches sent to the listener. Only modified by the listener thread.
+         */
+        private volatile long consumed;
+
+        /**
+         * True when the parser thread won't publish anything anymore.
+         */
+        private volatile boolean closed;
+
+        private volatile boolean cancelled;
+
+        private volatile Exception failure;
+
+        EventChannel(int capacity, Thread consumer)
+        {
+            this.batches = new ArrayQueueListener[capacity];
+            for (int i = 0; i < capacity; ++i) {
+                this.batches[i] = new ArrayQueueListener();
+            }
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void eventAdded()
+        {
+            if (size() >= BATCH_SIZE) {
+                publish();
+            }
+        }
+
+        void produce(StreamParser parser, Reader source)
+        {
+            this.producer = Thread.currentThread();
+
+            try {
+                parser.parse(source, this);
+                publish();
+            } catch (Exception e) {
+                if (!this.cancelled) {
+                    this.failure = e;
+
+                    // Send the events which were produced before the error, like a direct call to the parser would
+                    try {
+                        publish();
+                    } catch (CancellationException ce) {
+                        // The listener gave up, nothing more to do
+                    }
+                }
+            } finally {
+                this.closed = true;
+                LockSupport.unpark(this.consumer);
+            }
+        }
+
+        private void publish()
+        {
+            if (isEmpty()) {
+                return;
+            }
+
+            long sequence = this.published;
+            while (sequence - this.consumed >= this.batches.length && !this.cancelled) {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            if (this.cancelled) {
+                throw new CancellationException("The listener stopped consuming the events");
+            }
+
+            this.batches[(int) (sequence % this.batches.length)].transferStart(this);
+            this.published = sequence + 1;
+            LockSupport.unpark(this.consumer);
+        }
+
+        void consume(Listener listener) throws InterruptedException
+        {
+            long sequence = this.consumed;
+            while (true) {
+                if (sequence < this.published) {
+                    this.batches[(int) (sequence % this.batches.length)].consumeEvents(listener);
+                    this.consumed = ++sequence;
+                    LockSupport.unpark(this.producer);
+                } else if (this.closed) {
+                    // Everything was published before the channel was closed
+                    if (sequence == this.published) {
+                        break;
+                    }
+                } else {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            }
+        }
+
+        void cancel()
+        {
+            this.cancelled = true;
+            LockSupport.unpark(this.producer);
+        }
+
+        void checkFailure() throws ParseException
+        {
+            Exception exception = this.failure;
+            if (exception instanceof ParseException) {
+                throw (ParseException) exception;
+            } else if (exception instanceof RuntimeException) {
+                throw (RuntimeException) exception;
+            } else if (exception != null) {
+                throw new ParseException("Failed to parse the source", exception);
+            }
+        }
+    }
+}
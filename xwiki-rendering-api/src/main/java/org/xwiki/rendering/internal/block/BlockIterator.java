@@ -0,0 +1,224 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.block;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.Block.Axes;
+import org.xwiki.rendering.block.match.BlockMatcher;
+
+/**
+ * Lazily iterate over the blocks matched by a {@link BlockMatcher} in the provided {@link Axes}, in the same order as
+ * {@link Block#getBlocks(BlockMatcher, Axes)} but without building any intermediate list.
+ * <p>
+ * The tree is walked with an explicit stack (see {@link BlockStack}) so that very deep trees don't overflow the thread
+ * stack. Modifying the tree while iterating has the same effect as modifying it from a {@link BlockMatcher}.
+ *
+ * @param <T> the class of the Blocks to return
+ * @version $Id$
+ * @since 13.4RC1
+ */
+public class BlockIterator<T extends Block> implements Iterator<T>
+{
+    private final Block block;
+
+    private final Axes axes;
+
+    private final BlockMatcher matcher;
+
+    /**
+     * The last candidate returned for the axes which are a chain of blocks (parents or siblings) or the root of the
+     * current sub tree for the {@link Axes#FOLLOWING} and {@link Axes#PRECEDING} axes.
+     */
+    private Block cursor;
+
+    /**
+     * Used to walk the descendants of a block.
+     */
+    private BlockStack stack;
+
+    private boolean started;
+
+    private boolean finished;
+
+    private Block next;
+
+    /**
+     * @param block the block to start searching from
+     * @param axes indicate the search axes
+     * @param matcher used to filter the returned blocks
+     */
+    public BlockIterator(Block block, Axes axes, BlockMatcher matcher)
+    {
+        this.block = block;
+        this.axes = axes;
+        this.matcher = matcher;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        while (this.next == null && !this.finished) {
+            Block candidate = nextCandidate();
+            if (candidate == null) {
+                this.finished = true;
+            } else if (this.matcher.match(candidate)) {
+                this.next = candidate;
+            }
+        }
+
+        return this.next != null;
+    }
+
+    @Override
+    public T next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        T result = (T) this.next;
+        this.next = null;
+
+        return result;
+    }
+
+    private Block nextCandidate()
+    {
+        boolean first = !this.started;
+        this.started = true;
+
+        Block candidate;
+        switch (this.axes) {
+            case SELF:
+            case ANCESTOR_OR_SELF:
+            case ANCESTOR:
+            case PARENT:
+                candidate = nextAncestor(first);
+                break;
+            case CHILD:
+            case DESCENDANT_OR_SELF:
+            case DESCENDANT:
+                candidate = nextDescendant(first);
+                break;
+            default:
+                candidate = nextSibling(first);
+                break;
+        }
+
+        return candidate;
+    }
+
+    private Block nextAncestor(boolean first)
+    {
+        Block candidate;
+        switch (this.axes) {
+            case SELF:
+                candidate = first ? this.block : null;
+                break;
+            case ANCESTOR_OR_SELF:
+                candidate = first ? this.block : this.cursor.getParent();
+                this.cursor = candidate;
+                break;
+            case ANCESTOR:
+                candidate = (first ? this.block : this.cursor).getParent();
+                this.cursor = candidate;
+                break;
+            default:
+                // PARENT
+                candidate = first ? this.block.getParent() : null;
+                break;
+        }
+
+        return candidate;
+    }
+
+    private Block nextDescendant(boolean first)
+    {
+        Block candidate;
+        if (this.axes == Axes.CHILD) {
+            candidate = first ? getFirstChild(this.block) : this.cursor.getNextSibling();
+            this.cursor = candidate;
+        } else if (first) {
+            pushDescendants(this.block);
+            candidate = this.axes == Axes.DESCENDANT_OR_SELF ? this.block : popDescendant();
+        } else {
+            candidate = popDescendant();
+        }
+
+        return candidate;
+    }
+
+    private Block nextSibling(boolean first)
+    {
+        boolean following = this.axes == Axes.FOLLOWING_SIBLING || this.axes == Axes.FOLLOWING;
+        boolean descendants = this.axes == Axes.FOLLOWING || this.axes == Axes.PRECEDING;
+
+        // Start with the descendants of the current sibling
+        Block candidate = descendants && !first ? popDescendant() : null;
+        if (candidate == null) {
+            Block start = first ? this.block : this.cursor;
+            candidate = following ? start.getNextSibling() : start.getPreviousSibling();
+            this.cursor = candidate;
+            if (descendants) {
+                pushDescendants(candidate);
+            }
+        }
+
+        return candidate;
+    }
+
+    private Block getFirstChild(Block parent)
+    {
+        List<Block> children = parent.getChildren();
+
+        return children.isEmpty() ? null : children.get(0);
+    }
+
+    private void pushDescendants(Block root)
+    {
+        if (root != null) {
+            if (this.stack == null) {
+                this.stack = new BlockStack();
+            }
+
+            this.stack.push(root);
+        }
+    }
+
+    private Block popDescendant()
+    {
+        while (!this.stack.isEmpty()) {
+            Block child = this.stack.nextChild();
+            if (child != null) {
+                this.stack.push(child);
+
+                return child;
+            }
+
+            this.stack.pop();
+        }
+
+        return null;
+    }
+}
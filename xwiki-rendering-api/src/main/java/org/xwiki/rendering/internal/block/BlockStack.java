@@ -0,0 +1,131 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.block;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.xwiki.rendering.block.Block;
+
+/**
+ * Explicit stack used to walk a tree of blocks without recursion, so that the depth of the tree is not limited by the
+ * size of the thread stack.
+ * <p>
+ * Each element of the stack is a block along with the position of the next child to visit. A depth-first walk of the
+ * tree looks like:
+ *
+ * <pre>
+ * <code>
+ * BlockStack stack = new BlockStack();
+ * stack.push(rootBlock);
+ * while (!stack.isEmpty()) {
+ *     Block child = stack.nextChild();
+ *     if (child != null) {
+ *         // Visit child
+ *         stack.push(child);
+ *     } else {
+ *         stack.pop();
+ *     }
+ * }
+ * </code>
+ * </pre>
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+public class BlockStack
+{
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Block[] blocks = new Block[DEFAULT_CAPACITY];
+
+    private int[] positions = new int[DEFAULT_CAPACITY];
+
+    private int size;
+
+    /**
+     * @return true if the stack does not contain any block
+     */
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    /**
+     * @return the number of blocks in the stack
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @param block the block to add on top of the stack, its children will be returned by {@link #nextChild()}
+     */
+    public void push(Block block)
+    {
+        if (this.size == this.blocks.length) {
+            int newLength = this.size * 2;
+            this.blocks = Arrays.copyOf(this.blocks, newLength);
+            this.positions = Arrays.copyOf(this.positions, newLength);
+        }
+
+        this.blocks[this.size] = block;
+        this.positions[this.size] = 0;
+        ++this.size;
+    }
+
+    /**
+     * @return the block on top of the stack
+     */
+    public Block peek()
+    {
+        return this.blocks[this.size - 1];
+    }
+
+    /**
+     * @return the block removed from the top of the stack
+     */
+    public Block pop()
+    {
+        Block block = this.blocks[--this.size];
+        this.blocks[this.size] = null;
+
+        return block;
+    }
+
+    /**
+     * @return the next child of the block on top of the stack, or null if all its children have been returned
+     */
+    public Block nextChild()
+    {
+        int index = this.size - 1;
+        List<Block> children = this.blocks[index].getChildren();
+        int position = this.positions[index];
+
+        if (position < children.size()) {
+            this.positions[index] = position + 1;
+
+            return children.get(position);
+        }
+
+        return null;
+    }
+}
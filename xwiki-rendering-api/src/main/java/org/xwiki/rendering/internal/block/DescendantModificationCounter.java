@@ -0,0 +1,37 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.block;
+
+/**
+ * Implemented by the lists returned by {@link org.xwiki.rendering.block.Block#getChildren()} which count the
+ * modifications made to the children of their block and of all its descendants. This is a cheap way to know if a tree
+ * of blocks was modified, for example by some code which is not supposed to.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+public interface DescendantModificationCounter
+{
+    /**
+     * @return the number of modifications made to the children of the block owning this list and of all its
+     *         descendants, changes every time one of them is modified
+     */
+    int getDescendantModificationCount();
+}
@@ -0,0 +1,193 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.parser;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+import org.xwiki.rendering.listener.ArrayQueueListener;
+import org.xwiki.rendering.listener.chaining.EventType;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.renderer.PrintRenderer;
+import org.xwiki.rendering.renderer.PrintRendererFactory;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Buffer the events of a header content (the header id has to be sent before them but depends on them) and compute
+ * the plain text used to generate the header id at the same time.
+ * <p>
+ * The text is the same as the one produced by the plain text renderer. Only the inline content, which is what headers
+ * usually contain, is handled directly. When the content contains something else (a block or a link without label,
+ * whose label is generated by the renderer) the buffered events are sent to a plain text renderer instead.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+public class HeaderContentListener extends ArrayQueueListener
+{
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * True when the plain text renderer is needed to get the text.
+     */
+    private boolean render;
+
+    /**
+     * The number of events which make their container not empty, as far as the plain text renderer is concerned.
+     */
+    private int contentEvents;
+
+    /**
+     * The value of {@link #contentEvents} at the beginning of each current link.
+     */
+    private Deque<Integer> linkContentEvents;
+
+    /**
+     * @param plainRendererFactory the factory used to create a plain text renderer if the content is not inline
+     * @return the plain text of the header content
+     */
+    public String getText(PrintRendererFactory plainRendererFactory)
+    {
+        if (this.render) {
+            PrintRenderer renderer = plainRendererFactory.createRenderer(new DefaultWikiPrinter());
+            fireEvents(renderer);
+
+            return renderer.getPrinter().toString();
+        }
+
+        return this.text.toString();
+    }
+
+    @Override
+    protected void eventAdded()
+    {
+        EventType eventType = getEventType(size());
+        switch (eventType) {
+            case BEGIN_METADATA:
+            case END_METADATA:
+                // Meta data don't count as content
+                break;
+            case BEGIN_PARAGRAPH:
+            case BEGIN_HEADER:
+            case BEGIN_LIST:
+            case BEGIN_LIST_ITEM:
+            case BEGIN_DEFINITION_LIST:
+            case BEGIN_DEFINITION_TERM:
+            case BEGIN_DEFINITION_DESCRIPTION:
+            case BEGIN_QUOTATION_LINE:
+            case BEGIN_TABLE:
+            case BEGIN_TABLE_ROW:
+            case BEGIN_TABLE_CELL:
+            case BEGIN_TABLE_HEAD_CELL:
+            case ON_HORIZONTAL_LINE:
+                // The text of blocks depends on their position
+                this.render = true;
+                ++this.contentEvents;
+                break;
+            default:
+                ++this.contentEvents;
+                break;
+        }
+    }
+
+    @Override
+    public void beginLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+    {
+        super.beginLink(reference, freestanding, parameters);
+
+        if (this.linkContentEvents == null) {
+            this.linkContentEvents = new ArrayDeque<>();
+        }
+        this.linkContentEvents.push(this.contentEvents);
+    }
+
+    @Override
+    public void endLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+    {
+        // The label of links without content is generated by the renderer
+        if (this.linkContentEvents.pop() == this.contentEvents) {
+            this.render = true;
+        }
+
+        super.endLink(reference, freestanding, parameters);
+    }
+
+    @Override
+    public void onWord(String word)
+    {
+        super.onWord(word);
+
+        this.text.append(word);
+    }
+
+    @Override
+    public void onSpace()
+    {
+        super.onSpace();
+
+        this.text.append(' ');
+    }
+
+    @Override
+    public void onSpecialSymbol(char symbol)
+    {
+        super.onSpecialSymbol(symbol);
+
+        this.text.append(symbol);
+    }
+
+    @Override
+    public void onNewLine()
+    {
+        super.onNewLine();
+
+        this.text.append('\n');
+    }
+
+    @Override
+    public void onEmptyLines(int count)
+    {
+        super.onEmptyLines(count);
+
+        for (int i = 0; i < count; ++i) {
+            this.text.append('\n');
+        }
+    }
+
+    @Override
+    public void onVerbatim(String content, boolean inline, Map<String, String> parameters)
+    {
+        super.onVerbatim(content, inline, parameters);
+
+        this.text.append(content);
+    }
+
+    @Override
+    public void onRawText(String rawContent, Syntax syntax)
+    {
+        super.onRawText(rawContent, syntax);
+
+        if (syntax == null || Syntax.PLAIN_1_0.equals(syntax)) {
+            this.text.append(rawContent);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.parser.cache;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.internal.block.BlockStack;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.parser.cache.ParserCache;
+import org.xwiki.rendering.parser.cache.ParserCacheConfiguration;
+
+/**
+ * Default {@link ParserCache}: a least recently used cache of frozen {@link XDOM}s (see {@link XDOM#freeze()}), keyed
+ * by parser implementation, syntax and SHA-256 digest of the content, and bounded by the estimated memory used by the
+ * cached {@link XDOM}s. Different implementations of the parser of a syntax (for example one overriding the default
+ * one) don't share entries.
+ * Each caller gets its own copy of the cached {@link XDOM} (see {@link XDOM#thaw()}), which only copies the blocks it
+ * accesses.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+@Component
+@Singleton
+public class DefaultParserCache implements ParserCache
+{
+    /**
+     * The estimated memory used by an entry, without its blocks and its text.
+     */
+    private static final long ENTRY_WEIGHT = 256;
+
+    /**
+     * The estimated memory retained by a block (the block, its list of children and its parameters), without its text.
+     */
+    private static final long BLOCK_WEIGHT = 160;
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    @Inject
+    private ParserCacheConfiguration configuration;
+
+    /**
+     * The entries, from the least recently used to the most recently used.
+     */
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+
+    private long weight;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    @Override
+    public XDOM parse(Parser parser, String content) throws ParseException
+    {
+        String syntaxId = parser.getSyntax().toIdString();
+        if (!this.configuration.getCachedSyntaxes().contains(syntaxId)) {
+            return parser.parse(new StringReader(content));
+        }
+
+        Key key = new Key(parser.getClass(), syntaxId, digest(content));
+
+        synchronized (this) {
+            Entry entry = this.entries.get(key);
+            if (entry != null) {
+                ++this.hits;
+
+                return entry.xdom.thaw();
+            }
+
+            ++this.misses;
+        }
+
+        // Parse outside of the lock, the same content might end up being parsed several times at the same time but
+        // it's better than blocking all the other parsings
+        XDOM xdom = parser.parse(new StringReader(content));
+
+        Entry entry = new Entry(xdom, ENTRY_WEIGHT + 2L * content.length() + countBlocks(xdom) * BLOCK_WEIGHT);
+
+        return store(key, entry) ? xdom.thaw() : xdom;
+    }
+
+    private boolean store(Key key, Entry entry)
+    {
+        // Don't flush the whole cache for a content which would not fit anyway
+        long budget = this.configuration.getMemoryBudget();
+        if (entry.weight > budget) {
+            return false;
+        }
+
+        entry.xdom.freeze();
+
+        synchronized (this) {
+            Entry previous = this.entries.putIfAbsent(key, entry);
+            if (previous == null) {
+                this.weight += entry.weight;
+
+                Iterator<Entry> iterator = this.entries.values().iterator();
+                while (this.weight > budget) {
+                    this.weight -= iterator.next().weight;
+                    iterator.remove();
+                    ++this.evictions;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private long countBlocks(XDOM xdom)
+    {
+        long count = 1;
+
+        BlockStack stack = new BlockStack();
+        stack.push(xdom);
+        while (!stack.isEmpty()) {
+            Block child = stack.nextChild();
+            if (child != null) {
+                ++count;
+                stack.push(child);
+            } else {
+                stack.pop();
+            }
+        }
+
+        return count;
+    }
+
+    private byte[] digest(String content) throws ParseException
+    {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM).digest(content.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new ParseException("Failed to compute the digest of the content to parse", e);
+        }
+    }
+
+    @Override
+    public synchronized long getHitCount()
+    {
+        return this.hits;
+    }
+
+    @Override
+    public synchronized long getMissCount()
+    {
+        return this.misses;
+    }
+
+    @Override
+    public synchronized long getEvictionCount()
+    {
+        return this.evictions;
+    }
+
+    @Override
+    public synchronized int getSize()
+    {
+        return this.entries.size();
+    }
+
+    @Override
+    public synchronized long getWeight()
+    {
+        return this.weight;
+    }
+
+    @Override
+    public synchronized void clear()
+    {
+        this.entries.clear();
+        this.weight = 0;
+    }
+
+    private static final class Key
+    {
+        private final Class<?> parserClass;
+
+        private final String syntaxId;
+
+        private final byte[] digest;
+
+        private final int hashCode;
+
+        Key(Class<?> parserClass, String syntaxId, byte[] digest)
+        {
+            this.parserClass = parserClass;
+            this.syntaxId = syntaxId;
+            this.digest = digest;
+            this.hashCode = 31 * (31 * parserClass.hashCode() + syntaxId.hashCode()) + Arrays.hashCode(digest);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+
+            return this.parserClass == other.parserClass && this.syntaxId.equals(other.syntaxId)
+                && Arrays.equals(this.digest, other.digest);
+        }
+    }
+
+    private static final class Entry
+    {
+        private final XDOM xdom;
+
+        private final long weight;
+
+        Entry(XDOM xdom, long weight)
+        {
+            this.xdom = xdom;
+            this.weight = weight;
+        }
+    }
+}
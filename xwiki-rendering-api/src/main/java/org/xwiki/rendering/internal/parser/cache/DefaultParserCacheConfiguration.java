@@ -0,0 +1,127 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.parser.cache;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.configuration.internal.MemoryConfigurationSource;
+import org.xwiki.rendering.parser.cache.ParserCacheConfiguration;
+
+/**
+ * Default implementation, by default nothing is cached and the cache is allowed to use 32MB.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+@Component
+@Singleton
+public class DefaultParserCacheConfiguration implements ParserCacheConfiguration, Initializable
+{
+    /**
+     * Prefix for configuration keys for the parser cache.
+     */
+    private static final String PREFIX = "rendering.parser.cache.";
+
+    private static final long MEMORY_BUDGET = 32L * 1024 * 1024;
+
+    /**
+     * Overridden list of cached syntaxes to be used if set.
+     */
+    private List<String> cachedSyntaxes;
+
+    /**
+     * Overridden memory budget to be used if set.
+     */
+    private Long memoryBudget;
+
+    /**
+     * Used to dynamically lookup a ConfigurationSource implementation since we want to make it work even if there's
+     * none available.
+     */
+    @Inject
+    private ComponentManager componentManager;
+
+    private ConfigurationSource configurationSource;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.configurationSource = this.componentManager.getInstance(ConfigurationSource.class);
+        } catch (ComponentLookupException e) {
+            this.configurationSource = new MemoryConfigurationSource();
+        }
+    }
+
+    @Override
+    public List<String> getCachedSyntaxes()
+    {
+        List<String> result;
+
+        if (this.cachedSyntaxes != null) {
+            result = this.cachedSyntaxes;
+        } else {
+            result = this.configurationSource.getProperty(PREFIX + "syntaxes", List.class);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param cachedSyntaxes the identifiers of the syntaxes for which the result of the parsers should be cached
+     */
+    public void setCachedSyntaxes(List<String> cachedSyntaxes)
+    {
+        // This method is useful for those using the XWiki Rendering in standalone mode since it allows the cache
+        // to work even without a configuration store.
+        this.cachedSyntaxes = cachedSyntaxes;
+    }
+
+    @Override
+    public long getMemoryBudget()
+    {
+        long result;
+
+        if (this.memoryBudget != null) {
+            result = this.memoryBudget;
+        } else {
+            result = this.configurationSource.getProperty(PREFIX + "memoryBudget", MEMORY_BUDGET);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param memoryBudget the estimated memory, in bytes, the cache is allowed to use
+     */
+    public void setMemoryBudget(long memoryBudget)
+    {
+        this.memoryBudget = memoryBudget;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.renderer;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.listener.CompositeListener;
+import org.xwiki.rendering.renderer.MultiTargetRenderer;
+import org.xwiki.rendering.renderer.PrintRenderer;
+import org.xwiki.rendering.renderer.PrintRendererFactory;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.renderer.printer.WikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Default implementation of {@link MultiTargetRenderer}: a {@link CompositeListener} sends the events of the blocks to
+ * a {@link PrintRenderer} created for each target syntax.
+ * <p>
+ * The state tracking listeners (block state, metadata state, etc.) are not shared between the renderers: each one is
+ * part of the listener chain of its renderer and is positioned according to the needs of the renderer, so only the
+ * traversal of the blocks is shared.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+@Component
+@Singleton
+public class DefaultMultiTargetRenderer implements MultiTargetRenderer
+{
+    /**
+     * Used to lookup the renderers.
+     */
+    @Inject
+    @Named("context")
+    private Provider<ComponentManager> componentManagerProvider;
+
+    @Inject
+    private Logger logger;
+
+    @Override
+    public Map<Syntax, WikiPrinter> render(Block block, Collection<Syntax> targetSyntaxes)
+        throws ComponentLookupException
+    {
+        return render(Collections.singletonList(block), targetSyntaxes);
+    }
+
+    @Override
+    public Map<Syntax, WikiPrinter> render(Collection<Block> blocks, Collection<Syntax> targetSyntaxes)
+        throws ComponentLookupException
+    {
+        ComponentManager componentManager = this.componentManagerProvider.get();
+
+        // Locate all the renderers before rendering anything
+        Map<Syntax, PrintRendererFactory> factories = new LinkedHashMap<>();
+        for (Syntax targetSyntax : targetSyntaxes) {
+            factories.put(targetSyntax,
+                componentManager.getInstance(PrintRendererFactory.class, targetSyntax.toIdString()));
+        }
+
+        Map<Syntax, WikiPrinter> printers = new LinkedHashMap<>();
+        List<PrintRenderer> renderers = new ArrayList<>(factories.size());
+        CompositeListener listener = new CompositeListener();
+        for (Map.Entry<Syntax, PrintRendererFactory> entry : factories.entrySet()) {
+            WikiPrinter printer = new DefaultWikiPrinter();
+            PrintRenderer renderer = entry.getValue().createRenderer(printer);
+            printers.put(entry.getKey(), printer);
+            renderers.add(renderer);
+            listener.addListener(renderer);
+        }
+
+        for (Block block : blocks) {
+            block.traverse(listener);
+        }
+
+        for (PrintRenderer renderer : renderers) {
+            flush(renderer);
+        }
+
+        return printers;
+    }
+
+    private void flush(PrintRenderer renderer)
+    {
+        if (renderer instanceof Flushable) {
+            try {
+                ((Flushable) renderer).flush();
+            } catch (IOException e) {
+                this.logger.error("Failed to flush renderer [{}]", renderer, e);
+            }
+        }
+    }
+}
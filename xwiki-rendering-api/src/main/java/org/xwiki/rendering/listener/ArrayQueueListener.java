@@ -0,0 +1,697 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.listener;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.xwiki.rendering.listener.chaining.EventType;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Manage a queue of events, like {@link QueueListener}, but without allocating anything per event.
+ * <p>
+ * The events are stored in a growable ring buffer: the type of each event in a byte array, its object parameters in
+ * an object array (3 slots per event) and its primitive parameter (boolean, int or char) in an int array. Adding and
+ * consuming events at both ends is done in constant time and the arrays are reused once the queue has reached its
+ * working size.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+@Unstable
+public class ArrayQueueListener implements Listener
+{
+    private static final EventType[] EVENT_TYPES = EventType.values();
+
+    private static final int OBJECTS = 3;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private byte[] types;
+
+    private Object[] objects;
+
+    private int[] values;
+
+    /**
+     * Index of the first event in the arrays.
+     */
+    private int head;
+
+    private int size;
+
+    /**
+     * Used to send the events. All the parameters of an event are read before the listener is called so the same
+     * instance can be reused even when the listener adds or consumes events.
+     */
+    private final SlotReader reader = new SlotReader();
+
+    /**
+     * Create an empty queue.
+     */
+    public ArrayQueueListener()
+    {
+        this.types = new byte[DEFAULT_CAPACITY];
+        this.objects = new Object[DEFAULT_CAPACITY * OBJECTS];
+        this.values = new int[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * @return the number of events in the queue
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return true if the queue does not contain any event
+     */
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    /**
+     * Remove all the events from the queue.
+     */
+    public void clear()
+    {
+        Arrays.fill(this.objects, null);
+        this.head = 0;
+        this.size = 0;
+    }
+
+    /**
+     * @param depth the position of the event in the queue, starting at 1
+     * @return the type of the event at the specified position, or null if there is no such event
+     */
+    public EventType getEventType(int depth)
+    {
+        EventType eventType = null;
+
+        if (depth > 0 && depth <= this.size) {
+            eventType = EVENT_TYPES[this.types[slot(depth - 1)]];
+        }
+
+        return eventType;
+    }
+
+    /**
+     * Returns the event at the specified position in this queue.
+     * <p>
+     * The {@link QueueListener.Event} is created on demand: use {@link #getEventType(int)} when only the type of the
+     * event is needed.
+     *
+     * @param depth index of event to return, starting at 1
+     * @return the event at the specified position in this queue, or null if there is no such event
+     */
+    public QueueListener.Event getEvent(int depth)
+    {
+        QueueListener.Event event = null;
+
+        if (depth > 0 && depth <= this.size) {
+            QueueListener queue = new QueueListener();
+            fireEvent(slot(depth - 1), queue);
+            event = queue.remove();
+        }
+
+        return event;
+    }
+
+    /**
+     * Send all stored events to provided {@link Listener}.
+     *
+     * @param listener the {@link Listener} on which to send events
+     */
+    public void consumeEvents(Listener listener)
+    {
+        while (!isEmpty()) {
+            consumeEvent(listener);
+        }
+    }
+
+    /**
+     * Send all stored events to provided {@link Listener} without removing them from the queue, so that they can be
+     * sent again later.
+     *
+     * @param listener the {@link Listener} on which to send events
+     */
+    public void fireEvents(Listener listener)
+    {
+        for (int i = 0; i < this.size; ++i) {
+            fireEvent(slot(i), listener);
+        }
+    }
+
+    /**
+     * Remove the first event from the queue and send it to the provided {@link Listener}. The event is removed before
+     * being sent so the listener sees the queue without it.
+     *
+     * @param listener the {@link Listener} on which to send the event
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public void consumeEvent(Listener listener)
+    {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+
+        int slot = this.head;
+        int offset = slot * OBJECTS;
+        EventType eventType = EVENT_TYPES[this.types[slot]];
+        Object object0 = this.objects[offset];
+        Object object1 = this.objects[offset + 1];
+        Object object2 = this.objects[offset + 2];
+        int value = this.values[slot];
+
+        this.objects[offset] = null;
+        this.objects[offset + 1] = null;
+        this.objects[offset + 2] = null;
+        this.head = (this.head + 1) & (this.types.length - 1);
+        --this.size;
+
+        this.reader.fireEvent(eventType, object0, object1, object2, value, listener);
+    }
+
+    /**
+     * Move all the events of the provided queue at the beginning of this queue (keeping their order). The provided
+     * queue is empty after that.
+     *
+     * @param events the events to move
+     */
+    public void transferStart(ArrayQueueListener events)
+    {
+        ensureCapacity(this.size + events.size);
+
+        for (int i = events.size - 1; i >= 0; --i) {
+            int source = events.slot(i);
+            this.head = (this.head - 1) & (this.types.length - 1);
+            ++this.size;
+
+            this.types[this.head] = events.types[source];
+            System.arraycopy(events.objects, source * OBJECTS, this.objects, this.head * OBJECTS, OBJECTS);
+            this.values[this.head] = events.values[source];
+        }
+
+        events.clear();
+    }
+
+    /**
+     * Called after each event added to the end of the queue. Does nothing by default: extending classes can use it to
+     * consume the events in batches as they arrive.
+     */
+    protected void eventAdded()
+    {
+        // Nothing to do by default
+    }
+
+    private int slot(int index)
+    {
+        return (this.head + index) & (this.types.length - 1);
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        int length = this.types.length;
+        if (capacity > length) {
+            int newLength = length;
+            while (newLength < capacity) {
+                newLength <<= 1;
+            }
+
+            byte[] newTypes = new byte[newLength];
+            Object[] newObjects = new Object[newLength * OBJECTS];
+            int[] newValues = new int[newLength];
+
+            // Unwrap the ring so that the first event is at index 0
+            int first = Math.min(this.size, length - this.head);
+            System.arraycopy(this.types, this.head, newTypes, 0, first);
+            System.arraycopy(this.types, 0, newTypes, first, this.size - first);
+            System.arraycopy(this.objects, this.head * OBJECTS, newObjects, 0, first * OBJECTS);
+            System.arraycopy(this.objects, 0, newObjects, first * OBJECTS, (this.size - first) * OBJECTS);
+            System.arraycopy(this.values, this.head, newValues, 0, first);
+            System.arraycopy(this.values, 0, newValues, first, this.size - first);
+
+            this.types = newTypes;
+            this.objects = newObjects;
+            this.values = newValues;
+            this.head = 0;
+        }
+    }
+
+    private void saveEvent(EventType eventType, Object object0, Object object1, Object object2, int value)
+    {
+        ensureCapacity(this.size + 1);
+
+        int slot = slot(this.size);
+        int offset = slot * OBJECTS;
+        this.types[slot] = (byte) eventType.ordinal();
+        this.objects[offset] = object0;
+        this.objects[offset + 1] = object1;
+        this.objects[offset + 2] = object2;
+        this.values[slot] = value;
+        ++this.size;
+
+        eventAdded();
+    }
+
+    private void saveEvent(EventType eventType, Object object0, Object object1)
+    {
+        saveEvent(eventType, object0, object1, null, 0);
+    }
+
+    private void saveEvent(EventType eventType, Object object0)
+    {
+        saveEvent(eventType, object0, null, null, 0);
+    }
+
+    private void saveEvent(EventType eventType)
+    {
+        saveEvent(eventType, null, null, null, 0);
+    }
+
+    private static int toInt(boolean value)
+    {
+        return value ? 1 : 0;
+    }
+
+    private void fireEvent(int slot, Listener listener)
+    {
+        int offset = slot * OBJECTS;
+
+        this.reader.fireEvent(EVENT_TYPES[this.types[slot]], this.objects[offset], this.objects[offset + 1],
+            this.objects[offset + 2], this.values[slot], listener);
+    }
+
+    @Override
+    public void beginDocument(MetaData metadata)
+    {
+        saveEvent(EventType.BEGIN_DOCUMENT, metadata);
+    }
+
+    @Override
+    public void endDocument(MetaData metadata)
+    {
+        saveEvent(EventType.END_DOCUMENT, metadata);
+    }
+
+    @Override
+    public void beginGroup(Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_GROUP, parameters);
+    }
+
+    @Override
+    public void endGroup(Map<String, String> parameters)
+    {
+        saveEvent(EventType.END_GROUP, parameters);
+    }
+
+    @Override
+    public void beginParagraph(Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_PARAGRAPH, parameters);
+    }
+
+    @Override
+    public void endParagraph(Map<String, String> parameters)
+    {
+        saveEvent(EventType.END_PARAGRAPH, parameters);
+    }
+
+    @Override
+    public void beginFormat(Format format, Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_FORMAT, format, parameters);
+    }
+
+    @Override
+    public void endFormat(Format format, Map<String, String> parameters)
+    {
+        saveEvent(EventType.END_FORMAT, format, parameters);
+    }
+
+    @Override
+    public void beginList(ListType type, Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_LIST, type, parameters);
+    }
+
+    @Override
+    public void endList(ListType type, Map<String, String> parameters)
+    {
+        saveEvent(EventType.END_LIST, type, parameters);
+    }
+
+    @Override
+    public void beginListItem()
+    {
+        saveEvent(EventType.BEGIN_LIST_ITEM);
+    }
+
+    @Override
+    public void beginListItem(Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_LIST_ITEM, parameters, null, null, 1);
+    }
+
+    @Override
+    public void endListItem()
+    {
+        saveEvent(EventType.END_LIST_ITEM);
+    }
+
+    @Override
+    public void endListItem(Map<String, String> parameters)
+    {
+        // The parameters are not kept, like in QueueListener, so that consumers receive the same events
+        saveEvent(EventType.END_LIST_ITEM);
+    }
+
+    @Override
+    public void beginDefinitionList(Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_DEFINITION_LIST, parameters);
+    }
+
+    @Override
+    public void endDefinitionList(Map<String, String> parameters)
+    {
+        saveEvent(EventType.END_DEFINITION_LIST, parameters);
+    }
+
+    @Override
+    public void beginDefinitionTerm()
+    {
+        saveEvent(EventType.BEGIN_DEFINITION_TERM);
+    }
+
+    @Override
+    public void endDefinitionTerm()
+    {
+        saveEvent(EventType.END_DEFINITION_TERM);
+    }
+
+    @Override
+    public void beginDefinitionDescription()
+    {
+        saveEvent(EventType.BEGIN_DEFINITION_DESCRIPTION);
+    }
+
+    @Override
+    public void endDefinitionDescription()
+    {
+        saveEvent(EventType.END_DEFINITION_DESCRIPTION);
+    }
+
+    @Override
+    public void beginQuotation(Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_QUOTATION, parameters);
+    }
+
+    @Override
+    public void endQuotation(Map<String, String> parameters)
+    {
+        saveEvent(EventType.END_QUOTATION, parameters);
+    }
+
+    @Override
+    public void beginQuotationLine()
+    {
+        saveEvent(EventType.BEGIN_QUOTATION_LINE);
+    }
+
+    @Override
+    public void endQuotationLine()
+    {
+        saveEvent(EventType.END_QUOTATION_LINE);
+    }
+
+    @Override
+    public void beginSection(Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_SECTION, parameters);
+    }
+
+    @Override
+    public void endSection(Map<String, String> parameters)
+    {
+        saveEvent(EventType.END_SECTION, parameters);
+    }
+
+    @Override
+    public void beginHeader(HeaderLevel level, String id, Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_HEADER, level, id, parameters, 0);
+    }
+
+    @Override
+    public void endHeader(HeaderLevel level, String id, Map<String, String> parameters)
+    {
+        saveEvent(EventType.END_HEADER, level, id, parameters, 0);
+    }
+
+    @Override
+    public void beginTable(Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_TABLE, parameters);
+    }
+
+    @Override
+    public void endTable(Map<String, String> parameters)
+    {
+        saveEvent(EventType.END_TABLE, parameters);
+    }
+
+    @Override
+    public void beginTableRow(Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_TABLE_ROW, parameters);
+    }
+
+    @Override
+    public void endTableRow(Map<String, String> parameters)
+    {
+        saveEvent(EventType.END_TABLE_ROW, parameters);
+    }
+
+    @Override
+    public void beginTableCell(Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_TABLE_CELL, parameters);
+    }
+
+    @Override
+    public void endTableCell(Map<String, String> parameters)
+    {
+        saveEvent(EventType.END_TABLE_CELL, parameters);
+    }
+
+    @Override
+    public void beginTableHeadCell(Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_TABLE_HEAD_CELL, parameters);
+    }
+
+    @Override
+    public void endTableHeadCell(Map<String, String> parameters)
+    {
+        saveEvent(EventType.END_TABLE_HEAD_CELL, parameters);
+    }
+
+    @Override
+    public void beginLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_LINK, reference, parameters, null, toInt(freestanding));
+    }
+
+    @Override
+    public void endLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+    {
+        saveEvent(EventType.END_LINK, reference, parameters, null, toInt(freestanding));
+    }
+
+    @Override
+    public void beginMacroMarker(String name, Map<String, String> macroParameters, String content, boolean isInline)
+    {
+        saveEvent(EventType.BEGIN_MACRO_MARKER, name, macroParameters, content, toInt(isInline));
+    }
+
+    @Override
+    public void endMacroMarker(String name, Map<String, String> macroParameters, String content, boolean isInline)
+    {
+        saveEvent(EventType.END_MACRO_MARKER, name, macroParameters, content, toInt(isInline));
+    }
+
+    @Override
+    public void beginMetaData(MetaData metadata)
+    {
+        saveEvent(EventType.BEGIN_METADATA, metadata);
+    }
+
+    @Override
+    public void endMetaData(MetaData metadata)
+    {
+        saveEvent(EventType.END_METADATA, metadata);
+    }
+
+    @Override
+    public void beginFigure(Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_FIGURE, parameters);
+    }
+
+    @Override
+    public void endFigure(Map<String, String> parameters)
+    {
+        saveEvent(EventType.END_FIGURE, parameters);
+    }
+
+    @Override
+    public void beginFigureCaption(Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_FIGURE_CAPTION, parameters);
+    }
+
+    @Override
+    public void endFigureCaption(Map<String, String> parameters)
+    {
+        saveEvent(EventType.END_FIGURE_CAPTION, parameters);
+    }
+
+    @Override
+    public void onNewLine()
+    {
+        saveEvent(EventType.ON_NEW_LINE);
+    }
+
+    @Override
+    public void onMacro(String id, Map<String, String> macroParameters, String content, boolean isInline)
+    {
+        saveEvent(EventType.ON_MACRO, id, macroParameters, content, toInt(isInline));
+    }
+
+    @Override
+    public void onWord(String word)
+    {
+        saveEvent(EventType.ON_WORD, word);
+    }
+
+    @Override
+    public void onSpace()
+    {
+        saveEvent(EventType.ON_SPACE);
+    }
+
+    @Override
+    public void onSpecialSymbol(char symbol)
+    {
+        saveEvent(EventType.ON_SPECIAL_SYMBOL, null, null, null, symbol);
+    }
+
+    @Override
+    public void onRawText(String text, Syntax syntax)
+    {
+        saveEvent(EventType.ON_RAW_TEXT, text, syntax);
+    }
+
+    @Override
+    public void onId(String name)
+    {
+        saveEvent(EventType.ON_ID, name);
+    }
+
+    @Override
+    public void onHorizontalLine(Map<String, String> parameters)
+    {
+        saveEvent(EventType.ON_HORIZONTAL_LINE, parameters);
+    }
+
+    @Override
+    public void onEmptyLines(int count)
+    {
+        saveEvent(EventType.ON_EMPTY_LINES, null, null, null, count);
+    }
+
+    @Override
+    public void onVerbatim(String content, boolean inline, Map<String, String> parameters)
+    {
+        saveEvent(EventType.ON_VERBATIM, content, parameters, null, toInt(inline));
+    }
+
+    @Override
+    public void onImage(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+    {
+        saveEvent(EventType.ON_IMAGE, reference, parameters, null, toInt(freestanding));
+    }
+
+    /**
+     * Read the parameters of an event stored in the queue.
+     *
+     * @version $Id$
+     */
+    private static final class SlotReader extends EventParameterReader
+    {
+        private final Object[] objects = new Object[OBJECTS];
+
+        private int index;
+
+        private int value;
+
+        void fireEvent(EventType eventType, Object object0, Object object1, Object object2, int eventValue,
+            Listener listener)
+        {
+            this.objects[0] = object0;
+            this.objects[1] = object1;
+            this.objects[2] = object2;
+            this.value = eventValue;
+            this.index = 0;
+
+            fireEvent(eventType, listener);
+        }
+
+        @Override
+        int value()
+        {
+            return this.value;
+        }
+
+        @Override
+        String string()
+        {
+            return object();
+        }
+
+        @Override
+        <T> T object()
+        {
+            T object = (T) this.objects[this.index];
+            this.objects[this.index++] = null;
+
+            return object;
+        }
+    }
+}
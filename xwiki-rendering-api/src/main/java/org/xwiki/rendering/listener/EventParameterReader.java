@@ -0,0 +1,185 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.listener;
+
+import org.xwiki.rendering.listener.chaining.EventType;
+
+/**
+ * Send events to a {@link Listener} reading their parameters from a compact storage (see {@link ArrayQueueListener}
+ * and {@link EventTape}) instead of an array of objects like {@link EventType#fireEvent(Listener, Object...)}.
+ * <p>
+ * The parameters are read in the order of the parameters of the {@link Listener} method, except for the list item
+ * events which start with a boolean indicating if the event has parameters.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+abstract class EventParameterReader
+{
+    /**
+     * Call the {@link Listener} method of an event type.
+     *
+     * @version $Id$
+     */
+    @FunctionalInterface
+    private interface EventFirer
+    {
+        void fireEvent(EventParameterReader reader, Listener listener);
+    }
+
+    private static final EventFirer[] FIRERS = new EventFirer[EventType.values().length];
+
+    static {
+        addBlockEvents();
+        addListEvents();
+        addTableEvents();
+        addInlineEvents();
+    }
+
+    /**
+     * @return the next primitive parameter (int or char)
+     */
+    abstract int value();
+
+    /**
+     * @return the next boolean parameter
+     */
+    boolean bool()
+    {
+        return value() != 0;
+    }
+
+    /**
+     * @return the next string parameter
+     */
+    abstract String string();
+
+    /**
+     * @param <T> the type of the parameter
+     * @return the next object parameter
+     */
+    abstract <T> T object();
+
+    /**
+     * Read the parameters of an event and send it to the provided listener.
+     *
+     * @param eventType the type of the event
+     * @param listener the listener to send the event to
+     */
+    void fireEvent(EventType eventType, Listener listener)
+    {
+        FIRERS[eventType.ordinal()].fireEvent(this, listener);
+    }
+
+    private static void add(EventType eventType, EventFirer firer)
+    {
+        FIRERS[eventType.ordinal()] = firer;
+    }
+
+    private static void addBlockEvents()
+    {
+        add(EventType.BEGIN_DOCUMENT, (r, l) -> l.beginDocument(r.object()));
+        add(EventType.END_DOCUMENT, (r, l) -> l.endDocument(r.object()));
+        add(EventType.BEGIN_GROUP, (r, l) -> l.beginGroup(r.object()));
+        add(EventType.END_GROUP, (r, l) -> l.endGroup(r.object()));
+        add(EventType.BEGIN_PARAGRAPH, (r, l) -> l.beginParagraph(r.object()));
+        add(EventType.END_PARAGRAPH, (r, l) -> l.endParagraph(r.object()));
+        add(EventType.BEGIN_HEADER, (r, l) -> l.beginHeader(r.object(), r.string(), r.object()));
+        add(EventType.END_HEADER, (r, l) -> l.endHeader(r.object(), r.string(), r.object()));
+        add(EventType.BEGIN_MACRO_MARKER,
+            (r, l) -> l.beginMacroMarker(r.string(), r.object(), r.string(), r.bool()));
+        add(EventType.END_MACRO_MARKER, (r, l) -> l.endMacroMarker(r.string(), r.object(), r.string(), r.bool()));
+        add(EventType.BEGIN_QUOTATION, (r, l) -> l.beginQuotation(r.object()));
+        add(EventType.END_QUOTATION, (r, l) -> l.endQuotation(r.object()));
+        add(EventType.BEGIN_QUOTATION_LINE, (r, l) -> l.beginQuotationLine());
+        add(EventType.END_QUOTATION_LINE, (r, l) -> l.endQuotationLine());
+        add(EventType.BEGIN_SECTION, (r, l) -> l.beginSection(r.object()));
+        add(EventType.END_SECTION, (r, l) -> l.endSection(r.object()));
+        add(EventType.BEGIN_METADATA, (r, l) -> l.beginMetaData(r.object()));
+        add(EventType.END_METADATA, (r, l) -> l.endMetaData(r.object()));
+        add(EventType.BEGIN_FIGURE, (r, l) -> l.beginFigure(r.object()));
+        add(EventType.END_FIGURE, (r, l) -> l.endFigure(r.object()));
+        add(EventType.BEGIN_FIGURE_CAPTION, (r, l) -> l.beginFigureCaption(r.object()));
+        add(EventType.END_FIGURE_CAPTION, (r, l) -> l.endFigureCaption(r.object()));
+    }
+
+    private static void addListEvents()
+    {
+        add(EventType.BEGIN_DEFINITION_LIST, (r, l) -> l.beginDefinitionList(r.object()));
+        add(EventType.END_DEFINITION_LIST, (r, l) -> l.endDefinitionList(r.object()));
+        add(EventType.BEGIN_DEFINITION_TERM, (r, l) -> l.beginDefinitionTerm());
+        add(EventType.END_DEFINITION_TERM, (r, l) -> l.endDefinitionTerm());
+        add(EventType.BEGIN_DEFINITION_DESCRIPTION, (r, l) -> l.beginDefinitionDescription());
+        add(EventType.END_DEFINITION_DESCRIPTION, (r, l) -> l.endDefinitionDescription());
+        add(EventType.BEGIN_LIST, (r, l) -> l.beginList(r.object(), r.object()));
+        add(EventType.END_LIST, (r, l) -> l.endList(r.object(), r.object()));
+        add(EventType.BEGIN_LIST_ITEM, EventParameterReader::beginListItem);
+        add(EventType.END_LIST_ITEM, EventParameterReader::endListItem);
+    }
+
+    private static void addTableEvents()
+    {
+        add(EventType.BEGIN_TABLE, (r, l) -> l.beginTable(r.object()));
+        add(EventType.END_TABLE, (r, l) -> l.endTable(r.object()));
+        add(EventType.BEGIN_TABLE_ROW, (r, l) -> l.beginTableRow(r.object()));
+        add(EventType.END_TABLE_ROW, (r, l) -> l.endTableRow(r.object()));
+        add(EventType.BEGIN_TABLE_CELL, (r, l) -> l.beginTableCell(r.object()));
+        add(EventType.END_TABLE_CELL, (r, l) -> l.endTableCell(r.object()));
+        add(EventType.BEGIN_TABLE_HEAD_CELL, (r, l) -> l.beginTableHeadCell(r.object()));
+        add(EventType.END_TABLE_HEAD_CELL, (r, l) -> l.endTableHeadCell(r.object()));
+    }
+
+    private static void addInlineEvents()
+    {
+        add(EventType.BEGIN_FORMAT, (r, l) -> l.beginFormat(r.object(), r.object()));
+        add(EventType.END_FORMAT, (r, l) -> l.endFormat(r.object(), r.object()));
+        add(EventType.BEGIN_LINK, (r, l) -> l.beginLink(r.object(), r.bool(), r.object()));
+        add(EventType.END_LINK, (r, l) -> l.endLink(r.object(), r.bool(), r.object()));
+        add(EventType.ON_RAW_TEXT, (r, l) -> l.onRawText(r.string(), r.object()));
+        add(EventType.ON_EMPTY_LINES, (r, l) -> l.onEmptyLines(r.value()));
+        add(EventType.ON_HORIZONTAL_LINE, (r, l) -> l.onHorizontalLine(r.object()));
+        add(EventType.ON_ID, (r, l) -> l.onId(r.string()));
+        add(EventType.ON_IMAGE, (r, l) -> l.onImage(r.object(), r.bool(), r.object()));
+        add(EventType.ON_MACRO, (r, l) -> l.onMacro(r.string(), r.object(), r.string(), r.bool()));
+        add(EventType.ON_NEW_LINE, (r, l) -> l.onNewLine());
+        add(EventType.ON_SPACE, (r, l) -> l.onSpace());
+        add(EventType.ON_SPECIAL_SYMBOL, (r, l) -> l.onSpecialSymbol((char) r.value()));
+        add(EventType.ON_VERBATIM, (r, l) -> l.onVerbatim(r.string(), r.bool(), r.object()));
+        add(EventType.ON_WORD, (r, l) -> l.onWord(r.string()));
+    }
+
+    private static void beginListItem(EventParameterReader reader, Listener listener)
+    {
+        if (reader.bool()) {
+            listener.beginListItem(reader.object());
+        } else {
+            listener.beginListItem();
+        }
+    }
+
+    private static void endListItem(EventParameterReader reader, Listener listener)
+    {
+        if (reader.bool()) {
+            listener.endListItem(reader.object());
+        } else {
+            listener.endListItem();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.listener;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.xwiki.rendering.listener.chaining.EventType;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Declare the events a consumer is interested in, and compile this declaration into a {@link Listener} which forwards
+ * only those events. The compiled listener can be passed directly to any
+ * {@link org.xwiki.rendering.parser.StreamParser}, which makes it possible to extract some information from a content
+ * (for example the links, the headers and the text of the headers) without building and traversing a full XDOM.
+ * <p>
+ * For example, to get all the links and the words located in headers:
+ *
+ * <pre>
+ * <code>
+ * Listener listener = new EventProjection()
+ *     .include(EventType.BEGIN_LINK, EventType.END_LINK)
+ *     .includeWithin(EventType.BEGIN_HEADER, EventType.ON_WORD, EventType.ON_SPACE)
+ *     .compile(extractor);
+ * streamParser.parse(reader, listener);
+ * </code>
+ * </pre>
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+@Unstable
+public class EventProjection
+{
+    private static final String BEGIN = "BEGIN_";
+
+    private static final String END = "END_";
+
+    private final Set<EventType> included = EnumSet.noneOf(EventType.class);
+
+    private final Map<EventType, Set<EventType>> includedWithin = new EnumMap<>(EventType.class);
+
+    /**
+     * Forward all the events of the passed types, wherever they are located.
+     *
+     * @param eventTypes the types of the events to forward
+     * @return this projection
+     */
+    public EventProjection include(EventType... eventTypes)
+    {
+        for (EventType eventType : eventTypes) {
+            this.included.add(eventType);
+        }
+
+        return this;
+    }
+
+    /**
+     * Forward the events of the passed types located inside the passed container. The events starting and ending the
+     * container are not part of it: they have to be included explicitly if needed.
+     *
+     * @param container the event starting the container (for example {@link EventType#BEGIN_HEADER})
+     * @param eventTypes the types of the events to forward when they are located inside the container
+     * @return this projection
+     * @throws IllegalArgumentException if the passed container type is not the beginning of a container
+     */
+    public EventProjection includeWithin(EventType container, EventType... eventTypes)
+    {
+        getEnd(container);
+
+        Set<EventType> types = this.includedWithin.computeIfAbsent(container, key -> EnumSet.noneOf(EventType.class));
+        for (EventType eventType : eventTypes) {
+            types.add(eventType);
+        }
+
+        return this;
+    }
+
+    /**
+     * @param listener the listener receiving the projected events
+     * @return a new listener forwarding to the passed listener only the events included in this projection (the
+     *         returned listener is stateful so a new one is needed for each content)
+     */
+    public Listener compile(Listener listener)
+    {
+        int count = EventType.values().length;
+
+        boolean[] accepted = new boolean[count];
+        for (EventType eventType : this.included) {
+            accepted[eventType.ordinal()] = true;
+        }
+
+        int[] opens = new int[count];
+        int[] closes = new int[count];
+        int[][] containers = new int[count][];
+        for (int i = 0; i < count; ++i) {
+            opens[i] = -1;
+            closes[i] = -1;
+            containers[i] = new int[0];
+        }
+
+        int index = 0;
+        for (Map.Entry<EventType, Set<EventType>> entry : this.includedWithin.entrySet()) {
+            opens[entry.getKey().ordinal()] = index;
+            closes[getEnd(entry.getKey()).ordinal()] = index;
+            for (EventType eventType : entry.getValue()) {
+                int[] previous = containers[eventType.ordinal()];
+                int[] next = new int[previous.length + 1];
+                System.arraycopy(previous, 0, next, 0, previous.length);
+                next[previous.length] = index;
+                containers[eventType.ordinal()] = next;
+            }
+            ++index;
+        }
+
+        return new ProjectionListener(listener, accepted, opens, closes, containers);
+    }
+
+    private EventType getEnd(EventType container)
+    {
+        String name = container.name();
+        if (name.startsWith(BEGIN)) {
+            return EventType.valueOf(END + name.substring(BEGIN.length()));
+        }
+
+        throw new IllegalArgumentException("[" + container + "] is not the beginning of a container");
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.listener;
+
+import java.io.Reader;
+
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.listener.chaining.EventType;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.StreamParser;
+import org.xwiki.stability.Unstable;
+
+/**
+ * A read-only sequence of {@link Listener} events stored in a compact way, to be replayed as many times as needed.
+ * <p>
+ * It's an alternative to keeping an {@link org.xwiki.rendering.block.XDOM} when the only thing to do with it is to
+ * render it: the type of each event is stored in a byte array and its parameters in an int array which points to a
+ * pool of (unique) strings and objects, which takes a lot less memory than the tree of blocks.
+ * <p>
+ * Use {@link #record(Block)}, {@link #record(StreamParser, Reader)} or an {@link EventTapeRecorder} to create one.
+ * The same instance can be replayed by several threads at the same time.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+@Unstable
+public final class EventTape
+{
+    private static final EventType[] EVENT_TYPES = EventType.values();
+
+    private final byte[] events;
+
+    private final int[] operands;
+
+    private final String[] strings;
+
+    private final Object[] objects;
+
+    /**
+     * @param events the type of the events
+     * @param operands the parameters of the events
+     * @param strings the strings referenced in the parameters of the events
+     * @param objects the other objects referenced in the parameters of the events
+     */
+    EventTape(byte[] events, int[] operands, String[] strings, Object[] objects)
+    {
+        this.events = events;
+        this.operands = operands;
+        this.strings = strings;
+        this.objects = objects;
+    }
+
+    /**
+     * @param block the block to record (generally an {@link org.xwiki.rendering.block.XDOM})
+     * @return the events produced by {@link Block#traverse(Listener)}
+     */
+    public static EventTape record(Block block)
+    {
+        EventTapeRecorder recorder = new EventTapeRecorder();
+        block.traverse(recorder);
+
+        return recorder.getEventTape();
+    }
+
+    /**
+     * Record the events produced by a parser without building any {@link org.xwiki.rendering.block.XDOM}.
+     *
+     * @param parser the parser to use
+     * @param source the content to parse
+     * @return the events produced by the parser
+     * @throws ParseException when failing to parse the content
+     */
+    public static EventTape record(StreamParser parser, Reader source) throws ParseException
+    {
+        EventTapeRecorder recorder = new EventTapeRecorder();
+        parser.parse(source, recorder);
+
+        return recorder.getEventTape();
+    }
+
+    /**
+     * @return the number of events
+     */
+    public int size()
+    {
+        return this.events.length;
+    }
+
+    /**
+     * Send all the events to the provided listener, in the order they were recorded.
+     *
+     * @param listener the listener to send the events to
+     */
+    public void replay(Listener listener)
+    {
+        Cursor cursor = new Cursor();
+        for (byte event : this.events) {
+            cursor.fireEvent(EVENT_TYPES[event], listener);
+        }
+    }
+
+    /**
+     * Read the parameters of the events during a replay.
+     *
+     * @version $Id$
+     */
+    private final class Cursor extends EventParameterReader
+    {
+        private int index;
+
+        @Override
+        int value()
+        {
+            return EventTape.this.operands[this.index++];
+        }
+
+        @Override
+        String string()
+        {
+            int stringIndex = value();
+
+            return stringIndex < 0 ? null : EventTape.this.strings[stringIndex];
+        }
+
+        @Override
+        <T> T object()
+        {
+            int objectIndex = value();
+
+            return objectIndex < 0 ? null : (T) EventTape.this.objects[objectIndex];
+        }
+    }
+}
@@ -0,0 +1,605 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.listener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import org.xwiki.rendering.listener.chaining.EventType;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Record the received events in an {@link EventTape}.
+ * <p>
+ * Strings and parameters are stored only once whatever the number of events using them. The mutable objects (
+ * {@link MetaData} and {@link ResourceReference}) are copied so that modifying the recorded ones later does not
+ * modify the tape, but only once for each instance (the begin and end events generally receive the same instance).
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+@Unstable
+public class EventTapeRecorder implements Listener
+{
+    private static final int INITIAL_CAPACITY = 64;
+
+    private byte[] events = new byte[INITIAL_CAPACITY];
+
+    private int eventCount;
+
+    private int[] operands = new int[INITIAL_CAPACITY];
+
+    private int operandCount;
+
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+
+    private final List<String> strings = new ArrayList<>();
+
+    private final Map<Object, Integer> objectIndexes = new HashMap<>();
+
+    private final List<Object> objects = new ArrayList<>();
+
+    private final Map<Object, Integer> copyIndexes = new IdentityHashMap<>();
+
+    /**
+     * @return the events recorded so far
+     */
+    public EventTape getEventTape()
+    {
+        return new EventTape(Arrays.copyOf(this.events, this.eventCount),
+            Arrays.copyOf(this.operands, this.operandCount), this.strings.toArray(new String[0]),
+            this.objects.toArray());
+    }
+
+    private void event(EventType eventType)
+    {
+        if (this.eventCount == this.events.length) {
+            this.events = Arrays.copyOf(this.events, this.eventCount * 2);
+        }
+
+        this.events[this.eventCount++] = (byte) eventType.ordinal();
+    }
+
+    private void value(int value)
+    {
+        if (this.operandCount == this.operands.length) {
+            this.operands = Arrays.copyOf(this.operands, this.operandCount * 2);
+        }
+
+        this.operands[this.operandCount++] = value;
+    }
+
+    private void bool(boolean value)
+    {
+        value(value ? 1 : 0);
+    }
+
+    private void string(String value)
+    {
+        if (value == null) {
+            value(-1);
+        } else {
+            Integer index = this.stringIndexes.get(value);
+            if (index == null) {
+                index = this.strings.size();
+                this.strings.add(value);
+                this.stringIndexes.put(value, index);
+            }
+
+            value(index);
+        }
+    }
+
+    /**
+     * @param value an immutable object, stored only once
+     */
+    private void sharedObject(Object value)
+    {
+        if (value == null) {
+            value(-1);
+        } else {
+            Integer index = this.objectIndexes.get(value);
+            if (index == null) {
+                index = this.objects.size();
+                this.objects.add(value);
+                this.objectIndexes.put(value, index);
+            }
+
+            value(index);
+        }
+    }
+
+    /**
+     * @param value a mutable object
+     * @param copier used to copy the object the first time it's received
+     */
+    private <T> void copiedObject(T value, UnaryOperator<T> copier)
+    {
+        if (value == null) {
+            value(-1);
+        } else {
+            Integer index = this.copyIndexes.get(value);
+            if (index == null) {
+                index = this.objects.size();
+                this.objects.add(copier.apply(value));
+                this.copyIndexes.put(value, index);
+            }
+
+            value(index);
+        }
+    }
+
+    private void parameters(Map<String, String> parameters)
+    {
+        if (parameters == null) {
+            value(-1);
+        } else {
+            Integer index = this.objectIndexes.get(parameters);
+            if (index == null) {
+                // The provided map might be modified later
+                Map<String, String> copy = parameters.isEmpty() ? Listener.EMPTY_PARAMETERS
+                    : Collections.unmodifiableMap(new LinkedHashMap<>(parameters));
+                index = this.objects.size();
+                this.objects.add(copy);
+                this.objectIndexes.put(copy, index);
+            }
+
+            value(index);
+        }
+    }
+
+    private void metaData(MetaData metadata)
+    {
+        copiedObject(metadata, source -> new MetaData(source.getMetaData()));
+    }
+
+    private void reference(ResourceReference reference)
+    {
+        copiedObject(reference, ResourceReference::clone);
+    }
+
+    @Override
+    public void beginDocument(MetaData metadata)
+    {
+        event(EventType.BEGIN_DOCUMENT);
+        metaData(metadata);
+    }
+
+    @Override
+    public void endDocument(MetaData metadata)
+    {
+        event(EventType.END_DOCUMENT);
+        metaData(metadata);
+    }
+
+    @Override
+    public void beginGroup(Map<String, String> parameters)
+    {
+        event(EventType.BEGIN_GROUP);
+        parameters(parameters);
+    }
+
+    @Override
+    public void endGroup(Map<String, String> parameters)
+    {
+        event(EventType.END_GROUP);
+        parameters(parameters);
+    }
+
+    @Override
+    public void beginFormat(Format format, Map<String, String> parameters)
+    {
+        event(EventType.BEGIN_FORMAT);
+        sharedObject(format);
+        parameters(parameters);
+    }
+
+    @Override
+    public void endFormat(Format format, Map<String, String> parameters)
+    {
+        event(EventType.END_FORMAT);
+        sharedObject(format);
+        parameters(parameters);
+    }
+
+    @Override
+    public void beginParagraph(Map<String, String> parameters)
+    {
+        event(EventType.BEGIN_PARAGRAPH);
+        parameters(parameters);
+    }
+
+    @Override
+    public void endParagraph(Map<String, String> parameters)
+    {
+        event(EventType.END_PARAGRAPH);
+        parameters(parameters);
+    }
+
+    @Override
+    public void beginList(ListType type, Map<String, String> parameters)
+    {
+        event(EventType.BEGIN_LIST);
+        sharedObject(type);
+        parameters(parameters);
+    }
+
+    @Override
+    public void endList(ListType type, Map<String, String> parameters)
+    {
+        event(EventType.END_LIST);
+        sharedObject(type);
+        parameters(parameters);
+    }
+
+    @Override
+    public void beginDefinitionList(Map<String, String> parameters)
+    {
+        event(EventType.BEGIN_DEFINITION_LIST);
+        parameters(parameters);
+    }
+
+    @Override
+    public void endDefinitionList(Map<String, String> parameters)
+    {
+        event(EventType.END_DEFINITION_LIST);
+        parameters(parameters);
+    }
+
+    @Override
+    public void beginListItem()
+    {
+        event(EventType.BEGIN_LIST_ITEM);
+        bool(false);
+    }
+
+    @Override
+    public void beginListItem(Map<String, String> parameters)
+    {
+        event(EventType.BEGIN_LIST_ITEM);
+        bool(true);
+        parameters(parameters);
+    }
+
+    @Override
+    public void endListItem()
+    {
+        event(EventType.END_LIST_ITEM);
+        bool(false);
+    }
+
+    @Override
+    public void endListItem(Map<String, String> parameters)
+    {
+        event(EventType.END_LIST_ITEM);
+        bool(true);
+        parameters(parameters);
+    }
+
+    @Override
+    public void beginDefinitionTerm()
+    {
+        event(EventType.BEGIN_DEFINITION_TERM);
+    }
+
+    @Override
+    public void endDefinitionTerm()
+    {
+        event(EventType.END_DEFINITION_TERM);
+    }
+
+    @Override
+    public void beginDefinitionDescription()
+    {
+        event(EventType.BEGIN_DEFINITION_DESCRIPTION);
+    }
+
+    @Override
+    public void endDefinitionDescription()
+    {
+        event(EventType.END_DEFINITION_DESCRIPTION);
+    }
+
+    @Override
+    public void beginTable(Map<String, String> parameters)
+    {
+        event(EventType.BEGIN_TABLE);
+        parameters(parameters);
+    }
+
+    @Override
+    public void endTable(Map<String, String> parameters)
+    {
+        event(EventType.END_TABLE);
+        parameters(parameters);
+    }
+
+    @Override
+    public void beginTableRow(Map<String, String> parameters)
+    {
+        event(EventType.BEGIN_TABLE_ROW);
+        parameters(parameters);
+    }
+
+    @Override
+    public void endTableRow(Map<String, String> parameters)
+    {
+        event(EventType.END_TABLE_ROW);
+        parameters(parameters);
+    }
+
+    @Override
+    public void beginTableCell(Map<String, String> parameters)
+    {
+        event(EventType.BEGIN_TABLE_CELL);
+        parameters(parameters);
+    }
+
+    @Override
+    public void endTableCell(Map<String, String> parameters)
+    {
+        event(EventType.END_TABLE_CELL);
+        parameters(parameters);
+    }
+
+    @Override
+    public void beginTableHeadCell(Map<String, String> parameters)
+    {
+        event(EventType.BEGIN_TABLE_HEAD_CELL);
+        parameters(parameters);
+    }
+
+    @Override
+    public void endTableHeadCell(Map<String, String> parameters)
+    {
+        event(EventType.END_TABLE_HEAD_CELL);
+        parameters(parameters);
+    }
+
+    @Override
+    public void beginSection(Map<String, String> parameters)
+    {
+        event(EventType.BEGIN_SECTION);
+        parameters(parameters);
+    }
+
+    @Override
+    public void endSection(Map<String, String> parameters)
+    {
+        event(EventType.END_SECTION);
+        parameters(parameters);
+    }
+
+    @Override
+    public void beginHeader(HeaderLevel level, String id, Map<String, String> parameters)
+    {
+        event(EventType.BEGIN_HEADER);
+        sharedObject(level);
+        string(id);
+        parameters(parameters);
+    }
+
+    @Override
+    public void endHeader(HeaderLevel level, String id, Map<String, String> parameters)
+    {
+        event(EventType.END_HEADER);
+        sharedObject(level);
+        string(id);
+        parameters(parameters);
+    }
+
+    @Override
+    public void beginMacroMarker(String name, Map<String, String> macroParameters, String content, boolean isInline)
+    {
+        event(EventType.BEGIN_MACRO_MARKER);
+        string(name);
+        parameters(macroParameters);
+        string(content);
+        bool(isInline);
+    }
+
+    @Override
+    public void endMacroMarker(String name, Map<String, String> macroParameters, String content, boolean isInline)
+    {
+        event(EventType.END_MACRO_MARKER);
+        string(name);
+        parameters(macroParameters);
+        string(content);
+        bool(isInline);
+    }
+
+    @Override
+    public void beginQuotation(Map<String, String> parameters)
+    {
+        event(EventType.BEGIN_QUOTATION);
+        parameters(parameters);
+    }
+
+    @Override
+    public void endQuotation(Map<String, String> parameters)
+    {
+        event(EventType.END_QUOTATION);
+        parameters(parameters);
+    }
+
+    @Override
+    public void beginQuotationLine()
+    {
+        event(EventType.BEGIN_QUOTATION_LINE);
+    }
+
+    @Override
+    public void endQuotationLine()
+    {
+        event(EventType.END_QUOTATION_LINE);
+    }
+
+    @Override
+    public void beginMetaData(MetaData metadata)
+    {
+        event(EventType.BEGIN_METADATA);
+        metaData(metadata);
+    }
+
+    @Override
+    public void endMetaData(MetaData metadata)
+    {
+        event(EventType.END_METADATA);
+        metaData(metadata);
+    }
+
+    @Override
+    public void beginFigure(Map<String, String> parameters)
+    {
+        event(EventType.BEGIN_FIGURE);
+        parameters(parameters);
+    }
+
+    @Override
+    public void endFigure(Map<String, String> parameters)
+    {
+        event(EventType.END_FIGURE);
+        parameters(parameters);
+    }
+
+    @Override
+    public void beginFigureCaption(Map<String, String> parameters)
+    {
+        event(EventType.BEGIN_FIGURE_CAPTION);
+        parameters(parameters);
+    }
+
+    @Override
+    public void endFigureCaption(Map<String, String> parameters)
+    {
+        event(EventType.END_FIGURE_CAPTION);
+        parameters(parameters);
+    }
+
+    @Override
+    public void beginLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+    {
+        event(EventType.BEGIN_LINK);
+        reference(reference);
+        bool(freestanding);
+        parameters(parameters);
+    }
+
+    @Override
+    public void endLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+    {
+        event(EventType.END_LINK);
+        reference(reference);
+        bool(freestanding);
+        parameters(parameters);
+    }
+
+    @Override
+    public void onNewLine()
+    {
+        event(EventType.ON_NEW_LINE);
+    }
+
+    @Override
+    public void onMacro(String id, Map<String, String> macroParameters, String content, boolean isInline)
+    {
+        event(EventType.ON_MACRO);
+        string(id);
+        parameters(macroParameters);
+        string(content);
+        bool(isInline);
+    }
+
+    @Override
+    public void onWord(String word)
+    {
+        event(EventType.ON_WORD);
+        string(word);
+    }
+
+    @Override
+    public void onSpace()
+    {
+        event(EventType.ON_SPACE);
+    }
+
+    @Override
+    public void onSpecialSymbol(char symbol)
+    {
+        event(EventType.ON_SPECIAL_SYMBOL);
+        value(symbol);
+    }
+
+    @Override
+    public void onId(String name)
+    {
+        event(EventType.ON_ID);
+        string(name);
+    }
+
+    @Override
+    public void onHorizontalLine(Map<String, String> parameters)
+    {
+        event(EventType.ON_HORIZONTAL_LINE);
+        parameters(parameters);
+    }
+
+    @Override
+    public void onEmptyLines(int count)
+    {
+        event(EventType.ON_EMPTY_LINES);
+        value(count);
+    }
+
+    @Override
+    public void onVerbatim(String content, boolean inline, Map<String, String> parameters)
+    {
+        event(EventType.ON_VERBATIM);
+        string(content);
+        bool(inline);
+        parameters(parameters);
+    }
+
+    @Override
+    public void onRawText(String content, Syntax syntax)
+    {
+        event(EventType.ON_RAW_TEXT);
+        string(content);
+        sharedObject(syntax);
+    }
+
+    @Override
+    public void onImage(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+    {
+        event(EventType.ON_IMAGE);
+        reference(reference);
+        bool(freestanding);
+        parameters(parameters);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.listener;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * The metadata inherited by a content: an immutable linked list of scopes, each one holding a precomputed view of all
+ * the metadata visible in it, so that finding the value of a key is done in constant time whatever the number of
+ * enclosing scopes.
+ * <p>
+ * A metadata defined in a scope hides the metadata with the same key defined in the enclosing scopes. Metadata with a
+ * {@code null} value are ignored.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+@Unstable
+public final class MetaDataScope
+{
+    /**
+     * The scope without any metadata.
+     */
+    public static final MetaDataScope EMPTY = new MetaDataScope(null, Collections.emptyMap());
+
+    private final MetaDataScope parent;
+
+    private final Map<String, Object> metaData;
+
+    private MetaDataScope(MetaDataScope parent, Map<String, Object> metaData)
+    {
+        this.parent = parent;
+        this.metaData = metaData;
+    }
+
+    /**
+     * @param scopeMetaData the metadata defined by the new scope
+     * @return a new scope enclosed in this scope
+     */
+    public MetaDataScope push(MetaData scopeMetaData)
+    {
+        Map<String, Object> newMetaData = this.metaData;
+
+        Map<String, Object> entries = scopeMetaData.getMetaData();
+        if (!entries.isEmpty()) {
+            newMetaData = new HashMap<>(this.metaData);
+            for (Map.Entry<String, Object> entry : entries.entrySet()) {
+                if (entry.getValue() != null) {
+                    newMetaData.put(entry.getKey(), entry.getValue());
+                }
+            }
+            newMetaData = Collections.unmodifiableMap(newMetaData);
+        }
+
+        return new MetaDataScope(this, newMetaData);
+    }
+
+    /**
+     * @return the enclosing scope, or null for {@link #EMPTY}
+     */
+    public MetaDataScope getParent()
+    {
+        return this.parent;
+    }
+
+    /**
+     * @param <T> the type of the value for the passed key
+     * @param key the key for which to find the value
+     * @return the value visible in this scope for the passed key, or null if there is none
+     */
+    public <T> T getMetaData(String key)
+    {
+        return (T) this.metaData.get(key);
+    }
+
+    /**
+     * @return all the metadata visible in this scope
+     */
+    public Map<String, Object> getMetaData()
+    {
+        return this.metaData;
+    }
+}
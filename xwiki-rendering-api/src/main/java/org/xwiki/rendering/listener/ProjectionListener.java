@@ -0,0 +1,561 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.listener;
+
+import java.util.Map;
+
+import org.xwiki.rendering.listener.chaining.EventType;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * The listener compiled by {@link EventProjection}: the projection is turned into arrays indexed by the event type
+ * ordinal so that each event is accepted or ignored in a few array lookups.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+final class ProjectionListener implements Listener
+{
+    private final Listener listener;
+
+    /**
+     * The event types to forward wherever they are located.
+     */
+    private final boolean[] accepted;
+
+    /**
+     * The index of the container started by each event type, or -1.
+     */
+    private final int[] opens;
+
+    /**
+     * The index of the container ended by each event type, or -1.
+     */
+    private final int[] closes;
+
+    /**
+     * The indexes of the containers in which each event type has to be forwarded.
+     */
+    private final int[][] containers;
+
+    /**
+     * The current depth of each container.
+     */
+    private final int[] depths;
+
+    ProjectionListener(Listener listener, boolean[] accepted, int[] opens, int[] closes, int[][] containers)
+    {
+        this.listener = listener;
+        this.accepted = accepted;
+        this.opens = opens;
+        this.closes = closes;
+        this.containers = containers;
+
+        int count = 0;
+        for (int open : opens) {
+            count = Math.max(count, open + 1);
+        }
+        this.depths = new int[count];
+    }
+
+    private boolean accept(EventType eventType)
+    {
+        int ordinal = eventType.ordinal();
+
+        int closed = this.closes[ordinal];
+        if (closed >= 0) {
+            --this.depths[closed];
+        }
+
+        boolean result = this.accepted[ordinal];
+        if (!result) {
+            for (int container : this.containers[ordinal]) {
+                if (this.depths[container] > 0) {
+                    result = true;
+                    break;
+                }
+            }
+        }
+
+        int opened = this.opens[ordinal];
+        if (opened >= 0) {
+            ++this.depths[opened];
+        }
+
+        return result;
+    }
+
+    @Override
+    public void beginDocument(MetaData metadata)
+    {
+        if (accept(EventType.BEGIN_DOCUMENT)) {
+            this.listener.beginDocument(metadata);
+        }
+    }
+
+    @Override
+    public void endDocument(MetaData metadata)
+    {
+        if (accept(EventType.END_DOCUMENT)) {
+            this.listener.endDocument(metadata);
+        }
+    }
+
+    @Override
+    public void beginGroup(Map<String, String> parameters)
+    {
+        if (accept(EventType.BEGIN_GROUP)) {
+            this.listener.beginGroup(parameters);
+        }
+    }
+
+    @Override
+    public void endGroup(Map<String, String> parameters)
+    {
+        if (accept(EventType.END_GROUP)) {
+            this.listener.endGroup(parameters);
+        }
+    }
+
+    @Override
+    public void beginParagraph(Map<String, String> parameters)
+    {
+        if (accept(EventType.BEGIN_PARAGRAPH)) {
+            this.listener.beginParagraph(parameters);
+        }
+    }
+
+    @Override
+    public void endParagraph(Map<String, String> parameters)
+    {
+        if (accept(EventType.END_PARAGRAPH)) {
+            this.listener.endParagraph(parameters);
+        }
+    }
+
+    @Override
+    public void beginFormat(Format format, Map<String, String> parameters)
+    {
+        if (accept(EventType.BEGIN_FORMAT)) {
+            this.listener.beginFormat(format, parameters);
+        }
+    }
+
+    @Override
+    public void endFormat(Format format, Map<String, String> parameters)
+    {
+        if (accept(EventType.END_FORMAT)) {
+            this.listener.endFormat(format, parameters);
+        }
+    }
+
+    @Override
+    public void beginList(ListType type, Map<String, String> parameters)
+    {
+        if (accept(EventType.BEGIN_LIST)) {
+            this.listener.beginList(type, parameters);
+        }
+    }
+
+    @Override
+    public void endList(ListType type, Map<String, String> parameters)
+    {
+        if (accept(EventType.END_LIST)) {
+            this.listener.endList(type, parameters);
+        }
+    }
+
+    @Override
+    public void beginListItem()
+    {
+        if (accept(EventType.BEGIN_LIST_ITEM)) {
+            this.listener.beginListItem();
+        }
+    }
+
+    @Override
+    public void beginListItem(Map<String, String> parameters)
+    {
+        if (accept(EventType.BEGIN_LIST_ITEM)) {
+            this.listener.beginListItem(parameters);
+        }
+    }
+
+    @Override
+    public void endListItem()
+    {
+        if (accept(EventType.END_LIST_ITEM)) {
+            this.listener.endListItem();
+        }
+    }
+
+    @Override
+    public void endListItem(Map<String, String> parameters)
+    {
+        if (accept(EventType.END_LIST_ITEM)) {
+            this.listener.endListItem(parameters);
+        }
+    }
+
+    @Override
+    public void beginDefinitionList(Map<String, String> parameters)
+    {
+        if (accept(EventType.BEGIN_DEFINITION_LIST)) {
+            this.listener.beginDefinitionList(parameters);
+        }
+    }
+
+    @Override
+    public void endDefinitionList(Map<String, String> parameters)
+    {
+        if (accept(EventType.END_DEFINITION_LIST)) {
+            this.listener.endDefinitionList(parameters);
+        }
+    }
+
+    @Override
+    public void beginDefinitionTerm()
+    {
+        if (accept(EventType.BEGIN_DEFINITION_TERM)) {
+            this.listener.beginDefinitionTerm();
+        }
+    }
+
+    @Override
+    public void endDefinitionTerm()
+    {
+        if (accept(EventType.END_DEFINITION_TERM)) {
+            this.listener.endDefinitionTerm();
+        }
+    }
+
+    @Override
+    public void beginDefinitionDescription()
+    {
+        if (accept(EventType.BEGIN_DEFINITION_DESCRIPTION)) {
+            this.listener.beginDefinitionDescription();
+        }
+    }
+
+    @Override
+    public void endDefinitionDescription()
+    {
+        if (accept(EventType.END_DEFINITION_DESCRIPTION)) {
+            this.listener.endDefinitionDescription();
+        }
+    }
+
+    @Override
+    public void beginQuotation(Map<String, String> parameters)
+    {
+        if (accept(EventType.BEGIN_QUOTATION)) {
+            this.listener.beginQuotation(parameters);
+        }
+    }
+
+    @Override
+    public void endQuotation(Map<String, String> parameters)
+    {
+        if (accept(EventType.END_QUOTATION)) {
+            this.listener.endQuotation(parameters);
+        }
+    }
+
+    @Override
+    public void beginQuotationLine()
+    {
+        if (accept(EventType.BEGIN_QUOTATION_LINE)) {
+            this.listener.beginQuotationLine();
+        }
+    }
+
+    @Override
+    public void endQuotationLine()
+    {
+        if (accept(EventType.END_QUOTATION_LINE)) {
+            this.listener.endQuotationLine();
+        }
+    }
+
+    @Override
+    public void beginSection(Map<String, String> parameters)
+    {
+        if (accept(EventType.BEGIN_SECTION)) {
+            this.listener.beginSection(parameters);
+        }
+    }
+
+    @Override
+    public void endSection(Map<String, String> parameters)
+    {
+        if (accept(EventType.END_SECTION)) {
+            this.listener.endSection(parameters);
+        }
+    }
+
+    @Override
+    public void beginHeader(HeaderLevel level, String id, Map<String, String> parameters)
+    {
+        if (accept(EventType.BEGIN_HEADER)) {
+            this.listener.beginHeader(level, id, parameters);
+        }
+    }
+
+    @Override
+    public void endHeader(HeaderLevel level, String id, Map<String, String> parameters)
+    {
+        if (accept(EventType.END_HEADER)) {
+            this.listener.endHeader(level, id, parameters);
+        }
+    }
+
+    @Override
+    public void beginTable(Map<String, String> parameters)
+    {
+        if (accept(EventType.BEGIN_TABLE)) {
+            this.listener.beginTable(parameters);
+        }
+    }
+
+    @Override
+    public void endTable(Map<String, String> parameters)
+    {
+        if (accept(EventType.END_TABLE)) {
+            this.listener.endTable(parameters);
+        }
+    }
+
+    @Override
+    public void beginTableRow(Map<String, String> parameters)
+    {
+        if (accept(EventType.BEGIN_TABLE_ROW)) {
+            this.listener.beginTableRow(parameters);
+        }
+    }
+
+    @Override
+    public void endTableRow(Map<String, String> parameters)
+    {
+        if (accept(EventType.END_TABLE_ROW)) {
+            this.listener.endTableRow(parameters);
+        }
+    }
+
+    @Override
+    public void beginTableCell(Map<String, String> parameters)
+    {
+        if (accept(EventType.BEGIN_TABLE_CELL)) {
+            this.listener.beginTableCell(parameters);
+        }
+    }
+
+    @Override
+    public void endTableCell(Map<String, String> parameters)
+    {
+        if (accept(EventType.END_TABLE_CELL)) {
+            this.listener.endTableCell(parameters);
+        }
+    }
+
+    @Override
+    public void beginTableHeadCell(Map<String, String> parameters)
+    {
+        if (accept(EventType.BEGIN_TABLE_HEAD_CELL)) {
+            this.listener.beginTableHeadCell(parameters);
+        }
+    }
+
+    @Override
+    public void endTableHeadCell(Map<String, String> parameters)
+    {
+        if (accept(EventType.END_TABLE_HEAD_CELL)) {
+            this.listener.endTableHeadCell(parameters);
+        }
+    }
+
+    @Override
+    public void beginLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+    {
+        if (accept(EventType.BEGIN_LINK)) {
+            this.listener.beginLink(reference, freestanding, parameters);
+        }
+    }
+
+    @Override
+    public void endLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+    {
+        if (accept(EventType.END_LINK)) {
+            this.listener.endLink(reference, freestanding, parameters);
+        }
+    }
+
+    @Override
+    public void beginMacroMarker(String name, Map<String, String> macroParameters, String content, boolean isInline)
+    {
+        if (accept(EventType.BEGIN_MACRO_MARKER)) {
+            this.listener.beginMacroMarker(name, macroParameters, content, isInline);
+        }
+    }
+
+    @Override
+    public void endMacroMarker(String name, Map<String, String> macroParameters, String content, boolean isInline)
+    {
+        if (accept(EventType.END_MACRO_MARKER)) {
+            this.listener.endMacroMarker(name, macroParameters, content, isInline);
+        }
+    }
+
+    @Override
+    public void beginMetaData(MetaData metadata)
+    {
+        if (accept(EventType.BEGIN_METADATA)) {
+            this.listener.beginMetaData(metadata);
+        }
+    }
+
+    @Override
+    public void endMetaData(MetaData metadata)
+    {
+        if (accept(EventType.END_METADATA)) {
+            this.listener.endMetaData(metadata);
+        }
+    }
+
+    @Override
+    public void beginFigure(Map<String, String> parameters)
+    {
+        if (accept(EventType.BEGIN_FIGURE)) {
+            this.listener.beginFigure(parameters);
+        }
+    }
+
+    @Override
+    public void endFigure(Map<String, String> parameters)
+    {
+        if (accept(EventType.END_FIGURE)) {
+            this.listener.endFigure(parameters);
+        }
+    }
+
+    @Override
+    public void beginFigureCaption(Map<String, String> parameters)
+    {
+        if (accept(EventType.BEGIN_FIGURE_CAPTION)) {
+            this.listener.beginFigureCaption(parameters);
+        }
+    }
+
+    @Override
+    public void endFigureCaption(Map<String, String> parameters)
+    {
+        if (accept(EventType.END_FIGURE_CAPTION)) {
+            this.listener.endFigureCaption(parameters);
+        }
+    }
+
+    @Override
+    public void onNewLine()
+    {
+        if (accept(EventType.ON_NEW_LINE)) {
+            this.listener.onNewLine();
+        }
+    }
+
+    @Override
+    public void onMacro(String id, Map<String, String> macroParameters, String content, boolean isInline)
+    {
+        if (accept(EventType.ON_MACRO)) {
+            this.listener.onMacro(id, macroParameters, content, isInline);
+        }
+    }
+
+    @Override
+    public void onWord(String word)
+    {
+        if (accept(EventType.ON_WORD)) {
+            this.listener.onWord(word);
+        }
+    }
+
+    @Override
+    public void onSpace()
+    {
+        if (accept(EventType.ON_SPACE)) {
+            this.listener.onSpace();
+        }
+    }
+
+    @Override
+    public void onSpecialSymbol(char symbol)
+    {
+        if (accept(EventType.ON_SPECIAL_SYMBOL)) {
+            this.listener.onSpecialSymbol(symbol);
+        }
+    }
+
+    @Override
+    public void onRawText(String text, Syntax syntax)
+    {
+        if (accept(EventType.ON_RAW_TEXT)) {
+            this.listener.onRawText(text, syntax);
+        }
+    }
+
+    @Override
+    public void onId(String name)
+    {
+        if (accept(EventType.ON_ID)) {
+            this.listener.onId(name);
+        }
+    }
+
+    @Override
+    public void onHorizontalLine(Map<String, String> parameters)
+    {
+        if (accept(EventType.ON_HORIZONTAL_LINE)) {
+            this.listener.onHorizontalLine(parameters);
+        }
+    }
+
+    @Override
+    public void onEmptyLines(int count)
+    {
+        if (accept(EventType.ON_EMPTY_LINES)) {
+            this.listener.onEmptyLines(count);
+        }
+    }
+
+    @Override
+    public void onVerbatim(String content, boolean inline, Map<String, String> parameters)
+    {
+        if (accept(EventType.ON_VERBATIM)) {
+            this.listener.onVerbatim(content, inline, parameters);
+        }
+    }
+
+    @Override
+    public void onImage(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+    {
+        if (accept(EventType.ON_IMAGE)) {
+            this.listener.onImage(reference, freestanding, parameters);
+        }
+    }
+}
@@ -28,6 +28,7 @@
 import org.xwiki.rendering.listener.MetaData;
 import org.xwiki.rendering.listener.reference.ResourceReference;
 import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.stability.Unstable;
 
 /**
  * Default and basic implementation of a chaining listener that knows how to delegate event calls to the next listener
@@ -57,6 +58,22 @@ public abstract class AbstractChainingListener implements ChainingListener
      */
     private boolean beginListItemRetroCompatibility;
 
+    /**
+     * The chain in which {@link #nextListener} was resolved.
+     */
+    private ListenerChain nextListenerChain;
+
+    /**
+     * The modification count of {@link #nextListenerChain} when {@link #nextListener} was resolved.
+     */
+    private int nextListenerModificationCount;
+
+    /**
+     * The listener following this listener in the chain, resolved again only when the chain is modified since it's
+     * needed for every event.
+     */
+    private ChainingListener nextListener;
+
     /**
      * The default constructor.
      * <p>
@@ -104,10 +121,27 @@ public ListenerChain getListenerChain()
         return this.listenerChain;
     }
 
+    /**
+     * @return the listener following this listener in the chain, null if this listener is the last one
+     * @since 13.4RC1
+     */
+    @Unstable
+    protected ChainingListener getNextListener()
+    {
+        ListenerChain chain = getListenerChain();
+        if (chain != this.nextListenerChain || chain.getModificationCount() != this.nextListenerModificationCount) {
+            this.nextListener = chain.getNextListener(getClass());
+            this.nextListenerChain = chain;
+            this.nextListenerModificationCount = chain.getModificationCount();
+        }
+
+        return this.nextListener;
+    }
+
     @Override
     public void beginDefinitionDescription()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginDefinitionDescription();
         }
@@ -116,7 +150,7 @@ public void beginDefinitionDescription()
     @Override
     public void beginDefinitionList(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginDefinitionList(parameters);
         }
@@ -125,7 +159,7 @@ public void beginDefinitionList(Map<String, String> parameters)
     @Override
     public void beginDefinitionTerm()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginDefinitionTerm();
         }
@@ -134,7 +168,7 @@ public void beginDefinitionTerm()
     @Override
     public void beginDocument(MetaData metadata)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginDocument(metadata);
         }
@@ -143,7 +177,7 @@ public void beginDocument(MetaData metadata)
     @Override
     public void beginGroup(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginGroup(parameters);
         }
@@ -152,7 +186,7 @@ public void beginGroup(Map<String, String> parameters)
     @Override
     public void beginFormat(Format format, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginFormat(format, parameters);
         }
@@ -161,7 +195,7 @@ public void beginFormat(Format format, Map<String, String> parameters)
     @Override
     public void beginHeader(HeaderLevel level, String id, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginHeader(level, id, parameters);
         }
@@ -170,7 +204,7 @@ public void beginHeader(HeaderLevel level, String id, Map<String, String> parame
     @Override
     public void beginLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginLink(reference, freestanding, parameters);
         }
@@ -179,7 +213,7 @@ public void beginLink(ResourceReference reference, boolean freestanding, Map<Str
     @Override
     public void beginList(ListType type, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginList(type, parameters);
         }
@@ -188,7 +222,7 @@ public void beginList(ListType type, Map<String, String> parameters)
     @Override
     public void beginListItem()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginListItem();
         }
@@ -202,7 +236,7 @@ public void beginListItem(Map<String, String> parameters)
         if (this.beginListItemRetroCompatibility) {
             beginListItem();
         } else {
-            ChainingListener next = getListenerChain().getNextListener(getClass());
+            ChainingListener next = getNextListener();
             if (next != null) {
                 next.beginListItem(parameters);
             }
@@ -212,7 +246,7 @@ public void beginListItem(Map<String, String> parameters)
     @Override
     public void beginMacroMarker(String name, Map<String, String> parameters, String content, boolean isInline)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginMacroMarker(name, parameters, content, isInline);
         }
@@ -221,7 +255,7 @@ public void beginMacroMarker(String name, Map<String, String> parameters, String
     @Override
     public void beginParagraph(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginParagraph(parameters);
         }
@@ -230,7 +264,7 @@ public void beginParagraph(Map<String, String> parameters)
     @Override
     public void beginQuotation(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginQuotation(parameters);
         }
@@ -239,7 +273,7 @@ public void beginQuotation(Map<String, String> parameters)
     @Override
     public void beginQuotationLine()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginQuotationLine();
         }
@@ -248,7 +282,7 @@ public void beginQuotationLine()
     @Override
     public void beginSection(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginSection(parameters);
         }
@@ -257,7 +291,7 @@ public void beginSection(Map<String, String> parameters)
     @Override
     public void beginTable(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginTable(parameters);
         }
@@ -266,7 +300,7 @@ public void beginTable(Map<String, String> parameters)
     @Override
     public void beginTableCell(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginTableCell(parameters);
         }
@@ -275,7 +309,7 @@ public void beginTableCell(Map<String, String> parameters)
     @Override
     public void beginTableHeadCell(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginTableHeadCell(parameters);
         }
@@ -284,7 +318,7 @@ public void beginTableHeadCell(Map<String, String> parameters)
     @Override
     public void beginTableRow(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginTableRow(parameters);
         }
@@ -293,7 +327,7 @@ public void beginTableRow(Map<String, String> parameters)
     @Override
     public void beginMetaData(MetaData metadata)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginMetaData(metadata);
         }
@@ -302,7 +336,7 @@ public void beginMetaData(MetaData metadata)
     @Override
     public void beginFigure(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginFigure(parameters);
         }
@@ -311,7 +345,7 @@ public void beginFigure(Map<String, String> parameters)
     @Override
     public void beginFigureCaption(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginFigureCaption(parameters);
         }
@@ -320,7 +354,7 @@ public void beginFigureCaption(Map<String, String> parameters)
     @Override
     public void endDefinitionDescription()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endDefinitionDescription();
         }
@@ -329,7 +363,7 @@ public void endDefinitionDescription()
     @Override
     public void endDefinitionList(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endDefinitionList(parameters);
         }
@@ -338,7 +372,7 @@ public void endDefinitionList(Map<String, String> parameters)
     @Override
     public void endDefinitionTerm()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endDefinitionTerm();
         }
@@ -347,7 +381,7 @@ public void endDefinitionTerm()
     @Override
     public void endDocument(MetaData metadata)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endDocument(metadata);
         }
@@ -356,7 +390,7 @@ public void endDocument(MetaData metadata)
     @Override
     public void endGroup(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endGroup(parameters);
         }
@@ -365,7 +399,7 @@ public void endGroup(Map<String, String> parameters)
     @Override
     public void endFormat(Format format, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endFormat(format, parameters);
         }
@@ -374,7 +408,7 @@ public void endFormat(Format format, Map<String, String> parameters)
     @Override
     public void endHeader(HeaderLevel level, String id, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endHeader(level, id, parameters);
         }
@@ -383,7 +417,7 @@ public void endHeader(HeaderLevel level, String id, Map<String, String> paramete
     @Override
     public void endLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endLink(reference, freestanding, parameters);
         }
@@ -392,7 +426,7 @@ public void endLink(ResourceReference reference, boolean freestanding, Map<Strin
     @Override
     public void endList(ListType type, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endList(type, parameters);
         }
@@ -401,7 +435,7 @@ public void endList(ListType type, Map<String, String> parameters)
     @Override
     public void endListItem()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endListItem();
         }
@@ -410,7 +444,7 @@ public void endListItem()
     @Override
     public void endListItem(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endListItem(parameters);
         }
@@ -419,7 +453,7 @@ public void endListItem(Map<String, String> parameters)
     @Override
     public void endMacroMarker(String name, Map<String, String> parameters, String content, boolean isInline)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endMacroMarker(name, parameters, content, isInline);
         }
@@ -428,7 +462,7 @@ public void endMacroMarker(String name, Map<String, String> parameters, String c
     @Override
     public void endParagraph(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endParagraph(parameters);
         }
@@ -437,7 +471,7 @@ public void endParagraph(Map<String, String> parameters)
     @Override
     public void endQuotation(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endQuotation(parameters);
         }
@@ -446,7 +480,7 @@ public void endQuotation(Map<String, String> parameters)
     @Override
     public void endQuotationLine()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endQuotationLine();
         }
@@ -455,7 +489,7 @@ public void endQuotationLine()
     @Override
     public void endSection(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endSection(parameters);
         }
@@ -464,7 +498,7 @@ public void endSection(Map<String, String> parameters)
     @Override
     public void endTable(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endTable(parameters);
         }
@@ -473,7 +507,7 @@ public void endTable(Map<String, String> parameters)
     @Override
     public void endTableCell(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endTableCell(parameters);
         }
@@ -482,7 +516,7 @@ public void endTableCell(Map<String, String> parameters)
     @Override
     public void endTableHeadCell(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endTableHeadCell(parameters);
         }
@@ -491,7 +525,7 @@ public void endTableHeadCell(Map<String, String> parameters)
     @Override
     public void endTableRow(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endTableRow(parameters);
         }
@@ -500,7 +534,7 @@ public void endTableRow(Map<String, String> parameters)
     @Override
     public void endMetaData(MetaData metadata)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endMetaData(metadata);
         }
@@ -509,7 +543,7 @@ public void endMetaData(MetaData metadata)
     @Override
     public void endFigure(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endFigure(parameters);
         }
@@ -518,7 +552,7 @@ public void endFigure(Map<String, String> parameters)
     @Override
     public void endFigureCaption(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endFigureCaption(parameters);
         }
@@ -527,7 +561,7 @@ public void endFigureCaption(Map<String, String> parameters)
     @Override
     public void onEmptyLines(int count)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onEmptyLines(count);
         }
@@ -536,7 +570,7 @@ public void onEmptyLines(int count)
     @Override
     public void onHorizontalLine(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onHorizontalLine(parameters);
         }
@@ -545,7 +579,7 @@ public void onHorizontalLine(Map<String, String> parameters)
     @Override
     public void onId(String name)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onId(name);
         }
@@ -554,7 +588,7 @@ public void onId(String name)
     @Override
     public void onImage(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onImage(reference, freestanding, parameters);
         }
@@ -563,7 +597,7 @@ public void onImage(ResourceReference reference, boolean freestanding, Map<Strin
     @Override
     public void onMacro(String id, Map<String, String> parameters, String content, boolean inline)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onMacro(id, parameters, content, inline);
         }
@@ -572,7 +606,7 @@ public void onMacro(String id, Map<String, String> parameters, String content, b
     @Override
     public void onNewLine()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onNewLine();
         }
@@ -581,7 +615,7 @@ public void onNewLine()
     @Override
     public void onSpace()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onSpace();
         }
@@ -590,7 +624,7 @@ public void onSpace()
     @Override
     public void onSpecialSymbol(char symbol)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onSpecialSymbol(symbol);
         }
@@ -599,7 +633,7 @@ public void onSpecialSymbol(char symbol)
     @Override
     public void onVerbatim(String content, boolean inline, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onVerbatim(content, inline, parameters);
         }
@@ -608,7 +642,7 @@ public void onVerbatim(String content, boolean inline, Map<String, String> param
     @Override
     public void onWord(String word)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onWord(word);
         }
@@ -617,7 +651,7 @@ public void onWord(String word)
     @Override
     public void onRawText(String text, Syntax syntax)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onRawText(text, syntax);
         }
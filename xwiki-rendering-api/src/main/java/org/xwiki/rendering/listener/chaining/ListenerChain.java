@@ -50,6 +50,24 @@
      */
     private List<Class<? extends ChainingListener>> nextListeners = new ArrayList<>();
 
+    /**
+     * The classes of {@link #nextListeners}, for fast (identity based) lookup.
+     */
+    private Class<?>[] resolvedClasses = new Class<?>[0];
+
+    /**
+     * The current instance of the listener following each position of {@link #resolvedClasses} (null for the last
+     * one). It's resolved each time the chain or one of the stacks is modified so that finding the next listener,
+     * which is done for each event by each listener of the chain, does not involve any list or map lookup.
+     */
+    private ChainingListener[] resolvedNextListeners = new ChainingListener[0];
+
+    /**
+     * Incremented each time the chain or one of the stacks is modified, so that the listeners can cache their next
+     * listener (see {@link AbstractChainingListener}).
+     */
+    private int modificationCount;
+
     /**
      * @param listener the chaining listener to add to the chain. If an instance of that listener is already present
      *            then we stack the new instance instead.
@@ -73,6 +91,8 @@ public void removeListener(Class<? extends ChainingListener> listenerClass)
             this.listeners.remove(listenerClass);
             this.nextListeners.remove(listenerClass);
         }
+
+        resolveNextListeners();
     }
 
     /**
@@ -98,6 +118,8 @@ public void addListener(ChainingListener listener, int index)
             }
         }
         stack.push(listener);
+
+        resolveNextListeners();
     }
 
     /**
@@ -106,12 +128,22 @@ public void addListener(ChainingListener listener, int index)
      */
     public ChainingListener getNextListener(Class<? extends ChainingListener> listenerClass)
     {
-        ChainingListener next = null;
-        int pos = indexOf(listenerClass);
-        if (pos > -1 && this.nextListeners.size() > pos + 1) {
-            next = this.listeners.get(this.nextListeners.get(pos + 1)).peek();
+        Class<?>[] classes = this.resolvedClasses;
+        for (int i = 0; i < classes.length; ++i) {
+            if (classes[i] == listenerClass) {
+                return this.resolvedNextListeners[i];
+            }
         }
-        return next;
+
+        return null;
+    }
+
+    /**
+     * @return a number which changes each time the chain or one of the stacks is modified
+     */
+    int getModificationCount()
+    {
+        return this.modificationCount;
     }
 
     /**
@@ -155,6 +187,8 @@ public void pushListener(Class<? extends ChainingListener> listenerClass)
         if (StackableChainingListener.class.isAssignableFrom(listenerClass)) {
             Deque<ChainingListener> stack = this.listeners.get(listenerClass);
             stack.push(((StackableChainingListener) stack.peek()).createChainingListenerInstance());
+
+            resolveNextListeners();
         }
     }
 
@@ -190,6 +224,25 @@ public void popListener(Class<? extends ChainingListener> listenerClass)
     {
         if (StackableChainingListener.class.isAssignableFrom(listenerClass)) {
             this.listeners.get(listenerClass).pop();
+
+            resolveNextListeners();
         }
     }
+
+    private void resolveNextListeners()
+    {
+        int size = this.nextListeners.size();
+        Class<?>[] classes = new Class<?>[size];
+        ChainingListener[] next = new ChainingListener[size];
+        for (int i = 0; i < size; ++i) {
+            classes[i] = this.nextListeners.get(i);
+            if (i + 1 < size) {
+                next[i] = this.listeners.get(this.nextListeners.get(i + 1)).peek();
+            }
+        }
+
+        this.resolvedClasses = classes;
+        this.resolvedNextListeners = next;
+        ++this.modificationCount;
+    }
 }
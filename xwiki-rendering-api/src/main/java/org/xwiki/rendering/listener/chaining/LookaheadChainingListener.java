@@ -21,14 +21,17 @@
 
 import java.util.Map;
 
+import org.xwiki.rendering.listener.ArrayQueueListener;
 import org.xwiki.rendering.listener.Format;
 import org.xwiki.rendering.listener.HeaderLevel;
 import org.xwiki.rendering.listener.ListType;
+import org.xwiki.rendering.listener.Listener;
 import org.xwiki.rendering.listener.MetaData;
 import org.xwiki.rendering.listener.QueueListener;
 import org.xwiki.rendering.listener.QueueListener.Event;
 import org.xwiki.rendering.listener.reference.ResourceReference;
 import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.stability.Unstable;
 
 /**
  * Stores events without emitting them back in order to accumulate them and to provide a lookahead feature. The
@@ -39,7 +42,18 @@
  */
 public class LookaheadChainingListener extends AbstractChainingListener
 {
-    private QueueListener previousEvents = new QueueListener();
+    private ArrayQueueListener previousEvents = new ArrayQueueListener();
+
+    /**
+     * The queue returned by {@link #getPreviousEvents()}, which stacks the events instead of {@link #previousEvents}
+     * once it was requested so that it's always the live list of stacked events.
+     */
+    private QueueListener legacyEvents;
+
+    /**
+     * Where the received events are stacked, {@link #previousEvents} or {@link #legacyEvents}.
+     */
+    private Listener events = this.previousEvents;
 
     private int lookaheadDepth;
 
@@ -61,28 +75,94 @@ protected void setLookaheadDepth(int lookaheadDepth)
     }
 
     /**
-     * @return the list of stacked events
+     * @return the list of stacked events, modifying it modifies the events stacked by this listener
      * @since 10.5RC1
+     * @deprecated since 13.4RC1, use {@link #getEventQueue()} instead; once this method is called the events are
+     *             stacked in the returned {@link QueueListener}, which is slower
      */
+    @Deprecated
     protected QueueListener getPreviousEvents()
     {
+        if (this.legacyEvents == null) {
+            this.legacyEvents = new QueueListener();
+            this.previousEvents.consumeEvents(this.legacyEvents);
+            this.events = this.legacyEvents;
+        }
+
+        return this.legacyEvents;
+    }
+
+    /**
+     * @return the stacked events, modifying them modifies the events stacked by this listener (the list returned by
+     *         {@link #getPreviousEvents()} before is not used anymore)
+     * @since 13.4RC1
+     */
+    @Unstable
+    protected ArrayQueueListener getEventQueue()
+    {
+        if (this.legacyEvents != null) {
+            this.legacyEvents.consumeEvents(this.previousEvents);
+            this.legacyEvents = null;
+            this.events = this.previousEvents;
+        }
+
         return this.previousEvents;
     }
 
+    /**
+     * @return the next event, or null if there is none
+     * @see #getNextEventType()
+     */
     public Event getNextEvent()
     {
         return getNextEvent(1);
     }
 
+    /**
+     * @param depth the position of the event, starting at 1
+     * @return the event at the provided depth, or null if there is none
+     * @see #getNextEventType(int)
+     */
     public Event getNextEvent(int depth)
     {
-        return this.previousEvents.getEvent(depth);
+        return this.legacyEvents != null ? this.legacyEvents.getEvent(depth) : this.previousEvents.getEvent(depth);
+    }
+
+    /**
+     * Same as {@link #getNextEvent()} but without creating any {@link Event}.
+     *
+     * @return the type of the next event, or null if there is none
+     * @since 13.4RC1
+     */
+    @Unstable
+    public EventType getNextEventType()
+    {
+        return getNextEventType(1);
+    }
+
+    /**
+     * Same as {@link #getNextEvent(int)} but without creating any {@link Event}.
+     *
+     * @param depth the position of the event, starting at 1
+     * @return the type of the event at the provided depth, or null if there is none
+     * @since 13.4RC1
+     */
+    @Unstable
+    public EventType getNextEventType(int depth)
+    {
+        if (this.legacyEvents != null) {
+            Event event = this.legacyEvents.getEvent(depth);
+
+            return event != null ? event.eventType : null;
+        }
+
+        return this.previousEvents.getEventType(depth);
     }
 
     @Override
     public void beginDefinitionDescription()
     {
-        this.previousEvents.beginDefinitionDescription();
+        this.events.beginDefinitionDescription();
         firePreviousEvent();
     }
 
@@ -94,14 +174,14 @@ public void beginDefinitionDescription()
     @Override
     public void beginDefinitionList(Map<String, String> parameters)
     {
-        this.previousEvents.beginDefinitionList(parameters);
+        this.events.beginDefinitionList(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void beginDefinitionTerm()
     {
-        this.previousEvents.beginDefinitionTerm();
+        this.events.beginDefinitionTerm();
         firePreviousEvent();
     }
 
@@ -113,28 +193,28 @@ public void beginDefinitionTerm()
     @Override
     public void beginDocument(MetaData metadata)
     {
-        this.previousEvents.beginDocument(metadata);
+        this.events.beginDocument(metadata);
         flush();
     }
 
     @Override
     public void beginGroup(Map<String, String> parameters)
     {
-        this.previousEvents.beginGroup(parameters);
+        this.events.beginGroup(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void beginFormat(Format format, Map<String, String> parameters)
     {
-        this.previousEvents.beginFormat(format, parameters);
+        this.events.beginFormat(format, parameters);
         firePreviousEvent();
     }
 
     @Override
     public void beginHeader(HeaderLevel level, String id, Map<String, String> parameters)
     {
-        this.previousEvents.beginHeader(level, id, parameters);
+        this.events.beginHeader(level, id, parameters);
         firePreviousEvent();
     }
 
@@ -146,35 +226,35 @@ public void beginHeader(HeaderLevel level, String id, Map<String, String> parame
     @Override
     public void beginLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
     {
-        this.previousEvents.beginLink(reference, freestanding, parameters);
+        this.events.beginLink(reference, freestanding, parameters);
         firePreviousEvent();
     }
 
     @Override
     public void beginList(ListType type, Map<String, String> parameters)
     {
-        this.previousEvents.beginList(type, parameters);
+        this.events.beginList(type, parameters);
         firePreviousEvent();
     }
 
     @Override
     public void beginListItem()
     {
-        this.previousEvents.beginListItem();
+        this.events.beginListItem();
         firePreviousEvent();
     }
 
     @Override
     public void beginListItem(Map<String, String> parameters)
     {
-        this.previousEvents.beginListItem(parameters);
+        this.events.beginListItem(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void beginMacroMarker(String name, Map<String, String> parameters, String content, boolean isInline)
     {
-        this.previousEvents.beginMacroMarker(name, parameters, content, isInline);
+        this.events.beginMacroMarker(name, parameters, content, isInline);
         firePreviousEvent();
     }
 
@@ -186,84 +266,84 @@ public void beginMacroMarker(String name, Map<String, String> parameters, String
     @Override
     public void beginMetaData(MetaData metadata)
     {
-        this.previousEvents.beginMetaData(metadata);
+        this.events.beginMetaData(metadata);
         firePreviousEvent();
     }
 
     @Override
     public void beginParagraph(Map<String, String> parameters)
     {
-        this.previousEvents.beginParagraph(parameters);
+        this.events.beginParagraph(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void beginQuotation(Map<String, String> parameters)
     {
-        this.previousEvents.beginQuotation(parameters);
+        this.events.beginQuotation(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void beginQuotationLine()
     {
-        this.previousEvents.beginQuotationLine();
+        this.events.beginQuotationLine();
         firePreviousEvent();
     }
 
     @Override
     public void beginSection(Map<String, String> parameters)
     {
-        this.previousEvents.beginSection(parameters);
+        this.events.beginSection(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void beginTable(Map<String, String> parameters)
     {
-        this.previousEvents.beginTable(parameters);
+        this.events.beginTable(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void beginTableCell(Map<String, String> parameters)
     {
-        this.previousEvents.beginTableCell(parameters);
+        this.events.beginTableCell(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void beginTableHeadCell(Map<String, String> parameters)
     {
-        this.previousEvents.beginTableHeadCell(parameters);
+        this.events.beginTableHeadCell(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void beginTableRow(Map<String, String> parameters)
     {
-        this.previousEvents.beginTableRow(parameters);
+        this.events.beginTableRow(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void beginFigure(Map<String, String> parameters)
     {
-        this.previousEvents.beginFigure(parameters);
+        this.events.beginFigure(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void beginFigureCaption(Map<String, String> parameters)
     {
-        this.previousEvents.beginFigureCaption(parameters);
+        this.events.beginFigureCaption(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void endDefinitionDescription()
     {
-        this.previousEvents.endDefinitionDescription();
+        this.events.endDefinitionDescription();
         firePreviousEvent();
     }
 
@@ -275,14 +355,14 @@ public void endDefinitionDescription()
     @Override
     public void endDefinitionList(Map<String, String> parameters)
     {
-        this.previousEvents.endDefinitionList(parameters);
+        this.events.endDefinitionList(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void endDefinitionTerm()
     {
-        this.previousEvents.endDefinitionTerm();
+        this.events.endDefinitionTerm();
         firePreviousEvent();
     }
 
@@ -294,28 +374,28 @@ public void endDefinitionTerm()
     @Override
     public void endDocument(MetaData metadata)
     {
-        this.previousEvents.endDocument(metadata);
+        this.events.endDocument(metadata);
         flush();
     }
 
     @Override
     public void endGroup(Map<String, String> parameters)
     {
-        this.previousEvents.endGroup(parameters);
+        this.events.endGroup(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void endFormat(Format format, Map<String, String> parameters)
     {
-        this.previousEvents.endFormat(format, parameters);
+        this.events.endFormat(format, parameters);
         firePreviousEvent();
     }
 
     @Override
     public void endHeader(HeaderLevel level, String id, Map<String, String> parameters)
     {
-        this.previousEvents.endHeader(level, id, parameters);
+        this.events.endHeader(level, id, parameters);
         firePreviousEvent();
     }
 
@@ -327,35 +407,35 @@ public void endHeader(HeaderLevel level, String id, Map<String, String> paramete
     @Override
     public void endLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
     {
-        this.previousEvents.endLink(reference, freestanding, parameters);
+        this.events.endLink(reference, freestanding, parameters);
         firePreviousEvent();
     }
 
     @Override
     public void endList(ListType type, Map<String, String> parameters)
     {
-        this.previousEvents.endList(type, parameters);
+        this.events.endList(type, parameters);
         firePreviousEvent();
     }
 
     @Override
     public void endListItem()
     {
-        this.previousEvents.endListItem();
+        this.events.endListItem();
         firePreviousEvent();
     }
 
     @Override
     public void endListItem(Map<String, String> parameters)
     {
-        this.previousEvents.endListItem(parameters);
+        this.events.endListItem(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void endMacroMarker(String name, Map<String, String> parameters, String content, boolean isInline)
     {
-        this.previousEvents.endMacroMarker(name, parameters, content, isInline);
+        this.events.endMacroMarker(name, parameters, content, isInline);
         firePreviousEvent();
     }
 
@@ -367,105 +447,105 @@ public void endMacroMarker(String name, Map<String, String> parameters, String c
     @Override
     public void endMetaData(MetaData metadata)
     {
-        this.previousEvents.endMetaData(metadata);
+        this.events.endMetaData(metadata);
         firePreviousEvent();
     }
 
     @Override
     public void endParagraph(Map<String, String> parameters)
     {
-        this.previousEvents.endParagraph(parameters);
+        this.events.endParagraph(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void endQuotation(Map<String, String> parameters)
     {
-        this.previousEvents.endQuotation(parameters);
+        this.events.endQuotation(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void endQuotationLine()
     {
-        this.previousEvents.endQuotationLine();
+        this.events.endQuotationLine();
         firePreviousEvent();
     }
 
     @Override
     public void endSection(Map<String, String> parameters)
     {
-        this.previousEvents.endSection(parameters);
+        this.events.endSection(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void endTable(Map<String, String> parameters)
     {
-        this.previousEvents.endTable(parameters);
+        this.events.endTable(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void endTableCell(Map<String, String> parameters)
     {
-        this.previousEvents.endTableCell(parameters);
+        this.events.endTableCell(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void endTableHeadCell(Map<String, String> parameters)
     {
-        this.previousEvents.endTableHeadCell(parameters);
+        this.events.endTableHeadCell(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void endTableRow(Map<String, String> parameters)
     {
-        this.previousEvents.endTableRow(parameters);
+        this.events.endTableRow(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void endFigure(Map<String, String> parameters)
     {
-        this.previousEvents.endFigure(parameters);
+        this.events.endFigure(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void endFigureCaption(Map<String, String> parameters)
     {
-        this.previousEvents.endFigureCaption(parameters);
+        this.events.endFigureCaption(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void onRawText(String text, Syntax syntax)
     {
-        this.previousEvents.onRawText(text, syntax);
+        this.events.onRawText(text, syntax);
         firePreviousEvent();
     }
 
     @Override
     public void onEmptyLines(int count)
     {
-        this.previousEvents.onEmptyLines(count);
+        this.events.onEmptyLines(count);
         firePreviousEvent();
     }
 
     @Override
     public void onHorizontalLine(Map<String, String> parameters)
     {
-        this.previousEvents.onHorizontalLine(parameters);
+        this.events.onHorizontalLine(parameters);
         firePreviousEvent();
     }
 
     @Override
     public void onId(String name)
     {
-        this.previousEvents.onId(name);
+        this.events.onId(name);
         firePreviousEvent();
     }
 
@@ -477,55 +557,55 @@ public void onId(String name)
     @Override
     public void onImage(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
     {
-        this.previousEvents.onImage(reference, freestanding, parameters);
+        this.events.onImage(reference, freestanding, parameters);
         firePreviousEvent();
     }
 
     @Override
     public void onMacro(String id, Map<String, String> parameters, String content, boolean inline)
     {
-        this.previousEvents.onMacro(id, parameters, content, inline);
+        this.events.onMacro(id, parameters, content, inline);
         firePreviousEvent();
     }
 
     @Override
     public void onNewLine()
     {
-        this.previousEvents.onNewLine();
+        this.events.onNewLine();
         firePreviousEvent();
     }
 
     @Override
     public void onSpace()
     {
-        this.previousEvents.onSpace();
+        this.events.onSpace();
         firePreviousEvent();
     }
 
     @Override
     public void onSpecialSymbol(char symbol)
     {
-        this.previousEvents.onSpecialSymbol(symbol);
+        this.events.onSpecialSymbol(symbol);
         firePreviousEvent();
     }
 
     @Override
     public void onVerbatim(String content, boolean inline, Map<String, String> parameters)
     {
-        this.previousEvents.onVerbatim(content, inline, parameters);
+        this.events.onVerbatim(content, inline, parameters);
         firePreviousEvent();
     }
 
     @Override
     public void onWord(String word)
     {
-        this.previousEvents.onWord(word);
+        this.events.onWord(word);
         firePreviousEvent();
     }
 
     private void firePreviousEvent()
     {
-        if (this.previousEvents.size() > this.lookaheadDepth) {
+        if (getEventCount() > this.lookaheadDepth) {
             fireEvent();
         }
     }
@@ -533,15 +613,24 @@ private void firePreviousEvent()
     private void flush()
     {
         // Ensure that all remaining events are flushed
-        while (!this.previousEvents.isEmpty()) {
+        while (getEventCount() > 0) {
             fireEvent();
         }
     }
 
+    private int getEventCount()
+    {
+        return this.legacyEvents != null ? this.legacyEvents.size() : this.previousEvents.size();
+    }
+
     private void fireEvent()
     {
-        Event event = this.previousEvents.remove();
-        event.eventType.fireEvent(getListenerChain().getNextListener(getClass()), event.eventParameters);
+        if (this.legacyEvents != null) {
+            Event event = this.legacyEvents.remove();
+            event.eventType.fireEvent(getNextListener(), event.eventParameters);
+        } else {
+            this.previousEvents.consumeEvent(getNextListener());
+        }
     }
 
     /**
@@ -553,9 +642,33 @@ private void fireEvent()
      */
     public void transferStart(QueueListener eventsToTransfer)
     {
-        while (!eventsToTransfer.isEmpty()) {
-            Event event = eventsToTransfer.removeLast();
-            this.previousEvents.offerFirst(event);
+        if (this.legacyEvents != null) {
+            while (!eventsToTransfer.isEmpty()) {
+                this.legacyEvents.offerFirst(eventsToTransfer.removeLast());
+            }
+        } else {
+            ArrayQueueListener arrayEvents = new ArrayQueueListener();
+            eventsToTransfer.consumeEvents(arrayEvents);
+            this.previousEvents.transferStart(arrayEvents);
+        }
+    }
+
+    /**
+     * Transfer all passed events by removing the from the passed parameter and moving them to the beginning of the
+     * event stack.
+     *
+     * @param eventsToTransfer the events to move
+     * @since 13.4RC1
+     */
+    @Unstable
+    public void transferStart(ArrayQueueListener eventsToTransfer)
+    {
+        if (this.legacyEvents != null) {
+            QueueListener queueEvents = new QueueListener();
+            eventsToTransfer.consumeEvents(queueEvents);
+            transferStart(queueEvents);
+        } else {
+            this.previousEvents.transferStart(eventsToTransfer);
         }
     }
 }
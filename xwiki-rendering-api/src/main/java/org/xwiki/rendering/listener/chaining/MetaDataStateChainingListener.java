@@ -26,6 +26,8 @@
 import java.util.List;
 
 import org.xwiki.rendering.listener.MetaData;
+import org.xwiki.rendering.listener.MetaDataScope;
+import org.xwiki.stability.Unstable;
 
 /**
  * Provides the accumulated MetaData for all the previous blocks.
@@ -40,6 +42,11 @@ public class MetaDataStateChainingListener extends AbstractChainingListener
      */
     private Deque<MetaData> metaDataStack = new ArrayDeque<MetaData>();
 
+    /**
+     * @see #getMetaData(String)
+     */
+    private MetaDataScope scope = MetaDataScope.EMPTY;
+
     /**
      * @param listenerChain see {@link #getListenerChain()}
      */
@@ -76,22 +83,35 @@ public <T> List<T> getAllMetaData(String key)
      */
     public <T> T getMetaData(String key)
     {
-        T result = null;
-        if (!this.metaDataStack.isEmpty()) {
-            for (MetaData metaData : this.metaDataStack) {
-                result = (T) metaData.getMetaData(key);
-                if (result != null) {
-                    break;
-                }
-            }
-        }
-        return result;
+        return this.scope.getMetaData(key);
+    }
+
+    /**
+     * @return all the metadata accumulated during the previous begin/endMetaData events
+     * @since 13.4RC1
+     */
+    @Unstable
+    public MetaDataScope getMetaDataScope()
+    {
+        return this.scope;
+    }
+
+    private void pushMetaData(MetaData metaData)
+    {
+        this.metaDataStack.push(metaData);
+        this.scope = this.scope.push(metaData);
+    }
+
+    private void popMetaData()
+    {
+        this.metaDataStack.pop();
+        this.scope = this.scope.getParent();
     }
 
     @Override
     public void beginDocument(MetaData metaData)
     {
-        this.metaDataStack.push(metaData);
+        pushMetaData(metaData);
         super.beginDocument(metaData);
     }
 
@@ -99,13 +119,13 @@ public void beginDocument(MetaData metaData)
     public void endDocument(MetaData metaData)
     {
         super.endDocument(metaData);
-        this.metaDataStack.pop();
+        popMetaData();
     }
 
     @Override
     public void beginMetaData(MetaData metaData)
     {
-        this.metaDataStack.push(metaData);
+        pushMetaData(metaData);
         super.beginMetaData(metaData);
     }
 
@@ -113,6 +133,6 @@ public void beginMetaData(MetaData metaData)
     public void endMetaData(MetaData metaData)
     {
         super.endMetaData(metaData);
-        this.metaDataStack.pop();
+        popMetaData();
     }
 }
@@ -0,0 +1,90 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.parser.cache;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.stability.Unstable;
+
+/**
+ * A {@link Parser} going through a {@link ParserCache} before asking the wrapped parser to parse the content. The
+ * content of the syntaxes which are not cached (see {@link ParserCacheConfiguration#getCachedSyntaxes()}) is directly
+ * streamed to the wrapped parser.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+@Unstable
+public class CachingParser implements Parser
+{
+    private static final int BUFFER_SIZE = 4096;
+
+    private final Parser parser;
+
+    private final ParserCache cache;
+
+    private final ParserCacheConfiguration configuration;
+
+    /**
+     * @param parser the parser to use when the content is not in the cache
+     * @param cache the cache of the parsed contents
+     * @param configuration the configuration of the cache, to know if the syntax of the parser is cached
+     */
+    public CachingParser(Parser parser, ParserCache cache, ParserCacheConfiguration configuration)
+    {
+        this.parser = parser;
+        this.cache = cache;
+        this.configuration = configuration;
+    }
+
+    @Override
+    public Syntax getSyntax()
+    {
+        return this.parser.getSyntax();
+    }
+
+    @Override
+    public XDOM parse(Reader source) throws ParseException
+    {
+        // The cache needs the whole content, but there's no need to read it for the syntaxes which are not cached
+        List<String> cachedSyntaxes = this.configuration.getCachedSyntaxes();
+        if (cachedSyntaxes == null || !cachedSyntaxes.contains(getSyntax().toIdString())) {
+            return this.parser.parse(source);
+        }
+
+        StringBuilder content = new StringBuilder();
+        char[] buffer = new char[BUFFER_SIZE];
+        try {
+            for (int length = source.read(buffer); length != -1; length = source.read(buffer)) {
+                content.append(buffer, 0, length);
+            }
+        } catch (IOException e) {
+            throw new ParseException("Failed to read the content to parse", e);
+        }
+
+        return this.cache.parse(this.parser, content.toString());
+    }
+}
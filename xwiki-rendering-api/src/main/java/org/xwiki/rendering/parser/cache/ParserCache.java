@@ -0,0 +1,84 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.parser.cache;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Remember the {@link XDOM}s produced by the parsers, by syntax and content, to avoid parsing the same content again
+ * and again (the content of a macro on each rendering of a page for example).
+ * <p>
+ * Only the syntaxes listed by {@link ParserCacheConfiguration#getCachedSyntaxes()} are cached, the others are
+ * directly parsed.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ * @see CachingParser
+ */
+@Role
+@Unstable
+public interface ParserCache
+{
+    /**
+     * Parse the content, or return a copy of the {@link XDOM} already produced for the same content and the same
+     * syntax. The returned {@link XDOM} can be modified freely, it's never shared with other callers.
+     *
+     * @param parser the parser to use when the content is not in the cache
+     * @param content the content to parse
+     * @return the tree representation of the content
+     * @throws ParseException if the parser fails
+     */
+    XDOM parse(Parser parser, String content) throws ParseException;
+
+    /**
+     * @return the number of times the result of a previous parsing was reused
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of times a cached syntax had to be parsed
+     */
+    long getMissCount();
+
+    /**
+     * @return the number of entries removed from the cache to stay under the memory budget
+     */
+    long getEvictionCount();
+
+    /**
+     * @return the number of entries in the cache
+     */
+    int getSize();
+
+    /**
+     * @return the estimated memory used by the entries of the cache, in bytes
+     * @see ParserCacheConfiguration#getMemoryBudget()
+     */
+    long getWeight();
+
+    /**
+     * Remove all the entries of the cache.
+     */
+    void clear();
+}
@@ -0,0 +1,48 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.parser.cache;
+
+import java.util.List;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Configuration properties for the {@link ParserCache}.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+@Role
+@Unstable
+public interface ParserCacheConfiguration
+{
+    /**
+     * @return the identifiers of the syntaxes (e.g. {@code xwiki/2.1}) for which the result of the parsers should be
+     *         cached, none by default
+     */
+    List<String> getCachedSyntaxes();
+
+    /**
+     * @return the estimated memory, in bytes, the cache is allowed to use before it starts removing the least recently
+     *         used entries
+     */
+    long getMemoryBudget();
+}
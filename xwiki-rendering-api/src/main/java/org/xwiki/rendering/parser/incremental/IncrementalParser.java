@@ -0,0 +1,62 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.parser.incremental;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Parse a content and then its successive versions, re-parsing only the top level blocks affected by each modification
+ * of the content (an editor saving a content every few seconds for example). The component hint is the syntax id.
+ * <p>
+ * The {@link org.xwiki.rendering.block.XDOM} produced for a modified content is the same as the one produced by the
+ * {@link org.xwiki.rendering.parser.Parser} of the syntax when parsing the whole modified content.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+@Role
+@Unstable
+public interface IncrementalParser
+{
+    /**
+     * @return the syntax the parser is implementing
+     */
+    Syntax getSyntax();
+
+    /**
+     * @param source the content to parse
+     * @return the parsed content, to pass to {@link #parse(ParsedSource, TextEdit)} when the content is modified
+     * @throws ParseException if the source cannot be parsed
+     */
+    ParsedSource parse(String source) throws ParseException;
+
+    /**
+     * @param previous the previous version of the content, returned by this parser. Its XDOM can be updated to become
+     *            the XDOM of the modified content (the whole modified content is parsed when the same previous version
+     *            is passed again)
+     * @param edit the modification of the previous version of the content
+     * @return the parsed modified content
+     * @throws ParseException if the modified source cannot be parsed
+     */
+    ParsedSource parse(ParsedSource previous, TextEdit edit) throws ParseException;
+}
@@ -0,0 +1,54 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.parser.incremental;
+
+import java.util.List;
+
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.stability.Unstable;
+
+/**
+ * A content parsed by an {@link IncrementalParser}.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+@Unstable
+public interface ParsedSource
+{
+    /**
+     * @return the parsed content
+     */
+    String getSource();
+
+    /**
+     * @return the result of the parsing. It can be updated by the next incremental parsing (instead of being copied) so
+     *         it should not be modified: clone it first
+     */
+    XDOM getXDOM();
+
+    /**
+     * @return the offsets in the source of the top level blocks which were parsed separately, in order. A top level
+     *         block can be a paragraph, a macro, a table, a section, etc. A section is made of the blocks following its
+     *         header so several offsets can fall in the same section. Consecutive top level blocks which cannot be
+     *         parsed separately share the same offset.
+     */
+    List<Integer> getBlockOffsets();
+}
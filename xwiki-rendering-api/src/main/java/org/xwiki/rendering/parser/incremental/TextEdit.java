@@ -0,0 +1,99 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.parser.incremental;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * The replacement of a range of characters of a content by a new text.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+@Unstable
+public class TextEdit
+{
+    private final int offset;
+
+    private final int length;
+
+    private final String text;
+
+    /**
+     * @param offset the offset of the first replaced character
+     * @param length the number of replaced characters, 0 for an insertion
+     * @param text the new text, empty for a deletion
+     */
+    public TextEdit(int offset, int length, String text)
+    {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException(
+                "Invalid range of replaced characters: offset [" + offset + "], length [" + length + "]");
+        }
+
+        this.offset = offset;
+        this.length = length;
+        this.text = text;
+    }
+
+    /**
+     * @return the offset of the first replaced character
+     */
+    public int getOffset()
+    {
+        return this.offset;
+    }
+
+    /**
+     * @return the number of replaced characters, 0 for an insertion
+     */
+    public int getLength()
+    {
+        return this.length;
+    }
+
+    /**
+     * @return the new text, empty for a deletion
+     */
+    public String getText()
+    {
+        return this.text;
+    }
+
+    /**
+     * @param source the content to modify
+     * @return the modified content
+     */
+    public String apply(String source)
+    {
+        if (this.offset + this.length > source.length()) {
+            throw new IllegalArgumentException("The replaced characters [" + this.offset + ", "
+                + (this.offset + this.length) + "] are outside of the content of length [" + source.length() + "]");
+        }
+
+        return source.substring(0, this.offset) + this.text + source.substring(this.offset + this.length);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "[" + this.offset + ", " + (this.offset + this.length) + "] -> [" + this.text + "]";
+    }
+}
@@ -39,6 +39,9 @@ public interface ContentHandlerStreamParser extends ContentHandler
     Syntax getSyntax();
 
     /**
+     * Set the listener and prepare the parser for a new document: the same parser can be used to parse several
+     * documents, one after the other.
+     *
      * @param listener the listener to send rendering event to
      */
     void setListener(Listener listener);
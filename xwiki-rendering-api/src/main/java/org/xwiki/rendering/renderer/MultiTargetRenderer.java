@@ -0,0 +1,62 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.renderer;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.renderer.printer.WikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Render blocks in several syntaxes at once, with a single traversal of the blocks.
+ * <p>
+ * This is faster than calling the {@link BlockRenderer} of each syntax when the same content has to be rendered in
+ * several syntaxes (for example HTML for display and plain text for indexing), since each block is visited only once
+ * and each event is sent to all the target renderers.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+@Role
+@Unstable
+public interface MultiTargetRenderer
+{
+    /**
+     * @param block the block to render in the target syntaxes
+     * @param targetSyntaxes the syntaxes in which to render the block
+     * @return the result of the rendering for each target syntax, in the order of the passed syntaxes
+     * @throws ComponentLookupException when no renderer can be found for one of the target syntaxes
+     */
+    Map<Syntax, WikiPrinter> render(Block block, Collection<Syntax> targetSyntaxes) throws ComponentLookupException;
+
+    /**
+     * @param blocks the list of blocks to render in the target syntaxes
+     * @param targetSyntaxes the syntaxes in which to render the blocks
+     * @return the result of the rendering for each target syntax, in the order of the passed syntaxes
+     * @throws ComponentLookupException when no renderer can be found for one of the target syntaxes
+     */
+    Map<Syntax, WikiPrinter> render(Collection<Block> blocks, Collection<Syntax> targetSyntaxes)
+        throws ComponentLookupException;
+}
@@ -20,7 +20,9 @@
 package org.xwiki.rendering.util;
 
 import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
@@ -69,12 +71,20 @@
      */
     private final Set<String> generatedIds;
 
+    /**
+     * The occurrence from which to start looking for a free id, for each id prefix (see
+     * {@link #generateUniqueId(String, String)}). All the ids with a lower occurrence are known to be already generated
+     * so that generating many times the same id does not check all the previous occurrences every time.
+     */
+    private final Map<String, Integer> nextOccurrences;
+
     /**
      * Create an empty id generator.
      */
     public IdGenerator()
     {
         this.generatedIds = new HashSet<>();
+        this.nextOccurrences = new HashMap<>();
     }
 
     /**
@@ -87,6 +97,7 @@ public IdGenerator()
     public IdGenerator(IdGenerator idGenerator)
     {
         this.generatedIds = new HashSet<>(idGenerator.generatedIds);
+        this.nextOccurrences = new HashMap<>(idGenerator.nextOccurrences);
     }
 
     /**
@@ -124,19 +135,25 @@ public String generateUniqueId(String prefix, String text)
 
         String idPrefix = prefix + normalizeId(text);
 
-        int occurence = 0;
-        String id = idPrefix;
+        int occurence = this.nextOccurrences.getOrDefault(idPrefix, 0);
+        String id = getId(idPrefix, occurence);
         while (this.generatedIds.contains(id)) {
             occurence++;
-            id = idPrefix + "-" + occurence;
+            id = getId(idPrefix, occurence);
         }
 
         // Save the generated id so that the next call to this method will not generate the same id.
         this.generatedIds.add(id);
+        this.nextOccurrences.put(idPrefix, occurence + 1);
 
         return id;
     }
 
+    private String getId(String idPrefix, int occurence)
+    {
+        return occurence == 0 ? idPrefix : idPrefix + '-' + occurence;
+    }
+
     /**
      * Normalize passed string into valid string.
      * <ul>
@@ -151,14 +168,20 @@ public String generateUniqueId(String prefix, String text)
     private String normalizeId(String stringToNormalize)
     {
         int len = stringToNormalize.length();
-        int bufLen = len * 2;
-        if (bufLen < 0) {
-            bufLen = Integer.MAX_VALUE;
+
+        // Most texts only contain a few characters to convert (if any)
+        int start = 0;
+        while (start < len && ALLOWED.get(stringToNormalize.charAt(start))) {
+            start++;
+        }
+        if (start == len) {
+            return stringToNormalize;
         }
 
-        StringBuilder outBuffer = new StringBuilder(bufLen);
+        StringBuilder outBuffer = new StringBuilder(len + 16);
+        outBuffer.append(stringToNormalize, 0, start);
 
-        for (int x = 0; x < len; x++) {
+        for (int x = start; x < len; x++) {
             char c = stringToNormalize.charAt(x);
 
             if (ALLOWED.get(c)) {
@@ -209,7 +232,23 @@ private char toHex(int nibble)
      */
     public void remove(String id)
     {
-        this.generatedIds.remove(id);
+        if (this.generatedIds.remove(id)) {
+            // Make sure the id can be generated again
+            lowerNextOccurrence(id, 0);
+
+            int separator = id.lastIndexOf('-');
+            if (separator > 0) {
+                String suffix = id.substring(separator + 1);
+                if (!suffix.isEmpty() && suffix.length() < 10 && StringUtils.isNumeric(suffix)) {
+                    lowerNextOccurrence(id.substring(0, separator), Integer.parseInt(suffix));
+                }
+            }
+        }
+    }
+
+    private void lowerNextOccurrence(String idPrefix, int occurence)
+    {
+        this.nextOccurrences.computeIfPresent(idPrefix, (key, value) -> Math.min(value, occurence));
     }
 
     /**
@@ -218,5 +257,6 @@ public void remove(String id)
     public void reset()
     {
         this.generatedIds.clear();
+        this.nextOccurrences.clear();
     }
 }
@@ -0,0 +1,103 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.block;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link BlockParameters}.
+ *
+ * @version $Id$
+ */
+public class BlockParametersTest
+{
+    @Test
+    public void setAndGet()
+    {
+        BlockParameters parameters = new BlockParameters(0);
+        Map<String, String> expected = new LinkedHashMap<>();
+
+        for (String name : Arrays.asList("a", "b", "c", "b", null, "d", "a")) {
+            parameters.set(name, name + "value" + expected.size());
+            expected.put(name, name + "value" + expected.size());
+        }
+
+        assertEquals(expected, parameters);
+        assertEquals(parameters, expected);
+        assertEquals(expected.hashCode(), parameters.hashCode());
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(parameters.keySet()));
+        assertEquals(expected.toString(), parameters.toString());
+
+        assertEquals("bvalue3", parameters.get("b"));
+        assertTrue(parameters.containsKey(null));
+        assertFalse(parameters.containsKey("e"));
+        assertNull(parameters.get("e"));
+        assertEquals(5, parameters.size());
+    }
+
+    @Test
+    public void readOnly()
+    {
+        BlockParameters parameters = new BlockParameters(Collections.singletonMap("name", "value"));
+
+        assertThrows(UnsupportedOperationException.class, () -> parameters.put("name", "other"));
+        assertThrows(UnsupportedOperationException.class, () -> parameters.remove("name"));
+        assertThrows(UnsupportedOperationException.class, () -> parameters.entrySet().iterator().next().setValue(""));
+        assertThrows(UnsupportedOperationException.class, parameters::clear);
+
+        assertTrue(BlockParameters.EMPTY.isEmpty());
+    }
+
+    @Test
+    public void blockParameters()
+    {
+        WordBlock word = new WordBlock("word");
+        assertSame(word.getParameters(), new WordBlock("other").getParameters());
+        assertThrows(UnsupportedOperationException.class, () -> word.getParameters().put("name", "value"));
+
+        word.setParameter("name", "value");
+        word.setParameter("name2", "value2");
+        assertSame(word.getParameters(), word.getParameters());
+        assertEquals(Arrays.asList("name", "name2"), new ArrayList<>(word.getParameters().keySet()));
+
+        Block clone = word.clone();
+        clone.setParameter("name", "other value");
+        assertEquals("value", word.getParameter("name"));
+        assertEquals("other value", clone.getParameter("name"));
+
+        word.setParameters(Collections.emptyMap());
+        assertTrue(word.getParameters().isEmpty());
+        assertEquals(new WordBlock("word"), word);
+        assertEquals(new WordBlock("word").hashCode(), word.hashCode());
+    }
+}
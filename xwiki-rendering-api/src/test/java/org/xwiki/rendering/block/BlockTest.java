@@ -26,10 +26,19 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import org.junit.jupiter.api.Test;
 import org.xwiki.rendering.block.match.AnyBlockMatcher;
+import org.xwiki.rendering.block.match.BlockMatcher;
+import org.xwiki.rendering.block.match.BlockNavigator;
 import org.xwiki.rendering.block.match.BlockNavigatorTest;
+import org.xwiki.rendering.block.match.ClassBlockMatcher;
+import org.xwiki.rendering.internal.block.DescendantModificationCounter;
+import org.xwiki.rendering.listener.HeaderLevel;
+import org.xwiki.rendering.listener.QueueListener;
+import org.xwiki.rendering.listener.VoidListener;
+import org.xwiki.rendering.listener.chaining.EventType;
 import org.xwiki.rendering.listener.reference.DocumentResourceReference;
 import org.xwiki.rendering.listener.reference.ResourceReference;
 import org.xwiki.rendering.listener.reference.ResourceType;
@@ -37,10 +46,12 @@
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Unit tests for Block manipulation, testing {@link AbstractBlock}.
@@ -50,6 +61,11 @@
  */
 public class BlockTest
 {
+    /**
+     * Deep enough to overflow the default thread stack with a recursive implementation.
+     */
+    private static final int DEEP_TREE_DEPTH = 100000;
+
     @Test
     public void insertChildAfter()
     {
@@ -61,6 +77,7 @@ public void insertChildAfter()
 
         pb.insertChildAfter(wb, wb1);
         assertSame(wb, pb.getChildren().get(1));
+        assertSame(pb, wb.getParent());
         assertSame(wb1, wb.getPreviousSibling());
         assertSame(wb2, wb.getNextSibling());
         assertSame(wb, wb1.getNextSibling());
@@ -369,4 +386,466 @@ public void indexOf()
         assertEquals(2, pb.indexOf(wb2));
         assertEquals(-1, pb.indexOf(new WordBlock("block1")));
     }
+
+    @Test
+    public void traverseVeryDeepTree()
+    {
+        Block deepestBlock = new WordBlock("deepest");
+        XDOM xdom = new XDOM(Collections.singletonList(createDeepTree(deepestBlock, DEEP_TREE_DEPTH)));
+
+        int[] counters = new int[3];
+        xdom.traverse(new VoidListener()
+        {
+            @Override
+            public void beginGroup(Map<String, String> parameters)
+            {
+                counters[0]++;
+            }
+
+            @Override
+            public void endGroup(Map<String, String> parameters)
+            {
+                // The end events must all come after the word
+                assertEquals(1, counters[2]);
+                counters[1]++;
+            }
+
+            @Override
+            public void onWord(String word)
+            {
+                // The word must be sent after all the begin events
+                assertEquals(DEEP_TREE_DEPTH, counters[0]);
+                counters[2]++;
+            }
+        });
+
+        assertArrayEquals(new int[] { DEEP_TREE_DEPTH, DEEP_TREE_DEPTH, 1 }, counters);
+    }
+
+    @Test
+    public void getBlocksInVeryDeepTree()
+    {
+        Block deepestBlock = new WordBlock("deepest");
+        Block followingBlock = new WordBlock("following");
+        Block deepTree = createDeepTree(deepestBlock, DEEP_TREE_DEPTH);
+        XDOM xdom = new XDOM(Arrays.asList(deepTree, followingBlock));
+
+        List<Block> groupBlocks = xdom.getBlocks(new ClassBlockMatcher(GroupBlock.class), Block.Axes.DESCENDANT);
+        assertEquals(DEEP_TREE_DEPTH, groupBlocks.size());
+        assertSame(deepTree, groupBlocks.get(0));
+        assertSame(deepestBlock.getParent(), groupBlocks.get(DEEP_TREE_DEPTH - 1));
+
+        assertSame(deepestBlock, xdom.getFirstBlock(new ClassBlockMatcher(WordBlock.class), Block.Axes.DESCENDANT));
+        assertEquals(Arrays.asList(deepestBlock, followingBlock),
+            xdom.getBlocks(new ClassBlockMatcher(WordBlock.class), Block.Axes.DESCENDANT_OR_SELF));
+        assertEquals(Arrays.asList(deepestBlock),
+            followingBlock.getBlocks(new ClassBlockMatcher(WordBlock.class), Block.Axes.PRECEDING));
+        assertSame(deepestBlock,
+            followingBlock.getFirstBlock(new ClassBlockMatcher(WordBlock.class), Block.Axes.PRECEDING));
+        assertSame(followingBlock,
+            deepTree.getFirstBlock(new ClassBlockMatcher(WordBlock.class), Block.Axes.FOLLOWING));
+        assertEquals(DEEP_TREE_DEPTH + 1,
+            deepestBlock.getBlocks(AnyBlockMatcher.ANYBLOCKMATCHER, Block.Axes.ANCESTOR).size());
+    }
+
+    @Test
+    public void getBlocksWithBlockIndex()
+    {
+        WordBlock word1 = new WordBlock("word1");
+        WordBlock word2 = new WordBlock("word2");
+        ParagraphBlock paragraph = new ParagraphBlock(Arrays.asList(word1, new SpaceBlock(), word2));
+        XDOM xdom = new XDOM(Arrays.asList(paragraph));
+
+        xdom.setBlockIndexEnabled(true);
+        assertTrue(xdom.isBlockIndexEnabled());
+
+        ClassBlockMatcher wordMatcher = new ClassBlockMatcher(WordBlock.class);
+        assertEquals(Arrays.asList(word1, word2), xdom.getBlocks(wordMatcher, Block.Axes.DESCENDANT));
+
+        WordBlock word3 = new WordBlock("word3");
+        paragraph.insertChildBefore(word3, word1);
+        assertEquals(Arrays.asList(word3, word1, word2), xdom.getBlocks(wordMatcher, Block.Axes.DESCENDANT));
+
+        paragraph.removeBlock(word1);
+        assertEquals(Arrays.asList(word3, word2), xdom.getBlocks(wordMatcher, Block.Axes.DESCENDANT));
+
+        WordBlock word4 = new WordBlock("word4");
+        xdom.replaceChild(new GroupBlock(Arrays.asList(word4)), paragraph);
+        assertEquals(Arrays.asList(word4), xdom.getBlocks(wordMatcher, Block.Axes.DESCENDANT));
+
+        // Sub classes are matched too
+        assertEquals(Arrays.asList(xdom, xdom.getChildren().get(0), word4),
+            xdom.getBlocks(new ClassBlockMatcher(AbstractBlock.class), Block.Axes.DESCENDANT_OR_SELF));
+        assertEquals(Arrays.asList(xdom),
+            xdom.getBlocks(new ClassBlockMatcher(MetaDataBlock.class), Block.Axes.DESCENDANT_OR_SELF));
+
+        // Blocks removed without using the Block API are not returned
+        xdom.getChildren().get(0).getChildren().clear();
+        assertEquals(Collections.emptyList(), xdom.getBlocks(wordMatcher, Block.Axes.DESCENDANT));
+
+        XDOM clone = xdom.clone();
+        assertTrue(clone.isBlockIndexEnabled());
+        clone.addChild(new WordBlock("word5"));
+        assertEquals(1, clone.getBlocks(wordMatcher, Block.Axes.DESCENDANT).size());
+        assertEquals(Collections.emptyList(), xdom.getBlocks(wordMatcher, Block.Axes.DESCENDANT));
+
+        xdom.setBlockIndexEnabled(false);
+        assertFalse(xdom.isBlockIndexEnabled());
+
+        // Blocks added through the list of children are indexed, and so are the blocks added to them later
+        xdom.setBlockIndexEnabled(true);
+        WordBlock word6 = new WordBlock("word6");
+        GroupBlock group = new GroupBlock(Arrays.asList(word6));
+        xdom.getChildren().add(group);
+        WordBlock word7 = new WordBlock("word7");
+        group.getChildren().add(word7);
+        assertEquals(Arrays.asList(word6, word7), xdom.getBlocks(wordMatcher, Block.Axes.DESCENDANT));
+
+        xdom.getChildren().remove(1);
+        assertEquals(Collections.emptyList(), xdom.getBlocks(wordMatcher, Block.Axes.DESCENDANT));
+    }
+
+    @Test
+    public void cloneWithBlockIndex()
+    {
+        WordBlock word = new WordBlock("word");
+        ParagraphBlock paragraph = new ParagraphBlock(Arrays.asList(new GroupBlock(Arrays.asList(word))));
+        XDOM xdom = new XDOM(Arrays.asList(paragraph));
+        xdom.setBlockIndexEnabled(true);
+        BlockIndex index = xdom.getBlockIndex();
+        assertSame(index, word.getOwnerIndex());
+
+        // The copy of a part of the XDOM is not indexed in the XDOM
+        Block paragraphClone = paragraph.clone();
+        assertSame(xdom, paragraphClone.getParent());
+        Block wordClone = paragraphClone.getChildren().get(0).getChildren().get(0);
+        assertNull(((AbstractBlock) wordClone).getOwnerIndex());
+        assertNull(((AbstractBlock) paragraphClone).getOwnerIndex());
+
+        // The copy of the XDOM has its own index
+        XDOM clone = xdom.clone();
+        wordClone = clone.getChildren().get(0).getChildren().get(0).getChildren().get(0);
+        assertSame(clone.getBlockIndex(), ((AbstractBlock) wordClone).getOwnerIndex());
+        assertNotSame(index, clone.getBlockIndex());
+        assertSame(index, word.getOwnerIndex());
+
+        // Removed blocks are not indexed anymore
+        paragraph.removeBlock(paragraph.getChildren().get(0));
+        assertNull(word.getOwnerIndex());
+        paragraph.addChild(new GroupBlock(Arrays.asList(word)));
+        assertSame(index, word.getOwnerIndex());
+        assertEquals(Arrays.asList(word), xdom.getBlocks(new ClassBlockMatcher(WordBlock.class), Block.Axes.DESCENDANT));
+
+        // Disabling the index is enough for the blocks to stop using it
+        xdom.setBlockIndexEnabled(false);
+        paragraph.addChild(new WordBlock("other"));
+        xdom.setBlockIndexEnabled(true);
+        assertEquals(2, xdom.getBlocks(new ClassBlockMatcher(WordBlock.class), Block.Axes.DESCENDANT).size());
+    }
+
+    @Test
+    public void getBlocksWithBlockIndexAfterRandomModifications()
+    {
+        Random random = new Random(42);
+        XDOM xdom = new XDOM(Arrays.asList(new ParagraphBlock(Arrays.asList(new WordBlock("word")))));
+        xdom.setBlockIndexEnabled(true);
+
+        List<BlockMatcher> matchers = Arrays.asList(new ClassBlockMatcher(WordBlock.class),
+            new ClassBlockMatcher(GroupBlock.class), new ClassBlockMatcher(AbstractBlock.class));
+        BlockNavigator navigator = new BlockNavigator();
+
+        for (int i = 0; i < 2000; ++i) {
+            List<Block> blocks = navigator.getBlocks(xdom, Block.Axes.DESCENDANT_OR_SELF);
+            Block block = blocks.get(random.nextInt(blocks.size()));
+            Block parent = block.getParent();
+
+            int operation = random.nextInt(8);
+            if (operation == 0 || parent == null) {
+                if (!(block instanceof WordBlock)) {
+                    block.addChild(createRandomBlock(random));
+                }
+            } else if (operation == 6) {
+                // Modify directly the list of children
+                List<Block> children = parent.getChildren();
+                children.add(random.nextInt(children.size() + 1), createRandomBlock(random));
+            } else if (operation == 7) {
+                parent.getChildren().remove(((AbstractBlock) parent).indexOfChild(block));
+            } else if (operation == 1) {
+                parent.insertChildBefore(createRandomBlock(random), block);
+            } else if (operation == 2) {
+                parent.insertChildAfter(createRandomBlock(random), block);
+            } else if (operation == 3) {
+                parent.replaceChild(random.nextBoolean() ? new ArrayList<>(block.getChildren())
+                    : Arrays.asList(createRandomBlock(random), createRandomBlock(random)), block);
+            } else if (operation == 4) {
+                parent.removeBlock(block);
+            } else if (!(block instanceof WordBlock)) {
+                block.setChildren(Arrays.asList(createRandomBlock(random)));
+            }
+
+            for (BlockMatcher matcher : matchers) {
+                assertEquals(new BlockNavigator(matcher).getBlocks(xdom, Block.Axes.DESCENDANT),
+                    xdom.getBlocks(matcher, Block.Axes.DESCENDANT));
+            }
+        }
+    }
+
+    @Test
+    public void hashCodeAfterRandomModifications()
+    {
+        Random random = new Random(42);
+        XDOM xdom = new XDOM(Arrays.asList(new ParagraphBlock(Arrays.asList(new WordBlock("word")))));
+        EmptyLinesBlock emptyLines = new EmptyLinesBlock(1);
+        xdom.addChild(emptyLines);
+        // Clone with a filter to get a copy which does not reuse any cached hash code
+        BlockFilter copyFilter = block -> Collections.singletonList(block);
+        BlockNavigator navigator = new BlockNavigator();
+
+        for (int i = 0; i < 2000; ++i) {
+            int previousHashCode = xdom.hashCode();
+            Block previousXDOM = xdom.clone(copyFilter);
+
+            List<Block> blocks = navigator.getBlocks(xdom, Block.Axes.DESCENDANT);
+            Block block = blocks.get(random.nextInt(blocks.size()));
+            Block parent = block.getParent();
+
+            int operation = random.nextInt(6);
+            if (operation == 0) {
+                block.setParameter("name", String.valueOf(random.nextInt(3)));
+            } else if (operation == 1) {
+                parent.insertChildBefore(createRandomBlock(random), block);
+            } else if (operation == 2 && parent != xdom) {
+                parent.removeBlock(block);
+            } else if (operation == 3) {
+                Block newBlock = createRandomBlock(random);
+                parent.getChildren().add(newBlock);
+                newBlock.setParent(parent);
+            } else if (operation == 4) {
+                emptyLines.setEmptyLinesCount(random.nextInt(3));
+            } else if (!(block instanceof WordBlock)) {
+                block.setChildren(Arrays.asList(createRandomBlock(random)));
+            }
+
+            Block copy = xdom.clone(copyFilter);
+            assertEquals(copy.hashCode(), xdom.hashCode());
+            assertEquals(copy, xdom);
+            // Block#equals() is not symmetric (an empty paragraph is equal to a word without parameters, but not the
+            // opposite)
+            assertEquals(previousXDOM.equals(xdom) && xdom.equals(previousXDOM), previousHashCode == xdom.hashCode());
+        }
+    }
+
+    @Test
+    public void equalsWithCachedHashCode()
+    {
+        ParagraphBlock paragraph1 = new ParagraphBlock(Arrays.asList(new WordBlock("word")));
+        ParagraphBlock paragraph2 = new ParagraphBlock(Arrays.asList(new WordBlock("word")));
+        assertEquals(paragraph1.hashCode(), paragraph2.hashCode());
+        assertEquals(paragraph1, paragraph2);
+
+        paragraph2.getChildren().get(0).setParameter("name", "value");
+        assertNotEquals(paragraph1, paragraph2);
+        assertNotEquals(paragraph1.hashCode(), paragraph2.hashCode());
+
+        paragraph1.getChildren().get(0).setParameter("name", "value");
+        assertEquals(paragraph1, paragraph2);
+
+        // A block without children is equal to a block whose children were removed
+        paragraph2.removeBlock(paragraph2.getChildren().get(0));
+        ParagraphBlock empty = new ParagraphBlock(Collections.emptyList());
+        assertEquals(empty.hashCode(), paragraph2.hashCode());
+        assertEquals(empty, paragraph2);
+    }
+
+    @Test
+    public void equalsAfterModifyingHeldObjects()
+    {
+        XDOM xdom1 = createXDOMWithHeldObjects();
+        XDOM xdom2 = createXDOMWithHeldObjects();
+        assertEquals(xdom1.hashCode(), xdom2.hashCode());
+        assertEquals(xdom1, xdom2);
+
+        // The held objects are not covered by the cached hash codes of the ancestors
+        LinkBlock link = xdom2.getFirstBlock(new ClassBlockMatcher(LinkBlock.class), Block.Axes.DESCENDANT);
+        link.getReference().setReference("Other");
+        assertNotEquals(xdom1, xdom2);
+        assertEquals(xdom1.hashCode(), xdom2.hashCode());
+
+        xdom1.<LinkBlock>getFirstBlock(new ClassBlockMatcher(LinkBlock.class), Block.Axes.DESCENDANT).getReference()
+            .setReference("Other");
+        assertEquals(xdom1, xdom2);
+
+        // Blocks holding different objects when their hash code is cached are still equal once modified to be equal
+        link.getReference().setReference("Page");
+        xdom2.hashCode();
+        link.getReference().setReference("Other");
+        assertEquals(xdom1, xdom2);
+
+        MetaDataBlock metaData = xdom2.getFirstBlock(new ClassBlockMatcher(MetaDataBlock.class), Block.Axes.DESCENDANT);
+        metaData.getMetaData().addMetaData("key", "value");
+        assertNotEquals(xdom1, xdom2);
+        assertNotEquals(xdom2, xdom1);
+    }
+
+    @Test
+    public void hashCodeWithBlockNotCachingItsHashCode()
+    {
+        WordBlock word = new WordBlock("word");
+        Block group = new GroupBlock(Arrays.asList(new ParagraphBlock(Arrays.asList(word))))
+        {
+            @Override
+            public int hashCode()
+            {
+                return getChildren().hashCode();
+            }
+        };
+        XDOM xdom = new XDOM(Arrays.asList(group));
+        int hashCode = xdom.hashCode();
+
+        word.setParameter("name", "value");
+
+        assertNotEquals(hashCode, xdom.hashCode());
+    }
+
+    @Test
+    public void getDescendantModificationCount()
+    {
+        WordBlock word = new WordBlock("word");
+        MacroMarkerBlock macroMarker =
+            new MacroMarkerBlock("macro", Collections.emptyMap(), Collections.emptyList(), false);
+        XDOM xdom = new XDOM(Arrays.asList(new ParagraphBlock(Arrays.asList(word)), macroMarker));
+        DescendantModificationCounter counter = (DescendantModificationCounter) xdom.getChildren();
+        int count = counter.getDescendantModificationCount();
+
+        // Parameters are not counted
+        word.setParameter("name", "value");
+        assertEquals(count, counter.getDescendantModificationCount());
+
+        word.getParent().getChildren().add(new WordBlock("other"));
+        assertNotEquals(count, counter.getDescendantModificationCount());
+
+        // Replacing a block with an equal block is still a modification
+        count = counter.getDescendantModificationCount();
+        xdom.replaceChild(new MacroBlock("macro", Collections.emptyMap(), false), macroMarker);
+        assertNotEquals(count, counter.getDescendantModificationCount());
+    }
+
+    private XDOM createXDOMWithHeldObjects()
+    {
+        LinkBlock link = new LinkBlock(Arrays.asList(new WordBlock("label")),
+            new DocumentResourceReference("Page"), false);
+        MetaDataBlock metaData = new MetaDataBlock(Arrays.asList(new ParagraphBlock(Arrays.asList(link))));
+
+        return new XDOM(Arrays.asList(metaData));
+    }
+
+    @Test
+    public void freezeAndThaw()
+    {
+        WordBlock word = new WordBlock("word");
+        ParagraphBlock paragraph = new ParagraphBlock(Arrays.asList(word, new SpaceBlock()));
+        paragraph.setParameter("name", "value");
+        MacroBlock macro = new MacroBlock("macro", Collections.emptyMap(), false);
+        LinkBlock link = new LinkBlock(Arrays.asList(new WordBlock("label")),
+            new DocumentResourceReference("reference"), false);
+        XDOM xdom = new XDOM(Arrays.asList(paragraph, new ParagraphBlock(Arrays.asList(macro, link))));
+        XDOM original = xdom.clone();
+
+        assertSame(xdom, xdom.freeze());
+        assertTrue(xdom.isFrozen());
+
+        assertThrows(UnsupportedOperationException.class, () -> xdom.addChild(new WordBlock("other")));
+        assertThrows(UnsupportedOperationException.class, () -> paragraph.removeBlock(word));
+        assertThrows(UnsupportedOperationException.class, () -> paragraph.getChildren().clear());
+        assertThrows(UnsupportedOperationException.class, () -> word.setParameter("name", "value"));
+        assertThrows(UnsupportedOperationException.class, () -> xdom.setIdGenerator(null));
+        assertEquals(original, xdom);
+
+        XDOM thawed = xdom.thaw();
+        assertFalse(thawed.isFrozen());
+        assertEquals(original, thawed);
+
+        // Only the copies are modified
+        List<MacroBlock> macros = thawed.getBlocks(new ClassBlockMatcher(MacroBlock.class), Block.Axes.DESCENDANT);
+        assertEquals(1, macros.size());
+        assertNotSame(macro, macros.get(0));
+        assertSame(thawed, macros.get(0).getRoot());
+        macros.get(0).getParent().replaceChild(new WordBlock("result"), macros.get(0));
+
+        Block thawedParagraph = thawed.getChildren().get(0);
+        thawedParagraph.setParameter("name", "other value");
+        thawedParagraph.addChild(new WordBlock("other"));
+
+        LinkBlock thawedLink = thawed.getFirstBlock(new ClassBlockMatcher(LinkBlock.class), Block.Axes.DESCENDANT);
+        assertNotSame(link, thawedLink);
+        assertNotSame(link.getReference(), thawedLink.getReference());
+        assertSame(thawedLink, thawedLink.getChildren().get(0).getParent());
+
+        assertEquals(original, xdom);
+        assertEquals("value", paragraph.getParameter("name"));
+        assertEquals("other value", thawedParagraph.getParameter("name"));
+        assertEquals(3, thawedParagraph.getChildren().size());
+        assertSame(thawedParagraph.getChildren().get(1), thawedParagraph.getChildren().get(2).getPreviousSibling());
+
+        // The frozen XDOM can be thawed several times
+        assertEquals(original, xdom.thaw());
+    }
+
+    @Test
+    public void freezeComputesCachedValues()
+    {
+        WordBlock word = new WordBlock("word");
+        ParagraphBlock paragraph = new ParagraphBlock(Arrays.asList(word));
+        paragraph.insertChildBefore(new WordBlock("first"), word);
+        XDOM xdom = new XDOM(Arrays.asList(createDeepTree(paragraph, DEEP_TREE_DEPTH)));
+        xdom.setBlockIndexEnabled(true);
+
+        xdom.freeze();
+
+        // The positions are known without looking for the blocks in their parent
+        assertEquals(1, word.getChildPosition());
+        // The hash codes are cached, even for a tree too deep to compute them recursively
+        assertEquals(xdom.hashCode(), xdom.hashCode());
+        assertEquals(Arrays.asList(paragraph.getChildren().get(0), word),
+            xdom.getBlocks(new ClassBlockMatcher(WordBlock.class), Block.Axes.DESCENDANT));
+
+        // Adding a frozen block to another block does not change its position in its frozen parent
+        new ParagraphBlock(Arrays.asList(new WordBlock("other"))).getChildren().add(0, word);
+        assertEquals(1, word.getChildPosition());
+    }
+
+    @Test
+    public void traverseThawedXDOM()
+    {
+        XDOM xdom = new XDOM(Arrays.asList(new ParagraphBlock(Arrays.asList(new WordBlock("word"))),
+            new HeaderBlock(Arrays.asList(new WordBlock("header")), HeaderLevel.LEVEL1)));
+        QueueListener expected = new QueueListener();
+        xdom.traverse(expected);
+
+        XDOM thawed = xdom.freeze().thaw();
+        thawed.getChildren().get(1).setParameter("name", "value");
+        QueueListener events = new QueueListener();
+        thawed.traverse(events);
+
+        assertEquals(expected.size(), events.size());
+        QueueListener.Event beginHeader =
+            events.stream().filter(event -> event.eventType == EventType.BEGIN_HEADER).findFirst().get();
+        assertEquals(Collections.singletonMap("name", "value"), beginHeader.eventParameters[2]);
+    }
+
+    private Block createRandomBlock(Random random)
+    {
+        return random.nextBoolean() ? new WordBlock("word")
+            : new GroupBlock(Arrays.asList(new WordBlock("word"), new ParagraphBlock(Collections.emptyList())));
+    }
+
+    private Block createDeepTree(Block deepestBlock, int depth)
+    {
+        Block block = deepestBlock;
+        for (int i = 0; i < depth; ++i) {
+            block = new GroupBlock(Collections.singletonList(block));
+        }
+
+        return block;
+    }
 }
@@ -0,0 +1,148 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.block;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for {@link ChildBlockList}.
+ *
+ * @version $Id$
+ */
+public class ChildBlockListTest
+{
+    @Test
+    public void addGetAndRemove()
+    {
+        ChildBlockList list = new ChildBlockList(0);
+        Block word1 = new WordBlock("word");
+        Block word2 = new WordBlock("word");
+        Block word3 = new WordBlock("word");
+
+        list.add(word1);
+        list.add(word3);
+        list.add(1, word2);
+
+        assertEquals(Arrays.asList(word1, word2, word3), list);
+        assertEquals(1, list.indexOfChild(word2));
+        assertEquals(2, list.indexOfChild(word3));
+        assertEquals(-1, list.indexOfChild(new WordBlock("word")));
+
+        assertSame(word1, list.remove(0));
+        assertEquals(0, list.indexOfChild(word2));
+        assertEquals(1, list.indexOfChild(word3));
+        assertEquals(-1, list.indexOfChild(word1));
+
+        list.clear();
+        assertEquals(Collections.emptyList(), list);
+        assertEquals(-1, list.indexOfChild(word2));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.add(1, word1));
+    }
+
+    @Test
+    public void indexOfChildWhenBlockIsInSeveralLists()
+    {
+        Block word1 = new WordBlock("word1");
+        Block word2 = new WordBlock("word2");
+
+        ChildBlockList list1 = new ChildBlockList(2);
+        list1.add(word1);
+        list1.add(word2);
+
+        ChildBlockList list2 = new ChildBlockList(1);
+        list2.add(word2);
+
+        assertEquals(1, list1.indexOfChild(word2));
+        assertEquals(0, list2.indexOfChild(word2));
+    }
+
+    @Test
+    public void randomModifications()
+    {
+        Random random = new Random(42);
+        ChildBlockList list = new ChildBlockList(1);
+        List<Block> expected = new ArrayList<>();
+
+        for (int i = 0; i < 10000; ++i) {
+            int operation = random.nextInt(5);
+            if (operation < 2 || expected.isEmpty()) {
+                Block block = new WordBlock("word");
+                int index = random.nextInt(expected.size() + 1);
+                expected.add(index, block);
+                list.add(index, block);
+            } else if (operation == 2) {
+                List<Block> blocks = Arrays.asList(new SpaceBlock(), new WordBlock("word"));
+                int index = random.nextInt(expected.size() + 1);
+                expected.addAll(index, blocks);
+                list.addAll(index, blocks);
+            } else if (operation == 3) {
+                int index = random.nextInt(expected.size());
+                assertSame(expected.remove(index), list.remove(index));
+            } else {
+                int index = random.nextInt(expected.size());
+                assertEquals(index, list.indexOfChild(expected.get(index)));
+            }
+
+            assertEquals(expected.size(), list.size());
+        }
+
+        assertEquals(expected, list);
+        for (int i = 0; i < expected.size(); ++i) {
+            assertSame(expected.get(i), list.get(i));
+            assertEquals(i, list.indexOfChild(expected.get(i)));
+        }
+    }
+
+    @Test
+    public void replaceManySiblings()
+    {
+        List<Block> words = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            words.add(new WordBlock("word"));
+        }
+        ParagraphBlock paragraph = new ParagraphBlock(words);
+
+        for (Block word : words) {
+            paragraph.replaceChild(Arrays.asList(new SpaceBlock(), new WordBlock("new")), word);
+        }
+
+        List<Block> children = paragraph.getChildren();
+        assertEquals(2000, children.size());
+        assertNull(children.get(0).getPreviousSibling());
+        for (int i = 1; i < children.size(); ++i) {
+            assertSame(children.get(i - 1), children.get(i).getPreviousSibling());
+            assertSame(children.get(i), children.get(i - 1).getNextSibling());
+        }
+        assertNull(children.get(children.size() - 1).getNextSibling());
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.block.match;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.Block.Axes;
+import org.xwiki.rendering.block.ParagraphBlock;
+import org.xwiki.rendering.block.SpaceBlock;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.block.XDOM;
+
+/**
+ * Micro benchmark comparing {@link Block#getBlocks(BlockMatcher, Axes)} with the lazy
+ * {@link Block#iterator(BlockMatcher, Axes)} and {@link Block#stream(BlockMatcher, Axes)} on a 50k blocks XDOM.
+ * <p>
+ * Not executed by the build. To run it (with the allocation rate):
+ *
+ * <pre>
+ * <code>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main \
+ *   -Dexec.args="BlockNavigatorBenchmark -prof gc"
+ * </code>
+ * </pre>
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockNavigatorBenchmark
+{
+    private static final int PARAGRAPHS = 5000;
+
+    private static final int WORDS = 4;
+
+    private static final BlockMatcher WORD_MATCHER = new ClassBlockMatcher(WordBlock.class);
+
+    private XDOM xdom;
+
+    /**
+     * Create an XDOM made of 5000 paragraphs of 10 blocks each (50001 blocks with the XDOM itself).
+     */
+    @Setup
+    public void setUp()
+    {
+        List<Block> paragraphs = new ArrayList<>(PARAGRAPHS);
+        for (int i = 0; i < PARAGRAPHS; ++i) {
+            List<Block> children = new ArrayList<>();
+            for (int j = 0; j < WORDS; ++j) {
+                if (j > 0) {
+                    children.add(new SpaceBlock());
+                }
+                children.add(new WordBlock("word" + j));
+            }
+            children.add(new SpaceBlock());
+            children.add(new ParagraphBlock(Collections.emptyList()));
+            paragraphs.add(new ParagraphBlock(children));
+        }
+
+        this.xdom = new XDOM(paragraphs);
+    }
+
+    @Benchmark
+    public int getBlocksCount()
+    {
+        return this.xdom.getBlocks(WORD_MATCHER, Axes.DESCENDANT).size();
+    }
+
+    @Benchmark
+    public long streamCount()
+    {
+        return this.xdom.stream(WORD_MATCHER, Axes.DESCENDANT).count();
+    }
+
+    @Benchmark
+    public int iteratorCount()
+    {
+        int count = 0;
+        for (Iterator<Block> it = this.xdom.iterator(WORD_MATCHER, Axes.DESCENDANT); it.hasNext(); it.next()) {
+            ++count;
+        }
+
+        return count;
+    }
+
+    @Benchmark
+    public Block getBlocksFirstTen()
+    {
+        List<Block> blocks = this.xdom.getBlocks(WORD_MATCHER, Axes.DESCENDANT);
+
+        return blocks.get(9);
+    }
+
+    @Benchmark
+    public Block iteratorFirstTen()
+    {
+        Iterator<Block> it = this.xdom.iterator(WORD_MATCHER, Axes.DESCENDANT);
+        for (int i = 0; i < 9; ++i) {
+            it.next();
+        }
+
+        return it.next();
+    }
+}
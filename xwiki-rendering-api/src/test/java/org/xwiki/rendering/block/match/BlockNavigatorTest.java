@@ -19,7 +19,12 @@
  */
 package org.xwiki.rendering.block.match;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -196,4 +201,40 @@ public void testGetFirstBlock()
         Assert.assertNull(navigator.getFirstBlock(contextBlock, Block.Axes.FOLLOWING_SIBLING));
         Assert.assertNull(navigator.getFirstBlock(contextBlock, Block.Axes.SELF));
     }
+
+    @Test
+    public void testIterator()
+    {
+        BlockNavigator navigator = new BlockNavigator();
+
+        for (Block.Axes axes : Block.Axes.values()) {
+            List<Block> blocks = new ArrayList<>();
+            for (Iterator<Block> it = navigator.iterator(contextBlock, axes); it.hasNext();) {
+                blocks.add(it.next());
+            }
+
+            Assert.assertEquals(axes.name(), navigator.getBlocks(contextBlock, axes), blocks);
+            Assert.assertEquals(axes.name(), navigator.getBlocks(contextBlock, axes),
+                contextBlock.stream(AnyBlockMatcher.ANYBLOCKMATCHER, axes).collect(Collectors.toList()));
+        }
+
+        ClassBlockMatcher matcher = new ClassBlockMatcher(WordBlock.class);
+        Assert.assertEquals(Arrays.asList(precedingBlockChild1, precedingBlockChild2),
+            rootBlock.stream(matcher, Block.Axes.DESCENDANT).limit(2).collect(Collectors.toList()));
+        Assert.assertEquals(Arrays.asList(contextBlockChild21, contextBlockChild22),
+            contextBlockChild2.stream(matcher, Block.Axes.CHILD).collect(Collectors.toList()));
+        Assert.assertEquals(Arrays.asList(), contextBlock.stream(matcher, Block.Axes.ANCESTOR_OR_SELF)
+            .collect(Collectors.toList()));
+
+        Iterator<Block> it = contextBlockChild11.iterator(matcher, Block.Axes.SELF);
+        Assert.assertTrue(it.hasNext());
+        Assert.assertSame(contextBlockChild11, it.next());
+        Assert.assertFalse(it.hasNext());
+        try {
+            it.next();
+            Assert.fail("Should have thrown NoSuchElementException");
+        } catch (NoSuchElementException expected) {
+            // Expected
+        }
+    }
 }
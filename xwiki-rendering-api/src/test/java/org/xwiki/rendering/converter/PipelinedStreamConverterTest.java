@@ -0,0 +1,266 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.converter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.listener.MetaData;
+import org.xwiki.rendering.listener.QueueListener;
+import org.xwiki.rendering.listener.WrappingListener;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.StreamParser;
+import org.xwiki.rendering.syntax.Syntax;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link PipelinedStreamConverter}.
+ *
+ * @version $Id$
+ */
+class PipelinedStreamConverterTest
+{
+    private static final ParseException ERROR = new ParseException("error");
+
+    /**
+     * Produce one paragraph per line of the source, and fail on lines starting with "!".
+     */
+    private static class LineParser implements StreamParser
+    {
+        @Override
+        public Syntax getSyntax()
+        {
+            return Syntax.PLAIN_1_0;
+        }
+
+        @Override
+        public void parse(Reader source, Listener listener) throws ParseException
+        {
+            listener.beginDocument(MetaData.EMPTY);
+            int c;
+            boolean inParagraph = false;
+            try {
+                while ((c = source.read()) != -1) {
+                    if (c == '\n') {
+                        listener.endParagraph(Listener.EMPTY_PARAMETERS);
+                        inParagraph = false;
+                    } else {
+                        if (!inParagraph) {
+                            if (c == '!') {
+                                throw ERROR;
+                            }
+                            listener.beginParagraph(Collections.singletonMap("name", "value"));
+                            inParagraph = true;
+                        }
+                        listener.onWord(String.valueOf((char) c));
+                    }
+                }
+            } catch (IOException e) {
+                throw new ParseException("Failed to read", e);
+            }
+            listener.endDocument(MetaData.EMPTY);
+        }
+    }
+
+    private static String lines(int count)
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; ++i) {
+            builder.append("line").append(i).append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    private void assertSameEvents(QueueListener expected, QueueListener actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        Iterator<QueueListener.Event> actualEvents = actual.iterator();
+        for (QueueListener.Event event : expected) {
+            QueueListener.Event actualEvent = actualEvents.next();
+            assertEquals(event.eventType, actualEvent.eventType);
+            assertArrayEquals(event.eventParameters, actualEvent.eventParameters);
+        }
+    }
+
+    @Test
+    void convert() throws ParseException
+    {
+        String source = lines(10000);
+
+        QueueListener expected = new QueueListener();
+        new LineParser().parse(new StringReader(source), expected);
+
+        // A capacity of 1 forces the parser to wait for the listener most of the time
+        for (int capacity : new int[] { 1, PipelinedStreamConverter.DEFAULT_CAPACITY }) {
+            QueueListener actual = new QueueListener();
+            new PipelinedStreamConverter(new LineParser(), capacity).convert(new StringReader(source), actual);
+
+            assertSameEvents(expected, actual);
+        }
+    }
+
+    @Test
+    void convertWithParserError() throws ParseException
+    {
+        String source = lines(1000) + "!error\n" + lines(1000);
+
+        QueueListener expected = new QueueListener();
+        assertSame(ERROR, assertThrows(ParseException.class,
+            () -> new LineParser().parse(new StringReader(source), expected)));
+
+        QueueListener actual = new QueueListener();
+        assertSame(ERROR, assertThrows(ParseException.class,
+            () -> new PipelinedStreamConverter(new LineParser()).convert(new StringReader(source), actual)));
+
+        assertSameEvents(expected, actual);
+    }
+
+    @Test
+    void convertWithListenerError()
+    {
+        // An endless source: the parser has to be stopped when the listener fails
+        Reader source = new Reader()
+        {
+            private long position;
+
+            @Override
+            public int read(char[] buffer, int offset, int length)
+            {
+                for (int i = 0; i < length; ++i) {
+                    buffer[offset + i] = ++this.position % 10 == 0 ? '\n' : 'a';
+                }
+
+                return length;
+            }
+
+            @Override
+            public void close()
+            {
+                // Nothing to close
+            }
+        };
+
+        IllegalStateException error = new IllegalStateException("error");
+        Listener listener = new WrappingListener()
+        {
+            private int words;
+
+            @Override
+            public void onWord(String word)
+            {
+                if (++this.words == 10000) {
+                    throw error;
+                }
+            }
+        };
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> assertSame(error,
+            assertThrows(IllegalStateException.class,
+                () -> new PipelinedStreamConverter(new LineParser(), 2).convert(source, listener))));
+    }
+
+    @Test
+    void convertWithParserFatalError()
+    {
+        Error error = new Error("fatal");
+        StreamParser parser = new LineParser()
+        {
+            @Override
+            public void parse(Reader source, Listener listener)
+            {
+                throw error;
+            }
+        };
+
+        // The error is not wrapped
+        assertSame(error, assertThrows(Error.class,
+            () -> new PipelinedStreamConverter(parser).convert(new StringReader("line"), new QueueListener())));
+    }
+
+    @Test
+    void convertWithExecutorAndContext() throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Execution execution = mock(Execution.class);
+        ExecutionContext context = new ExecutionContext();
+        when(execution.getContext()).thenReturn(context);
+
+        ClassLoader classLoader = new ClassLoader(getClass().getClassLoader())
+        {
+        };
+        ClassLoader[] parserClassLoader = new ClassLoader[1];
+        StreamParser parser = new LineParser()
+        {
+            @Override
+            public void parse(Reader source, Listener listener) throws ParseException
+            {
+                parserClassLoader[0] = Thread.currentThread().getContextClassLoader();
+
+                super.parse(source, listener);
+            }
+        };
+
+        Thread thread = Thread.currentThread();
+        ClassLoader previousClassLoader = thread.getContextClassLoader();
+        // Make sure the executor thread is created with the initial context class loader
+        executor.submit(() -> { }).get();
+        thread.setContextClassLoader(classLoader);
+        try {
+            QueueListener actual = new QueueListener();
+            new PipelinedStreamConverter(parser, 1, executor, execution).convert(new StringReader(lines(1000)),
+                actual);
+
+            QueueListener expected = new QueueListener();
+            new LineParser().parse(new StringReader(lines(1000)), expected);
+            assertSameEvents(expected, actual);
+        } finally {
+            thread.setContextClassLoader(previousClassLoader);
+        }
+
+        assertSame(classLoader, parserClassLoader[0]);
+        InOrder inOrder = inOrder(execution);
+        inOrder.verify(execution).pushContext(context);
+        inOrder.verify(execution).popContext();
+
+        // The executor thread got back its own context class loader
+        assertSame(previousClassLoader, executor.submit(() -> Thread.currentThread().getContextClassLoader()).get());
+        executor.shutdown();
+    }
+}
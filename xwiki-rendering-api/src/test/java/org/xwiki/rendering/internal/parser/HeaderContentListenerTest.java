@@ -0,0 +1,153 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.parser;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.rendering.listener.Format;
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.listener.MetaData;
+import org.xwiki.rendering.listener.QueueListener;
+import org.xwiki.rendering.listener.reference.DocumentResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.renderer.PrintRenderer;
+import org.xwiki.rendering.renderer.PrintRendererFactory;
+import org.xwiki.rendering.renderer.printer.WikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Unit tests for {@link HeaderContentListener}.
+ *
+ * @version $Id$
+ */
+class HeaderContentListenerTest
+{
+    private static final ResourceReference REFERENCE = new DocumentResourceReference("Page");
+
+    /**
+     * Collect the events it receives and prints a fixed text.
+     */
+    private static class QueuePrintRenderer extends QueueListener implements PrintRenderer
+    {
+        private WikiPrinter printer;
+
+        QueuePrintRenderer(WikiPrinter printer)
+        {
+            this.printer = printer;
+            this.printer.print("rendered");
+        }
+
+        @Override
+        public WikiPrinter getPrinter()
+        {
+            return this.printer;
+        }
+
+        @Override
+        public void setPrinter(WikiPrinter printer)
+        {
+            this.printer = printer;
+        }
+    }
+
+    /**
+     * Create {@link QueuePrintRenderer}s.
+     */
+    private static class QueuePrintRendererFactory implements PrintRendererFactory
+    {
+        private QueuePrintRenderer renderer;
+
+        @Override
+        public Syntax getSyntax()
+        {
+            return Syntax.PLAIN_1_0;
+        }
+
+        @Override
+        public PrintRenderer createRenderer(WikiPrinter printer)
+        {
+            this.renderer = new QueuePrintRenderer(printer);
+
+            return this.renderer;
+        }
+    }
+
+    @Test
+    void getTextOfInlineContent()
+    {
+        HeaderContentListener listener = new HeaderContentListener();
+        listener.onWord("word");
+        listener.onSpace();
+        listener.beginFormat(Format.BOLD, Listener.EMPTY_PARAMETERS);
+        listener.onSpecialSymbol('!');
+        listener.endFormat(Format.BOLD, Listener.EMPTY_PARAMETERS);
+        listener.onMacro("macro", Listener.EMPTY_PARAMETERS, "content", true);
+        listener.onVerbatim("verbatim", true, Listener.EMPTY_PARAMETERS);
+        listener.onRawText("<raw/>", Syntax.HTML_4_01);
+        listener.onRawText("raw", Syntax.PLAIN_1_0);
+        listener.beginLink(REFERENCE, false, Listener.EMPTY_PARAMETERS);
+        listener.onWord("label");
+        listener.endLink(REFERENCE, false, Listener.EMPTY_PARAMETERS);
+
+        QueuePrintRendererFactory factory = new QueuePrintRendererFactory();
+        assertEquals("word !verbatimrawlabel", listener.getText(factory));
+        // The text was collected without renderer
+        assertNull(factory.renderer);
+
+        // The events are still buffered
+        QueueListener events = new QueueListener();
+        listener.consumeEvents(events);
+        assertEquals(12, events.size());
+    }
+
+    @Test
+    void getTextOfLinkWithoutLabel()
+    {
+        HeaderContentListener listener = new HeaderContentListener();
+        listener.onWord("before");
+        listener.beginLink(REFERENCE, false, Listener.EMPTY_PARAMETERS);
+        listener.beginMetaData(MetaData.EMPTY);
+        listener.endMetaData(MetaData.EMPTY);
+        listener.endLink(REFERENCE, false, Listener.EMPTY_PARAMETERS);
+
+        QueuePrintRendererFactory factory = new QueuePrintRendererFactory();
+        assertEquals("rendered", listener.getText(factory));
+        // The renderer received all the events
+        assertEquals(5, factory.renderer.size());
+
+        // The events are still buffered
+        assertEquals(5, listener.size());
+    }
+
+    @Test
+    void getTextOfBlockContent()
+    {
+        HeaderContentListener listener = new HeaderContentListener();
+        listener.beginParagraph(Collections.emptyMap());
+        listener.onWord("word");
+        listener.endParagraph(Collections.emptyMap());
+
+        assertEquals("rendered", listener.getText(new QueuePrintRendererFactory()));
+    }
+}
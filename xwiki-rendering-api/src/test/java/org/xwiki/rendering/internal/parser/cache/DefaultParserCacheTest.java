@@ -0,0 +1,271 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.parser.cache;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.ParagraphBlock;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.parser.cache.CachingParser;
+import org.xwiki.rendering.parser.cache.ParserCacheConfiguration;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultParserCache}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class DefaultParserCacheTest
+{
+    @InjectMockComponents
+    private DefaultParserCache cache;
+
+    @MockComponent
+    private ParserCacheConfiguration configuration;
+
+    /**
+     * Produce one paragraph per line of the source, and count the calls.
+     */
+    private static class LineParser implements Parser
+    {
+        private final Syntax syntax;
+
+        private int calls;
+
+        private Reader source;
+
+        LineParser(Syntax syntax)
+        {
+            this.syntax = syntax;
+        }
+
+        @Override
+        public Syntax getSyntax()
+        {
+            return this.syntax;
+        }
+
+        @Override
+        public XDOM parse(Reader source) throws ParseException
+        {
+            ++this.calls;
+            this.source = source;
+
+            List<Block> paragraphs = new ArrayList<>();
+            try {
+                StringBuilder line = new StringBuilder();
+                for (int c = source.read(); c != -1; c = source.read()) {
+                    if (c == '!') {
+                        throw new ParseException("error");
+                    } else if (c == '\n') {
+                        paragraphs.add(new ParagraphBlock(Arrays.<Block>asList(new WordBlock(line.toString()))));
+                        line.setLength(0);
+                    } else {
+                        line.append((char) c);
+                    }
+                }
+            } catch (IOException e) {
+                throw new ParseException("Failed to read", e);
+            }
+
+            return new XDOM(paragraphs);
+        }
+    }
+
+    private LineParser parser;
+
+    @BeforeEach
+    void setUp()
+    {
+        this.parser = new LineParser(Syntax.XWIKI_2_1);
+
+        when(this.configuration.getCachedSyntaxes()).thenReturn(Collections.singletonList("xwiki/2.1"));
+        when(this.configuration.getMemoryBudget()).thenReturn(1000000L);
+    }
+
+    @Test
+    void parse() throws ParseException
+    {
+        XDOM first = this.cache.parse(this.parser, "a\nb\n");
+        XDOM second = this.cache.parse(this.parser, "a\nb\n");
+
+        assertEquals(1, this.parser.calls);
+        assertEquals(1, this.cache.getMissCount());
+        assertEquals(1, this.cache.getHitCount());
+        assertEquals(1, this.cache.getSize());
+        assertTrue(this.cache.getWeight() > 0);
+
+        assertNotSame(first, second);
+        assertFalse(first.isFrozen());
+        assertFalse(second.isFrozen());
+        assertEquals(first, second);
+
+        // Modifying a result does not affect the next ones
+        Block paragraph = first.getChildren().get(0);
+        paragraph.replaceChild(new WordBlock("c"), paragraph.getChildren().get(0));
+        first.addChild(new ParagraphBlock(Collections.<Block>emptyList()));
+        XDOM third = this.cache.parse(this.parser, "a\nb\n");
+        assertEquals(second, third);
+        assertEquals(2, third.getChildren().size());
+
+        // Another content or another syntax is another entry
+        this.cache.parse(this.parser, "a\n");
+        when(this.configuration.getCachedSyntaxes()).thenReturn(Arrays.asList("xwiki/2.1", "xwiki/2.0"));
+        this.cache.parse(new LineParser(Syntax.XWIKI_2_0), "a\nb\n");
+        assertEquals(3, this.cache.getMissCount());
+        assertEquals(3, this.cache.getSize());
+
+        this.cache.clear();
+        assertEquals(0, this.cache.getSize());
+        assertEquals(0, this.cache.getWeight());
+        this.cache.parse(this.parser, "a\nb\n");
+        assertEquals(3, this.parser.calls);
+    }
+
+    @Test
+    void parseWithAnotherParserImplementation() throws ParseException
+    {
+        // Another implementation of the parser of the same syntax (for example overriding the default one)
+        LineParser otherParser = new LineParser(Syntax.XWIKI_2_1)
+        {
+            @Override
+            public XDOM parse(Reader source) throws ParseException
+            {
+                XDOM xdom = super.parse(source);
+                xdom.addChild(new ParagraphBlock(Collections.<Block>emptyList()));
+
+                return xdom;
+            }
+        };
+
+        XDOM xdom = this.cache.parse(this.parser, "a\n");
+        XDOM otherXDOM = this.cache.parse(otherParser, "a\n");
+
+        assertEquals(1, this.parser.calls);
+        assertEquals(1, otherParser.calls);
+        assertEquals(1, xdom.getChildren().size());
+        assertEquals(2, otherXDOM.getChildren().size());
+        assertEquals(2, this.cache.getSize());
+
+        assertEquals(2, this.cache.parse(otherParser, "a\n").getChildren().size());
+        assertEquals(1, otherParser.calls);
+    }
+
+    @Test
+    void parseNotCachedSyntax() throws ParseException
+    {
+        LineParser plainParser = new LineParser(Syntax.PLAIN_1_0);
+        this.cache.parse(plainParser, "a\n");
+        this.cache.parse(plainParser, "a\n");
+
+        assertEquals(2, plainParser.calls);
+        assertEquals(0, this.cache.getMissCount());
+        assertEquals(0, this.cache.getSize());
+    }
+
+    @Test
+    void parseWithError()
+    {
+        assertThrows(ParseException.class, () -> this.cache.parse(this.parser, "a\n!\n"));
+        assertThrows(ParseException.class, () -> this.cache.parse(this.parser, "a\n!\n"));
+
+        assertEquals(2, this.parser.calls);
+        assertEquals(0, this.cache.getSize());
+    }
+
+    @Test
+    void evict() throws ParseException
+    {
+        this.cache.parse(this.parser, "a\n");
+        long weight = this.cache.getWeight();
+
+        // Room for two entries of the same weight
+        when(this.configuration.getMemoryBudget()).thenReturn(weight * 2);
+
+        this.cache.parse(this.parser, "b\n");
+        // Make "b" the least recently used entry
+        this.cache.parse(this.parser, "a\n");
+        this.cache.parse(this.parser, "c\n");
+
+        assertEquals(1, this.cache.getEvictionCount());
+        assertEquals(2, this.cache.getSize());
+        assertEquals(weight * 2, this.cache.getWeight());
+
+        this.cache.parse(this.parser, "a\n");
+        this.cache.parse(this.parser, "c\n");
+        assertEquals(3, this.parser.calls);
+        this.cache.parse(this.parser, "b\n");
+        assertEquals(4, this.parser.calls);
+
+        // A content bigger than the budget is not cached
+        XDOM big = this.cache.parse(this.parser, "a\nb\nc\nd\n");
+        assertFalse(big.isFrozen());
+        assertEquals(2, this.cache.getSize());
+        assertEquals(2, this.cache.getEvictionCount());
+    }
+
+    @Test
+    void cachingParser() throws ParseException
+    {
+        CachingParser cachingParser = new CachingParser(this.parser, this.cache, this.configuration);
+
+        assertSame(Syntax.XWIKI_2_1, cachingParser.getSyntax());
+        assertEquals(cachingParser.parse(new StringReader("a\n")), cachingParser.parse(new StringReader("a\n")));
+        assertEquals(1, this.parser.calls);
+        assertEquals(1, this.cache.getHitCount());
+    }
+
+    @Test
+    void cachingParserWithSyntaxNotCached() throws ParseException
+    {
+        LineParser xwiki20Parser = new LineParser(Syntax.XWIKI_2_0);
+        CachingParser cachingParser = new CachingParser(xwiki20Parser, this.cache, this.configuration);
+
+        // The content is not read before being parsed
+        Reader source = new StringReader("a\n");
+        assertEquals(1, cachingParser.parse(source).getChildren().size());
+        assertSame(source, xwiki20Parser.source);
+        assertEquals(0, this.cache.getMissCount());
+    }
+}
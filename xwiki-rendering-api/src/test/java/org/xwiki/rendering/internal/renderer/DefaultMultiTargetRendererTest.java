@@ -0,0 +1,149 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.renderer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.ParagraphBlock;
+import org.xwiki.rendering.block.SpaceBlock;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.listener.WrappingListener;
+import org.xwiki.rendering.renderer.PrintRenderer;
+import org.xwiki.rendering.renderer.PrintRendererFactory;
+import org.xwiki.rendering.renderer.printer.WikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultMultiTargetRenderer}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class DefaultMultiTargetRendererTest
+{
+    @InjectMockComponents
+    private DefaultMultiTargetRenderer multiTargetRenderer;
+
+    @MockComponent
+    @Named("context")
+    private Provider<ComponentManager> componentManagerProvider;
+
+    private ComponentManager componentManager;
+
+    /**
+     * Print the words with a prefix identifying the renderer.
+     */
+    private static class TestPrintRenderer extends WrappingListener implements PrintRenderer
+    {
+        private final String prefix;
+
+        private WikiPrinter printer;
+
+        TestPrintRenderer(String prefix, WikiPrinter printer)
+        {
+            this.prefix = prefix;
+            this.printer = printer;
+        }
+
+        @Override
+        public WikiPrinter getPrinter()
+        {
+            return this.printer;
+        }
+
+        @Override
+        public void setPrinter(WikiPrinter printer)
+        {
+            this.printer = printer;
+        }
+
+        @Override
+        public void onWord(String word)
+        {
+            this.printer.print(this.prefix + word);
+        }
+
+        @Override
+        public void onSpace()
+        {
+            this.printer.print(" ");
+        }
+    }
+
+    private void registerRenderer(Syntax syntax, String prefix) throws ComponentLookupException
+    {
+        PrintRendererFactory factory = mock(PrintRendererFactory.class, syntax.toIdString());
+        when(factory.createRenderer(any()))
+            .then(invocation -> new TestPrintRenderer(prefix, invocation.getArgument(0)));
+        when(this.componentManager.getInstance(PrintRendererFactory.class, syntax.toIdString())).thenReturn(factory);
+    }
+
+    @BeforeEach
+    void setUp()
+    {
+        this.componentManager = mock(ComponentManager.class);
+        when(this.componentManagerProvider.get()).thenReturn(this.componentManager);
+    }
+
+    @Test
+    void render() throws Exception
+    {
+        registerRenderer(Syntax.XHTML_1_0, "x:");
+        registerRenderer(Syntax.PLAIN_1_0, "p:");
+
+        Block block = new ParagraphBlock(Arrays.asList(new WordBlock("one"), new SpaceBlock(), new WordBlock("two")));
+        Map<Syntax, WikiPrinter> printers =
+            this.multiTargetRenderer.render(block, Arrays.asList(Syntax.PLAIN_1_0, Syntax.XHTML_1_0));
+
+        assertEquals(Arrays.asList(Syntax.PLAIN_1_0, Syntax.XHTML_1_0), Arrays.asList(printers.keySet().toArray()));
+        assertEquals("p:one p:two", printers.get(Syntax.PLAIN_1_0).toString());
+        assertEquals("x:one x:two", printers.get(Syntax.XHTML_1_0).toString());
+    }
+
+    @Test
+    void renderWithUnknownSyntax() throws Exception
+    {
+        registerRenderer(Syntax.PLAIN_1_0, "p:");
+        when(this.componentManager.getInstance(PrintRendererFactory.class, Syntax.XHTML_1_0.toIdString()))
+            .thenThrow(new ComponentLookupException("error"));
+
+        assertThrows(ComponentLookupException.class, () -> this.multiTargetRenderer.render(
+            Collections.singletonList(new WordBlock("word")), Arrays.asList(Syntax.PLAIN_1_0, Syntax.XHTML_1_0)));
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.listener;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.rendering.listener.chaining.EventType;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+import org.xwiki.rendering.syntax.Syntax;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link ArrayQueueListener}.
+ *
+ * @version $Id$
+ */
+class ArrayQueueListenerTest
+{
+    private static final Map<String, String> PARAMETERS = Collections.singletonMap("name", "value");
+
+    private static final ResourceReference REFERENCE = new ResourceReference("image.png", ResourceType.URL);
+
+    private void sendEvents(Listener listener)
+    {
+        listener.beginDocument(MetaData.EMPTY);
+        listener.beginHeader(HeaderLevel.LEVEL1, "Hid", PARAMETERS);
+        listener.beginListItem();
+        listener.beginListItem(PARAMETERS);
+        listener.beginLink(REFERENCE, true, PARAMETERS);
+        listener.onImage(REFERENCE, false, PARAMETERS);
+        listener.beginMacroMarker("macro", PARAMETERS, "content", true);
+        listener.onMacro("macro", PARAMETERS, null, false);
+        listener.onVerbatim("verbatim", true, PARAMETERS);
+        listener.onSpecialSymbol('!');
+        listener.onEmptyLines(3);
+        listener.onRawText("raw", Syntax.XHTML_1_0);
+        listener.beginFormat(Format.BOLD, PARAMETERS);
+        listener.onWord("word");
+        listener.onSpace();
+        listener.endListItem(PARAMETERS);
+        listener.endDocument(MetaData.EMPTY);
+    }
+
+    private void assertSameEvents(QueueListener expected, QueueListener actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).eventType, actual.get(i).eventType);
+            assertArrayEquals(expected.get(i).eventParameters, actual.get(i).eventParameters);
+        }
+    }
+
+    @Test
+    void consumeEvents()
+    {
+        QueueListener expected = new QueueListener();
+        sendEvents(expected);
+
+        ArrayQueueListener queue = new ArrayQueueListener();
+        sendEvents(queue);
+        assertEquals(expected.size(), queue.size());
+
+        for (int i = 1; i <= expected.size(); ++i) {
+            assertEquals(expected.getEvent(i).eventType, queue.getEventType(i));
+            assertEquals(expected.getEvent(i).eventType, queue.getEvent(i).eventType);
+            assertArrayEquals(expected.getEvent(i).eventParameters, queue.getEvent(i).eventParameters);
+        }
+        assertNull(queue.getEventType(0));
+        assertNull(queue.getEvent(expected.size() + 1));
+
+        QueueListener actual = new QueueListener();
+        queue.consumeEvents(actual);
+
+        assertTrue(queue.isEmpty());
+        assertSameEvents(expected, actual);
+        assertThrows(NoSuchElementException.class, () -> queue.consumeEvent(actual));
+    }
+
+    @Test
+    void fireEvents()
+    {
+        QueueListener expected = new QueueListener();
+        sendEvents(expected);
+
+        ArrayQueueListener queue = new ArrayQueueListener();
+        // Move the head so that the events wrap around the end of the buffer
+        for (int i = 0; i < 10; ++i) {
+            queue.onWord("word" + i);
+            queue.consumeEvent(new QueueListener());
+        }
+        sendEvents(queue);
+
+        // The events can be sent several times
+        for (int i = 0; i < 2; ++i) {
+            QueueListener actual = new QueueListener();
+            queue.fireEvents(actual);
+
+            assertEquals(expected.size(), queue.size());
+            assertSameEvents(expected, actual);
+        }
+    }
+
+    @Test
+    void growAndWrap()
+    {
+        ArrayQueueListener queue = new ArrayQueueListener();
+        QueueListener actual = new QueueListener();
+
+        // Move the head in the middle of the buffer before it grows
+        for (int i = 0; i < 10; ++i) {
+            queue.onWord("word" + i);
+            queue.consumeEvent(actual);
+        }
+        for (int i = 0; i < 100; ++i) {
+            queue.onEmptyLines(i);
+        }
+
+        assertEquals(100, queue.size());
+        queue.consumeEvents(actual);
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(EventType.ON_EMPTY_LINES, actual.get(10 + i).eventType);
+            assertEquals(i, actual.get(10 + i).eventParameters[0]);
+        }
+    }
+
+    @Test
+    void transferStart()
+    {
+        ArrayQueueListener queue = new ArrayQueueListener();
+        ArrayQueueListener other = new ArrayQueueListener();
+        QueueListener actual = new QueueListener();
+
+        queue.onWord("first");
+        queue.consumeEvent(actual);
+        for (int i = 0; i < 10; ++i) {
+            queue.onWord("word" + i);
+        }
+        for (int i = 0; i < 20; ++i) {
+            other.onEmptyLines(i);
+        }
+
+        queue.transferStart(other);
+
+        assertTrue(other.isEmpty());
+        assertEquals(30, queue.size());
+        assertEquals(EventType.ON_EMPTY_LINES, queue.getEventType(1));
+        assertEquals(EventType.ON_WORD, queue.getEventType(21));
+
+        actual.clear();
+        queue.consumeEvents(actual);
+        for (int i = 0; i < 20; ++i) {
+            assertEquals(i, actual.get(i).eventParameters[0]);
+        }
+        for (int i = 0; i < 10; ++i) {
+            assertEquals("word" + i, actual.get(20 + i).eventParameters[0]);
+        }
+    }
+}
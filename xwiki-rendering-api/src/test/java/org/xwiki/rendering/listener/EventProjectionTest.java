@@ -0,0 +1,129 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.listener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.rendering.listener.chaining.EventType;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for {@link EventProjection}.
+ *
+ * @version $Id$
+ */
+class EventProjectionTest
+{
+    private static final ResourceReference REFERENCE = new ResourceReference("Page", ResourceType.DOCUMENT);
+
+    private void sendEvents(Listener listener)
+    {
+        listener.beginDocument(MetaData.EMPTY);
+        listener.beginHeader(HeaderLevel.LEVEL1, "Htitle", Listener.EMPTY_PARAMETERS);
+        listener.onWord("title");
+        listener.beginLink(REFERENCE, false, Listener.EMPTY_PARAMETERS);
+        listener.onWord("label");
+        listener.endLink(REFERENCE, false, Listener.EMPTY_PARAMETERS);
+        listener.endHeader(HeaderLevel.LEVEL1, "Htitle", Listener.EMPTY_PARAMETERS);
+        listener.beginParagraph(Listener.EMPTY_PARAMETERS);
+        listener.onWord("text");
+        listener.onSpace();
+        listener.beginLink(REFERENCE, true, Listener.EMPTY_PARAMETERS);
+        listener.endLink(REFERENCE, true, Listener.EMPTY_PARAMETERS);
+        listener.endParagraph(Listener.EMPTY_PARAMETERS);
+        listener.endDocument(MetaData.EMPTY);
+    }
+
+    private List<Object> project(EventProjection projection)
+    {
+        QueueListener queue = new QueueListener();
+        sendEvents(projection.compile(queue));
+
+        List<Object> events = new ArrayList<>();
+        for (QueueListener.Event event : queue) {
+            events.add(event.eventType);
+            if (event.eventType == EventType.ON_WORD) {
+                events.add(event.eventParameters[0]);
+            }
+        }
+
+        return events;
+    }
+
+    @Test
+    void include()
+    {
+        assertEquals(Arrays.asList(EventType.BEGIN_LINK, EventType.END_LINK, EventType.BEGIN_LINK, EventType.END_LINK),
+            project(new EventProjection().include(EventType.BEGIN_LINK, EventType.END_LINK)));
+        assertEquals(Arrays.asList(), project(new EventProjection()));
+    }
+
+    @Test
+    void includeWithin()
+    {
+        EventProjection projection = new EventProjection().include(EventType.BEGIN_LINK, EventType.END_LINK)
+            .includeWithin(EventType.BEGIN_HEADER, EventType.ON_WORD, EventType.END_LINK);
+
+        assertEquals(Arrays.asList(EventType.ON_WORD, "title", EventType.BEGIN_LINK, EventType.ON_WORD, "label",
+            EventType.END_LINK, EventType.BEGIN_LINK, EventType.END_LINK), project(projection));
+
+        // The container events are not part of the container
+        assertEquals(Arrays.asList(), project(
+            new EventProjection().includeWithin(EventType.BEGIN_HEADER, EventType.BEGIN_HEADER, EventType.END_HEADER)));
+    }
+
+    @Test
+    void includeWithinNestedContainers()
+    {
+        QueueListener queue = new QueueListener();
+        Listener listener = new EventProjection().includeWithin(EventType.BEGIN_GROUP, EventType.ON_SPACE,
+            EventType.BEGIN_GROUP, EventType.END_GROUP).compile(queue);
+
+        listener.onSpace();
+        listener.beginGroup(Listener.EMPTY_PARAMETERS);
+        listener.beginGroup(Listener.EMPTY_PARAMETERS);
+        listener.onSpace();
+        listener.endGroup(Listener.EMPTY_PARAMETERS);
+        listener.onSpace();
+        listener.endGroup(Listener.EMPTY_PARAMETERS);
+        listener.onSpace();
+
+        assertEquals(4, queue.size());
+        assertEquals(EventType.BEGIN_GROUP, queue.get(0).eventType);
+        assertEquals(EventType.ON_SPACE, queue.get(1).eventType);
+        assertEquals(EventType.END_GROUP, queue.get(2).eventType);
+        assertEquals(EventType.ON_SPACE, queue.get(3).eventType);
+    }
+
+    @Test
+    void includeWithinInvalidContainer()
+    {
+        EventProjection projection = new EventProjection();
+
+        assertThrows(IllegalArgumentException.class, () -> projection.includeWithin(EventType.ON_WORD));
+    }
+}
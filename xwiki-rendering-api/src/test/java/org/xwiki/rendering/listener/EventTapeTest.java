@@ -0,0 +1,191 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.listener;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.BulletedListBlock;
+import org.xwiki.rendering.block.DefinitionDescriptionBlock;
+import org.xwiki.rendering.block.DefinitionListBlock;
+import org.xwiki.rendering.block.DefinitionTermBlock;
+import org.xwiki.rendering.block.EmptyLinesBlock;
+import org.xwiki.rendering.block.FigureBlock;
+import org.xwiki.rendering.block.FigureCaptionBlock;
+import org.xwiki.rendering.block.FormatBlock;
+import org.xwiki.rendering.block.GroupBlock;
+import org.xwiki.rendering.block.HeaderBlock;
+import org.xwiki.rendering.block.HorizontalLineBlock;
+import org.xwiki.rendering.block.IdBlock;
+import org.xwiki.rendering.block.ImageBlock;
+import org.xwiki.rendering.block.LinkBlock;
+import org.xwiki.rendering.block.ListItemBlock;
+import org.xwiki.rendering.block.MacroBlock;
+import org.xwiki.rendering.block.MacroMarkerBlock;
+import org.xwiki.rendering.block.MetaDataBlock;
+import org.xwiki.rendering.block.NewLineBlock;
+import org.xwiki.rendering.block.NumberedListBlock;
+import org.xwiki.rendering.block.ParagraphBlock;
+import org.xwiki.rendering.block.QuotationBlock;
+import org.xwiki.rendering.block.QuotationLineBlock;
+import org.xwiki.rendering.block.RawBlock;
+import org.xwiki.rendering.block.SectionBlock;
+import org.xwiki.rendering.block.SpaceBlock;
+import org.xwiki.rendering.block.SpecialSymbolBlock;
+import org.xwiki.rendering.block.TableBlock;
+import org.xwiki.rendering.block.TableCellBlock;
+import org.xwiki.rendering.block.TableHeadCellBlock;
+import org.xwiki.rendering.block.TableRowBlock;
+import org.xwiki.rendering.block.VerbatimBlock;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.listener.chaining.EventType;
+import org.xwiki.rendering.listener.reference.DocumentResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+import org.xwiki.rendering.parser.StreamParser;
+import org.xwiki.rendering.syntax.Syntax;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Unit tests for {@link EventTape} and {@link EventTapeRecorder}.
+ *
+ * @version $Id$
+ */
+class EventTapeTest
+{
+    private static final Map<String, String> PARAMETERS = Collections.singletonMap("name", "value");
+
+    private XDOM createXDOM()
+    {
+        List<Block> words = Arrays.asList(new WordBlock("word"), new SpaceBlock(), new SpecialSymbolBlock('!'));
+        ResourceReference reference = new DocumentResourceReference("Space.Page");
+        reference.setParameter("anchor", "section");
+
+        return new XDOM(Arrays.asList(
+            new SectionBlock(Arrays.asList(
+                new HeaderBlock(Arrays.asList(new WordBlock("header")), HeaderLevel.LEVEL2, PARAMETERS, "Hheader"),
+                new ParagraphBlock(Arrays.asList(new FormatBlock(words, Format.BOLD), new NewLineBlock(),
+                    new LinkBlock(Arrays.asList(new WordBlock("label")), reference, false, PARAMETERS),
+                    new ImageBlock(new ResourceReference("image.png", ResourceType.URL), true),
+                    new IdBlock("id"), new VerbatimBlock("{{verbatim}}", PARAMETERS, true),
+                    new MacroBlock("macro", PARAMETERS, "content", true)), PARAMETERS))),
+            new EmptyLinesBlock(2),
+            new BulletedListBlock(Arrays.asList(new ListItemBlock(Arrays.asList(new WordBlock("item")), PARAMETERS))),
+            new NumberedListBlock(Arrays.asList(new ListItemBlock(Arrays.asList(new WordBlock("item"))))),
+            new DefinitionListBlock(Arrays.asList(new DefinitionTermBlock(Arrays.asList(new WordBlock("term"))),
+                new DefinitionDescriptionBlock(Arrays.asList(new WordBlock("description"))))),
+            new TableBlock(Arrays.asList(new TableRowBlock(Arrays.asList(
+                new TableHeadCellBlock(Arrays.asList(new WordBlock("head")), PARAMETERS),
+                new TableCellBlock(Arrays.asList(new WordBlock("cell")))))), PARAMETERS),
+            new QuotationBlock(Arrays.asList(new QuotationLineBlock(Arrays.asList(new WordBlock("quote"))))),
+            new HorizontalLineBlock(),
+            new MacroMarkerBlock("macro", PARAMETERS, null,
+                Arrays.asList(new GroupBlock(Arrays.asList(new RawBlock("<br/>", Syntax.XHTML_1_0)))), false),
+            new MetaDataBlock(Arrays.asList(new FigureBlock(Arrays.asList(
+                new FigureCaptionBlock(Arrays.asList(new WordBlock("caption")))))), MetaData.SOURCE, "source")));
+    }
+
+    private void assertSameEvents(QueueListener expected, QueueListener actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).eventType, actual.get(i).eventType);
+            assertArrayEquals(expected.get(i).eventParameters, actual.get(i).eventParameters);
+        }
+    }
+
+    @Test
+    void recordXDOM()
+    {
+        XDOM xdom = createXDOM();
+        QueueListener expected = new QueueListener();
+        xdom.traverse(expected);
+
+        EventTape tape = EventTape.record(xdom);
+        // Including the figure events, which are not stored by QueueListener
+        assertEquals(69, tape.size());
+
+        QueueListener events = new QueueListener();
+        tape.replay(events);
+        assertSameEvents(expected, events);
+
+        // The tape does not depend on the XDOM
+        ((LinkBlock) xdom.getChildren().get(0).getChildren().get(1).getChildren().get(2)).getReference()
+            .setReference("Other.Page");
+        xdom.getChildren().get(0).setParameter("name", "value");
+
+        expected = new QueueListener();
+        createXDOM().traverse(expected);
+        QueueListener secondEvents = new QueueListener();
+        tape.replay(secondEvents);
+        assertSameEvents(expected, secondEvents);
+
+        // The same parameters are stored once
+        assertEquals(EventType.BEGIN_PARAGRAPH, events.get(5).eventType);
+        assertSame(events.get(2).eventParameters[2], events.get(5).eventParameters[0]);
+    }
+
+    @Test
+    void recordStreamParser() throws Exception
+    {
+        XDOM xdom = createXDOM();
+        QueueListener expected = new QueueListener();
+        xdom.traverse(expected);
+        // Events which are never produced by blocks
+        expected.beginListItem();
+        expected.endListItem();
+        expected.onWord(null);
+
+        StreamParser parser = new StreamParser()
+        {
+            @Override
+            public Syntax getSyntax()
+            {
+                return Syntax.PLAIN_1_0;
+            }
+
+            @Override
+            public void parse(Reader source, Listener listener)
+            {
+                xdom.traverse(listener);
+                listener.beginListItem();
+                listener.endListItem();
+                listener.onWord(null);
+            }
+        };
+
+        QueueListener events = new QueueListener();
+        EventTape.record(parser, new StringReader("")).replay(events);
+
+        assertSameEvents(expected, events);
+        assertEquals(EventType.BEGIN_LIST_ITEM, events.get(events.size() - 3).eventType);
+        assertEquals(0, events.get(events.size() - 3).eventParameters.length);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.listener;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Unit tests for {@link MetaDataScope}.
+ *
+ * @version $Id$
+ */
+class MetaDataScopeTest
+{
+    @Test
+    void push()
+    {
+        MetaData outer = new MetaData();
+        outer.addMetaData(MetaData.SOURCE, "source");
+        outer.addMetaData(MetaData.SYNTAX, "syntax");
+
+        MetaData inner = new MetaData();
+        inner.addMetaData(MetaData.SYNTAX, "inner syntax");
+        inner.addMetaData(MetaData.SOURCE, null);
+
+        MetaDataScope outerScope = MetaDataScope.EMPTY.push(outer);
+        MetaDataScope innerScope = outerScope.push(inner);
+
+        assertEquals("source", outerScope.getMetaData(MetaData.SOURCE));
+        assertEquals("syntax", outerScope.getMetaData(MetaData.SYNTAX));
+        assertNull(outerScope.getMetaData(MetaData.BASE));
+
+        // Inner metadata hide outer ones, except null values
+        assertEquals("source", innerScope.getMetaData(MetaData.SOURCE));
+        assertEquals("inner syntax", innerScope.getMetaData(MetaData.SYNTAX));
+        assertEquals(2, innerScope.getMetaData().size());
+
+        assertSame(outerScope, innerScope.getParent());
+        assertSame(MetaDataScope.EMPTY, outerScope.getParent());
+
+        // An empty scope shares the metadata of its parent
+        MetaDataScope emptyScope = innerScope.push(MetaData.EMPTY);
+        assertSame(innerScope.getMetaData(), emptyScope.getMetaData());
+        assertSame(innerScope, emptyScope.getParent());
+    }
+}
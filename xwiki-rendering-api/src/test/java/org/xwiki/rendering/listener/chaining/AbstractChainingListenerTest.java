@@ -108,4 +108,29 @@ public void beginListItemRetroCompatibility()
 
         assertTrue(child3.called);
     }
+
+    @Test
+    public void nextListenerAfterChainModification()
+    {
+        ListenerChain chain = new ListenerChain();
+        AbstractChainingListener first = new AbstractChainingListener()
+        {
+        };
+        first.setListenerChain(chain);
+        Child3 next = new Child3();
+        chain.addListener(first);
+        chain.addListener(next);
+
+        first.beginListItem(Collections.emptyMap());
+        assertTrue(next.called);
+
+        chain.removeListener(Child3.class);
+        Child3 otherNext = new Child3();
+        chain.addListener(otherNext);
+        next.called = false;
+
+        first.beginListItem(Collections.emptyMap());
+        assertFalse(next.called);
+        assertTrue(otherNext.called);
+    }
 }
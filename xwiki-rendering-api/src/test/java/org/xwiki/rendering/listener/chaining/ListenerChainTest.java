@@ -0,0 +1,74 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.listener.chaining;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Unit tests for {@link ListenerChain}.
+ *
+ * @version $Id$
+ */
+class ListenerChainTest
+{
+    @Test
+    void getNextListener()
+    {
+        ListenerChain chain = new ListenerChain();
+        LookaheadChainingListener lookahead = new LookaheadChainingListener(chain, 1);
+        BlockStateChainingListener blockState = new BlockStateChainingListener(chain);
+        EmptyBlockChainingListener emptyBlock = new EmptyBlockChainingListener(chain);
+        chain.addListener(lookahead);
+        chain.addListener(emptyBlock);
+
+        assertSame(emptyBlock, chain.getNextListener(LookaheadChainingListener.class));
+        assertNull(chain.getNextListener(EmptyBlockChainingListener.class));
+        assertNull(chain.getNextListener(BlockStateChainingListener.class));
+
+        // Insert in the middle of the chain
+        chain.addListener(blockState, 1);
+        assertEquals(1, chain.indexOf(BlockStateChainingListener.class));
+        assertSame(blockState, chain.getNextListener(LookaheadChainingListener.class));
+        assertSame(emptyBlock, chain.getNextListener(BlockStateChainingListener.class));
+
+        // Stack a new instance
+        chain.pushListener(BlockStateChainingListener.class);
+        ChainingListener pushed = chain.getNextListener(LookaheadChainingListener.class);
+        assertNotSame(blockState, pushed);
+        assertSame(pushed, chain.getListener(BlockStateChainingListener.class));
+
+        chain.popListener(BlockStateChainingListener.class);
+        assertSame(blockState, chain.getNextListener(LookaheadChainingListener.class));
+
+        chain.pushAllStackableListeners();
+        assertNotSame(blockState, chain.getNextListener(LookaheadChainingListener.class));
+        chain.popAllStackableListeners();
+        assertSame(blockState, chain.getNextListener(LookaheadChainingListener.class));
+
+        chain.removeListener(BlockStateChainingListener.class);
+        assertSame(emptyBlock, chain.getNextListener(LookaheadChainingListener.class));
+        assertNull(chain.getNextListener(BlockStateChainingListener.class));
+    }
+}
@@ -24,9 +24,11 @@
 
 import org.junit.jupiter.api.Test;
 import org.xwiki.rendering.listener.MetaData;
+import org.xwiki.rendering.listener.QueueListener;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 /**
  * Unit tests for {@link LookaheadChainingListener}.
@@ -108,4 +110,43 @@ public void testLookahead()
         assertEquals(5, testListener.calls);
         assertNull(listener.getNextEvent());
     }
+
+    @Test
+    public void testPreviousEvents()
+    {
+        ListenerChain chain = new ListenerChain();
+        LookaheadChainingListener listener = new LookaheadChainingListener(chain, 3)
+        {
+            @Override
+            public void endParagraph(Map<String, String> parameters)
+            {
+                // Replace the stacked begin paragraph by a begin document
+                QueueListener previousEvents = getPreviousEvents();
+                assertSame(previousEvents, getPreviousEvents());
+                assertEquals(EventType.BEGIN_PARAGRAPH, previousEvents.getLast().eventType);
+                previousEvents.removeLast();
+                previousEvents.beginDocument(MetaData.EMPTY);
+
+                super.endParagraph(parameters);
+            }
+        };
+        chain.addListener(listener);
+        TestChainingListener testListener = new TestChainingListener(chain);
+        chain.addListener(testListener);
+
+        listener.beginParagraph(Collections.<String, String>emptyMap());
+        listener.endParagraph(Collections.<String, String>emptyMap());
+        assertEquals(0, testListener.calls);
+        assertEquals(EventType.BEGIN_DOCUMENT, listener.getNextEvent().eventType);
+        assertEquals(EventType.END_PARAGRAPH, listener.getNextEventType(2));
+        assertEquals(2, listener.getPreviousEvents().size());
+
+        // The events stacked in the previous events are moved back to the event queue
+        assertEquals(2, listener.getEventQueue().size());
+        listener.beginParagraph(Collections.<String, String>emptyMap());
+        assertEquals(EventType.BEGIN_PARAGRAPH, listener.getNextEventType(3));
+
+        listener.endDocument(MetaData.EMPTY);
+        assertEquals(4, testListener.calls);
+    }
 }
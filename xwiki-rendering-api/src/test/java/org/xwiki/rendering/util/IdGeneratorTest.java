@@ -64,6 +64,59 @@ public void generateUniqueIdFromNonAlphaNum()
         assertEquals("I3D", this.idGenerator.generateUniqueId("="));
     }
 
+    @Test
+    public void generateUniqueIdManyTimes()
+    {
+        assertEquals("Itext", this.idGenerator.generateUniqueId("text"));
+        for (int i = 1; i < 10000; ++i) {
+            assertEquals("Itext-" + i, this.idGenerator.generateUniqueId("text"));
+        }
+
+        // The ids generated from other texts are taken into account
+        assertEquals("Itext-10000", this.idGenerator.generateUniqueId("text-10000"));
+        assertEquals("Itext-10000-1", this.idGenerator.generateUniqueId("text-10000"));
+        assertEquals("Itext-10001", this.idGenerator.generateUniqueId("text"));
+    }
+
+    @Test
+    public void generateUniqueIdAfterRemove()
+    {
+        for (int i = 0; i < 5; ++i) {
+            this.idGenerator.generateUniqueId("text");
+        }
+        assertEquals("Itext-1-1", this.idGenerator.generateUniqueId("text-1"));
+
+        this.idGenerator.remove("Itext-2");
+        this.idGenerator.remove("Itext");
+        this.idGenerator.remove("Itext-1");
+        assertEquals("Itext", this.idGenerator.generateUniqueId("text"));
+        assertEquals("Itext-1", this.idGenerator.generateUniqueId("text-1"));
+        assertEquals("Itext-2", this.idGenerator.generateUniqueId("text"));
+        assertEquals("Itext-5", this.idGenerator.generateUniqueId("text"));
+
+        // Removing an unknown id does not change anything
+        this.idGenerator.remove("Iother-1");
+        assertEquals("Itext-6", this.idGenerator.generateUniqueId("text"));
+
+        this.idGenerator.reset();
+        assertEquals("Itext", this.idGenerator.generateUniqueId("text"));
+    }
+
+    @Test
+    public void generateUniqueIdWithCopy()
+    {
+        this.idGenerator.generateUniqueId("text");
+        this.idGenerator.generateUniqueId("text");
+
+        IdGenerator copy = new IdGenerator(this.idGenerator);
+        assertEquals("Itext-2", copy.generateUniqueId("text"));
+        copy.remove("Itext");
+        assertEquals("Itext", copy.generateUniqueId("text"));
+
+        assertEquals("Itext-2", this.idGenerator.generateUniqueId("text"));
+        assertEquals("Itext-3", this.idGenerator.generateUniqueId("text"));
+    }
+
     @Test
     public void generateUniqueIdWhenInvalidEmptyPrefix()
     {
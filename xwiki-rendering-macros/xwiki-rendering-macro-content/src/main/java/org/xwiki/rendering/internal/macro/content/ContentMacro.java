@@ -40,6 +40,9 @@
 import org.xwiki.rendering.macro.descriptor.DefaultContentDescriptor;
 import org.xwiki.rendering.parser.ParseException;
 import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.parser.cache.CachingParser;
+import org.xwiki.rendering.parser.cache.ParserCache;
+import org.xwiki.rendering.parser.cache.ParserCacheConfiguration;
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.rendering.transformation.MacroTransformationContext;
 
@@ -117,7 +120,15 @@ protected Parser getSyntaxParser(Syntax syntax) throws MacroExecutionException
         ComponentManager componentManager = this.componentManagerProvider.get();
         if (componentManager.hasComponent(Parser.class, syntax.toIdString())) {
             try {
-                return componentManager.getInstance(Parser.class, syntax.toIdString());
+                Parser parser = componentManager.getInstance(Parser.class, syntax.toIdString());
+
+                // Go through the parser cache when there's one
+                if (componentManager.hasComponent(ParserCache.class)) {
+                    parser = new CachingParser(parser, componentManager.getInstance(ParserCache.class),
+                        componentManager.getInstance(ParserCacheConfiguration.class));
+                }
+
+                return parser;
             } catch (ComponentLookupException e) {
                 throw new MacroExecutionException(
                     String.format("Failed to lookup Parser for syntax [%s]", syntax.toIdString()), e);
@@ -26,14 +26,13 @@
 
 import org.apache.maven.doxia.sink.SinkEventAttributes;
 import org.apache.maven.doxia.sink.impl.SinkAdapter;
-import org.xwiki.rendering.listener.CompositeListener;
+import org.xwiki.rendering.internal.parser.HeaderContentListener;
 import org.xwiki.rendering.listener.Format;
 import org.xwiki.rendering.listener.HeaderLevel;
 import org.xwiki.rendering.listener.InlineFilterListener;
 import org.xwiki.rendering.listener.ListType;
 import org.xwiki.rendering.listener.Listener;
 import org.xwiki.rendering.listener.MetaData;
-import org.xwiki.rendering.listener.QueueListener;
 import org.xwiki.rendering.listener.VoidListener;
 import org.xwiki.rendering.listener.WrappingListener;
 import org.xwiki.rendering.listener.reference.ResourceReference;
@@ -41,9 +40,7 @@
 import org.xwiki.rendering.parser.ParseException;
 import org.xwiki.rendering.parser.ResourceReferenceParser;
 import org.xwiki.rendering.parser.StreamParser;
-import org.xwiki.rendering.renderer.PrintRenderer;
 import org.xwiki.rendering.renderer.PrintRendererFactory;
-import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.rendering.util.IdGenerator;
 
@@ -702,12 +699,7 @@ public void sectionTitle(int level, SinkEventAttributes attributes)
     {
         flushEmptyLines();
 
-        CompositeListener composite = new CompositeListener();
-
-        composite.addListener(new QueueListener());
-        composite.addListener(this.plainRendererFactory.createRenderer(new DefaultWikiPrinter()));
-
-        pushListener(composite);
+        pushListener(new HeaderContentListener());
 
         ++this.inlineDepth;
     }
@@ -723,18 +715,15 @@ public void sectionTitle_(int level)
     {
         flushEmptyLines();
 
-        CompositeListener composite = (CompositeListener) getListener();
-
-        QueueListener queue = (QueueListener) composite.getListener(0);
-        PrintRenderer renderer = (PrintRenderer) composite.getListener(1);
+        HeaderContentListener content = (HeaderContentListener) getListener();
 
         popListener();
 
         HeaderLevel headerLevel = HeaderLevel.parseInt(level);
-        String id = this.idGenerator.generateUniqueId("H", renderer.getPrinter().toString());
+        String id = this.idGenerator.generateUniqueId("H", content.getText(this.plainRendererFactory));
 
         getListener().beginHeader(headerLevel, id, Listener.EMPTY_PARAMETERS);
-        queue.consumeEvents(getListener());
+        content.consumeEvents(getListener());
         getListener().endHeader(headerLevel, id, Listener.EMPTY_PARAMETERS);
 
         --this.inlineDepth;
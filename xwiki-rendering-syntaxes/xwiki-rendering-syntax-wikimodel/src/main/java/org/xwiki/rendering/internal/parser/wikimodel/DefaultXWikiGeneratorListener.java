@@ -31,21 +31,18 @@
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
-import org.xwiki.rendering.listener.CompositeListener;
+import org.xwiki.rendering.internal.parser.HeaderContentListener;
 import org.xwiki.rendering.listener.Format;
 import org.xwiki.rendering.listener.HeaderLevel;
 import org.xwiki.rendering.listener.ListType;
 import org.xwiki.rendering.listener.Listener;
 import org.xwiki.rendering.listener.MetaData;
-import org.xwiki.rendering.listener.QueueListener;
 import org.xwiki.rendering.listener.reference.DocumentResourceReference;
 import org.xwiki.rendering.listener.reference.ResourceReference;
 import org.xwiki.rendering.parser.ParseException;
 import org.xwiki.rendering.parser.ResourceReferenceParser;
 import org.xwiki.rendering.parser.StreamParser;
-import org.xwiki.rendering.renderer.PrintRenderer;
 import org.xwiki.rendering.renderer.PrintRendererFactory;
-import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.rendering.util.IdGenerator;
 import org.xwiki.rendering.wikimodel.IWemConstants;
@@ -115,6 +112,8 @@ public class DefaultXWikiGeneratorListener implements XWikiGeneratorListener
 
     private MetaData documentMetadata;
 
+    private LinkLabelParser linkLabelParser;
+
     /**
      * @see <a href="http://code.google.com/p/wikimodel/issues/detail?id=87">wikimodel issue 87</a>
      * @since 3.0M3
@@ -439,13 +438,8 @@ public void beginHeader(int level, WikiParameters params)
         // Heading needs to have an id generated from a plaintext representation of its content, so the header start
         // event will be sent at the end of the header, after reading the content inside and generating the id.
         // For this:
-        // buffer all events in a queue until the header ends, and also send them to a print renderer to generate the ID
-        CompositeListener composite = new CompositeListener();
-        composite.addListener(new QueueListener());
-        composite.addListener(this.plainRendererFactory.createRenderer(new DefaultWikiPrinter()));
-
-        // These 2 listeners will receive all events from now on until the header ends
-        pushListener(composite);
+        // buffer all events in a queue until the header ends, while collecting their plain text to generate the ID
+        pushListener(new HeaderContentListener());
     }
 
     @Override
@@ -587,25 +581,21 @@ public void endHeader(int level, WikiParameters params)
         // End all formats
         flushInline();
 
-        CompositeListener composite = (CompositeListener) getListener();
-
         // Get the listener where events inside the header were buffered
-        QueueListener queue = (QueueListener) composite.getListener(0);
-        // and the listener in which the id was generated
-        PrintRenderer renderer = (PrintRenderer) composite.getListener(1);
+        HeaderContentListener content = (HeaderContentListener) getListener();
 
         // Restore the 'default' listener as it was at the beginning of the header
         popListener();
 
         HeaderLevel headerLevel = HeaderLevel.parseInt(level);
-        // Generate the id from the content inside the header written to the renderer
-        String id = this.idGenerator.generateUniqueId("H", renderer.getPrinter().toString());
+        // Generate the id from the plain text of the content inside the header
+        String id = this.idGenerator.generateUniqueId("H", content.getText(this.plainRendererFactory));
         Map<String, String> parameters = convertParameters(params);
 
         // Generate the begin header event to the 'default' listener
         getListener().beginHeader(headerLevel, id, parameters);
         // Send all buffered events to the 'default' listener
-        queue.consumeEvents(getListener());
+        content.consumeEvents(getListener());
         // Generate the end header event to the 'default' listener
         getListener().endHeader(headerLevel, id, parameters);
     }
@@ -847,8 +837,7 @@ protected void onReference(ResourceReference reference, String label, boolean fr
         if (label != null) {
             try {
                 // TODO: Use an inline parser. See https://jira.xwiki.org/browse/XWIKI-2748
-                WikiModelParserUtils parserUtils = new WikiModelParserUtils();
-                parserUtils.parseInline(this.parser, label, getListener(), prefix);
+                getLinkLabelParser().parse(label, prefix, getListener());
             } catch (ParseException e) {
                 // TODO what should we do here ?
             }
@@ -856,6 +845,16 @@ protected void onReference(ResourceReference reference, String label, boolean fr
         getListener().endLink(reference, freestanding, parameters);
     }
 
+    private LinkLabelParser getLinkLabelParser()
+    {
+        // Shared by all the links of the document so that the same labels are parsed only once
+        if (this.linkLabelParser == null) {
+            this.linkLabelParser = new LinkLabelParser(this.parser);
+        }
+
+        return this.linkLabelParser;
+    }
+
     @Override
     public void onImage(String reference)
     {
@@ -0,0 +1,122 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.parser.wikimodel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.xwiki.rendering.listener.ArrayQueueListener;
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.StreamParser;
+
+/**
+ * Parse the link labels of a document as inline content.
+ * <p>
+ * Since WikiModel doesn't handle syntax in link labels, each label is parsed separately with the link label parser.
+ * The same labels are often repeated in a document (navigation, indexes, generated tables) so the events of a label
+ * are remembered and sent again when the same label is found later in the document, instead of parsing it again.
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+public class LinkLabelParser
+{
+    /**
+     * The maximum number of labels remembered for a document.
+     */
+    private static final int MAX_LABELS = 1000;
+
+    /**
+     * The maximum length of a remembered label, longer labels are not likely to be repeated.
+     */
+    private static final int MAX_LABEL_LENGTH = 200;
+
+    private final StreamParser parser;
+
+    private final WikiModelParserUtils parserUtils = new WikiModelParserUtils();
+
+    private final Map<String, ArrayQueueListener> labels = new HashMap<>();
+
+    private final Map<String, ArrayQueueListener> prefixedLabels = new HashMap<>();
+
+    /**
+     * @param parser the parser to use to parse the labels
+     */
+    public LinkLabelParser(StreamParser parser)
+    {
+        this.parser = parser;
+    }
+
+    /**
+     * @param label the label to parse
+     * @param prefix true if the label should be parsed as if it was following some text, so that it can't start a
+     *            block (see {@link WikiModelParserUtils#parseInline(StreamParser, String, Listener, boolean)})
+     * @param listener receive the inline events of the label
+     * @throws ParseException if the label cannot be parsed
+     */
+    public void parse(String label, boolean prefix, Listener listener) throws ParseException
+    {
+        Map<String, ArrayQueueListener> parsedLabels = prefix ? this.prefixedLabels : this.labels;
+
+        ArrayQueueListener events = parsedLabels.get(label);
+        if (events == null) {
+            events = new ArrayQueueListener();
+            try {
+                this.parserUtils.parseInline(this.parser, label, events, prefix);
+            } catch (ParseException e) {
+                // Send the events produced before the error, like a direct parsing would
+                events.consumeEvents(listener);
+
+                throw e;
+            }
+
+            if (parsedLabels.size() >= MAX_LABELS || label.length() > MAX_LABEL_LENGTH || !isReusable(events)) {
+                events.consumeEvents(listener);
+
+                return;
+            }
+
+            parsedLabels.put(label, events);
+        }
+
+        events.fireEvents(listener);
+    }
+
+    private boolean isReusable(ArrayQueueListener events)
+    {
+        for (int i = 1; i <= events.size(); ++i) {
+            switch (events.getEventType(i)) {
+                // Resource references and metadata can be modified and end up as is in the blocks, so they can't be
+                // shared by several blocks
+                case BEGIN_LINK:
+                case END_LINK:
+                case ON_IMAGE:
+                case BEGIN_METADATA:
+                case END_METADATA:
+                    return false;
+                default:
+                    break;
+            }
+        }
+
+        return true;
+    }
+}
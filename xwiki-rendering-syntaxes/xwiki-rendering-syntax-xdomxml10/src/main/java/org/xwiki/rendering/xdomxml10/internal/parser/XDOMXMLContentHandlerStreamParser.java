@@ -65,6 +65,9 @@ public Syntax getSyntax()
     public void setListener(Listener listener)
     {
         this.listener = listener;
+
+        // Start a new document
+        this.documentParser = null;
     }
 
     @Override
@@ -58,6 +58,16 @@ public class XDOMXMLContentHandlerStreamParser implements ContentHandlerStreamPa
      */
     private ContentHandler handler;
 
+    /**
+     * The listener the content handler was created for.
+     */
+    private Listener listener;
+
+    /**
+     * True when the content handler is not in the middle of a document.
+     */
+    private boolean betweenDocuments;
+
     @Override
     public Syntax getSyntax()
     {
@@ -67,7 +77,13 @@ public Syntax getSyntax()
     @Override
     public void setListener(Listener listener)
     {
-        this.handler = this.parserFactory.createContentHandler(listener, null);
+        // The same content handler can parse the next documents sent to the same listener (which is what the pooled
+        // parsers of AbstractStreamParser do), as long as it's not left in the middle of a document
+        if (this.handler == null || listener != this.listener || !this.betweenDocuments) {
+            this.handler = this.parserFactory.createContentHandler(listener, null);
+            this.listener = listener;
+            this.betweenDocuments = true;
+        }
     }
 
     @Override
@@ -109,6 +125,7 @@ public void setDocumentLocator(Locator locator)
     @Override
     public void startDocument() throws SAXException
     {
+        this.betweenDocuments = false;
         this.handler.startDocument();
     }
 
@@ -116,6 +133,7 @@ public void startDocument() throws SAXException
     public void endDocument() throws SAXException
     {
         this.handler.endDocument();
+        this.betweenDocuments = true;
     }
 
     @Override
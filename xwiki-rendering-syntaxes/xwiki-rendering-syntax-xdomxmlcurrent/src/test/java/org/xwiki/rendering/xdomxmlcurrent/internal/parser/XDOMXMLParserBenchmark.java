@@ -0,0 +1,134 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.xdomxmlcurrent.internal.parser;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.FormatBlock;
+import org.xwiki.rendering.block.LinkBlock;
+import org.xwiki.rendering.block.ParagraphBlock;
+import org.xwiki.rendering.block.SpaceBlock;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.listener.Format;
+import org.xwiki.rendering.listener.reference.DocumentResourceReference;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+
+import static org.xwiki.rendering.xdomxmlcurrent.internal.XDOMXMLCurrentSyntaxProvider.XDOMXML_CURRENT;
+
+/**
+ * Micro benchmark measuring the time needed to parse a 10 KB and a 1 MB {@code xdom+xml/current} document, which
+ * is what loading a document from an XDOM cache costs.
+ * <p>
+ * Not executed by the build. To run it (with the allocation rate):
+ *
+ * <pre>
+ * <code>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main \
+ *   -Dexec.args="XDOMXMLParserBenchmark -prof gc"
+ * </code>
+ * </pre>
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XDOMXMLParserBenchmark
+{
+    /**
+     * The minimum size of the parsed XML document, in characters.
+     */
+    @Param({ "10240", "1048576" })
+    public int size;
+
+    private Parser parser;
+
+    private String xml;
+
+    /**
+     * Render a document made of enough paragraphs to reach the expected size.
+     *
+     * @throws Exception when failing to initialize the components
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        EmbeddableComponentManager componentManager = new EmbeddableComponentManager();
+        componentManager.initialize(getClass().getClassLoader());
+
+        BlockRenderer renderer = componentManager.getInstance(BlockRenderer.class, XDOMXML_CURRENT.toIdString());
+        int paragraphSize = render(renderer, Collections.singletonList(createParagraph(0))).length();
+
+        List<Block> paragraphs = new ArrayList<>();
+        for (int i = 0; i * paragraphSize < this.size; ++i) {
+            paragraphs.add(createParagraph(i));
+        }
+        this.xml = render(renderer, paragraphs);
+
+        this.parser = componentManager.getInstance(Parser.class, XDOMXML_CURRENT.toIdString());
+    }
+
+    private Block createParagraph(int index)
+    {
+        return new ParagraphBlock(Arrays.asList(new WordBlock("Paragraph"), new SpaceBlock(),
+            new WordBlock(String.valueOf(index)), new SpaceBlock(),
+            new FormatBlock(Collections.singletonList(new WordBlock("bold")), Format.BOLD), new SpaceBlock(),
+            new LinkBlock(Collections.singletonList(new WordBlock("label")),
+                new DocumentResourceReference("Space.Page" + index), false)));
+    }
+
+    private String render(BlockRenderer renderer, List<Block> blocks)
+    {
+        DefaultWikiPrinter printer = new DefaultWikiPrinter();
+        renderer.render(new XDOM(blocks), printer);
+
+        return printer.toString();
+    }
+
+    @Benchmark
+    public XDOM parse() throws Exception
+    {
+        return this.parser.parse(new StringReader(this.xml));
+    }
+}
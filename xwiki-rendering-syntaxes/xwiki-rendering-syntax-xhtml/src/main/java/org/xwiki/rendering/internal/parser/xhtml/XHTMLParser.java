@@ -30,8 +30,12 @@
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
 import org.xwiki.rendering.block.XDOM;
 import org.xwiki.rendering.internal.parser.wikimodel.AbstractWikiModelParser;
 import org.xwiki.rendering.internal.parser.wikimodel.XWikiGeneratorListener;
@@ -50,8 +54,11 @@
 import org.xwiki.rendering.renderer.PrintRendererFactory;
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.rendering.util.IdGenerator;
+import org.xwiki.rendering.wikimodel.IWemListener;
 import org.xwiki.rendering.wikimodel.IWikiParser;
+import org.xwiki.rendering.wikimodel.WikiParserException;
 import org.xwiki.rendering.wikimodel.xhtml.XhtmlParser;
+import org.xwiki.rendering.wikimodel.xhtml.filter.DefaultXMLFilter;
 import org.xwiki.rendering.wikimodel.xhtml.handler.TagHandler;
 import org.xwiki.rendering.wikimodel.xhtml.impl.TagStack;
 import org.xwiki.xml.XMLReaderFactory;
@@ -67,7 +74,7 @@
 @Component
 @Named("xhtml/1.0")
 @Singleton
-public class XHTMLParser extends AbstractWikiModelParser
+public class XHTMLParser extends AbstractWikiModelParser implements Initializable
 {
     /**
      * The parser used for the link label parsing. For (x)html parsing, this will be an xwiki 2.0 parser, since it's
@@ -118,22 +125,20 @@ public class XHTMLParser extends AbstractWikiModelParser
     @Named("xwiki")
     private XMLReaderFactory xmlReaderFactory;
 
-    @Override
-    public Syntax getSyntax()
-    {
-        return XHTML_1_0;
-    }
+    /**
+     * The XML reader (with its filter chain) kept by each thread for its next parsing, since it's expensive to create.
+     * It's removed while being used so that a parsing started during another parsing gets its own reader.
+     */
+    private final ThreadLocal<XMLReader> xmlReaders = new ThreadLocal<>();
 
-    @Override
-    public StreamParser getLinkLabelParser()
-    {
-        return this.xmlParser;
-    }
+    /**
+     * The tag handlers which don't keep any state while parsing and can thus be shared by all the parsings.
+     */
+    private Map<String, TagHandler> sharedHandlers;
 
     @Override
-    public IWikiParser createWikiModelParser() throws ParseException
+    public void initialize() throws InitializationException
     {
-        // Override some of the WikiModel XHTML parser tag handlers to introduce our own logic.
         Map<String, TagHandler> handlers = new HashMap<>();
         TagHandler handler = new XWikiHeaderTagHandler();
         handlers.put("h1", handler);
@@ -142,28 +147,78 @@ public IWikiParser createWikiModelParser() throws ParseException
         handlers.put("h4", handler);
         handlers.put("h5", handler);
         handlers.put("h6", handler);
-        handlers.put("a", new XWikiReferenceTagHandler(this, this.xmlRenderer));
         handlers.put("img", new XWikiImageTagHandler());
-        handlers.put("span", new XWikiSpanTagHandler(this.componentManager, this));
         // Change the class value indicating that the division is an embedded document. We do this in order to be
         // independent of WikiModel in what we expose to the outside world. Thus if one day we need to change to
         // another implementation we won't be tied to WikiModel.
         handlers.put("div", new XWikiDivTagHandler("xwiki-document", this.componentManager, this));
         handlers.put("th", new XWikiTableDataTagHandler());
 
-        XhtmlParser parser = new XhtmlParser();
+        this.sharedHandlers = handlers;
+    }
+
+    @Override
+    public Syntax getSyntax()
+    {
+        return XHTML_1_0;
+    }
+
+    @Override
+    public StreamParser getLinkLabelParser()
+    {
+        return this.xmlParser;
+    }
+
+    @Override
+    public IWikiParser createWikiModelParser() throws ParseException
+    {
+        // Override some of the WikiModel XHTML parser tag handlers to introduce our own logic.
+        Map<String, TagHandler> handlers = new HashMap<>(this.sharedHandlers);
+        // The link and span handlers (as well as the comment handler) keep some state while parsing.
+        handlers.put("a", new XWikiReferenceTagHandler(this, this.xmlRenderer));
+        handlers.put("span", new XWikiSpanTagHandler(this.componentManager, this));
+
+        XhtmlParser parser = new PooledXhtmlParser();
         parser.setExtraHandlers(handlers);
         parser.setCommentHandler(new XWikiCommentHandler(this.componentManager, this,
             this.xmlRenderer, this.xhtmlMarkerResourceReferenceParser));
 
-        // Construct our own XML filter chain since we want to use our own Comment filter.
+        return parser;
+    }
+
+    /**
+     * @return the XML reader kept by the current thread, or a new one if there is none available (first parsing of
+     *         the thread or parsing started during another parsing)
+     * @throws Exception when failing to create a new XML reader
+     */
+    private XMLReader acquireXMLReader() throws Exception
+    {
+        XMLReader xmlReader = this.xmlReaders.get();
+        if (xmlReader != null) {
+            this.xmlReaders.remove();
+        } else {
+            // Construct our own XML filter chain since we want to use our own Comment filter.
+            xmlReader = this.xmlReaderFactory.createXMLReader();
+        }
+
+        return xmlReader;
+    }
+
+    /**
+     * @param xmlReader the XML reader to keep for the next parsing of the current thread
+     */
+    private void releaseXMLReader(XMLReader xmlReader)
+    {
+        // Don't keep a reference to the handlers (and thus the listener) of the last parsing
+        xmlReader.setContentHandler(null);
         try {
-            parser.setXmlReader(this.xmlReaderFactory.createXMLReader());
-        } catch (Exception e) {
-            throw new ParseException("Failed to create XML reader", e);
+            xmlReader.setProperty(DefaultXMLFilter.SAX_LEXICAL_HANDLER_PROPERTY, null);
+        } catch (SAXException e) {
+            // Don't reuse a reader we can't clean
+            return;
         }
 
-        return parser;
+        this.xmlReaders.set(xmlReader);
     }
 
     @Override
@@ -239,4 +294,35 @@ private Reader getPushBackReader(Reader source) throws ParseException
         }
         return  pushbackReader;
     }
+
+    /**
+     * WikiModel XHTML parser borrowing the XML reader of the current thread for the duration of the parsing.
+     */
+    private final class PooledXhtmlParser extends XhtmlParser
+    {
+        @Override
+        public void parse(Reader reader, IWemListener listener) throws WikiParserException
+        {
+            XMLReader xmlReader;
+            try {
+                xmlReader = acquireXMLReader();
+            } catch (Exception e) {
+                throw new WikiParserException(new ParseException("Failed to create XML reader", e));
+            }
+
+            setXmlReader(xmlReader);
+            boolean parsed = false;
+            try {
+                super.parse(reader, listener);
+                parsed = true;
+            } finally {
+                setXmlReader(null);
+
+                // A reader which failed in the middle of a document is not worth the risk of being reused
+                if (parsed) {
+                    releaseXMLReader(xmlReader);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,167 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.parser.xhtml;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.listener.WrappingListener;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.test.annotation.AllComponents;
+import org.xwiki.test.mockito.MockitoComponentManagerRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verify that {@link XHTMLParser}, which reuses its XML reader and part of its tag handlers between parsings, produces
+ * the same result when used by several threads at the same time, after a failed parsing and while parsing.
+ *
+ * @version $Id$
+ */
+@AllComponents
+public class XHTMLParserConcurrencyTest
+{
+    private static final String[] INPUTS = {
+        "<html><body><p>Some <strong>bold</strong> and <em>italic</em>   text</p></body></html>",
+        "<html><body><h1 id=\"Htitle\"><span>title</span></h1>"
+            + "<table><tr><th>head</th></tr><tr><td>cell</td></tr></table></body></html>",
+        "<html><body><ul><li>item <a href=\"http://xwiki.org\">link</a></li></ul>"
+            + "<p><img src=\"image.png\" alt=\"image\"/></p></body></html>",
+        "<html><body><div class=\"xwiki-document\"><p>embedded</p></div>"
+            + "<pre>  preserved   spaces </pre></body></html>",
+        "<html><body><p>unclosed <strong>paragraph</p></body></html>"
+    };
+
+    private static final int THREADS = 4;
+
+    private static final int PARSINGS = 500;
+
+    @Rule
+    public MockitoComponentManagerRule componentManager = new MockitoComponentManagerRule();
+
+    private XHTMLParser parser;
+
+    private BlockRenderer renderer;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.parser = (XHTMLParser) this.componentManager.getInstance(Parser.class, "xhtml/1.0");
+        this.renderer = this.componentManager.getInstance(BlockRenderer.class, Syntax.EVENT_1_0.toIdString());
+    }
+
+    /**
+     * @return the events produced by the parser, or the message of the parsing error
+     */
+    private String parse(String input)
+    {
+        try {
+            XDOM xdom = this.parser.parse(new StringReader(input));
+            DefaultWikiPrinter printer = new DefaultWikiPrinter();
+            this.renderer.render(xdom, printer);
+
+            return printer.toString();
+        } catch (ParseException e) {
+            return "error";
+        }
+    }
+
+    @Test
+    public void parseConcurrently() throws Exception
+    {
+        List<String> expected = new ArrayList<>();
+        for (String input : INPUTS) {
+            expected.add(parse(input));
+        }
+        // Make sure only the malformed input fails
+        for (int i = 0; i < INPUTS.length - 1; ++i) {
+            assertNotEquals("error", expected.get(i));
+        }
+        assertEquals("error", expected.get(INPUTS.length - 1));
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; ++i) {
+                long seed = i;
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    Random random = new Random(seed);
+                    for (int j = 0; j < PARSINGS; ++j) {
+                        int index = random.nextInt(INPUTS.length);
+                        assertEquals(expected.get(index), parse(INPUTS[index]));
+                    }
+
+                    return null;
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        }
+    }
+
+    @Test
+    public void parseWhileParsing() throws Exception
+    {
+        String expected = parse(INPUTS[0]);
+
+        List<String> nested = new ArrayList<>();
+        Listener listener = new WrappingListener()
+        {
+            @Override
+            public void onWord(String word)
+            {
+                // Parse another content with the same parser, on the same thread, in the middle of the parsing
+                if (nested.isEmpty()) {
+                    nested.add(parse(INPUTS[0]));
+                }
+            }
+        };
+
+        this.parser.parse(new StringReader(INPUTS[2]), listener);
+
+        assertEquals(1, nested.size());
+        assertEquals(expected, nested.get(0));
+        // The parser is still usable
+        assertEquals(expected, parse(INPUTS[0]));
+    }
+}
@@ -22,9 +22,8 @@
 import java.util.Collections;
 import java.util.Map;
 
+import org.xwiki.rendering.listener.ArrayQueueListener;
 import org.xwiki.rendering.listener.HeaderLevel;
-import org.xwiki.rendering.listener.QueueListener;
-import org.xwiki.rendering.listener.chaining.EventType;
 import org.xwiki.rendering.listener.chaining.ListenerChain;
 import org.xwiki.rendering.listener.chaining.LookaheadChainingListener;
 
@@ -185,14 +184,18 @@ protected void stopStacking()
             // XWikiSyntaxChainingRenderer that will check for the next event (e.g. onNewLine()).
             LookaheadChainingListener listener =
                 (LookaheadChainingListener) getListenerChain().getListener(LookaheadChainingListener.class);
-            QueueListener previousEvents = getPreviousEvents();
+            ArrayQueueListener previousEvents = getEventQueue();
             if (shouldInsertGroupBlock()) {
-                previousEvents.offerFirst(previousEvents.new Event(EventType.BEGIN_GROUP,
-                    Collections.emptyMap()));
+                ArrayQueueListener groupEvents = new ArrayQueueListener();
+                groupEvents.beginGroup(Collections.emptyMap());
                 // Note: we need to insert before the last element since that one is the element closing the stacking
                 // (e.g. end item list for a list item) and it's already on the stack.
-                previousEvents.add(previousEvents.size() - 1,
-                    previousEvents.new Event(EventType.END_GROUP, Collections.emptyMap()));
+                while (previousEvents.size() > 1) {
+                    previousEvents.consumeEvent(groupEvents);
+                }
+                groupEvents.endGroup(Collections.emptyMap());
+                previousEvents.consumeEvents(groupEvents);
+                previousEvents = groupEvents;
             }
             listener.transferStart(previousEvents);
         }
@@ -28,7 +28,6 @@
 import org.xwiki.rendering.internal.renderer.ParametersPrinter;
 import org.xwiki.rendering.internal.renderer.xwiki20.XWikiSyntaxEscapeWikiPrinter;
 import org.xwiki.rendering.internal.renderer.xwiki20.XWikiSyntaxListenerChain;
-import org.xwiki.rendering.listener.QueueListener.Event;
 import org.xwiki.rendering.listener.chaining.EventType;
 import org.xwiki.rendering.listener.reference.ResourceReference;
 import org.xwiki.rendering.renderer.reference.ResourceReferenceSerializer;
@@ -103,7 +102,7 @@ public boolean forceFullSyntax(XWikiSyntaxEscapeWikiPrinter printer, boolean fre
     public boolean forceFullSyntax(XWikiSyntaxEscapeWikiPrinter printer, boolean isLastSyntax,
         boolean freestanding, Map<String, String> parameters)
     {
-        Event nextEvent = this.listenerChain.getLookaheadChainingListener().getNextEvent();
+        EventType nextEvent = this.listenerChain.getLookaheadChainingListener().getNextEventType();
 
         // force full syntax if
         // 1: it's not a free standing URI
@@ -124,14 +123,14 @@ private boolean isNonWhiteSpaceAndConsumed(boolean isLastSyntax, XWikiSyntaxEsca
             String.valueOf(printer.getLastPrinted().charAt(printer.getLastPrinted().length() - 1))).matches());
     }
 
-    private boolean isNotAWhiteSpace(Event nextEvent)
+    private boolean isNotAWhiteSpace(EventType nextEvent)
     {
-        return nextEvent != null && nextEvent.eventType != EventType.ON_SPACE
-            && nextEvent.eventType != EventType.ON_NEW_LINE && nextEvent.eventType != EventType.END_PARAGRAPH
-            && nextEvent.eventType != EventType.END_LINK && nextEvent.eventType != EventType.END_LIST_ITEM
-            && nextEvent.eventType != EventType.END_DEFINITION_DESCRIPTION
-            && nextEvent.eventType != EventType.END_DEFINITION_TERM
-            && nextEvent.eventType != EventType.END_QUOTATION_LINE && nextEvent.eventType != EventType.END_SECTION;
+        return nextEvent != null && nextEvent != EventType.ON_SPACE
+            && nextEvent != EventType.ON_NEW_LINE && nextEvent != EventType.END_PARAGRAPH
+            && nextEvent != EventType.END_LINK && nextEvent != EventType.END_LIST_ITEM
+            && nextEvent != EventType.END_DEFINITION_DESCRIPTION
+            && nextEvent != EventType.END_DEFINITION_TERM
+            && nextEvent != EventType.END_QUOTATION_LINE && nextEvent != EventType.END_SECTION;
     }
 
     public void renderLinkContent(XWikiSyntaxEscapeWikiPrinter printer, String label)
@@ -0,0 +1,806 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.parser.xwiki21;
+
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.Block.Axes;
+import org.xwiki.rendering.block.HeaderBlock;
+import org.xwiki.rendering.block.LinkBlock;
+import org.xwiki.rendering.block.SectionBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.block.match.BlockMatcher;
+import org.xwiki.rendering.block.match.ClassBlockMatcher;
+import org.xwiki.rendering.internal.parser.XDOMGeneratorListener;
+import org.xwiki.rendering.internal.xwiki21.XWiki21SyntaxProvider;
+import org.xwiki.rendering.listener.HeaderLevel;
+import org.xwiki.rendering.listener.MetaData;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.parser.incremental.IncrementalParser;
+import org.xwiki.rendering.parser.incremental.ParsedSource;
+import org.xwiki.rendering.parser.incremental.TextEdit;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.rendering.util.IdGenerator;
+import org.xwiki.rendering.wikimodel.WikiParserException;
+import org.xwiki.rendering.wikimodel.xwiki.xwiki21.XWikiParser;
+
+/**
+ * Incremental parser for XWiki Syntax 2.1.
+ * <p>
+ * The content is split into parts at the block boundaries found by
+ * {@link XWikiParser#findBlockBoundaries(String, int, XWikiParser.BlockBoundaryHandler)} and each part is parsed
+ * separately. When the content is modified only the parts between the boundaries around the modification are parsed
+ * again and their top level blocks replace the previous ones in the XDOM, the other blocks stay where they are. The
+ * sections and the header ids depend on the headers of the previous parts: the blocks following the modification are
+ * only moved to other sections when the levels of the modified headers changed, and their header ids are only
+ * generated again when the ids generated for the modified parts changed.
+ * <p>
+ * The parts are parsed the way {@link XWiki21Parser} parses the whole content, so the whole content is parsed each time
+ * with the {@link Parser} component of the syntax when it's another implementation (one overriding the default one).
+ *
+ * @version $Id$
+ * @since 13.4RC1
+ */
+@Component
+@Named("xwiki/2.1")
+@Singleton
+public class XWiki21IncrementalParser implements IncrementalParser
+{
+    private static final BlockMatcher LINK_MATCHER = new ClassBlockMatcher(LinkBlock.class);
+
+    /**
+     * Match the headers which got their id from the id generator of the document: the labels of the links are parsed
+     * with their own id generator.
+     */
+    private static final BlockMatcher HEADER_MATCHER =
+        block -> block instanceof HeaderBlock && block.getFirstBlock(LINK_MATCHER, Axes.ANCESTOR) == null;
+
+    /**
+     * Used to produce the same events as when parsing the whole content, or to parse the whole content when it's not a
+     * {@link XWiki21Parser}.
+     */
+    @Inject
+    @Named("xwiki/2.1")
+    private Parser parser;
+
+    @Override
+    public Syntax getSyntax()
+    {
+        return XWiki21SyntaxProvider.XWIKI_2_1;
+    }
+
+    @Override
+    public ParsedSource parse(String source) throws ParseException
+    {
+        if (!(this.parser instanceof XWiki21Parser)) {
+            return new FullParsedSource(source, this.parser.parse(new StringReader(source)));
+        }
+
+        List<Part> parts = new ArrayList<>();
+        parseParts(new XWikiParser(), source, new Boundary(0, 0), null, parts);
+
+        return new IncrementalParsedSource(source, parts, combine(parts));
+    }
+
+    @Override
+    public ParsedSource parse(ParsedSource previous, TextEdit edit) throws ParseException
+    {
+        String source = edit.apply(previous.getSource());
+
+        // The XDOM of a parsed source can only be updated once
+        if (!(previous instanceof IncrementalParsedSource) || ((IncrementalParsedSource) previous).updated) {
+            return parse(source);
+        }
+
+        IncrementalParsedSource previousParsedSource = (IncrementalParsedSource) previous;
+        List<Part> previousParts = previousParsedSource.parts;
+        int delta = edit.getText().length() - edit.getLength();
+        int editEnd = edit.getOffset() + edit.getLength();
+
+        // Keep the parts before the modification as long as the scanner did not read the modified content to find
+        // their boundaries
+        int first = 0;
+        while (first + 1 < previousParts.size() && previousParts.get(first + 1).scannedOffset <= edit.getOffset()) {
+            ++first;
+        }
+
+        // Parse again until a boundary of the new content matches a boundary after the modification: the content after
+        // it did not change and is parsed the same way
+        List<Part> parsedParts = new ArrayList<>();
+        Part firstPart = previousParts.get(first);
+        Boundary end = parseParts(new XWikiParser(), source, new Boundary(firstPart.offset, firstPart.scannedOffset),
+            boundary -> {
+                int previousBoundary = boundary - delta;
+
+                return previousBoundary >= editEnd && findPart(previousParts, previousBoundary) >= 0;
+            }, parsedParts);
+
+        // The scanner might have to read further than before to find the next boundaries, because of the content
+        // before the end boundary
+        int next = end.offset < source.length() ? findPart(previousParts, end.offset - delta) : previousParts.size();
+        List<Part> nextParts = new ArrayList<>(previousParts.size() - next);
+        for (int i = next; i < previousParts.size(); ++i) {
+            nextParts.add(previousParts.get(i).shift(delta, end.scannedOffset));
+        }
+
+        return previousParsedSource.update(source, first, next, parsedParts, nextParts);
+    }
+
+    private static int findPart(List<Part> parts, int offset)
+    {
+        int low = 0;
+        int high = parts.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleOffset = parts.get(middle).offset;
+            if (middleOffset < offset) {
+                low = middle + 1;
+            } else if (middleOffset > offset) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Parse the parts of the content starting at the passed boundary, until the first boundary accepted by the stop
+     * condition or until the end of the content.
+     *
+     * @return the boundary where the parsing stopped
+     */
+    private Boundary parseParts(XWikiParser wikiParser, String source, Boundary start, IntPredicate stop,
+        List<Part> parts) throws ParseException
+    {
+        Boundary partStart = start;
+        int minimumEnd = start.offset;
+        while (true) {
+            List<Boundary> boundaries = findBlockBoundaries(wikiParser, source, partStart.offset, minimumEnd, stop);
+
+            // The last boundary is not parsed when the parsing was stopped by it
+            Boundary end = new Boundary(source.length(), source.length() + 1);
+            int last = boundaries.size() - 1;
+            if (stop != null && last >= 0 && boundaries.get(last).offset >= minimumEnd
+                && stop.test(boundaries.get(last).offset)) {
+                end = boundaries.remove(last);
+            }
+            boundaries.add(end);
+
+            for (Boundary boundary : boundaries) {
+                // A part which does not end at a real boundary is parsed again with the next part
+                Part part = parsePart(wikiParser, source, partStart, boundary.offset);
+                if (part != null) {
+                    parts.add(part);
+                    partStart = boundary;
+                }
+            }
+
+            if (partStart == end) {
+                return end;
+            }
+
+            // The last part did not end at a real boundary so the parsing cannot stop there
+            minimumEnd = end.offset + 1;
+        }
+    }
+
+    private List<Boundary> findBlockBoundaries(XWikiParser wikiParser, String source, int start, int minimumEnd,
+        IntPredicate stop) throws ParseException
+    {
+        List<Boundary> boundaries = new ArrayList<>();
+        try {
+            wikiParser.findBlockBoundaries(source, start, (offset, scannedOffset) -> {
+                boundaries.add(new Boundary(offset, scannedOffset));
+
+                return stop == null || offset < minimumEnd || !stop.test(offset);
+            });
+        } catch (WikiParserException e) {
+            throw new ParseException("Failed to parse input source", e);
+        }
+
+        return boundaries;
+    }
+
+    /**
+     * @return the parsed part, null if it does not end at the end of the content or at a real boundary
+     */
+    private Part parsePart(XWikiParser wikiParser, String source, Boundary start, int end) throws ParseException
+    {
+        RecordingIdGenerator idGenerator = new RecordingIdGenerator();
+        XDOMGeneratorListener listener = new XDOMGeneratorListener();
+        boolean boundaryEnd;
+        try {
+            boundaryEnd = wikiParser.parsePart(new StringReader(source.substring(start.offset, end)),
+                ((XWiki21Parser) this.parser).createXWikiGeneratorListener(listener, idGenerator));
+        } catch (Exception e) {
+            throw new ParseException("Failed to parse input source", e);
+        }
+
+        if (!boundaryEnd && end < source.length()) {
+            return null;
+        }
+
+        return new Part(start.offset, start.scannedOffset, listener.getXDOM(), idGenerator.calls);
+    }
+
+    private static XDOM combine(List<Part> parts)
+    {
+        XDOM xdom = new XDOM(Collections.emptyList(), new IdGenerator(),
+            new MetaData(parts.get(0).metaData.getMetaData()));
+
+        Deque<SectionBlock> sections = new ArrayDeque<>();
+        for (Part part : parts) {
+            IdGenerator idGenerator = xdom.getIdGenerator();
+            setIds(part, call -> idGenerator.generateUniqueId(call.prefix, call.text));
+            place(part, xdom, sections);
+        }
+
+        return xdom;
+    }
+
+    /**
+     * Add the top level blocks of a part at the end of the document, in the sections opened by the headers.
+     */
+    private static void place(Part part, XDOM xdom, Deque<SectionBlock> sections)
+    {
+        for (Item item : part.items) {
+            if (item.level != null) {
+                // There's one section per level: the header closes the sections of its level and the next levels, and
+                // opens the sections of the levels between the current level and its level
+                while (sections.size() >= item.level.getAsInt()) {
+                    sections.pop();
+                }
+                while (sections.size() < item.level.getAsInt()) {
+                    SectionBlock section = new SectionBlock(new ArrayList<>());
+                    add(section, xdom, sections);
+                    sections.push(section);
+                }
+            }
+
+            add(item.block, xdom, sections);
+        }
+    }
+
+    private static void add(Block block, XDOM xdom, Deque<SectionBlock> sections)
+    {
+        if (sections.isEmpty()) {
+            xdom.addChild(block);
+        } else {
+            sections.peek().addChild(block);
+        }
+    }
+
+    /**
+     * Give the headers of a part the ids they get in the whole document, in the same order as when parsing the whole
+     * content.
+     */
+    private static void setIds(Part part, Function<IdCall, String> idProvider)
+    {
+        Map<String, String> ids = new HashMap<>();
+        for (int i = 0; i < part.ids.length; ++i) {
+            String id = idProvider.apply(part.calls.get(i));
+            if (!id.equals(part.ids[i])) {
+                ids.put(part.ids[i], id);
+                part.ids[i] = id;
+            }
+        }
+
+        if (!ids.isEmpty()) {
+            for (Item item : part.items) {
+                if (item.containsHeaders) {
+                    updateHeaderIds(item, ids);
+                }
+            }
+        }
+    }
+
+    private static void updateHeaderIds(Item item, Map<String, String> ids)
+    {
+        for (HeaderBlock header : item.block.<HeaderBlock>getBlocks(HEADER_MATCHER, Axes.DESCENDANT)) {
+            String id = ids.get(header.getId());
+            if (id != null) {
+                header.getParent().replaceChild(createHeader(header, id), header);
+            }
+        }
+
+        if (HEADER_MATCHER.match(item.block)) {
+            String id = ids.get(((HeaderBlock) item.block).getId());
+            if (id != null) {
+                HeaderBlock header = createHeader((HeaderBlock) item.block, id);
+                item.block.getParent().replaceChild(header, item.block);
+                item.block = header;
+            }
+        }
+    }
+
+    private static HeaderBlock createHeader(HeaderBlock header, String id)
+    {
+        return new HeaderBlock(new ArrayList<>(header.getChildren()), header.getLevel(), header.getParameters(), id);
+    }
+
+    /**
+     * Update the header ids of the document after replacing some parts.
+     */
+    private static void updateIds(IdGenerator idGenerator, List<Part> removedParts, List<Part> parsedParts,
+        List<Part> nextParts)
+    {
+        if (isSameIdCalls(removedParts, parsedParts)) {
+            // The new parts get the ids of the parts they replace, the ids of the next parts don't change
+            Iterator<String> removedIds = getIds(removedParts).iterator();
+            for (Part part : parsedParts) {
+                setIds(part, call -> removedIds.next());
+            }
+        } else {
+            // Generate again the ids from the first replaced part
+            for (String id : getIds(removedParts)) {
+                idGenerator.remove(id);
+            }
+            for (String id : getIds(nextParts)) {
+                idGenerator.remove(id);
+            }
+            for (Part part : parsedParts) {
+                setIds(part, call -> idGenerator.generateUniqueId(call.prefix, call.text));
+            }
+            for (Part part : nextParts) {
+                setIds(part, call -> idGenerator.generateUniqueId(call.prefix, call.text));
+            }
+        }
+    }
+
+    private static boolean isSameIdCalls(List<Part> parts, List<Part> otherParts)
+    {
+        List<IdCall> calls = new ArrayList<>();
+        parts.forEach(part -> calls.addAll(part.calls));
+        List<IdCall> otherCalls = new ArrayList<>();
+        otherParts.forEach(part -> otherCalls.addAll(part.calls));
+
+        if (calls.size() != otherCalls.size()) {
+            return false;
+        }
+        for (int i = 0; i < calls.size(); ++i) {
+            if (!calls.get(i).prefix.equals(otherCalls.get(i).prefix)
+                || !calls.get(i).text.equals(otherCalls.get(i).text)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static List<String> getIds(List<Part> parts)
+    {
+        List<String> ids = new ArrayList<>();
+        for (Part part : parts) {
+            Collections.addAll(ids, part.ids);
+        }
+
+        return ids;
+    }
+
+    private static List<Item> getItems(List<Part> parts)
+    {
+        List<Item> items = new ArrayList<>();
+        for (Part part : parts) {
+            items.addAll(part.items);
+        }
+
+        return items;
+    }
+
+    private static List<HeaderLevel> getLevels(List<Item> items)
+    {
+        List<HeaderLevel> levels = new ArrayList<>();
+        for (Item item : items) {
+            if (item.level != null) {
+                levels.add(item.level);
+            }
+        }
+
+        return levels;
+    }
+
+    /**
+     * @return the last top level block of the passed parts, null if they don't have any
+     */
+    private static Block getLastBlock(List<Part> parts)
+    {
+        for (int i = parts.size() - 1; i >= 0; --i) {
+            List<Item> items = parts.get(i).items;
+            if (!items.isEmpty()) {
+                return items.get(items.size() - 1).block;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Replace the top level blocks of the removed parts with the ones of the parsed parts, when the headers they
+     * contain have the same levels: the sections don't change, each header takes the place of the header at the same
+     * position and the blocks between two headers take the place of the blocks between the corresponding headers.
+     *
+     * @param previous the last top level block before the removed blocks, null if they are at the beginning
+     */
+    private static void replaceItems(XDOM xdom, Block previous, List<Item> removedItems, List<Item> parsedItems)
+    {
+        Block previousBlock = previous;
+        int removedIndex = 0;
+        int parsedIndex = 0;
+        while (true) {
+            List<Block> removedBlocks = new ArrayList<>();
+            for (; removedIndex < removedItems.size() && removedItems.get(removedIndex).level == null; ++removedIndex) {
+                removedBlocks.add(removedItems.get(removedIndex).block);
+            }
+            List<Block> parsedBlocks = new ArrayList<>();
+            for (; parsedIndex < parsedItems.size() && parsedItems.get(parsedIndex).level == null; ++parsedIndex) {
+                parsedBlocks.add(parsedItems.get(parsedIndex).block);
+            }
+            previousBlock = replaceBlocks(xdom, previousBlock, removedBlocks, parsedBlocks);
+
+            if (removedIndex == removedItems.size()) {
+                return;
+            }
+
+            Block removedHeader = removedItems.get(removedIndex++).block;
+            Block parsedHeader = parsedItems.get(parsedIndex++).block;
+            removedHeader.getParent().replaceChild(parsedHeader, removedHeader);
+            previousBlock = parsedHeader;
+        }
+    }
+
+    /**
+     * @return the last block of the document before the next removed blocks
+     */
+    private static Block replaceBlocks(XDOM xdom, Block previous, List<Block> removedBlocks, List<Block> parsedBlocks)
+    {
+        if (!removedBlocks.isEmpty()) {
+            Block parent = removedBlocks.get(0).getParent();
+            parent.replaceChild(parsedBlocks, removedBlocks.get(0));
+            for (int i = 1; i < removedBlocks.size(); ++i) {
+                parent.removeBlock(removedBlocks.get(i));
+            }
+        } else if (previous == null) {
+            Block next = xdom.getChildren().isEmpty() ? null : xdom.getChildren().get(0);
+            for (Block block : parsedBlocks) {
+                xdom.insertChildBefore(block, next);
+            }
+        } else {
+            Block previousBlock = previous;
+            for (Block block : parsedBlocks) {
+                previous.getParent().insertChildAfter(block, previousBlock);
+                previousBlock = block;
+            }
+        }
+
+        return parsedBlocks.isEmpty() ? previous : parsedBlocks.get(parsedBlocks.size() - 1);
+    }
+
+    /**
+     * Remove the top level blocks following the passed block and add the blocks of the passed parts instead, when the
+     * sections are modified.
+     *
+     * @param previous the last top level block to keep, null to remove all the blocks
+     */
+    private static void placeAgain(XDOM xdom, Block previous, List<Part> parsedParts, List<Part> nextParts)
+    {
+        // The sections which contain the last kept block are the ones open after it
+        Deque<SectionBlock> sections = new ArrayDeque<>();
+        Block lastBlock = previous;
+        Block parent = previous != null ? previous.getParent() : xdom;
+        while (true) {
+            List<Block> children = parent.getChildren();
+            while (!children.isEmpty() && children.get(children.size() - 1) != lastBlock) {
+                parent.removeBlock(children.get(children.size() - 1));
+            }
+
+            if (parent == xdom) {
+                break;
+            }
+
+            sections.addLast((SectionBlock) parent);
+            lastBlock = parent;
+            parent = parent.getParent();
+        }
+
+        for (Part part : parsedParts) {
+            place(part, xdom, sections);
+        }
+        for (Part part : nextParts) {
+            place(part, xdom, sections);
+        }
+    }
+
+    /**
+     * A place where the content can be split, see
+     * {@link XWikiParser#findBlockBoundaries(String, int, XWikiParser.BlockBoundaryHandler)}.
+     */
+    private static final class Boundary
+    {
+        private final int offset;
+
+        private final int scannedOffset;
+
+        Boundary(int offset, int scannedOffset)
+        {
+            this.offset = offset;
+            this.scannedOffset = scannedOffset;
+        }
+    }
+
+    /**
+     * A part of the content, parsed separately.
+     */
+    private static final class Part
+    {
+        private final int offset;
+
+        /**
+         * The offset of the first character the scanner did not read to find the boundary at the start of this part.
+         */
+        private final int scannedOffset;
+
+        private final MetaData metaData;
+
+        private final List<IdCall> calls;
+
+        /**
+         * The ids generated by the calls in the whole document.
+         */
+        private final String[] ids;
+
+        /**
+         * The top level blocks of the part, with the sections replaced by their content.
+         */
+        private final List<Item> items;
+
+        Part(int offset, int scannedOffset, XDOM xdom, List<IdCall> calls)
+        {
+            this.offset = offset;
+            this.scannedOffset = scannedOffset;
+            this.metaData = xdom.getMetaData();
+            this.calls = calls;
+            this.ids = new String[calls.size()];
+            for (int i = 0; i < this.ids.length; ++i) {
+                this.ids[i] = calls.get(i).id;
+            }
+            this.items = new ArrayList<>();
+            addItems(xdom);
+        }
+
+        private Part(Part part, int delta, int minimumScannedOffset)
+        {
+            this.offset = part.offset + delta;
+            this.scannedOffset = Math.max(part.scannedOffset + delta, minimumScannedOffset);
+            this.metaData = part.metaData;
+            this.calls = part.calls;
+            this.ids = part.ids;
+            this.items = part.items;
+        }
+
+        private void addItems(Block parent)
+        {
+            for (Block block : parent.getChildren()) {
+                if (block instanceof SectionBlock) {
+                    addItems(block);
+                } else if (block instanceof HeaderBlock && parent instanceof SectionBlock) {
+                    this.items.add(new Item(block, ((HeaderBlock) block).getLevel(), true));
+                } else {
+                    this.items.add(new Item(block, null, block.getFirstBlock(HEADER_MATCHER, Axes.DESCENDANT) != null));
+                }
+            }
+        }
+
+        Part shift(int delta, int minimumScannedOffset)
+        {
+            return new Part(this, delta, minimumScannedOffset);
+        }
+    }
+
+    /**
+     * A top level block of a part.
+     */
+    private static final class Item
+    {
+        /**
+         * The block in the document, replaced when the id of the header it is changes.
+         */
+        private Block block;
+
+        /**
+         * The level of the section started by this block when it's the header of a section, null otherwise.
+         */
+        private final HeaderLevel level;
+
+        private final boolean containsHeaders;
+
+        Item(Block block, HeaderLevel level, boolean containsHeaders)
+        {
+            this.block = block;
+            this.level = level;
+            this.containsHeaders = containsHeaders;
+        }
+    }
+
+    /**
+     * A unique id generated while parsing a part.
+     */
+    private static final class IdCall
+    {
+        private final String prefix;
+
+        private final String text;
+
+        private final String id;
+
+        IdCall(String prefix, String text, String id)
+        {
+            this.prefix = prefix;
+            this.text = text;
+            this.id = id;
+        }
+    }
+
+    /**
+     * Remember the unique ids generated while parsing a part, to generate them again when the parts are put together.
+     */
+    private static final class RecordingIdGenerator extends IdGenerator
+    {
+        private final List<IdCall> calls = new ArrayList<>();
+
+        @Override
+        public String generateUniqueId(String prefix, String text)
+        {
+            String id = super.generateUniqueId(prefix, text);
+            this.calls.add(new IdCall(prefix, text, id));
+
+            return id;
+        }
+    }
+
+    private static final class IncrementalParsedSource implements ParsedSource
+    {
+        private final String source;
+
+        private final List<Part> parts;
+
+        private final XDOM xdom;
+
+        /**
+         * True when the XDOM was updated for the next version of the content.
+         */
+        private boolean updated;
+
+        IncrementalParsedSource(String source, List<Part> parts, XDOM xdom)
+        {
+            this.source = source;
+            this.parts = parts;
+            this.xdom = xdom;
+        }
+
+        /**
+         * Replace the parts between the passed indexes in the XDOM.
+         *
+         * @return the new version of the content
+         */
+        IncrementalParsedSource update(String newSource, int first, int next, List<Part> parsedParts,
+            List<Part> nextParts)
+        {
+            List<Part> removedParts = this.parts.subList(first, next);
+            Block previous = getLastBlock(this.parts.subList(0, first));
+
+            updateIds(this.xdom.getIdGenerator(), removedParts, parsedParts, nextParts);
+
+            List<Item> removedItems = getItems(removedParts);
+            List<Item> parsedItems = getItems(parsedParts);
+            if (getLevels(removedItems).equals(getLevels(parsedItems))) {
+                replaceItems(this.xdom, previous, removedItems, parsedItems);
+            } else {
+                placeAgain(this.xdom, previous, parsedParts, nextParts);
+            }
+
+            List<Part> newParts = new ArrayList<>(first + parsedParts.size() + nextParts.size());
+            newParts.addAll(this.parts.subList(0, first));
+            newParts.addAll(parsedParts);
+            newParts.addAll(nextParts);
+
+            this.updated = true;
+
+            return new IncrementalParsedSource(newSource, newParts, this.xdom);
+        }
+
+        @Override
+        public String getSource()
+        {
+            return this.source;
+        }
+
+        @Override
+        public XDOM getXDOM()
+        {
+            return this.xdom;
+        }
+
+        @Override
+        public List<Integer> getBlockOffsets()
+        {
+            List<Integer> offsets = new ArrayList<>(this.parts.size());
+            for (Part part : this.parts) {
+                offsets.add(part.offset);
+            }
+
+            return offsets;
+        }
+    }
+
+    /**
+     * A content parsed at once, when the parts cannot be parsed separately.
+     *
+     * @version $Id$
+     */
+    private static final class FullParsedSource implements ParsedSource
+    {
+        private final String source;
+
+        private final XDOM xdom;
+
+        FullParsedSource(String source, XDOM xdom)
+        {
+            this.source = source;
+            this.xdom = xdom;
+        }
+
+        @Override
+        public String getSource()
+        {
+            return this.source;
+        }
+
+        @Override
+        public XDOM getXDOM()
+        {
+            return this.xdom;
+        }
+
+        @Override
+        public List<Integer> getBlockOffsets()
+        {
+            return Collections.singletonList(0);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.parser.xwiki21;
+
+import java.io.StringReader;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.rendering.listener.EventProjection;
+import org.xwiki.rendering.listener.HeaderLevel;
+import org.xwiki.rendering.listener.WrappingListener;
+import org.xwiki.rendering.listener.chaining.EventType;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.parser.StreamParser;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Micro benchmark comparing the extraction of the links, images and header texts of a document from a full XDOM and
+ * with an {@link EventProjection} driven directly by the stream parser.
+ * <p>
+ * Not executed by the build. To run it (with the allocation rate):
+ *
+ * <pre>
+ * <code>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main \
+ *   -Dexec.args="EventProjectionBenchmark -prof gc"
+ * </code>
+ * </pre>
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventProjectionBenchmark
+{
+    private static final int SECTIONS = 200;
+
+    private static final String SECTION = "= Section %d with a [[link>>Space.Page]] =\n\n"
+        + "Some **bold** and //italic// text with a [[link>>Space.Page]] and an image:image.png inline.\n"
+        + "A second line with {{macro param=\"value\"/}} and a https://www.xwiki.org URL.\n\n"
+        + "* item with **bold**\n** nested [[label>>Page]]\n* item\n1. first\n11. second\n\n"
+        + "|=Head|=Other head\n|cell with //italic//|(((\n* list in a cell\n)))\n\n"
+        + "; term\n: description\n\n"
+        + "> quoted text\n\n"
+        + "{{{verbatim}}}\n\n"
+        + "----\n\n";
+
+    private static final EventProjection PROJECTION = new EventProjection()
+        .include(EventType.BEGIN_LINK, EventType.ON_IMAGE, EventType.BEGIN_HEADER, EventType.END_HEADER)
+        .includeWithin(EventType.BEGIN_HEADER, EventType.ON_WORD, EventType.ON_SPACE, EventType.ON_SPECIAL_SYMBOL);
+
+    private Parser parser;
+
+    private StreamParser streamParser;
+
+    private String content;
+
+    /**
+     * Collect the references and the words of the headers.
+     */
+    private static class Extractor extends WrappingListener
+    {
+        private final StringBuilder result = new StringBuilder();
+
+        private int headerDepth;
+
+        @Override
+        public void beginHeader(HeaderLevel level, String id, Map<String, String> parameters)
+        {
+            ++this.headerDepth;
+        }
+
+        @Override
+        public void endHeader(HeaderLevel level, String id, Map<String, String> parameters)
+        {
+            --this.headerDepth;
+        }
+
+        @Override
+        public void beginLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+        {
+            this.result.append(reference.getReference()).append('\n');
+        }
+
+        @Override
+        public void onImage(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+        {
+            this.result.append(reference.getReference()).append('\n');
+        }
+
+        @Override
+        public void onWord(String word)
+        {
+            if (this.headerDepth > 0) {
+                this.result.append(word);
+            }
+        }
+
+        @Override
+        public void onSpace()
+        {
+            if (this.headerDepth > 0) {
+                this.result.append(' ');
+            }
+        }
+
+        @Override
+        public void onSpecialSymbol(char symbol)
+        {
+            if (this.headerDepth > 0) {
+                this.result.append(symbol);
+            }
+        }
+    }
+
+    /**
+     * Create a document made of 200 sections using most of the XWiki Syntax 2.1 elements.
+     *
+     * @throws Exception when failing to initialize the components
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        EmbeddableComponentManager componentManager = new EmbeddableComponentManager();
+        componentManager.initialize(getClass().getClassLoader());
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < SECTIONS; ++i) {
+            builder.append(String.format(SECTION, i));
+        }
+        this.content = builder.toString();
+
+        this.parser = componentManager.getInstance(Parser.class, Syntax.XWIKI_2_1.toIdString());
+        this.streamParser = componentManager.getInstance(StreamParser.class, Syntax.XWIKI_2_1.toIdString());
+    }
+
+    @Benchmark
+    public int xdom() throws ParseException
+    {
+        Extractor extractor = new Extractor();
+        this.parser.parse(new StringReader(this.content)).traverse(extractor);
+
+        return extractor.result.length();
+    }
+
+    @Benchmark
+    public int projection() throws ParseException
+    {
+        Extractor extractor = new Extractor();
+        this.streamParser.parse(new StringReader(this.content), PROJECTION.compile(extractor));
+
+        return extractor.result.length();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.parser.xwiki21;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Micro benchmark measuring the parsing of many small contents, like the content of the macros or the labels of the
+ * links, for which the fixed cost of each parse (mostly the creation of the scanner) matters more than the size of the
+ * content.
+ * <p>
+ * Not executed by the build. To run it (with the allocation rate):
+ *
+ * <pre>
+ * <code>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main \
+ *   -Dexec.args="SmallContentParserBenchmark -prof gc"
+ * </code>
+ * </pre>
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SmallContentParserBenchmark
+{
+    private static final String[] CONTENTS = {
+        "Some **bold** text",
+        "label",
+        "A [[link>>Space.Page]] in a sentence.",
+        "* item\n* other item",
+        "|=Head|=Other head\n|cell|cell",
+        "{{info}}message{{/info}}",
+        "//italic// and __underline__",
+        "image:image.png"
+    };
+
+    private Parser parser;
+
+    /**
+     * @throws Exception when failing to initialize the components
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        EmbeddableComponentManager componentManager = new EmbeddableComponentManager();
+        componentManager.initialize(getClass().getClassLoader());
+
+        this.parser = componentManager.getInstance(Parser.class, Syntax.XWIKI_2_1.toIdString());
+    }
+
+    @Benchmark
+    public int parse() throws ParseException
+    {
+        int blocks = 0;
+        for (String content : CONTENTS) {
+            blocks += this.parser.parse(new StringReader(content)).getChildren().size();
+        }
+
+        return blocks;
+    }
+}
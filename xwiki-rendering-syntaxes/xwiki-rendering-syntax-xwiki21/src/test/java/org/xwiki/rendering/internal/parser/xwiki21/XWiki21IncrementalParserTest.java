@@ -0,0 +1,293 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.parser.xwiki21;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.HeaderBlock;
+import org.xwiki.rendering.block.SectionBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.parser.incremental.IncrementalParser;
+import org.xwiki.rendering.parser.incremental.ParsedSource;
+import org.xwiki.rendering.parser.incremental.TextEdit;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.rendering.util.IdGenerator;
+import org.xwiki.test.annotation.AllComponents;
+import org.xwiki.test.mockito.MockitoComponentManagerRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Validate that {@link XWiki21IncrementalParser} produces the same result as parsing the whole content.
+ *
+ * @version $Id$
+ */
+@AllComponents
+public class XWiki21IncrementalParserTest
+{
+    /**
+     * The pieces of content the documents are made of, including blocks containing empty lines and blocks which are
+     * not closed.
+     */
+    private static final String[] FRAGMENTS = { "= A =", "== A ==", "=== B ===", "== **B** ==", "= A", "word",
+        "some **bold** words", "line\nnext line", "* item\n** sub item", "1. one\n11. two", "; term\n: definition",
+        "> quote\n>> quote", "|=head|=head\n|cell|cell", "|a\n\n|b", "{{{verbatim\n\ncontent}}}", "{{{", "}}}",
+        "{{velocity}}\nx\n\ny\n{{/velocity}}", "{{toc/}}", "{{box}}\n= A =\n\ncontent\n{{/box}}", "(((\n= A =\n\ngroup\n)))",
+        "(((", ")))", "(% class=\"c\" %)", "(% class=\"c\" %)\n= C =", "[[label\n\nmore>>Page]]", "[[A>>B]]", "----",
+        "~= not a header", "~", "**", "//italic", "image:img.png", "$$", "{{html}}\n<p>x</p>\n\n{{/html}}" };
+
+    private static final String[] SEPARATORS = { "\n", "\n\n", "\n\n", "\n\n", "\n\n\n", "\n\n\n\n", " \n\n", "\n\n ",
+        "\r\n\r\n", "\r\n", "\r\r", " " };
+
+    private static final String[] TEXTS = { "", "a", " ", "=", "==", "\n", "\n\n", "\r\n", "{", "}", "{{{", "}}}",
+        "(", ")", "(((", ")))", "~", "|", "*", "[[", ">>", "]]", "{{velocity}}", "{{/velocity}}", "(%", "%)", "= A =",
+        "\n\n= B =\n\n", "\n\nparagraph\n\n", "\n\n== A ==\n\n" };
+
+    @Rule
+    public MockitoComponentManagerRule componentManager = new MockitoComponentManagerRule();
+
+    private Parser parser;
+
+    private IncrementalParser incrementalParser;
+
+    private final Random random = new Random(42);
+
+    @Before
+    public void before() throws Exception
+    {
+        this.parser = this.componentManager.getInstance(Parser.class, Syntax.XWIKI_2_1.toIdString());
+        this.incrementalParser =
+            this.componentManager.getInstance(IncrementalParser.class, Syntax.XWIKI_2_1.toIdString());
+    }
+
+    private void assertBlockEquals(Block expected, Block actual, String message)
+    {
+        assertEquals(message, expected.getClass(), actual.getClass());
+        assertEquals(message, expected.getChildren().size(), actual.getChildren().size());
+        for (int i = 0; i < expected.getChildren().size(); ++i) {
+            assertBlockEquals(expected.getChildren().get(i), actual.getChildren().get(i), message);
+        }
+        assertEquals(message, expected, actual);
+    }
+
+    private void assertParsedSource(ParsedSource parsedSource, String message) throws Exception
+    {
+        XDOM expected = this.parser.parse(new StringReader(parsedSource.getSource()));
+
+        assertBlockEquals(expected, parsedSource.getXDOM(), message);
+        assertEquals(message, expected.getMetaData(), parsedSource.getXDOM().getMetaData());
+        // The id generator of the XDOM is used by the next incremental parsings
+        assertEquals(message, expected.getIdGenerator().generateUniqueId("H", "A"),
+            new IdGenerator(parsedSource.getXDOM().getIdGenerator()).generateUniqueId("H", "A"));
+
+        List<Integer> offsets = parsedSource.getBlockOffsets();
+        assertEquals(message, 0, (int) offsets.get(0));
+        for (int i = 1; i < offsets.size(); ++i) {
+            assertTrue(message, offsets.get(i - 1) < offsets.get(i));
+        }
+    }
+
+    private String pick(String[] values)
+    {
+        return values[this.random.nextInt(values.length)];
+    }
+
+    private String generateDocument()
+    {
+        StringBuilder document = new StringBuilder();
+        int size = this.random.nextInt(12);
+        for (int i = 0; i < size; ++i) {
+            if (i > 0) {
+                document.append(pick(SEPARATORS));
+            }
+            document.append(pick(FRAGMENTS));
+        }
+
+        return document.toString();
+    }
+
+    private TextEdit generateEdit(String source)
+    {
+        while (true) {
+            int offset = this.random.nextInt(source.length() + 1);
+            int length = this.random.nextInt(Math.min(source.length() - offset, 6) + 1);
+            String text = this.random.nextInt(4) == 0 ? pick(FRAGMENTS) : pick(TEXTS);
+
+            TextEdit edit = new TextEdit(offset, length, text);
+            if (isParsable(edit.apply(source))) {
+                return edit;
+            }
+        }
+    }
+
+    private boolean isParsable(String source)
+    {
+        // The scanner fails on a few contents (like an escape at the end of an unclosed verbatim block)
+        try {
+            this.parser.parse(new StringReader(source));
+
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void parse() throws Exception
+    {
+        String source = "= A =\n\nparagraph\n\n== A ==\n\n{{velocity}}\nx\n\ny\n{{/velocity}}\n\n|a|b\n\n= B =\n\nend";
+        ParsedSource parsedSource = this.incrementalParser.parse(source);
+
+        assertEquals(source, parsedSource.getSource());
+        assertEquals(Arrays.asList(0, 7, 18, 27, 60, 66, 73), parsedSource.getBlockOffsets());
+        assertParsedSource(parsedSource, source);
+
+        assertParsedSource(this.incrementalParser.parse(""), "");
+    }
+
+    @Test
+    public void parseWithEdit() throws Exception
+    {
+        String source = "= A =\n\nparagraph\n\n= B =\n\nparagraph\n\n= C =\n\nparagraph";
+        ParsedSource parsedSource = this.incrementalParser.parse(source);
+
+        // Inserting a header with the same text changes the ids of the next headers
+        parsedSource = this.incrementalParser.parse(parsedSource, new TextEdit(18, 0, "= A =\n\n"));
+        assertParsedSource(parsedSource, parsedSource.getSource());
+        HeaderBlock header = ((SectionBlock) parsedSource.getXDOM().getChildren().get(1)).getHeaderBlock();
+        assertEquals("HA-1", header.getId());
+
+        // Changing the level of a header changes the sections
+        parsedSource = this.incrementalParser.parse(parsedSource, new TextEdit(25, 0, "="));
+        assertParsedSource(parsedSource, parsedSource.getSource());
+        assertEquals(3, parsedSource.getXDOM().getChildren().size());
+
+        // Opening a verbatim block merges all the next blocks
+        parsedSource = this.incrementalParser.parse(parsedSource, new TextEdit(7, 0, "{{{"));
+        assertParsedSource(parsedSource, parsedSource.getSource());
+        assertEquals(2, parsedSource.getBlockOffsets().size());
+
+        // The headers of the link labels don't get their id from the document
+        parsedSource = this.incrementalParser.parse("[[(((\n= A =\n)))>>Page]]\n= A =");
+        parsedSource = this.incrementalParser.parse(parsedSource, new TextEdit(0, 0, "= A =\n\n"));
+        assertParsedSource(parsedSource, parsedSource.getSource());
+
+        // A format can continue after an empty line
+        parsedSource = this.incrementalParser.parse("; term\n: d(((p)))\n//\n\nitalic\n\nparagraph");
+        parsedSource = this.incrementalParser.parse(parsedSource, new TextEdit(22, 0, "x"));
+        assertParsedSource(parsedSource, parsedSource.getSource());
+        assertEquals(Arrays.asList(0, 31), parsedSource.getBlockOffsets());
+    }
+
+    @Test
+    public void parseUpdatesXDOM() throws Exception
+    {
+        ParsedSource parsedSource = this.incrementalParser.parse("= A =\n\nfirst\n\nsecond\n\nthird");
+        List<Block> blocks = parsedSource.getXDOM().getChildren().get(0).getChildren();
+        Block header = blocks.get(0);
+        Block first = blocks.get(1);
+        Block third = blocks.get(3);
+
+        // Only the modified block is replaced
+        ParsedSource modifiedSource = this.incrementalParser.parse(parsedSource, new TextEdit(16, 2, "x"));
+        assertParsedSource(modifiedSource, modifiedSource.getSource());
+        blocks = modifiedSource.getXDOM().getChildren().get(0).getChildren();
+        assertSame(header, blocks.get(0));
+        assertSame(first, blocks.get(1));
+        assertSame(third, blocks.get(3));
+
+        // The previous version can be modified again, the whole content is parsed then
+        modifiedSource = this.incrementalParser.parse(parsedSource, new TextEdit(0, 0, "== B ==\n\n"));
+        assertParsedSource(modifiedSource, modifiedSource.getSource());
+        assertNotSame(parsedSource.getXDOM(), modifiedSource.getXDOM());
+    }
+
+    @Test
+    public void parseWithAnotherParser() throws Exception
+    {
+        // Another implementation of the parser (overriding the default one) is used to parse the whole content
+        Parser otherParser = new Parser()
+        {
+            @Override
+            public Syntax getSyntax()
+            {
+                return Syntax.XWIKI_2_1;
+            }
+
+            @Override
+            public XDOM parse(Reader source) throws ParseException
+            {
+                XDOM xdom = XWiki21IncrementalParserTest.this.parser.parse(source);
+                xdom.getMetaData().addMetaData("parser", "other");
+
+                return xdom;
+            }
+        };
+        ReflectionUtils.setFieldValue(this.incrementalParser, "parser", otherParser);
+
+        ParsedSource parsedSource = this.incrementalParser.parse("= A =\n\nparagraph");
+        parsedSource = this.incrementalParser.parse(parsedSource, new TextEdit(16, 0, "\n\n= B ="));
+
+        assertEquals("= A =\n\nparagraph\n\n= B =", parsedSource.getSource());
+        assertEquals(Arrays.asList(0), parsedSource.getBlockOffsets());
+        assertEquals("other", parsedSource.getXDOM().getMetaData().getMetaData("parser"));
+        assertEquals(this.parser.parse(new StringReader(parsedSource.getSource())).getChildren(),
+            parsedSource.getXDOM().getChildren());
+    }
+
+    @Test
+    public void parseWithRandomEdits() throws Exception
+    {
+        for (int i = 0; i < 300; ++i) {
+            String source = generateDocument();
+            if (!isParsable(source)) {
+                continue;
+            }
+
+            ParsedSource parsedSource = this.incrementalParser.parse(source);
+            assertParsedSource(parsedSource, source);
+
+            for (int j = 0; j < 20; ++j) {
+                String previousSource = parsedSource.getSource();
+                TextEdit edit = generateEdit(previousSource);
+                String message = "Applying " + edit + " to [" + previousSource + "]";
+
+                parsedSource = this.incrementalParser.parse(parsedSource, edit);
+
+                assertEquals(message, edit.apply(previousSource), parsedSource.getSource());
+                assertParsedSource(parsedSource, message);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.parser.xwiki21;
+
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.ImageBlock;
+import org.xwiki.rendering.block.LinkBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.block.match.ClassBlockMatcher;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.test.annotation.AllComponents;
+import org.xwiki.test.mockito.MockitoComponentManagerRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Validate the parsing of the link labels, which are remembered when they are repeated in a document.
+ *
+ * @version $Id$
+ */
+@AllComponents
+public class XWiki21LinkLabelTest
+{
+    @Rule
+    public MockitoComponentManagerRule componentManager = new MockitoComponentManagerRule();
+
+    private Parser parser;
+
+    private BlockRenderer renderer;
+
+    @Before
+    public void before() throws Exception
+    {
+        this.parser = this.componentManager.getInstance(Parser.class, Syntax.XWIKI_2_1.toIdString());
+        this.renderer = this.componentManager.getInstance(BlockRenderer.class, Syntax.XWIKI_2_1.toIdString());
+    }
+
+    private String render(Block block)
+    {
+        DefaultWikiPrinter printer = new DefaultWikiPrinter();
+        this.renderer.render(block, printer);
+
+        return printer.toString();
+    }
+
+    @Test
+    public void parseRepeatedLabels() throws Exception
+    {
+        String content = "[[**bold** label>>A]] [[**bold** label>>B]] [[* not a list>>C]]\n\n"
+            + "|[[**bold** label>>A]]|[[* not a list>>C]]\n\n[[**bold** label>>A]]";
+
+        XDOM xdom = this.parser.parse(new StringReader(content));
+
+        assertEquals(content, render(xdom));
+
+        List<LinkBlock> links = xdom.getBlocks(new ClassBlockMatcher(LinkBlock.class), Block.Axes.DESCENDANT);
+        assertEquals(6, links.size());
+        assertEquals(links.get(0).getChildren(), links.get(3).getChildren());
+        assertNotSame(links.get(0).getChildren().get(0), links.get(3).getChildren().get(0));
+    }
+
+    @Test
+    public void parseRepeatedLabelsWithImage() throws Exception
+    {
+        String content = "[[image:image.png>>A]] [[image:image.png>>B]]";
+
+        XDOM xdom = this.parser.parse(new StringReader(content));
+
+        assertEquals(content, render(xdom));
+
+        // Each image has its own reference, which can be modified
+        List<ImageBlock> images = xdom.getBlocks(new ClassBlockMatcher(ImageBlock.class), Block.Axes.DESCENDANT);
+        assertEquals(2, images.size());
+        assertNotSame(images.get(0).getReference(), images.get(1).getReference());
+    }
+}
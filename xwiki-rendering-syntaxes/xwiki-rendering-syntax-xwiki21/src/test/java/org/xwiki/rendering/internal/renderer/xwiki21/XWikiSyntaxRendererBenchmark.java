@@ -0,0 +1,110 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.renderer.xwiki21;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Micro benchmark measuring the throughput of the XWiki Syntax 2.1 renderer, which relies heavily on the lookahead
+ * event queue (to look at the next events and to stack the content of list items and table cells).
+ * <p>
+ * Not executed by the build. To run it (with the allocation rate):
+ *
+ * <pre>
+ * <code>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main \
+ *   -Dexec.args="XWikiSyntaxRendererBenchmark -prof gc"
+ * </code>
+ * </pre>
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XWikiSyntaxRendererBenchmark
+{
+    private static final int SECTIONS = 200;
+
+    private static final String SECTION = "= Section %d =\n\n"
+        + "Some **bold** and //italic// text with a [[link>>Space.Page]] and an image:image.png inline.\n"
+        + "A second line with {{macro param=\"value\"/}} and a https://www.xwiki.org URL.\n\n"
+        + "* item with **bold**\n** nested [[label>>Page]]\n* item\n1. first\n11. second\n\n"
+        + "|=Head|=Other head\n|cell with //italic//|(((\n* list in a cell\n)))\n\n"
+        + "; term\n: description\n\n"
+        + "> quoted text\n\n"
+        + "{{{verbatim}}}\n\n"
+        + "----\n\n";
+
+    private BlockRenderer renderer;
+
+    private XDOM xdom;
+
+    /**
+     * Parse a document made of 200 sections using most of the XWiki Syntax 2.1 elements.
+     *
+     * @throws Exception when failing to initialize the components or to parse the document
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        EmbeddableComponentManager componentManager = new EmbeddableComponentManager();
+        componentManager.initialize(getClass().getClassLoader());
+
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < SECTIONS; ++i) {
+            content.append(String.format(SECTION, i));
+        }
+
+        Parser parser = componentManager.getInstance(Parser.class, Syntax.XWIKI_2_1.toIdString());
+        this.xdom = parser.parse(new StringReader(content.toString()));
+        this.renderer = componentManager.getInstance(BlockRenderer.class, Syntax.XWIKI_2_1.toIdString());
+    }
+
+    @Benchmark
+    public int render()
+    {
+        DefaultWikiPrinter printer = new DefaultWikiPrinter();
+        this.renderer.render(this.xdom, printer);
+
+        return printer.getBuffer().length();
+    }
+}
@@ -19,6 +19,8 @@
  */
 package org.xwiki.rendering.internal.transformation.linkchecker;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,9 +38,9 @@
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.block.LinkBlock;
 import org.xwiki.rendering.block.MetaDataBlock;
-import org.xwiki.rendering.block.match.ClassBlockMatcher;
-import org.xwiki.rendering.block.match.MetadataBlockMatcher;
+import org.xwiki.rendering.internal.block.BlockStack;
 import org.xwiki.rendering.listener.MetaData;
+import org.xwiki.rendering.listener.MetaDataScope;
 import org.xwiki.rendering.listener.reference.ResourceType;
 import org.xwiki.rendering.transformation.AbstractTransformation;
 import org.xwiki.rendering.transformation.TransformationContext;
@@ -103,22 +105,7 @@ public void transform(Block source, TransformationContext context) throws Transf
         // if the queue has MAX_LINKS_IN_QUEUE or more elements already the links from the current page being rendered
         // will not be verified. They'll get their chance the next time the page is visited again...
         if (getLinkQueue().size() < MAX_LINKS_IN_QUEUE) {
-            for (LinkBlock linkBlock : source.<LinkBlock>getBlocks(
-                new ClassBlockMatcher(LinkBlock.class), Block.Axes.DESCENDANT))
-            {
-                if (linkBlock.getReference().getType().equals(ResourceType.URL)) {
-                    // This is a link pointing to an external URL, add it to the queue for processing (i.e. checking).
-                    String linkReference = linkBlock.getReference().getReference();
-                    String contentReference = extractSourceContentReference(linkBlock);
-                    // If there's no content reference then use a default name of "default"
-                    if (contentReference == null) {
-                        contentReference = "default";
-                    }
-                    // Add Link Context Data
-                    Map<String, Object> linkContextData = createLinkContextData(linkReference, contentReference);
-                    this.linkQueue.add(new LinkQueueItem(linkReference, contentReference, linkContextData));
-                }
-            }
+            addLinks(source);
         }
     }
 
@@ -165,18 +152,64 @@ private Map<String, Object> createLinkContextData(String linkReference, String c
         return linkContextData;
     }
 
+    private void addLinks(Block source)
+    {
+        // Resolve the source metadata while walking down the blocks instead of looking at the ancestors of each link:
+        // the scope is the one of the block on top of the stack
+        MetaDataScope scope = getMetaDataScope(source);
+
+        BlockStack stack = new BlockStack();
+        stack.push(source);
+        while (!stack.isEmpty()) {
+            Block child = stack.nextChild();
+            if (child != null) {
+                if (child instanceof MetaDataBlock) {
+                    scope = scope.push(((MetaDataBlock) child).getMetaData());
+                } else if (child instanceof LinkBlock) {
+                    addLink((LinkBlock) child, scope);
+                }
+                stack.push(child);
+            } else if (stack.pop() instanceof MetaDataBlock && !stack.isEmpty()) {
+                // Leaving a metadata block located under the source
+                scope = scope.getParent();
+            }
+        }
+    }
+
+    private void addLink(LinkBlock linkBlock, MetaDataScope scope)
+    {
+        if (linkBlock.getReference().getType().equals(ResourceType.URL)) {
+            // This is a link pointing to an external URL, add it to the queue for processing (i.e. checking).
+            String linkReference = linkBlock.getReference().getReference();
+            String contentReference = scope.getMetaData(MetaData.SOURCE);
+            // If there's no content reference then use a default name of "default"
+            if (contentReference == null) {
+                contentReference = "default";
+            }
+            // Add Link Context Data
+            Map<String, Object> linkContextData = createLinkContextData(linkReference, contentReference);
+            this.linkQueue.add(new LinkQueueItem(linkReference, contentReference, linkContextData));
+        }
+    }
+
     /**
-     * @param source the blocks from where to try to extract the source content
-     * @return the source content reference or null if none is found
+     * @param block the block for which to resolve the metadata
+     * @return the metadata of the block and its ancestors
      */
-    private String extractSourceContentReference(Block source)
+    private MetaDataScope getMetaDataScope(Block block)
     {
-        String contentSource = null;
-        MetaDataBlock metaDataBlock =
-            source.getFirstBlock(new MetadataBlockMatcher(MetaData.SOURCE), Block.Axes.ANCESTOR);
-        if (metaDataBlock != null) {
-            contentSource = (String) metaDataBlock.getMetaData().getMetaData(MetaData.SOURCE);
+        Deque<MetaData> metaDatas = new ArrayDeque<>();
+        for (Block current = block; current != null; current = current.getParent()) {
+            if (current instanceof MetaDataBlock) {
+                metaDatas.push(((MetaDataBlock) current).getMetaData());
+            }
+        }
+
+        MetaDataScope scope = MetaDataScope.EMPTY;
+        for (MetaData metaData : metaDatas) {
+            scope = scope.push(metaData);
         }
-        return contentSource;
+
+        return scope;
     }
 }
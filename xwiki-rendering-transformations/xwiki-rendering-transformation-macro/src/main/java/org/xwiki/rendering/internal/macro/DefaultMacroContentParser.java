@@ -41,7 +41,9 @@
 import org.xwiki.rendering.listener.MetaData;
 import org.xwiki.rendering.macro.MacroContentParser;
 import org.xwiki.rendering.macro.MacroExecutionException;
+import org.xwiki.rendering.parser.ParseException;
 import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.parser.cache.ParserCache;
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.rendering.transformation.MacroTransformationContext;
 import org.xwiki.rendering.transformation.RenderingContext;
@@ -110,7 +112,7 @@ private XDOM createXDOM(String content, MacroTransformationContext macroContext,
         MetaData metadata, boolean inline, Syntax syntax) throws MacroExecutionException
     {
         try {
-            XDOM result = getSyntaxParser(syntax).parse(new StringReader(content));
+            XDOM result = parse(getSyntaxParser(syntax), content);
 
             if (metadata != null) {
                 result.getMetaData().addMetaData(metadata);
@@ -133,6 +135,20 @@ private XDOM createXDOM(String content, MacroTransformationContext macroContext,
         }
     }
 
+    /**
+     * Parse the content through the {@link ParserCache} when there's one.
+     */
+    private XDOM parse(Parser parser, String content) throws ComponentLookupException, ParseException
+    {
+        if (this.componentManager.hasComponent(ParserCache.class)) {
+            ParserCache parserCache = this.componentManager.getInstance(ParserCache.class);
+
+            return parserCache.parse(parser, content);
+        }
+
+        return parser.parse(new StringReader(content));
+    }
+
     /**
      * Calls transformInContext on renderingContext.
      */
@@ -19,10 +19,12 @@
  */
 package org.xwiki.rendering.internal.transformation.macro;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -36,7 +38,8 @@
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.block.MacroBlock;
 import org.xwiki.rendering.block.MacroMarkerBlock;
-import org.xwiki.rendering.block.match.BlockMatcher;
+import org.xwiki.rendering.block.match.ClassBlockMatcher;
+import org.xwiki.rendering.internal.block.DescendantModificationCounter;
 import org.xwiki.rendering.internal.transformation.MutableRenderingContext;
 import org.xwiki.rendering.macro.Macro;
 import org.xwiki.rendering.macro.MacroId;
@@ -90,74 +93,201 @@ public MacroLookupException getException()
         }
     }
 
-    private class PriorityMacroBlockMatcher implements BlockMatcher
+    /**
+     * A pending {@link MacroBlock} along with the {@link Macro} to execute for it and its position in the document.
+     */
+    private static class MacroBlockEntry implements Comparable<MacroBlockEntry>
     {
-        private final Syntax syntax;
+        private final MacroBlock block;
+
+        private final Macro<?> macro;
+
+        /**
+         * The position of the block among the pending macro blocks, as a path of indexes: the first index is the
+         * position of the block in the initial document and each following index is the position of the block in the
+         * result of the macro which generated it. Comparing those paths gives the document order without having to
+         * walk the tree again.
+         */
+        private final int[] position;
+
+        MacroBlockEntry(MacroBlock block, Macro<?> macro, int[] position)
+        {
+            this.block = block;
+            this.macro = macro;
+            this.position = position;
+        }
+
+        public MacroBlock getBlock()
+        {
+            return this.block;
+        }
+
+        public Macro<?> getMacro()
+        {
+            return this.macro;
+        }
+
+        public int[] getPosition()
+        {
+            return this.position;
+        }
 
-        private MacroBlock block;
+        @Override
+        public int compareTo(MacroBlockEntry other)
+        {
+            // Find higher priority macro
+            int result = this.macro.compareTo(other.macro);
+
+            if (result == 0) {
+                // Same priority so the first one in the document wins
+                for (int i = 0; i < this.position.length && i < other.position.length && result == 0; ++i) {
+                    result = Integer.compare(this.position[i], other.position[i]);
+                }
+                if (result == 0) {
+                    result = Integer.compare(this.position.length, other.position.length);
+                }
+            }
+
+            return result;
+        }
+    }
 
-        private Macro<?> blockMacro;
+    /**
+     * Index the {@link MacroBlock}s waiting to be executed, ordered by macro priority and then by document order.
+     * <p>
+     * The document is walked once: after that only the blocks generated by each macro execution are indexed, which
+     * keeps the cost of a transformation linear in the size of the document instead of proportional to the number of
+     * macros multiplied by the size of the document. The document is indexed again when a macro modifies it outside of
+     * its own result (see {@link #clear()}), since the indexed blocks and positions are not reliable anymore.
+     */
+    private class PriorityMacroBlockQueue
+    {
+        private final Syntax syntax;
+
+        private final PriorityQueue<MacroBlockEntry> queue = new PriorityQueue<>();
 
         private List<MacroLookupExceptionElement> errors;
 
         // Cache known macros since getting them again and again from the ComponentManager might be expensive
         private final Map<String, Macro<?>> knownMacros = new HashMap<>();
 
-        PriorityMacroBlockMatcher(Syntax syntax)
+        /**
+         * Used to order blocks found when indexing a whole document.
+         */
+        private int rootPosition;
+
+        /**
+         * True when the whole document has been indexed and not modified since, except by replacing the executed macro
+         * blocks with their result.
+         */
+        private boolean indexed;
+
+        PriorityMacroBlockQueue(Syntax syntax)
         {
             this.syntax = syntax;
         }
 
-        public MacroBlock getBlock()
+        /**
+         * @return the macro lookup errors found since the last call, null if there is none
+         */
+        public List<MacroLookupExceptionElement> pollErrors()
         {
-            return block;
+            List<MacroLookupExceptionElement> currentErrors = this.errors;
+
+            this.errors = null;
+
+            return currentErrors;
         }
 
-        public Macro<?> getBlockMacro()
+        /**
+         * Index all the {@link MacroBlock}s located in the passed document, unless it's already indexed.
+         *
+         * @param rootBlock the document
+         */
+        public void addDocument(Block rootBlock)
         {
-            return blockMacro;
+            if (!this.indexed) {
+                add(rootBlock, new int[] { this.rootPosition++ });
+                this.indexed = true;
+            }
         }
 
-        public List<MacroLookupExceptionElement> getErrors()
+        /**
+         * Forget about all the indexed blocks so that the whole document is indexed again the next time it's needed.
+         */
+        public void clear()
         {
-            return errors;
+            this.queue.clear();
+            this.errors = null;
+            this.indexed = false;
         }
 
-        @Override
-        public boolean match(Block block)
+        /**
+         * Index the {@link MacroBlock}s generated by the execution of a macro.
+         *
+         * @param resultBlock the block containing the result of the macro execution
+         * @param executedEntry the executed macro
+         */
+        public void addResult(Block resultBlock, MacroBlockEntry executedEntry)
         {
-            if (block instanceof MacroBlock) {
-                MacroBlock macroBlock = (MacroBlock) block;
-
-                try {
-                    // Try to find a known macros
-                    Macro<?> macro = this.knownMacros.get(macroBlock.getId());
+            // The result is going to be indexed with the rest of the document
+            if (this.indexed) {
+                add(resultBlock, executedEntry.getPosition());
+            }
+        }
 
-                    // If not found use the macro manager
-                    if (macro == null) {
-                        macro =
-                            MacroTransformation.this.macroManager
-                                .getMacro(new MacroId(macroBlock.getId(), this.syntax));
+        private void add(Block block, int[] basePosition)
+        {
+            List<MacroBlock> macroBlocks = block.getBlocks(new ClassBlockMatcher(MacroBlock.class),
+                Block.Axes.DESCENDANT);
 
-                        // Cache the found macro for later
-                        this.knownMacros.put(macroBlock.getId(), macro);
-                    }
+            int index = 0;
+            for (MacroBlock macroBlock : macroBlocks) {
+                int[] position = Arrays.copyOf(basePosition, basePosition.length + 1);
+                position[basePosition.length] = index++;
 
-                    // Find higher priority macro
-                    if (this.block == null || this.blockMacro.compareTo(macro) > 0) {
-                        this.block = macroBlock;
-                        this.blockMacro = macro;
-                    }
+                try {
+                    this.queue.add(new MacroBlockEntry(macroBlock, getMacro(macroBlock), position));
                 } catch (MacroLookupException e) {
                     if (this.errors == null) {
-                        this.errors = new LinkedList<MacroLookupExceptionElement>();
+                        this.errors = new LinkedList<>();
                     }
 
                     this.errors.add(new MacroLookupExceptionElement(macroBlock, e));
                 }
             }
+        }
+
+        private Macro<?> getMacro(MacroBlock macroBlock) throws MacroLookupException
+        {
+            // Try to find a known macros
+            Macro<?> macro = this.knownMacros.get(macroBlock.getId());
 
-            return false;
+            // If not found use the macro manager
+            if (macro == null) {
+                macro = MacroTransformation.this.macroManager.getMacro(new MacroId(macroBlock.getId(), this.syntax));
+
+                // Cache the found macro for later
+                this.knownMacros.put(macroBlock.getId(), macro);
+            }
+
+            return macro;
+        }
+
+        /**
+         * @return true if there is at least one indexed macro block
+         */
+        public boolean hasNext()
+        {
+            return !this.queue.isEmpty();
+        }
+
+        /**
+         * @return the highest priority macro block, or null if there is none
+         */
+        public MacroBlockEntry poll()
+        {
+            return this.queue.poll();
         }
     }
 
@@ -220,15 +350,20 @@ public void transform(Block rootBlock, TransformationContext context) throws Tra
         MacroTransformationContext macroContext = new MacroTransformationContext(context);
         macroContext.setTransformation(this);
 
+        // The macros waiting to be executed
+        PriorityMacroBlockQueue macroBlockQueue = new PriorityMacroBlockQueue(context.getSyntax());
+
         // Counter to prevent infinite recursion if a macro generates the same macro for example.
         for (int recursions = 0; recursions < this.maxRecursions;) {
-            // 1) Get highest priority macro
-            PriorityMacroBlockMatcher priorityMacroBlockMatcher = new PriorityMacroBlockMatcher(context.getSyntax());
-            rootBlock.getFirstBlock(priorityMacroBlockMatcher, Block.Axes.DESCENDANT);
+            // 1) Index the macros of the document. After the first iteration the queue is fed with the macros generated
+            // by each executed macro and the document is only walked again when a macro modified it somewhere else (a
+            // macro is free to modify the whole XDOM).
+            macroBlockQueue.addDocument(rootBlock);
 
             // 2) Apply macros lookup errors
-            if (priorityMacroBlockMatcher.getErrors() != null) {
-                for (MacroLookupExceptionElement error : priorityMacroBlockMatcher.getErrors()) {
+            List<MacroLookupExceptionElement> errors = macroBlockQueue.pollErrors();
+            if (errors != null) {
+                for (MacroLookupExceptionElement error : errors) {
                     if (error.getException() instanceof MacroNotFoundException) {
                         // Macro cannot be found. Generate an error message instead of the macro execution result.
                         // TODO: make it internationalized
@@ -244,20 +379,21 @@ public void transform(Block rootBlock, TransformationContext context) throws Tra
                 }
             }
 
-            MacroBlock macroBlock = priorityMacroBlockMatcher.getBlock();
-
-            if (macroBlock == null) {
+            // 3) Get highest priority macro
+            if (!macroBlockQueue.hasNext()) {
                 // Nothing left to do
                 return;
             }
 
-            Macro<?> macro = priorityMacroBlockMatcher.getBlockMacro();
+            MacroBlockEntry macroBlockEntry = macroBlockQueue.poll();
+            MacroBlock macroBlock = macroBlockEntry.getBlock();
+            Macro<?> macro = macroBlockEntry.getMacro();
 
             boolean incrementRecursions = macroBlock.getParent() instanceof MacroMarkerBlock;
 
             List<Block> newBlocks;
             try {
-                // 3) Verify if we're in macro inline mode and if the macro supports it. If not, send an error.
+                // 4) Verify if we're in macro inline mode and if the macro supports it. If not, send an error.
                 if (macroBlock.isInline()) {
                     macroContext.setInline(true);
                     if (!macro.supportsInlineMode()) {
@@ -277,7 +413,7 @@ public void transform(Block rootBlock, TransformationContext context) throws Tra
                     macroContext.setInline(false);
                 }
 
-                // 4) Execute the highest priority macro
+                // 5) Execute the highest priority macro
                 macroContext.setCurrentMacroBlock(macroBlock);
                 ((MutableRenderingContext) this.renderingContext).setCurrentBlock(macroBlock);
 
@@ -294,7 +430,16 @@ public void transform(Block rootBlock, TransformationContext context) throws Tra
                     continue;
                 }
 
-                newBlocks = ((Macro) macro).execute(macroParameters, macroBlock.getContent(), macroContext);
+                int modificationCount = getModificationCount(rootBlock);
+                try {
+                    newBlocks = ((Macro) macro).execute(macroParameters, macroBlock.getContent(), macroContext);
+                } finally {
+                    if (modificationCount == -1 || getModificationCount(rootBlock) != modificationCount) {
+                        // The macro modified the document outside of its result: some indexed blocks might have moved
+                        // or been removed, and new macro blocks might have been added
+                        macroBlockQueue.clear();
+                    }
+                }
             } catch (Throwable e) {
                 // The Macro failed to execute.
                 // The macro will not be executed and we generate an error message instead of the macro
@@ -312,15 +457,30 @@ public void transform(Block rootBlock, TransformationContext context) throws Tra
             // the XWiki Syntax renderer so that it can reconstruct the macros from the transformed XDOM.
             Block resultBlock = wrapInMacroMarker(macroBlock, newBlocks);
 
-            // 5) Replace the MacroBlock by the Blocks generated by the execution of the Macro
+            // 6) Replace the MacroBlock by the Blocks generated by the execution of the Macro
             macroBlock.getParent().replaceChild(resultBlock, macroBlock);
 
+            // 7) Index the macros generated by the execution of the Macro
+            macroBlockQueue.addResult(resultBlock, macroBlockEntry);
+
             if (incrementRecursions) {
                 ++recursions;
             }
         }
     }
 
+    /**
+     * @param rootBlock the document being transformed
+     * @return the number of modifications made to the document so far, or -1 if the document does not count them
+     */
+    private int getModificationCount(Block rootBlock)
+    {
+        List<Block> children = rootBlock.getChildren();
+
+        return children instanceof DescendantModificationCounter
+            ? ((DescendantModificationCounter) children).getDescendantModificationCount() : -1;
+    }
+
     /**
      * Wrap the output of a macro block with a {@link MacroMarkerBlock}.
      *
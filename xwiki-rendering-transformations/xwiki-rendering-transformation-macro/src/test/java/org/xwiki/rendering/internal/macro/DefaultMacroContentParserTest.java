@@ -32,8 +32,11 @@
 import org.xwiki.rendering.block.ParagraphBlock;
 import org.xwiki.rendering.block.WordBlock;
 import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.internal.parser.cache.DefaultParserCache;
+import org.xwiki.rendering.internal.parser.cache.DefaultParserCacheConfiguration;
 import org.xwiki.rendering.macro.MacroContentParser;
 import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.parser.cache.ParserCacheConfiguration;
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.rendering.syntax.SyntaxType;
 import org.xwiki.rendering.transformation.MacroTransformationContext;
@@ -42,9 +45,10 @@
 import org.xwiki.test.mockito.MockitoComponentManagerRule;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-@ComponentList({ DefaultMacroContentParser.class })
+@ComponentList({ DefaultMacroContentParser.class, DefaultParserCache.class, DefaultParserCacheConfiguration.class })
 public class DefaultMacroContentParserTest
 {
     @Rule
@@ -67,6 +71,7 @@ public void setUp() throws Exception
         this.macroContext.setSyntax(testSyntax);
 
         this.mockParser = this.componentManager.registerMockComponent(Parser.class, testSyntax.toIdString());
+        when(this.mockParser.getSyntax()).thenReturn(testSyntax);
 
         this.macroContentParser = this.componentManager.getInstance(MacroContentParser.class);
     }
@@ -93,4 +98,22 @@ public void testParseInlineWithStandaloneMacro() throws Exception
             new XDOM(Arrays.<Block>asList(new MacroBlock("macro", Collections.EMPTY_MAP, null, true))),
             this.macroContentParser.parse("content", this.macroContext, false, true));
     }
+
+    @Test
+    public void testParseWithParserCache() throws Exception
+    {
+        DefaultParserCacheConfiguration configuration =
+            this.componentManager.getInstance(ParserCacheConfiguration.class);
+        configuration.setCachedSyntaxes(Arrays.asList("test/1.0"));
+
+        when(this.mockParser.parse(any(Reader.class))).thenReturn(
+            new XDOM(Arrays.<Block>asList(new ParagraphBlock(Arrays.<Block>asList(new WordBlock("word"))))));
+
+        // The second parsing is not affected by the inline conversion of the first result
+        XDOM expected = new XDOM(Arrays.<Block>asList(new WordBlock("word")));
+        Assert.assertEquals(expected, this.macroContentParser.parse("content", this.macroContext, false, true));
+        Assert.assertEquals(expected, this.macroContentParser.parse("content", this.macroContext, false, true));
+
+        verify(this.mockParser).parse(any(Reader.class));
+    }
 }
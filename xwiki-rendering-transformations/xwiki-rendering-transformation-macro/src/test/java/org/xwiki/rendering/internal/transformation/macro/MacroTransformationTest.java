@@ -267,6 +267,84 @@ public void macroWithSamePriorityExecuteOnPageOrder() throws Exception
         Assert.assertEquals(expected, printer.toString());
     }
 
+    /**
+     * Test that a macro generated by another macro is executed according to its position in the document.
+     */
+    @Test
+    public void generatedMacroExecuteOnPageOrder() throws Exception
+    {
+        // "testprioritymacro" is executed first, then "testnestedmacro" which generates a "testsimplemacro" located
+        // before the other "testsimplemacro" and thus executed before it.
+        XDOM dom = new XDOM(Arrays.<Block>asList(
+            new MacroBlock("testnestedmacro", Collections.<String, String>emptyMap(), false),
+            new MacroBlock("testsimplemacro", Collections.<String, String>emptyMap(), false),
+            new MacroBlock("testprioritymacro", Collections.<String, String>emptyMap(), false)));
+
+        this.transformation.transform(dom, new TransformationContext(dom, Syntax.XWIKI_2_0));
+
+        WikiPrinter printer = new DefaultWikiPrinter();
+        BlockRenderer eventBlockRenderer =
+            this.componentManager.getInstance(BlockRenderer.class, Syntax.EVENT_1_0.toIdString());
+        eventBlockRenderer.render(dom, printer);
+
+        String expected = "beginDocument\n"
+            + "beginMacroMarkerStandalone [testnestedmacro] []\n"
+            + "beginMacroMarkerStandalone [testsimplemacro] []\n"
+            + "beginParagraph\n"
+            + "onWord [simplemacro1]\n"
+            + "endParagraph\n"
+            + "endMacroMarkerStandalone [testsimplemacro] []\n"
+            + "endMacroMarkerStandalone [testnestedmacro] []\n"
+            + "beginMacroMarkerStandalone [testsimplemacro] []\n"
+            + "beginParagraph\n"
+            + "onWord [simplemacro2]\n"
+            + "endParagraph\n"
+            + "endMacroMarkerStandalone [testsimplemacro] []\n"
+            + "beginMacroMarkerStandalone [testprioritymacro] []\n"
+            + "beginParagraph\n"
+            + "onWord [word]\n"
+            + "endParagraph\n"
+            + "endMacroMarkerStandalone [testprioritymacro] []\n"
+            + "endDocument";
+        Assert.assertEquals(expected, printer.toString());
+    }
+
+    /**
+     * Test that a macro inserted by another macro outside of its result is executed according to its priority.
+     */
+    @Test
+    public void insertedMacroExecuteOnPriorityOrder() throws Exception
+    {
+        // "testinsertingmacro" appends a "testprioritymacro" to the document, which has a higher priority than the
+        // "testsimplemacro" and thus generates its word before "testsimplemacro" counts the words of the document.
+        XDOM dom = new XDOM(Arrays.<Block>asList(
+            new MacroBlock("testinsertingmacro", Collections.<String, String>emptyMap(), false),
+            new MacroBlock("testsimplemacro", Collections.<String, String>emptyMap(), false)));
+
+        this.transformation.transform(dom, new TransformationContext(dom, Syntax.XWIKI_2_0));
+
+        WikiPrinter printer = new DefaultWikiPrinter();
+        BlockRenderer eventBlockRenderer =
+            this.componentManager.getInstance(BlockRenderer.class, Syntax.EVENT_1_0.toIdString());
+        eventBlockRenderer.render(dom, printer);
+
+        String expected = "beginDocument\n"
+            + "beginMacroMarkerStandalone [testinsertingmacro] []\n"
+            + "endMacroMarkerStandalone [testinsertingmacro] []\n"
+            + "beginMacroMarkerStandalone [testsimplemacro] []\n"
+            + "beginParagraph\n"
+            + "onWord [simplemacro1]\n"
+            + "endParagraph\n"
+            + "endMacroMarkerStandalone [testsimplemacro] []\n"
+            + "beginMacroMarkerStandalone [testprioritymacro] []\n"
+            + "beginParagraph\n"
+            + "onWord [word]\n"
+            + "endParagraph\n"
+            + "endMacroMarkerStandalone [testprioritymacro] []\n"
+            + "endDocument";
+        Assert.assertEquals(expected, printer.toString());
+    }
+
     /**
      * Test that a not existing macro generate an error in the XDOM.
      */
@@ -24,9 +24,12 @@
 import org.xwiki.rendering.wikimodel.IWemListener;
 import org.xwiki.rendering.wikimodel.IWikiParser;
 import org.xwiki.rendering.wikimodel.WikiParserException;
+import org.xwiki.rendering.wikimodel.impl.CharStreamCache;
 import org.xwiki.rendering.wikimodel.impl.WikiScannerContext;
 import org.xwiki.rendering.wikimodel.internal.common.javacc.CommonWikiScanner;
+import org.xwiki.rendering.wikimodel.internal.common.javacc.CommonWikiScannerTokenManager;
 import org.xwiki.rendering.wikimodel.internal.common.javacc.ParseException;
+import org.xwiki.rendering.wikimodel.internal.common.javacc.SimpleCharStream;
 
 /**
  * @version $Id$
@@ -34,6 +37,9 @@
  */
 public class CommonWikiParser implements IWikiParser
 {
+    private static final CharStreamCache<SimpleCharStream> STREAMS =
+        new CharStreamCache<>(SimpleCharStream::new, SimpleCharStream::ReInit);
+
     /**
      *
      */
@@ -49,12 +55,15 @@ public CommonWikiParser()
     public void parse(Reader reader, IWemListener listener)
         throws WikiParserException
     {
+        SimpleCharStream stream = STREAMS.acquire(reader);
         try {
-            CommonWikiScanner scanner = new CommonWikiScanner(reader);
+            CommonWikiScanner scanner = new CommonWikiScanner(new CommonWikiScannerTokenManager(stream));
             WikiScannerContext context = new WikiScannerContext(listener);
             scanner.parse(context);
         } catch (ParseException e) {
             throw new WikiParserException(e);
+        } finally {
+            STREAMS.release(stream);
         }
     }
 }
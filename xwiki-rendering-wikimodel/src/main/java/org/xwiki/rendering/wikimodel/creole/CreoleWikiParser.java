@@ -24,9 +24,12 @@
 import org.xwiki.rendering.wikimodel.IWemListener;
 import org.xwiki.rendering.wikimodel.IWikiParser;
 import org.xwiki.rendering.wikimodel.WikiParserException;
+import org.xwiki.rendering.wikimodel.impl.CharStreamCache;
 import org.xwiki.rendering.wikimodel.impl.WikiScannerContext;
 import org.xwiki.rendering.wikimodel.internal.creole.javacc.CreoleWikiScanner;
+import org.xwiki.rendering.wikimodel.internal.creole.javacc.CreoleWikiScannerTokenManager;
 import org.xwiki.rendering.wikimodel.internal.creole.javacc.ParseException;
+import org.xwiki.rendering.wikimodel.internal.creole.javacc.SimpleCharStream;
 
 /**
  * @version $Id$
@@ -34,6 +37,9 @@
  */
 public class CreoleWikiParser implements IWikiParser
 {
+    private static final CharStreamCache<SimpleCharStream> STREAMS =
+        new CharStreamCache<>(SimpleCharStream::new, SimpleCharStream::ReInit);
+
     /**
      *
      */
@@ -49,12 +55,15 @@ public CreoleWikiParser()
     public void parse(Reader reader, IWemListener listener)
         throws WikiParserException
     {
+        SimpleCharStream stream = STREAMS.acquire(reader);
         try {
-            CreoleWikiScanner scanner = new CreoleWikiScanner(reader);
+            CreoleWikiScanner scanner = new CreoleWikiScanner(new CreoleWikiScannerTokenManager(stream));
             WikiScannerContext context = new WikiScannerContext(listener);
             scanner.parse(context);
         } catch (ParseException e) {
             throw new WikiParserException(e);
+        } finally {
+            STREAMS.release(stream);
         }
     }
 }
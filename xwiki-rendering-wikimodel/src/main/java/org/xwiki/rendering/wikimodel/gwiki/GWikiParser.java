@@ -24,9 +24,12 @@
 import org.xwiki.rendering.wikimodel.IWemListener;
 import org.xwiki.rendering.wikimodel.IWikiParser;
 import org.xwiki.rendering.wikimodel.WikiParserException;
+import org.xwiki.rendering.wikimodel.impl.CharStreamCache;
 import org.xwiki.rendering.wikimodel.impl.WikiScannerContext;
 import org.xwiki.rendering.wikimodel.internal.gwiki.javacc.GWikiScanner;
+import org.xwiki.rendering.wikimodel.internal.gwiki.javacc.GWikiScannerTokenManager;
 import org.xwiki.rendering.wikimodel.internal.gwiki.javacc.ParseException;
+import org.xwiki.rendering.wikimodel.internal.gwiki.javacc.SimpleCharStream;
 
 /**
  * @version $Id$
@@ -34,6 +37,9 @@
  */
 public class GWikiParser implements IWikiParser
 {
+    private static final CharStreamCache<SimpleCharStream> STREAMS =
+        new CharStreamCache<>(SimpleCharStream::new, SimpleCharStream::ReInit);
+
     /**
      *
      */
@@ -49,12 +55,15 @@ public GWikiParser()
     public void parse(Reader reader, IWemListener listener)
         throws WikiParserException
     {
+        SimpleCharStream stream = STREAMS.acquire(reader);
         try {
-            GWikiScanner scanner = new GWikiScanner(reader);
+            GWikiScanner scanner = new GWikiScanner(new GWikiScannerTokenManager(stream));
             WikiScannerContext context = new WikiScannerContext(listener);
             scanner.parse(context);
         } catch (ParseException e) {
             throw new WikiParserException(e);
+        } finally {
+            STREAMS.release(stream);
         }
     }
 }
@@ -0,0 +1,100 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.wikimodel.impl;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Keep the character streams of a generated scanner per thread so that the parsers don't have to allocate new
+ * character buffers for each content they parse, which is most of the cost of parsing a small content like a macro
+ * content or a link label.
+ * <p>
+ * A stream is taken out of the cache while it's used so a content parsed during the parsing of another content on the
+ * same thread (a link label for example) gets its own stream. The cache keeps a few streams per thread so that these
+ * nested contents reuse their streams too.
+ * <p>
+ * The cached object can also be the token manager owning the stream, when the token manager can be reinitialized.
+ *
+ * @param <C> the type of the character stream
+ * @version $Id$
+ * @since 13.4RC1
+ */
+public class CharStreamCache<C>
+{
+    /**
+     * The maximum number of streams kept per thread, which is the number of nested contents which can be parsed without
+     * allocating a stream.
+     */
+    private static final int MAX_STREAMS = 4;
+
+    private final ThreadLocal<Deque<C>> streams = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final Function<Reader, C> factory;
+
+    private final BiConsumer<C, Reader> initializer;
+
+    /**
+     * @param factory create a new stream reading the passed reader (usually the constructor of the stream)
+     * @param initializer reinitialize an existing stream with the passed reader (usually its {@code ReInit} method)
+     */
+    public CharStreamCache(Function<Reader, C> factory, BiConsumer<C, Reader> initializer)
+    {
+        this.factory = factory;
+        this.initializer = initializer;
+    }
+
+    /**
+     * @param reader the content to parse
+     * @return an available stream of the current thread reinitialized with the passed reader, or a new stream if they
+     *         are all used
+     */
+    public C acquire(Reader reader)
+    {
+        C stream = this.streams.get().poll();
+        if (stream == null) {
+            return this.factory.apply(reader);
+        }
+
+        this.initializer.accept(stream, reader);
+
+        return stream;
+    }
+
+    /**
+     * Make the stream available for the next parsing on the current thread.
+     *
+     * @param stream the stream returned by {@link #acquire(Reader)}, which is not used anymore
+     */
+    public void release(C stream)
+    {
+        // Don't keep a reference to the parsed content
+        this.initializer.accept(stream, new StringReader(""));
+
+        Deque<C> available = this.streams.get();
+        if (available.size() < MAX_STREAMS) {
+            available.push(stream);
+        }
+    }
+}
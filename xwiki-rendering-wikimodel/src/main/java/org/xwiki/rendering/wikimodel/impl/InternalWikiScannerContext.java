@@ -911,6 +911,16 @@ private boolean isNoBlockElements()
         return (fBlockType == IBlockTypes.NONE);
     }
 
+    /**
+     * @return true if a block is not finished yet, or if a format started in the previous block applies to the next
+     *         one
+     * @since 13.4RC1
+     */
+    public boolean isInBlock()
+    {
+        return !isNoBlockElements() || !WikiFormat.EMPTY.equals(fNewFormat);
+    }
+
     public void onDefinitionListItemSplit()
     {
         closeFormat();
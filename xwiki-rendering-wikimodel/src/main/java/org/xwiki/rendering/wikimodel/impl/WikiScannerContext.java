@@ -356,6 +356,16 @@ public IWikiScannerContext getContext()
         return context;
     }
 
+    /**
+     * @return true if a block of the current document is not finished yet, or if a format started in the previous
+     *         block applies to the next one
+     * @since 13.4RC1
+     */
+    public boolean isInBlock()
+    {
+        return ((InternalWikiScannerContext) getContext()).isInBlock();
+    }
+
     public InlineState getInlineState()
     {
         return getContext().getInlineState();
@@ -47,6 +47,14 @@ public AccumulationXMLFilter(XMLReader reader)
         super(reader);
     }
 
+    @Override
+    public void startDocument() throws SAXException
+    {
+        // The filter can be reused, forget what's left from a previous (possibly failed) parsing
+        fAccumulationBuffer.setLength(0);
+        super.startDocument();
+    }
+
     /**
      * @see org.xml.sax.helpers.DefaultHandler#characters(char[], int, int)
      */
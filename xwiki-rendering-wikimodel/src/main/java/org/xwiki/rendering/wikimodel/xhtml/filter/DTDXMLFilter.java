@@ -46,6 +46,14 @@ public DTDXMLFilter(XMLReader reader)
         super(reader);
     }
 
+    @Override
+    public void startDocument() throws SAXException
+    {
+        // The filter can be reused, forget what's left from a previous (possibly failed) parsing
+        fIsInDTD = false;
+        super.startDocument();
+    }
+
     /**
      * @see org.xml.sax.helpers.DefaultHandler#characters(char[], int, int)
      */
@@ -261,6 +261,20 @@ public void comment(char[] ch, int start, int length) throws SAXException
         }
     }
 
+    @Override
+    public void startDocument() throws SAXException
+    {
+        // The filter can be reused, forget what's left from a previous (possibly failed) parsing
+        fNoCleanUpLevel = 0;
+        fContent.setLength(0);
+        fPreviousInlineText.setLength(0);
+        fPreviousContent = null;
+        fPreviousElements.clear();
+        fAttributes.clear();
+
+        super.startDocument();
+    }
+
     @Override
     public void endDocument() throws SAXException
     {
@@ -24,9 +24,12 @@
 import org.xwiki.rendering.wikimodel.IWemListener;
 import org.xwiki.rendering.wikimodel.IWikiParser;
 import org.xwiki.rendering.wikimodel.WikiParserException;
+import org.xwiki.rendering.wikimodel.impl.CharStreamCache;
 import org.xwiki.rendering.wikimodel.impl.WikiScannerContext;
 import org.xwiki.rendering.wikimodel.internal.xwiki.xwiki20.javacc.ParseException;
+import org.xwiki.rendering.wikimodel.internal.xwiki.xwiki20.javacc.SimpleCharStream;
 import org.xwiki.rendering.wikimodel.internal.xwiki.xwiki20.javacc.XWikiScanner;
+import org.xwiki.rendering.wikimodel.internal.xwiki.xwiki20.javacc.XWikiScannerTokenManager;
 
 /**
  * @version $Id$
@@ -34,6 +37,9 @@
  */
 public class XWikiParser implements IWikiParser
 {
+    private static final CharStreamCache<SimpleCharStream> STREAMS =
+        new CharStreamCache<>(SimpleCharStream::new, SimpleCharStream::ReInit);
+
     public XWikiParser()
     {
         super();
@@ -46,12 +52,15 @@ public XWikiParser()
     public void parse(Reader reader, IWemListener listener)
         throws WikiParserException
     {
+        SimpleCharStream stream = STREAMS.acquire(reader);
         try {
-            XWikiScanner scanner = new XWikiScanner(reader);
+            XWikiScanner scanner = new XWikiScanner(new XWikiScannerTokenManager(stream));
             WikiScannerContext context = new WikiScannerContext(listener);
             scanner.parse(context);
         } catch (ParseException e) {
             throw new WikiParserException(e);
+        } finally {
+            STREAMS.release(stream);
         }
     }
 }
@@ -24,9 +24,15 @@
 import org.xwiki.rendering.wikimodel.IWemListener;
 import org.xwiki.rendering.wikimodel.IWikiParser;
 import org.xwiki.rendering.wikimodel.WikiParserException;
+import org.xwiki.rendering.wikimodel.impl.CharStreamCache;
 import org.xwiki.rendering.wikimodel.impl.WikiScannerContext;
 import org.xwiki.rendering.wikimodel.internal.xwiki.xwiki21.javacc.ParseException;
+import org.xwiki.rendering.wikimodel.internal.xwiki.xwiki21.javacc.SimpleCharStream;
+import org.xwiki.rendering.wikimodel.internal.xwiki.xwiki21.javacc.Token;
+import org.xwiki.rendering.wikimodel.internal.xwiki.xwiki21.javacc.TokenMgrError;
 import org.xwiki.rendering.wikimodel.internal.xwiki.xwiki21.javacc.XWikiScanner;
+import org.xwiki.rendering.wikimodel.internal.xwiki.xwiki21.javacc.XWikiScannerConstants;
+import org.xwiki.rendering.wikimodel.internal.xwiki.xwiki21.javacc.XWikiScannerTokenManager;
 
 /**
  * @version $Id$
@@ -34,16 +40,222 @@
  */
 public class XWikiParser implements IWikiParser
 {
+    private static final CharStreamCache<Lexer> LEXERS = new CharStreamCache<>(Lexer::new, Lexer::reset);
+
+    /**
+     * A character stream and the token manager reading it, reused together since the token manager (and its lexical
+     * state tables) is as costly to create as the stream for small contents like link labels.
+     */
+    private static final class Lexer
+    {
+        private final SimpleCharStream stream;
+
+        private final XWikiScannerTokenManager tokenManager;
+
+        Lexer(Reader reader)
+        {
+            this.stream = new SimpleCharStream(reader);
+            this.tokenManager = new XWikiScannerTokenManager(this.stream);
+        }
+
+        void reset(Reader reader)
+        {
+            this.stream.ReInit(reader);
+            this.tokenManager.reset(this.stream);
+        }
+    }
+
     @Override
     public void parse(Reader reader, IWemListener listener)
         throws WikiParserException
     {
+        parseScanner(reader, listener);
+    }
+
+    /**
+     * Parse a part of a content which was split at a block boundary found by
+     * {@link #findBlockBoundaries(String, int, BlockBoundaryHandler)}.
+     *
+     * @param reader the part to parse
+     * @param listener receive the events of the part
+     * @return true if the parser was in the same state at the end of the part as at its beginning, which means that
+     *         parsing the part and the content following it together produces the same events as parsing them
+     *         separately, besides the sections. Otherwise, the part has to be parsed again with the content following
+     *         it.
+     * @throws WikiParserException if the part cannot be parsed
+     * @since 13.4RC1
+     */
+    public boolean parsePart(Reader reader, IWemListener listener) throws WikiParserException
+    {
+        return parseScanner(reader, listener).isBlockBoundaryEnd();
+    }
+
+    private XWikiScanner parseScanner(Reader reader, IWemListener listener) throws WikiParserException
+    {
+        Lexer lexer = LEXERS.acquire(reader);
         try {
-            XWikiScanner scanner = new XWikiScanner(reader);
+            XWikiScanner scanner = new XWikiScanner(lexer.tokenManager);
             WikiScannerContext context = new WikiScannerContext(listener);
             scanner.parse(context);
+
+            return scanner;
         } catch (ParseException e) {
             throw new WikiParserException(e);
+        } finally {
+            LEXERS.release(lexer);
         }
     }
+
+    /**
+     * Receive the block boundaries found by {@link XWikiParser#findBlockBoundaries(String, int, BlockBoundaryHandler)}.
+     *
+     * @version $Id$
+     * @since 13.4RC1
+     */
+    @FunctionalInterface
+    public interface BlockBoundaryHandler
+    {
+        /**
+         * @param offset the offset of the boundary
+         * @param scannedOffset the offset of the first character the scanner did not need to read to find the
+         *            boundary (the length of the content plus one when it had to read the whole content): the boundary
+         *            stays a boundary as long as the content before this offset is not modified
+         * @return false to stop the scan
+         */
+        boolean onBoundary(int offset, int scannedOffset);
+    }
+
+    /**
+     * Give the characters of a content one by one to the scanner, to know how far it had to read to find each token.
+     */
+    private static final class ScannedReader extends Reader
+    {
+        private final String content;
+
+        private int offset;
+
+        ScannedReader(String content, int offset)
+        {
+            this.content = content;
+            this.offset = offset;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length)
+        {
+            if (length == 0) {
+                return 0;
+            }
+            if (this.offset >= this.content.length()) {
+                // Reading the end of the content counts as reading one more character since appending anything to the
+                // content would change what the scanner found
+                this.offset = this.content.length() + 1;
+
+                return -1;
+            }
+
+            buffer[offset] = this.content.charAt(this.offset++);
+
+            return 1;
+        }
+
+        @Override
+        public void close()
+        {
+            // Nothing to close
+        }
+    }
+
+    /**
+     * Find the places where the content can be split into parts which produce the same top level blocks when they are
+     * parsed separately as when the whole content is parsed, besides the sections and the header ids which depend on
+     * the headers of the previous parts. A boundary is the beginning of a line following exactly one empty line which
+     * ends a top level block (outside of any embedded document, verbatim block or macro content), when the line does
+     * not start with a white space.
+     * <p>
+     * Only the content is scanned, so this is a lot cheaper than parsing it, but a few block combinations (like some
+     * embedded documents in a list item) continue after an empty line: {@link #parsePart(Reader, IWemListener)} tells
+     * when a boundary has to be ignored. A boundary depends on the content before it, and on the content after it the
+     * scanner had to read to find it (a macro or a link, for example, can span several lines when it's closed later),
+     * so the scan can start at any boundary found previously if the content modifications are all after its scanned
+     * offset.
+     *
+     * @param content the content to split
+     * @param start the offset where to start looking for boundaries, either 0 or a boundary found previously
+     * @param handler receive each boundary after the start, in order
+     * @throws WikiParserException if the content cannot be scanned
+     * @since 13.4RC1
+     */
+    public void findBlockBoundaries(String content, int start, BlockBoundaryHandler handler)
+        throws WikiParserException
+    {
+        ScannedReader reader = new ScannedReader(content, start);
+        Lexer lexer = LEXERS.acquire(reader);
+        try {
+            // The token positions are lines and columns, starting at 1 at the start offset
+            int line = 1;
+            int lineOffset = start;
+
+            Token previous = null;
+            for (Token token = lexer.tokenManager.getNextToken(); token.kind != XWikiScannerConstants.EOF;
+                token = lexer.tokenManager.getNextToken()) {
+                if (isBlockEnd(previous, token) && lexer.tokenManager.isAtTopLevelLineStart()) {
+                    // The boundary is the beginning of the line following the token
+                    for (; line <= token.endLine; ++line) {
+                        lineOffset = getNextLineOffset(content, lineOffset);
+                    }
+
+                    // The first character of the next line is checked too
+                    if (isBoundary(content, lineOffset)
+                        && !handler.onBoundary(lineOffset, Math.max(reader.offset, lineOffset + 1))) {
+                        break;
+                    }
+                }
+                previous = token;
+            }
+        } catch (TokenMgrError e) {
+            throw new WikiParserException(e);
+        } finally {
+            LEXERS.release(lexer);
+        }
+    }
+
+    private static boolean isBlockEnd(Token previous, Token token)
+    {
+        switch (token.kind) {
+            case XWikiScannerConstants.BLOCK_END:
+            case XWikiScannerConstants.TABLE_END_EMPTY_LINE:
+            case XWikiScannerConstants.HEADER_END_EMPTY_LINE:
+                return "\n\n".equals(token.image);
+            case XWikiScannerConstants.NL:
+                // The new line of a header is part of the header end token
+                return "\n".equals(token.image) && previous != null
+                    && previous.kind == XWikiScannerConstants.HEADER_END && previous.image.endsWith("\n")
+                    && !previous.image.endsWith("\r\n");
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isBoundary(String content, int offset)
+    {
+        // Exactly one empty line before and a block starting right away after, since the number of empty lines and the
+        // white spaces at the beginning of a content have a different meaning
+        return offset < content.length() && !Character.isWhitespace(content.charAt(offset)) && offset >= 3
+            && content.charAt(offset - 3) != '\n' && content.charAt(offset - 3) != '\r';
+    }
+
+    private static int getNextLineOffset(String content, int offset)
+    {
+        for (int i = offset; i < content.length(); ++i) {
+            char c = content.charAt(i);
+            if (c == '\n') {
+                return i + 1;
+            } else if (c == '\r') {
+                return i + 1 < content.length() && content.charAt(i + 1) == '\n' ? i + 2 : i + 1;
+            }
+        }
+
+        return content.length();
+    }
 }
@@ -19,7 +19,16 @@
  */
 package org.xwiki.rendering.wikimodel.test;
 
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.xwiki.rendering.wikimodel.IWemListener;
 import org.xwiki.rendering.wikimodel.IWikiParser;
+import org.xwiki.rendering.wikimodel.WikiParserException;
+import org.xwiki.rendering.wikimodel.WikiReference;
+import org.xwiki.rendering.wikimodel.xhtml.PrintListener;
 import org.xwiki.rendering.wikimodel.xwiki.xwiki21.XWikiParser;
 
 /**
@@ -41,4 +50,88 @@ protected IWikiParser newWikiParser()
     {
         return new XWikiParser();
     }
+
+    /**
+     * The parsers reuse their character stream so make sure a content parsed while parsing another content on the same
+     * thread (like a link label) gets its own.
+     */
+    public void testParseWhileParsing() throws WikiParserException
+    {
+        final IWikiParser parser = newWikiParser();
+        final StringBuffer labels = new StringBuffer();
+        StringBuffer buf = new StringBuffer();
+        IWemListener listener = new PrintListener(newPrinter(buf))
+        {
+            @Override
+            public void onReference(WikiReference ref)
+            {
+                super.onReference(ref);
+                try {
+                    parser.parse(new StringReader(ref.getLabel()), newParserListener(labels));
+                } catch (WikiParserException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+
+        parser.parse(new StringReader("before [[**bold** label>>Page]] after\n\nnext [[other>>Other]]"), listener);
+
+        checkResults("<p>before <a href='Page'>**bold** label</a> after</p>\n<p>next <a href='Other'>other</a></p>",
+            buf.toString());
+        assertEquals("<div class='wikimodel-document'>\n<p><strong>bold</strong> label</p>\n</div>\n"
+            + "<div class='wikimodel-document'>\n<p>other</p>\n</div>\n", labels.toString());
+
+        // The parser is still usable after that
+        test("**bold**", "<p><strong>bold</strong></p>");
+    }
+
+    /**
+     * The parsers also reuse their token manager so make sure the lexical state of a content which is not properly
+     * closed doesn't leak in the next content parsed on the same thread.
+     */
+    public void testParseAfterUnclosedContent() throws WikiParserException
+    {
+        String[] unclosedContents = { "(((\n* item", "|cell|(((cell", "{{macro}}content", "{{{verbatim", "= title" };
+        for (String unclosedContent : unclosedContents) {
+            test(unclosedContent);
+
+            // The end of an embedded document is only recognized inside an embedded document
+            test("* item\n\n|cell\n\n----\n\nend )))", "<ul>\n  <li>item</li>\n</ul>\n"
+                + "<table><tbody>\n  <tr><td>cell</td></tr>\n</tbody></table>\n<hr />\n<p>end )))</p>");
+        }
+    }
+
+    public void testFindBlockBoundaries() throws WikiParserException
+    {
+        // No boundary after two empty lines, before a white space, inside a macro or inside a link
+        String content = "= A =\n\nparagraph\n\n\nparagraph\n\n {{velocity}}\n\n{{/velocity}}\n\n"
+            + "[[label\n\n>>Page]]\n\n|cell\n\nend";
+        XWikiParser parser = new XWikiParser();
+
+        final List<Integer> boundaries = new ArrayList<Integer>();
+        parser.findBlockBoundaries(content, 0, (offset, scannedOffset) -> boundaries.add(offset));
+        assertEquals(Arrays.asList(7, 60, 79, 86), boundaries);
+
+        // The scan can start at a boundary and be stopped
+        boundaries.clear();
+        parser.findBlockBoundaries(content, 60, (offset, scannedOffset) -> !boundaries.add(offset));
+        assertEquals(Arrays.asList(79), boundaries);
+
+        // The scanner has to read the whole content to know that the link is not closed
+        final List<Integer> scannedOffsets = new ArrayList<Integer>();
+        parser.findBlockBoundaries("[[label\n\nend", 0, (offset, scannedOffset) -> scannedOffsets.add(scannedOffset));
+        assertEquals(Arrays.asList(13), scannedOffsets);
+    }
+
+    public void testParsePart() throws WikiParserException
+    {
+        XWikiParser parser = new XWikiParser();
+
+        assertTrue(parser.parsePart(new StringReader("paragraph\n\n"), newParserListener(new StringBuffer())));
+        assertTrue(parser.parsePart(new StringReader("* item\n\n"), newParserListener(new StringBuffer())));
+
+        // The paragraph following an embedded document in a list item continues after an empty line
+        assertFalse(parser.parsePart(new StringReader("; term(((group)))definition\n\n"),
+            newParserListener(new StringBuffer())));
+    }
 }
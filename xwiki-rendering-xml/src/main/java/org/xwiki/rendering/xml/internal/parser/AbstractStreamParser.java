@@ -21,6 +21,8 @@
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import javax.inject.Inject;
 import javax.xml.parsers.ParserConfigurationException;
@@ -37,6 +39,7 @@
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.listener.WrappingListener;
 import org.xwiki.rendering.parser.ParseException;
 import org.xwiki.rendering.parser.StreamParser;
 import org.xwiki.rendering.parser.xml.ContentHandlerStreamParser;
@@ -51,6 +54,33 @@
  */
 public abstract class AbstractStreamParser implements ContentHandlerStreamParserFactory, StreamParser, Initializable
 {
+    /**
+     * The maximum number of idle parsers kept for reuse.
+     */
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Indicate if the listeners of a class can be hidden behind the {@link ForwardingListener} of a pooled parser, i.e.
+     * if the class does not implement any interface other than {@link Listener} and the interfaces it extends. Some
+     * content handler parsers send more events to the listeners which implement extra interfaces (like filters).
+     */
+    private static final ClassValue<Boolean> FORWARDABLE = new ClassValue<Boolean>()
+    {
+        @Override
+        protected Boolean computeValue(Class<?> type)
+        {
+            for (Class<?> currentClass = type; currentClass != null; currentClass = currentClass.getSuperclass()) {
+                for (Class<?> currentInterface : currentClass.getInterfaces()) {
+                    if (!currentInterface.isAssignableFrom(Listener.class)) {
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        }
+    };
+
     /**
      * Used to lookup parser instances.
      */
@@ -62,6 +92,12 @@ public abstract class AbstractStreamParser implements ContentHandlerStreamParser
      */
     private SAXParserFactory parserFactory;
 
+    /**
+     * The parsers which are not currently used. Creating a SAX parser and looking up a content handler parser is
+     * expensive compared to the parsing of a small document.
+     */
+    private final BlockingQueue<PooledParser> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -113,6 +149,40 @@ public void parse(Reader source, Listener listener) throws ParseException
      */
     public void parseXML(Reader source, Listener listener) throws ParserConfigurationException, SAXException,
         IOException
+    {
+        if (!FORWARDABLE.get(listener.getClass())) {
+            // The content handler parser needs to see the listener itself
+            createXMLReader(createParser(listener)).parse(new InputSource(source));
+
+            return;
+        }
+
+        PooledParser parser = this.pool.poll();
+        if (parser == null) {
+            parser = new PooledParser();
+        } else {
+            // Start a new document
+            parser.contentHandlerParser.setListener(parser.listener);
+        }
+
+        parser.listener.setWrappedListener(listener);
+        boolean parsed = false;
+        try {
+            parser.xmlReader.parse(new InputSource(source));
+            parsed = true;
+        } finally {
+            // Don't keep a reference to the listener (which is often holding the whole parsed document)
+            parser.listener.setWrappedListener(null);
+
+            // A parser which failed in the middle of a document is not worth the risk of being reused
+            if (parsed) {
+                this.pool.offer(parser);
+            }
+        }
+    }
+
+    private XMLReader createXMLReader(ContentHandlerStreamParser contentHandlerParser)
+        throws ParserConfigurationException, SAXException
     {
         SAXParser saxParser = this.parserFactory.newSAXParser();
         XMLReader xmlReader = saxParser.getXMLReader();
@@ -120,9 +190,38 @@ public void parseXML(Reader source, Listener listener) throws ParserConfiguratio
         // Set an EntityResolver so DTDs can be found.
         xmlReader.setEntityResolver(new LocalEntityResolver());
 
-        ContentHandlerStreamParser parser = createParser(listener);
-        xmlReader.setContentHandler(parser);
+        xmlReader.setContentHandler(contentHandlerParser);
+
+        return xmlReader;
+    }
+
+    /**
+     * A SAX parser with its content handler parser, used by a single thread at a time.
+     */
+    private final class PooledParser
+    {
+        /**
+         * The listener given to the content handler parser, forwarding the events to the listener of the current
+         * parsing.
+         */
+        private final ForwardingListener listener = new ForwardingListener();
+
+        private final ContentHandlerStreamParser contentHandlerParser;
+
+        private final XMLReader xmlReader;
 
-        xmlReader.parse(new InputSource(source));
+        PooledParser() throws ParserConfigurationException, SAXException
+        {
+            this.contentHandlerParser = createParser(this.listener);
+            this.xmlReader = createXMLReader(this.contentHandlerParser);
+        }
+    }
+
+    /**
+     * Listener is implemented explicitly since some content handler parsers look at the interfaces directly
+     * implemented by the listener class to find out which events it supports.
+     */
+    private static final class ForwardingListener extends WrappingListener implements Listener
+    {
     }
 }
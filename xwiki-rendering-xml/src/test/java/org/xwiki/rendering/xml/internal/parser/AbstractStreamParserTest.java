@@ -0,0 +1,277 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.xml.internal.parser;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.listener.QueueListener;
+import org.xwiki.rendering.listener.WrappingListener;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.xml.ContentHandlerStreamParser;
+import org.xwiki.rendering.syntax.Syntax;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for the reuse of the parsers by {@link AbstractStreamParser}.
+ *
+ * @version $Id$
+ */
+class AbstractStreamParserTest
+{
+    /**
+     * Produce a paragraph for each {@code p} element and a word for each text.
+     */
+    private static class TestContentHandlerStreamParser extends DefaultHandler implements ContentHandlerStreamParser
+    {
+        private Listener listener;
+
+        @Override
+        public Syntax getSyntax()
+        {
+            return Syntax.PLAIN_1_0;
+        }
+
+        @Override
+        public void setListener(Listener listener)
+        {
+            this.listener = listener;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+        {
+            if (qName.equals("p")) {
+                this.listener.beginParagraph(Listener.EMPTY_PARAMETERS);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName)
+        {
+            if (qName.equals("p")) {
+                this.listener.endParagraph(Listener.EMPTY_PARAMETERS);
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length)
+        {
+            this.listener.onWord(new String(ch, start, length));
+        }
+    }
+
+    /**
+     * A listener with an extra interface, that content handler parsers could look for.
+     */
+    private static class ExtendedListener extends WrappingListener implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            // Nothing to do
+        }
+    }
+
+    private final AtomicInteger createdParsers = new AtomicInteger();
+
+    private final List<Listener> createdParserListeners = new CopyOnWriteArrayList<>();
+
+    private final AbstractStreamParser parser = new AbstractStreamParser()
+    {
+        @Override
+        public Syntax getSyntax()
+        {
+            return Syntax.PLAIN_1_0;
+        }
+
+        @Override
+        public ContentHandlerStreamParser createParser(Listener listener)
+        {
+            AbstractStreamParserTest.this.createdParsers.incrementAndGet();
+            AbstractStreamParserTest.this.createdParserListeners.add(listener);
+
+            ContentHandlerStreamParser contentHandlerParser = new TestContentHandlerStreamParser();
+            contentHandlerParser.setListener(listener);
+
+            return contentHandlerParser;
+        }
+    };
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        this.parser.initialize();
+    }
+
+    private List<String> parse(String source) throws ParseException
+    {
+        // QueueListener implements other interfaces than Listener (it's a List)
+        QueueListener listener = new QueueListener();
+        WrappingListener wrappingListener = new WrappingListener();
+        wrappingListener.setWrappedListener(listener);
+        this.parser.parse(new StringReader(source), wrappingListener);
+
+        return events(listener);
+    }
+
+    private List<String> events(QueueListener listener)
+    {
+        List<String> events = new ArrayList<>();
+        for (QueueListener.Event event : listener) {
+            events.add(event.eventType + Arrays.toString(event.eventParameters));
+        }
+
+        return events;
+    }
+
+    private static String document(String... words)
+    {
+        StringBuilder document = new StringBuilder("<doc>");
+        for (String word : words) {
+            document.append("<p>").append(word).append("</p>");
+        }
+        document.append("</doc>");
+
+        return document.toString();
+    }
+
+    @Test
+    void parse() throws ParseException
+    {
+        List<String> events = parse(document("a", "b"));
+
+        assertEquals(6, events.size());
+        assertEquals(events, parse(document("a", "b")));
+        assertEquals(1, this.createdParsers.get());
+    }
+
+    @Test
+    void parseAfterFailure() throws ParseException
+    {
+        List<String> expected = parse(document("b"));
+
+        assertThrows(ParseException.class, () -> parse("<doc><p>a</doc>"));
+
+        // The failed parser is not reused
+        assertEquals(expected, parse(document("b")));
+        assertEquals(2, this.createdParsers.get());
+    }
+
+    @Test
+    void parseWithExtendedListener() throws ParseException
+    {
+        parse(document("a"));
+
+        QueueListener listener = new QueueListener();
+        ExtendedListener extendedListener = new ExtendedListener();
+        extendedListener.setWrappedListener(listener);
+        this.parser.parse(new StringReader(document("a")), extendedListener);
+
+        // The content handler parser received the listener itself and not the forwarding listener of a pooled parser
+        assertEquals(2, this.createdParsers.get());
+        assertSame(extendedListener, this.createdParserListeners.get(1));
+        assertEquals(parse(document("a")), events(listener));
+
+        this.parser.parse(new StringReader(document("a")), new QueueListener());
+
+        assertSame(QueueListener.class, this.createdParserListeners.get(2).getClass());
+    }
+
+    @Test
+    void parseNested() throws ParseException
+    {
+        List<String> expectedNested = parse(document("c"));
+
+        QueueListener nestedListener = new QueueListener();
+        QueueListener listener = new QueueListener();
+        WrappingListener nestingListener = new WrappingListener()
+        {
+            @Override
+            public void onWord(String word)
+            {
+                super.onWord(word);
+
+                if (word.equals("nested")) {
+                    try {
+                        AbstractStreamParserTest.this.parser.parse(new StringReader(document("c")), nestedListener);
+                    } catch (ParseException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+        };
+        nestingListener.setWrappedListener(listener);
+        this.parser.parse(new StringReader(document("a", "nested", "b")), nestingListener);
+
+        assertEquals(parse(document("a", "nested", "b")), events(listener));
+        assertEquals(expectedNested, events(nestedListener));
+    }
+
+    @Test
+    void parseConcurrently() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; ++i) {
+                int thread = i;
+                Callable<Boolean> task = () -> {
+                    for (int j = 0; j < 100; ++j) {
+                        String word = thread + "-" + j;
+                        if (j % 10 == 0) {
+                            assertThrows(ParseException.class, () -> parse("<doc><p>" + word));
+                        }
+
+                        List<String> events = parse(document(word, word));
+                        assertEquals(6, events.size());
+                        assertEquals("ON_WORD[" + word + "]", events.get(1));
+                        assertEquals("ON_WORD[" + word + "]", events.get(4));
+                    }
+
+                    return true;
+                };
+                results.add(executor.submit(task));
+            }
+
+            for (Future<Boolean> result : results) {
+                assertEquals(true, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}